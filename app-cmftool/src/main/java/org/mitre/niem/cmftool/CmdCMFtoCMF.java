@@ -35,7 +35,7 @@ import java.util.Arrays;
 import java.util.List;
 import javax.xml.parsers.ParserConfigurationException;
 import org.mitre.niem.cmf.ModelXMLReader;
-import org.mitre.niem.cmf.ModelXMLWriter;
+import org.mitre.niem.cmf.ModelXMLStreamWriter;
 import org.mitre.niem.utility.JCUsageFormatter;
 import org.mitre.niem.xml.ParserBootstrap;
 import static org.mitre.niem.xml.ParserBootstrap.BOOTSTRAP_ALL;
@@ -141,7 +141,7 @@ class CmdCMFtoCMF implements JCCommand {
         // Write model to output
         try {
             var good = false;
-            var mw   = new ModelXMLWriter();
+            var mw   = new ModelXMLStreamWriter();
             if (onlyL.isEmpty()) good = mw.writeXML(model, ow);
             else good = mw.writeXML(model, onlyL, ow);
             ow.close();
@@ -66,6 +66,15 @@ public class CmdCMFtoXMLSchema implements JCCommand {
     @Parameter(order = 4, names = {"-v", "--archVersion"}, description = "builtins from this architecture (eg. \"NIEM5.0\")")
     private String archVers = null;
     
+    @Parameter(order = 5, names = {"-t", "--threads"}, description = "number of schema document writer threads")
+    private int threads = Runtime.getRuntime().availableProcessors();
+    
+    @Parameter(order = 6, names = "--timing", description = "report the time taken by each generation phase")
+    private boolean timingFlag = false;
+    
+    @Parameter(order = 7, names = {"-i", "--incremental"}, description = "only rewrite schema documents that changed since the last run")
+    private boolean incrementalFlag = false;
+    
     @Parameter(names = {"-d","--debug"}, description = "turn on debug logging")
     private boolean debugFlag = false;
     
@@ -138,7 +147,7 @@ public class CmdCMFtoXMLSchema implements JCCommand {
         // If output directory exists, make sure it's empty
         File od = new File(outputDir);
         try {
-            if (od.exists() && (!FileUtils.isDirectory(od) || !FileUtils.isEmptyDirectory(od))) {
+            if (!incrementalFlag && od.exists() && (!FileUtils.isDirectory(od) || !FileUtils.isEmptyDirectory(od))) {
                 System.err.println("Warning: output directory is not empty.");
             }
         } catch (IOException ex) {
@@ -161,12 +170,15 @@ public class CmdCMFtoXMLSchema implements JCCommand {
         m2x.setArchVersion(archVers);
         m2x.setCatalogPath(catPath);
         m2x.setRootNamespace(rootNSarg);
+        m2x.setThreads(threads);
+        m2x.setIncremental(incrementalFlag);
         try {
             m2x.writeModelXSD(od);
         } catch (Exception ex) {
             System.err.println("Error: " + ex.getMessage());
             System.exit(1);
         }
+        if (timingFlag) System.err.print(m2x.phaseTimer().format());
         
         // Tell user to provide external schema documents
         for (var ns : model.namespaceSet()) {
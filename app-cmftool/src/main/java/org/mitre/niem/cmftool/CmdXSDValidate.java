@@ -38,6 +38,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.mitre.niem.utility.JCUsageFormatter;
 import org.mitre.niem.xml.SAXErrorHandler;
+import org.mitre.niem.xml.SharedGrammarPool;
 import org.mitre.niem.xml.XMLSchema;
 import org.mitre.niem.xml.XMLSchemaException;
 import org.xml.sax.SAXException;
@@ -52,6 +53,9 @@ import org.xml.sax.SAXException;
 
 class CmdXSDValidate implements JCCommand {
    
+    @Parameter(names = "--grammar-pool", description = "share compiled schema grammars between schema assemblies and report pool statistics")
+    private boolean poolFlag = false;
+    
     @Parameter(names = {"-d","--debug"}, description = "turn on debug logging")
     private boolean debugFlag = false;
      
@@ -134,6 +138,7 @@ class CmdXSDValidate implements JCCommand {
         }
         // Assemble the javax schema, die on errors and warnings
         String[] args = schemaArgs.toArray(new String[0]);
+        SharedGrammarPool.setEnabled(poolFlag);
         XMLSchema xmls;
         Schema vals;
         Validator validator = null;
@@ -169,7 +174,7 @@ class CmdXSDValidate implements JCCommand {
                 System.out.println(ex.getMessage());
             }
         }
-        
+        if (poolFlag) System.err.println(SharedGrammarPool.statistics());
         System.exit(0);
     }    
 }
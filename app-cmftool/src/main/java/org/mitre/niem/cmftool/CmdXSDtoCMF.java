@@ -26,6 +26,7 @@ package org.mitre.niem.cmftool;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameters;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -33,7 +34,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.logging.Logger;
 import javax.xml.parsers.ParserConfigurationException;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.Level;
@@ -41,13 +41,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.mitre.niem.cmf.CMFException;
 import org.mitre.niem.cmf.Model;
-import org.mitre.niem.cmf.ModelXMLWriter;
+import org.mitre.niem.cmf.ModelXMLStreamWriter;
 import org.mitre.niem.utility.JCUsageFormatter;
 import org.mitre.niem.xml.ParserBootstrap;
+import org.mitre.niem.xml.SharedGrammarPool;
 import static org.mitre.niem.xml.ParserBootstrap.BOOTSTRAP_ALL;
+import org.mitre.niem.xml.XMLSchemaDocument;
 import org.mitre.niem.xml.XMLSchemaException;
 import org.mitre.niem.xsd.ModelFromXSD;
 import org.mitre.niem.xsd.NIEMSchema;
+import org.mitre.niem.xsd.XSDModelCache;
 import static org.mitre.niem.xsd.NamespaceKind.*;
 
 /**
@@ -64,16 +67,25 @@ class CmdXSDtoCMF implements JCCommand {
     @Parameter(order = 2, names = "--only", description = "include only these namespace URIs or prefixes; eg. \"--only nc,j\"")
     private String onlyArg = null;
         
-    @Parameter(order = 3, names = {"-d","--debug"}, description = "turn on debug logging")
+    @Parameter(order = 3, names = "--cache", description = "reuse the model from this cache directory if the schema pile is unchanged")
+    private String cacheDir = null;
+        
+    @Parameter(order = 4, names = "--low-memory", description = "let schema document trees be discarded and reparsed when the heap is short")
+    private boolean lowMemoryFlag = false;
+        
+    @Parameter(order = 5, names = "--grammar-pool", description = "share compiled schema grammars between schema assemblies and report pool statistics")
+    private boolean poolFlag = false;
+        
+    @Parameter(order = 6, names = "--timing", description = "report the time, memory, and object count of each model construction phase")
+    private boolean timingFlag = false;
+        
+    @Parameter(order = 7, names = {"-d","--debug"}, description = "turn on debug logging")
     private boolean debugFlag = false;
-    
-    @Parameter(names = {"-p","--profile"}, description = "pause for profiler attachment", hidden = true)
-    private boolean profileFlag = false;
 //
 //    @Parameter(names = {"-q", "--quiet"}, description = "no output, exit status only")
 //    private boolean quietFlag = false;
      
-    @Parameter(order = 4, names = {"-h","--help"}, description = "display this usage message", help = true)
+    @Parameter(order = 8, names = {"-h","--help"}, description = "display this usage message", help = true)
     boolean help = false;
         
     @Parameter(description = "{schema, namespace URI, XML catalog}...")
@@ -107,15 +119,6 @@ class CmdXSDtoCMF implements JCCommand {
     }    
     
     private void run (JCommander cob) {
-        if (profileFlag) {
-            try {
-                System.err.println("sleeping");
-                Thread.sleep(5009);
-                System.err.println("resuming");
-            } catch (InterruptedException ex) {
-                Logger.getLogger(CmdXSDtoCMF.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
-            }
-        }
         if (help) {
             cob.usage();
             System.exit(0);
@@ -164,17 +167,36 @@ class CmdXSDtoCMF implements JCCommand {
             System.err.println("Internal parser error: " + ex.getMessage());
             System.exit(1);
         }
-        // Construct the schema object from arguments
+        // Construct the schema object from arguments, unless the cache has
+        // the model for this schema pile
         String[] aa = mainArgs.toArray(new String[0]);
-        NIEMSchema s = null;
-        Model m = null;        
-        try {           
-            var mfact = new ModelFromXSD();
-            s = new NIEMSchema(aa);
-            m = mfact.createModel(s);
-        } catch (XMLSchemaException | CMFException ex) {
-            System.err.println(String.format("Error building XML schema: %s", ex.getMessage()));
-            System.exit(1);
+        var cache = null == cacheDir ? null : new XSDModelCache(new File(cacheDir));
+        var hit   = null == cache ? null : cache.lookup(aa);
+        Model m = null;
+        String msgs = null;
+        String summary = null;
+        String timing  = null;
+        if (null != hit) {
+            m       = hit.model();
+            msgs    = hit.messages();
+            summary = hit.summary();
+        }
+        else {
+            NIEMSchema s = null;
+            XMLSchemaDocument.setLowMemory(lowMemoryFlag);
+            SharedGrammarPool.setEnabled(poolFlag);
+            try {           
+                var mfact = new ModelFromXSD();
+                s = new NIEMSchema(aa);
+                m = mfact.createModel(s);
+                timing = mfact.phaseTimer().format();
+            } catch (XMLSchemaException | CMFException ex) {
+                System.err.println(String.format("Error building XML schema: %s", ex.getMessage()));
+                System.exit(1);
+            }
+            msgs    = schemaMessages(s);
+            summary = namespaceSummary(s);
+            if (null != cache) cache.store(s, m, msgs, summary, aa);
         }
         // Convert onlyArg to list of namespace URIs/prefixes
         var onlyL = new ArrayList<String>();
@@ -182,7 +204,7 @@ class CmdXSDtoCMF implements JCCommand {
             onlyL.addAll(Arrays.asList(onlyArg.split("\\s*,\\s*")));
         }
         // Write the NIEM model instance to the output stream
-        var mw = new ModelXMLWriter();
+        var mw = new ModelXMLStreamWriter();
         try {            
             if (onlyL.isEmpty()) mw.writeXML(m, ow); 
             else mw.writeXML(m, onlyL, ow);
@@ -191,19 +213,39 @@ class CmdXSDtoCMF implements JCCommand {
             System.err.println("Output error: " + ex.getMessage());
             System.exit(1);
         }
-        // Report various error and warning messages captured in the schema object
-//        if (quietFlag) System.exit(0);
+        // Report various error and warning messages captured in the schema object,
+        // then the namespaces in the pile
+        System.err.print(msgs);
+        System.out.print(summary);
+        if (timingFlag) {
+            if (null == timing) System.err.println("Model construction phases: none (model from cache)");
+            else System.err.print("Model construction phases:\n" + timing);
+        }
+        if (poolFlag) System.err.println(SharedGrammarPool.statistics());
+        System.exit(0);
+    }
+    
+    // Returns the error and warning messages captured in the schema object
+    private String schemaMessages (NIEMSchema s) {
+        var sb = new StringBuilder();
+        var nl = System.lineSeparator();
         var catmsgL = s.resolver().allMessages();
         var schmsgL = s.xsModelMsgs();
         if (!catmsgL.isEmpty()) {
-            System.err.println("Catalog resolver messages:");
-            for (var msg : catmsgL) System.err.println("  " + msg);
+            sb.append("Catalog resolver messages:").append(nl);
+            for (var msg : catmsgL) sb.append("  ").append(msg).append(nl);
         }
         if (!schmsgL.isEmpty()) {
-            System.err.println("Schema assembly messages:");
-            for (var msg : schmsgL) System.err.println("  " + msg);
+            sb.append("Schema assembly messages:").append(nl);
+            for (var msg : schmsgL) sb.append("  ").append(msg).append(nl);
         }
-        // Categorize namespaces in the pile, report by kind
+        return sb.toString();
+    }
+    
+    // Categorize namespaces in the pile, report by kind
+    private String namespaceSummary (NIEMSchema s) {
+        var sb = new StringBuilder();
+        var nl = System.lineSeparator();
         var model      = new ArrayList<String>();
         var conforming = new ArrayList<String>();
         var external   = new ArrayList<String>();
@@ -243,15 +285,15 @@ class CmdXSDtoCMF implements JCCommand {
             var ctaL = sd.ctAssertions();
             var vers = sd.niemVersion();
             if (ctas.isBlank()) {
-                System.out.println(String.format("%s  %s [no CTAS namespace]", hdr, nsU));
+                sb.append(String.format("%s  %s [no CTAS namespace]", hdr, nsU)).append(nl);
                 hdr = "";
             }
             if (ctaL.isEmpty()) {
-                System.out.println(String.format("%s  %s [no conformance target assertion]", hdr, nsU));
+                sb.append(String.format("%s  %s [no conformance target assertion]", hdr, nsU)).append(nl);
                 hdr = "";
             }
             if (vers.isBlank()) {
-                System.out.println(String.format("%s  %s [can't determine NIEM architecture version]", hdr, nsU));
+                sb.append(String.format("%s  %s [can't determine NIEM architecture version]", hdr, nsU)).append(nl);
                 hdr = "";
             }
             else conforming.add(nsU);
@@ -261,27 +303,27 @@ class CmdXSDtoCMF implements JCCommand {
         for (var nsU : conforming) {
             var sd   = s.schemaDocument(nsU);
             var vers = sd.niemVersion();
-            System.out.println(String.format("%s  %s [NIEM version='%s']", hdr, nsU, vers));
+            sb.append(String.format("%s  %s [NIEM version='%s']", hdr, nsU, vers)).append(nl);
             hdr = "";
         }
         Collections.sort(external);
         hdr = "External namespaces (imported with appinfo:externalNamespaceIndicator):\n";
         for (var nsU : external) {
-            System.out.println(String.format("%s  %s", hdr, nsU));
+            sb.append(String.format("%s  %s", hdr, nsU)).append(nl);
             hdr = "";
         }
         Collections.sort(builtins);
         hdr = "Utililty and predefined namespaces:\n";
         for (var nsU : builtins) {
-            System.out.println(String.format("%s  %s", hdr, nsU));
+            sb.append(String.format("%s  %s", hdr, nsU)).append(nl);
             hdr = "";
         }
         Collections.sort(unknown);
         hdr = "Unknown namespaces (no conformance assertion found):\n";
         for (var nsU : unknown) {
-            System.out.println(String.format("%s  %s", hdr, nsU));
+            sb.append(String.format("%s  %s", hdr, nsU)).append(nl);
             hdr = "";
         }
-        System.exit(0);
+        return sb.toString();
     }
 }
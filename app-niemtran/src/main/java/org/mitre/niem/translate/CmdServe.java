@@ -0,0 +1,151 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import javax.xml.parsers.ParserConfigurationException;
+import static org.apache.commons.io.FilenameUtils.removeExtension;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.mitre.niem.cmf.ModelXMLReader;
+import org.mitre.niem.utility.JCUsageFormatter;
+import org.mitre.niem.xml.ParserBootstrap;
+import static org.mitre.niem.xml.ParserBootstrap.BOOTSTRAP_SAX2;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+        
+@Parameters(commandDescription = "load models once and convert messages sent on stdin or a local socket")
+    
+public class CmdServe implements JCCommand {
+    
+    @Parameter(names = {"-h","--help"}, description = "display this usage message", help = true)
+    boolean help = false;
+    
+    @Parameter(names = {"-p","--port"}, description = "listen on this localhost port instead of stdin/stdout")
+    int port = -1;
+    
+    @Parameter(names = {"-t","--threads"}, description = "number of worker threads")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(description = "[name=]model.cmf ...")
+    private List<String> mainArgs;
+    
+    CmdServe () {
+    }
+  
+    CmdServe (JCommander jc) {
+    }
+
+    public static void main (String[] args) {       
+        var obj = new CmdServe();
+        obj.runMain(args);
+    }
+    
+    @Override
+    public void runMain (String[] args) {
+        var jc = new JCommander(this);
+        var uf = new JCUsageFormatter(jc); 
+        jc.setUsageFormatter(uf);
+        jc.setProgramName("serve");
+        jc.parse(args);
+        run(jc);
+    }
+    
+    @Override
+    public void runCommand (JCommander cob) {
+        cob.setProgramName("niemtran serve");
+        run(cob);
+    }        
+    
+    private void run (JCommander cob) {
+        if (help) {
+            cob.usage();
+            System.exit(0);
+        }
+        if (mainArgs == null || mainArgs.isEmpty()) {
+            cob.usage();
+            System.exit(1);
+        }
+        // In stdin/stdout mode, stdout carries the response frames.  Keep 
+        // everything else off it; warnings are returned in the responses.
+        var stdout = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out));
+        if (port < 0) {
+            System.setOut(System.err);
+            Configurator.setRootLevel(Level.OFF);
+        }
+        try {
+            ParserBootstrap.init(BOOTSTRAP_SAX2);
+        } catch (ParserConfigurationException ex) {
+            System.err.println("Parser configuration error: " + ex.getMessage());
+            System.exit(1);
+        }
+        // Load each model once; model name is given or is the file base name
+        var plans = new HashMap<String,TranslationPlan>();
+        for (var arg : mainArgs) {
+            var eq    = arg.indexOf('=');
+            var mF    = new File(eq < 0 ? arg : arg.substring(eq + 1));
+            var name  = eq < 0 ? removeExtension(mF.getName()) : arg.substring(0, eq);
+            var model = new ModelXMLReader().readFiles(mF);
+            if (null == model) {
+                System.err.println("Can't read model from " + mF.toString());
+                System.exit(1);
+            }
+            plans.put(name, new TranslationPlan(model.freeze()));
+        }
+        var server = new TranslationServer(plans, threads);
+        if (port < 0) {
+            try {
+                server.serve(new BufferedInputStream(System.in), stdout);
+            } catch (IOException ex) {
+                System.err.println("Error reading requests: " + ex.getMessage());
+                System.exit(1);
+            }
+            server.shutdown();
+            return;
+        }
+        try (var ss = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println(String.format("niemtran serve: %d models, listening on %s", plans.size(), ss.getLocalSocketAddress()));
+            server.listen(ss);
+        } catch (IOException ex) {
+            System.err.println("Can't listen on port " + port + ": " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -26,28 +26,27 @@ package org.mitre.niem.translate;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import java.io.BufferedWriter;
+import com.google.gson.JsonPrimitive;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
 import static org.apache.commons.io.FilenameUtils.removeExtension;
 import org.mitre.niem.cmf.ModelXMLReader;
 import org.mitre.niem.json.Context;
 import org.mitre.niem.utility.JCUsageFormatter;
-import static org.mitre.niem.utility.URIfuncs.FileToCanonicalURI;
 import org.mitre.niem.xml.ParserBootstrap;
+import org.mitre.niem.xml.XMLSchema;
+import org.mitre.niem.xml.XMLSchemaException;
 import static org.mitre.niem.xml.ParserBootstrap.BOOTSTRAP_SAX2;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -71,8 +70,23 @@ public class CmdXMLtoJSON implements JCCommand {
     
     @Parameter(names = {"-h","--help"}, description = "display this usage message", help = true)
     boolean help = false;
+    
+    @Parameter(names = {"-n","--ndjson"}, description = "each argument is a message stream (zip, tar, or concatenated XML split at each <?xml declaration not in a comment, CDATA or tag); write foo.ndjson")
+    boolean ndjsonF = false;
+    
+    @Parameter(names = {"--status"}, description = "write status of each --ndjson message to this file")
+    String statusFN = null;
+    
+    @Parameter(names = {"-s","--stream"}, description = "build JSON text instead of an object tree (for large messages)")
+    boolean streamF = false;
+    
+    @Parameter(names = {"-t","--threads"}, description = "number of worker threads")
+    int threads = 1;
+    
+    @Parameter(names = {"-x","--xsd"}, description = "validate each message against this schema (schema documents and catalogs; repeat as needed)")
+    List<String> xsdArgs = null;
 
-    @Parameter(description = "model.cmf msg.xml ...")
+    @Parameter(description = "model.cmf {msg.xml | dir | 'glob'} ...")
     private List<String> mainArgs;
     
     CmdXMLtoJSON () {
@@ -129,66 +143,101 @@ public class CmdXMLtoJSON implements JCCommand {
             System.exit(1);
         }
         
-        var tran = new XMLMsgToJSON(model);
-        var gson = new GsonBuilder().setPrettyPrinting().create();
-            
-        for (int i = 1; i < mainArgs.size(); i++) {
-            var xmlFN  = mainArgs.get(i);
-            var jsonFN = removeExtension(xmlFN) + ".json";
-            var jsonF  = new File(jsonFN);
-            if (jsonF.exists() && !force) {
-                System.err.println(jsonFN + ": file exists");
-                continue;
-            }
-            InputSource xmlIS = null;          
+        // Assemble the message schema for validation, if any
+        Schema schema = null;
+        if (null != xsdArgs && !xsdArgs.isEmpty()) {
             try {
-                var xmlF = new File(xmlFN);
-                var fis  = new FileInputStream(xmlF);
-                xmlIS =    new InputSource(fis);
-                xmlIS.setSystemId(xmlF.toURI().toString());
-            } catch (FileNotFoundException ex) {
-                System.err.println(String.format("Can't open XML file %s: %s", xmlFN, ex.getMessage()));
-                continue;
+                var xs = new XMLSchema(xsdArgs.toArray(new String[0]));
+                schema = xs.javaxSchema();
+                for (var msg : xs.javaXMsgs()) System.err.println(msg);
+            } catch (XMLSchemaException | SAXException ex) {
+                System.err.println("Can't assemble message schema: " + ex.getMessage());
+                System.exit(1);
             }
-            Writer jsonW = null;
+        }
+        var plan  = new TranslationPlan(model.freeze());
+        if (ndjsonF) {
+            convertStreams(plan, schema);
+            return;
+        }
+        var gson  = new GsonBuilder().setPrettyPrinting().create();
+        var batch = new XMLtoJSONBatch(plan, gson);
+        batch.setThreads(threads);
+        batch.setForce(force);
+        batch.setStream(streamF);
+        batch.setSchema(schema);
+        if (contextF) batch.setContext(Context.create(model));
+        else if (!contextU.isBlank()) batch.setContext(new JsonPrimitive(contextU));
+        
+        // Report errors as they happen; summary at the end for batch runs
+        var msgArgs = mainArgs.subList(1, mainArgs.size());
+        var summaryF = threads > 1 || msgArgs.stream().anyMatch((a) -> XMLtoJSONBatch.isGlob(a) || new File(a).isDirectory());
+        XMLtoJSONBatch.Summary sum = null;
+        try {
+            sum = batch.run(msgArgs, (r) -> {
+                if (r.isSkipped()) System.err.println(r.error());
+                else if (r.isError()) System.err.println(String.format("%s: %s", r.xmlF().getPath(), r.error()));
+                for (var msg : r.validation()) System.err.println(String.format("%s: %s", r.xmlF().getPath(), msg));
+            });
+        } catch (IOException ex) {
+            System.err.println("Error listing message files: " + ex.getMessage());
+            System.exit(1);
+        }
+        if (summaryF) System.err.print(sum.format());
+    }
+    
+    // Converts each message stream argument to an NDJSON file.  Message status
+    // goes to the status file, if any; otherwise problems go to stderr.
+    private void convertStreams (TranslationPlan plan, Schema schema) {
+        var tran = new XMLMsgToJSON(plan);
+        tran.setSchema(schema);
+        var gson = new Gson();
+        Writer statusW = null;
+        if (null != statusFN) {
             try {
-                var jsonOS = new FileOutputStream(jsonFN);
-                var jsonSW = new OutputStreamWriter(jsonOS, "UTF-8");
-                jsonW = new BufferedWriter(jsonSW);
-            } catch (FileNotFoundException ex) {
-                System.err.println(String.format("Can't open JSON file %s: %s", jsonFN, ex.getMessage()));
-                continue;
-            } catch (UnsupportedEncodingException ex) {
-                System.err.println("Can't write UTF-8??: " + ex.getMessage());
+                statusW = Files.newBufferedWriter(Path.of(statusFN), StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                System.err.println(String.format("Can't open status file %s: %s", statusFN, ex.getMessage()));
                 System.exit(1);
             }
-            var jobj = new JsonObject();
-            try {
-                var status = tran.convert(xmlIS, jobj);
+        }
+        for (var srcFN : mainArgs.subList(1, mainArgs.size())) {
+            var outF = new File(removeExtension(srcFN.replaceAll("\\.gz$", "")) + ".ndjson");
+            if (outF.exists() && !force) {
+                System.err.println(outF.getPath() + ": file exists");
+                continue;
+            }
+            var sw = statusW;
+            try (var src = MessageSource.open(new File(srcFN));
+                 var out = Files.newBufferedWriter(outF.toPath(), StandardCharsets.UTF_8)) {
+                tran.convertStream(src, out, (ms) -> {
+                    if (null != sw) {
+                        try {
+                            sw.write(gson.toJson(ms));
+                            sw.write('\n');
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                    else if (null != ms.error()) 
+                        System.err.println(String.format("%s: %s", ms.name(), ms.error()));
+                    else if (XMLMsgToJSON.CONVERT_OK != ms.status())
+                        System.err.println(String.format("%s: %d warnings, %d validation messages", 
+                                ms.name(), ms.warnings().size(), ms.validation().size()));
+                });
             } catch (ParserConfigurationException ex) {
                 System.err.println("Parser configuration error: " + ex.getMessage());
                 System.exit(1);
-            } catch (SAXException ex) {
-                System.err.println(String.format("Error parsing %s: %s", xmlFN, ex.getMessage()));
-            } catch (IOException ex) {
-                System.err.println(String.format("Error reading %s: %s", xmlFN, ex.getMessage()));
-            }     
-            if (contextF) {
-                var cobj = Context.create(model);
-                jobj.add("@context", cobj);
-            }
-            else if (!contextU.isBlank()) {
-                jobj.addProperty("@context", contextU);
+            } catch (IOException | UncheckedIOException ex) {
+                System.err.println(String.format("Error converting %s: %s", srcFN, ex.getMessage()));
             }
-            
-            var jmsg = gson.toJson(jobj);
+        }
+        if (null != statusW) {
             try {
-                jsonW.write(jmsg);
-                jsonW.close();
+                statusW.close();
             } catch (IOException ex) {
-                System.err.println(String.format("Error writing %s: %s", jsonFN, ex.getMessage()));
+                System.err.println(String.format("Error writing %s: %s", statusFN, ex.getMessage()));
             }
-           
         }
     }
     
@@ -0,0 +1,434 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * A class for reading a stream of many XML messages.  The messages may be
+ * concatenated XML documents, or the *.xml entries in a zip or tar archive.
+ * Each call to next() returns the next message; its input stream is only
+ * valid until the following call.  Closing a message stream does not close
+ * the source.
+ * <p>
+ * Concatenated documents are split at each XML declaration ("&lt;?xml"),
+ * so every message after the first must begin with one.  White space 
+ * between documents is ignored.  A declaration within a comment, CDATA
+ * section, processing instruction, DOCTYPE or attribute value is content,
+ * not a split.  A declaration anywhere else starts a new document, even
+ * if the previous document's root element was never closed; the bad 
+ * document then fails alone.  A document truncated within a comment, CDATA
+ * section or tag runs on into the next document.  Only ASCII-compatible
+ * encodings (e.g. UTF-8, ISO-8859-1) can be split.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public abstract class MessageSource implements Closeable {
+    
+    protected final InputStream in;
+    protected int count = 0;
+    
+    protected MessageSource (InputStream in) {
+        this.in = in;
+    }
+    
+    /** One message:  a name for status reports, and its content */
+    public record Message (String name, InputStream in) {}
+    
+    /**
+     * Returns the next message, or null at the end of the source.
+     * @return message
+     * @throws IOException 
+     */
+    public abstract Message next () throws IOException;
+    
+    @Override
+    public void close () throws IOException     { in.close(); }
+    
+    /**
+     * Returns a message source for a file.  The kind of source is chosen by
+     * file name extension: *.zip, *.tar, *.tar.gz or *.tgz for archives, 
+     * anything else for concatenated documents (gzipped if *.gz).
+     * @param f - file
+     * @return message source
+     * @throws IOException 
+     */
+    public static MessageSource open (File f) throws IOException {
+        var name = f.getName().toLowerCase();
+        InputStream is = new BufferedInputStream(new FileInputStream(f), 65536);
+        if (name.endsWith(".tgz")) name = name.substring(0, name.length() - 4) + ".tar.gz";
+        if (name.endsWith(".gz")) {
+            is = new BufferedInputStream(new GZIPInputStream(is, 65536), 65536);
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".zip")) return zip(is);
+        if (name.endsWith(".tar")) return tar(is);
+        return concatenated(is, f.getName());
+    }
+    
+    /** Returns a message source for concatenated XML documents */
+    public static MessageSource concatenated (InputStream in, String name) {
+        return new Concatenated(in, name);
+    }
+    
+    /** Returns a message source for the *.xml entries in a zip archive */
+    public static MessageSource zip (InputStream in) {
+        return new Zip(in);
+    }
+    
+    /** Returns a message source for the *.xml entries in a tar archive */
+    public static MessageSource tar (InputStream in) {
+        return new Tar(in);
+    }
+    
+    // An input stream that doesn't close the source; the XML parser closes
+    // its input when it is done.
+    private static class Unclosed extends FilterInputStream {
+        Unclosed (InputStream in)               { super(in); }
+        @Override
+        public void close ()                    { }
+    }
+    
+    private static boolean isXML (String name) {
+        return name.toLowerCase().endsWith(".xml");
+    }
+    
+    
+    private static class Zip extends MessageSource {
+        private final ZipInputStream zin;
+        
+        Zip (InputStream in) {
+            super(new ZipInputStream(in));
+            zin = (ZipInputStream)this.in;
+        }
+        
+        @Override
+        public Message next () throws IOException {
+            ZipEntry e;
+            while (null != (e = zin.getNextEntry())) {
+                if (!e.isDirectory() && isXML(e.getName())) 
+                    return new Message(e.getName(), new Unclosed(zin));
+            }
+            return null;
+        }
+    }
+    
+    
+    // Reads the regular file entries in a ustar (or GNU tar) archive
+    private static class Tar extends MessageSource {
+        private static final int BLOCK = 512;
+        private final byte[] hdr = new byte[BLOCK];
+        private long skip = 0;              // bytes left in current entry, plus padding
+        private Bounded cur = null;
+        
+        Tar (InputStream in)                    { super(in); }
+        
+        @Override
+        public Message next () throws IOException {
+            String longName = null;
+            while (true) {
+                if (null != cur) { skip = cur.left + pad(cur.size); cur = null; }
+                in.skipNBytes(skip);
+                skip = 0;
+                var n = in.readNBytes(hdr, 0, BLOCK);
+                if (0 == n) return null;
+                if (BLOCK != n) throw new EOFException("truncated tar header");
+                if (isZero(hdr)) return null;
+                var size = octal(hdr, 124, 12);
+                var type = hdr[156];
+                var name = string(hdr, 0, 100);
+                if ("ustar".equals(string(hdr, 257, 5))) {
+                    var prefix = string(hdr, 345, 155);
+                    if (!prefix.isEmpty()) name = prefix + "/" + name;
+                }
+                if (null != longName) { name = longName; longName = null; }
+                if ('L' == type) {
+                    var lb = in.readNBytes((int)size);
+                    in.skipNBytes(pad(size));
+                    longName = string(lb, 0, lb.length);
+                    continue;
+                }
+                if (('0' == type || 0 == type) && isXML(name)) {
+                    cur = new Bounded(in, size);
+                    return new Message(name, cur);
+                }
+                skip = size + pad(size);
+            }
+        }
+        
+        private static long pad (long size) {
+            return (BLOCK - size % BLOCK) % BLOCK;
+        }
+        
+        private static boolean isZero (byte[] b) {
+            for (var x : b) if (0 != x) return false;
+            return true;
+        }
+        
+        private static String string (byte[] b, int off, int len) {
+            var end = off;
+            while (end < off + len && 0 != b[end]) end++;
+            return new String(b, off, end - off, StandardCharsets.UTF_8);
+        }
+        
+        private static long octal (byte[] b, int off, int len) throws IOException {
+            var s = string(b, off, len).trim();
+            try {
+                return s.isEmpty() ? 0 : Long.parseLong(s, 8);
+            } catch (NumberFormatException ex) {
+                throw new IOException("bad tar entry size: " + s);
+            }
+        }
+    }
+    
+    // The first n bytes of a stream
+    private static class Bounded extends InputStream {
+        private final InputStream in;
+        private final long size;
+        private long left;
+        
+        Bounded (InputStream in, long size) {
+            this.in   = in;
+            this.size = size;
+            this.left = size;
+        }
+        
+        @Override
+        public int read () throws IOException {
+            if (left <= 0) return -1;
+            var c = in.read();
+            if (c < 0) throw new EOFException("truncated tar entry");
+            left--;
+            return c;
+        }
+        
+        @Override
+        public int read (byte[] b, int off, int len) throws IOException {
+            if (left <= 0) return -1;
+            var n = in.read(b, off, (int)Math.min(len, left));
+            if (n < 0) throw new EOFException("truncated tar entry");
+            left -= n;
+            return n;
+        }
+    }
+    
+    
+    // Splits concatenated documents at each XML declaration that appears as
+    // markup.  The bytes are scanned just far enough to know whether a "<?xml"
+    // is in a comment, CDATA section, processing instruction, DOCTYPE or tag.
+    private static class Concatenated extends MessageSource {
+        private static final byte[] DECL  = ascii("<?xml");
+        private static final byte[] COM   = ascii("<!--");
+        private static final byte[] COMX  = ascii("-->");
+        private static final byte[] CDATA = ascii("<![CDATA[");
+        private static final byte[] CDATX = ascii("]]>");
+        private static final byte[] PI    = ascii("<?");
+        private static final byte[] PIX   = ascii("?>");
+        private static final byte[] MDECL = ascii("<!");
+        private static final int LOOK = CDATA.length;       // longest markup delimiter
+        private enum Scan { TEXT, TAG, COMMENT, CDATA, PI, DOCTYPE }
+        private final String name;
+        private final byte[] buf = new byte[65536];
+        private int pos = 0;                // next unread byte in buf
+        private int lim = 0;                // end of data in buf
+        private boolean eof = false;        // no more data from source
+        private Part cur = null;
+        private int first = -1;             // start of current part in buf; its declaration doesn't split
+        private int scan = 0;               // bytes before this in buf have been scanned
+        private Scan state = Scan.TEXT;     // markup state at scan
+        private Scan after = Scan.TEXT;     // state after the current comment or PI
+        private byte quote = 0;             // open quote in a tag or DOCTYPE
+        private boolean subset = false;     // within DOCTYPE internal subset
+        
+        Concatenated (InputStream in, String name) {
+            super(in);
+            this.name = name;
+        }
+        
+        @Override
+        public Message next () throws IOException {
+            if (null != cur) while (-1 != cur.skipPart()) { }
+            // Skip white space between documents
+            while (true) {
+                if (pos >= lim && !fill()) return null;
+                if (!isSpace(buf[pos])) break;
+                pos++;
+            }
+            first  = pos;
+            state  = Scan.TEXT;
+            quote  = 0;
+            subset = false;
+            cur = new Part();
+            return new Message(name + "#" + (++count), cur);
+        }
+        
+        // Moves unread bytes to the front of the buffer and reads more.
+        // Returns false if there is no unread data.
+        private boolean fill () throws IOException {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, lim - pos);
+                lim   -= pos;
+                scan  -= pos;
+                first -= pos;
+                pos    = 0;
+            }
+            while (!eof && lim < buf.length) {
+                var n = in.read(buf, lim, buf.length - lim);
+                if (n < 0) eof = true;
+                else if (n == 0) break;
+                else { lim += n; break; }
+            }
+            return pos < lim;
+        }
+        
+        // Scans forward from the last scanned byte.  Returns the index of the 
+        // next declaration that starts a new document, or -1 if there is none 
+        // before scan.  The white space after "<?xml" keeps <?xml-stylesheet
+        // and other processing instructions from being taken for a declaration.
+        // A delimiter split across the end of the buffer can't be recognized,
+        // so the last LOOK bytes are not scanned until more are read, or eof.
+        private int findDecl () {
+            if (scan < pos) scan = pos;
+            var end = eof ? lim : lim - LOOK;
+            while (scan < end) {
+                var i = scan;
+                var c = buf[i];
+                switch (state) {
+                case TEXT -> {
+                    if ('<' != c) scan++;
+                    else if (match(i, DECL) && i + DECL.length < lim && isSpace(buf[i + DECL.length])) {
+                        if (i != first) return i;
+                        beginPI(Scan.TEXT);
+                    }
+                    else if (match(i, COM))   { state = Scan.COMMENT; after = Scan.TEXT; scan += COM.length; }
+                    else if (match(i, CDATA)) { state = Scan.CDATA; scan += CDATA.length; }
+                    else if (match(i, PI))    beginPI(Scan.TEXT);
+                    else if (match(i, MDECL)) { state = Scan.DOCTYPE; scan += MDECL.length; }
+                    else                      { state = Scan.TAG; scan++; }
+                }
+                case TAG -> {
+                    if (0 != quote)                  { if (c == quote) quote = 0; }
+                    else if ('"' == c || '\'' == c) quote = c;
+                    else if ('>' == c)               state = Scan.TEXT;
+                    scan++;
+                }
+                case DOCTYPE -> {
+                    if (0 != quote)                  { if (c == quote) quote = 0; scan++; }
+                    else if ('"' == c || '\'' == c) { quote = c; scan++; }
+                    else if (subset && match(i, COM)) { state = Scan.COMMENT; after = Scan.DOCTYPE; scan += COM.length; }
+                    else if (subset && match(i, PI))  beginPI(Scan.DOCTYPE);
+                    else {
+                        if ('[' == c) subset = true;
+                        else if (']' == c) subset = false;
+                        else if ('>' == c && !subset) state = Scan.TEXT;
+                        scan++;
+                    }
+                }
+                case COMMENT -> { if (match(i, COMX)) { state = after; scan += COMX.length; } else scan++; }
+                case CDATA   -> { if (match(i, CDATX)) { state = Scan.TEXT; scan += CDATX.length; } else scan++; }
+                case PI      -> { if (match(i, PIX)) { state = after; scan += PIX.length; } else scan++; }
+                }
+            }
+            return -1;
+        }
+        
+        private void beginPI (Scan ret) {
+            state = Scan.PI;
+            after = ret;
+            scan += PI.length;
+        }
+        
+        private boolean match (int i, byte[] b) {
+            if (i + b.length > lim) return false;
+            for (int j = 0; j < b.length; j++) 
+                if (buf[i + j] != b[j]) return false;
+            return true;
+        }
+        
+        private class Part extends InputStream {
+            private boolean done = false;
+            
+            // Returns the number of bytes that can be returned from buf now,
+            // or -1 at the end of the part.
+            private int avail () throws IOException {
+                if (done) return -1;
+                if (lim - pos < LOOK && !eof) fill();
+                if (pos >= lim) { done = true; return -1; }
+                var d = findDecl();
+                if (d == pos) { done = true; return -1; }
+                if (d > pos) return d - pos;
+                if (scan > pos) return scan - pos;
+                fill();
+                return avail();
+            }
+            
+            @Override
+            public int read () throws IOException {
+                if (avail() <= 0) return -1;
+                return buf[pos++] & 0xff;
+            }
+            
+            @Override
+            public int read (byte[] b, int off, int len) throws IOException {
+                if (0 == len) return 0;
+                var n = avail();
+                if (n <= 0) return -1;
+                n = Math.min(n, len);
+                System.arraycopy(buf, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+            
+            int skipPart () throws IOException {
+                var n = avail();
+                if (n <= 0) return -1;
+                pos += n;
+                return n;
+            }
+            
+            @Override
+            public void close ()                { }
+        }
+    }
+    
+    private static boolean isSpace (byte c) {
+        return ' ' == c || '\t' == c || '\r' == c || '\n' == c;
+    }
+    
+    private static byte[] ascii (String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
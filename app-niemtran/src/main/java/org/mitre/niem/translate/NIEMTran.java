@@ -57,9 +57,11 @@ public class NIEMTran {
         jc.setProgramName("niemtran");
 
         var xml2jsonCmd    = new CmdXMLtoJSON(jc);
+        var serveCmd       = new CmdServe(jc);
         var helpCmd        = new CommandHelp(jc); 
         
         jc.addCommand("x2j", xml2jsonCmd);
+        jc.addCommand("serve", serveCmd);
         jc.addCommand("help", helpCmd);
 
         if (args.length < 1) {
@@ -0,0 +1,210 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import static org.apache.commons.lang3.StringUtils.capitalize;
+import static org.apache.commons.lang3.StringUtils.uncapitalize;
+import org.mitre.niem.cmf.ClassType;
+import org.mitre.niem.cmf.DataProperty;
+import org.mitre.niem.cmf.Model;
+import org.mitre.niem.cmf.Property;
+import static org.mitre.niem.xsd.NamespaceKind.NSK_STRUCTURES;
+import static org.mitre.niem.xsd.NamespaceKind.builtinNSU;
+import static org.mitre.niem.xsd.NamespaceKind.knownVersions;
+import static org.mitre.niem.xsd.NamespaceKind.namespaceToKind;
+
+/**
+ * A class for the translation plan of a NIEM message type model.  The plan
+ * answers everything XMLMsgToJSON needs to know about an element or attribute
+ * name with a single table lookup:  the model property, its class, the literal
+ * property of its class, and the flags for adapter, augmentation, attribute,
+ * structures, and reference attribute names.  The table is built once for 
+ * every name defined in the model; other names are worked out on each lookup.
+ * A plan never changes after construction, so translators in different threads
+ * can share one plan (and its model, which must not change).
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class TranslationPlan {
+    
+    /**
+     * What the translator needs to know about one element or attribute name.
+     * @param property - model property, or null
+     * @param classType - class of the property, or null
+     * @param literalProperty - literal property of the root class, for object properties
+     * @param key - JSON key for the property (its qname in the model), or null
+     * @param isKnownNS - namespace is in the model
+     * @param isAdapter - property class is an adapter class
+     * @param isAugmentation - name of an augmentation element in the namespace
+     * @param isAttribute - property is an attribute
+     * @param isStructures - namespace is a structures namespace
+     * @param hasXmlLang - property class has an xml:lang attribute
+     * @param refKey - JSON key for a reference attribute (fooRef), or null
+     * @param refProperty - referenced property for a reference attribute, or null
+     */
+    public record Entry (
+        Property property,
+        ClassType classType,
+        DataProperty literalProperty,
+        String key,
+        boolean isKnownNS,
+        boolean isAdapter,
+        boolean isAugmentation,
+        boolean isAttribute,
+        boolean isStructures,
+        boolean hasXmlLang,
+        String refKey,
+        Property refProperty) { }
+    
+    private final Model model;
+    private final Map<String,Map<String,Entry>> plan = new HashMap<>();     // nsURI -> local name -> entry
+    private final Map<ClassType,Set<Property>> repeatables = new IdentityHashMap<>();
+    private final Set<String> relKeys = new HashSet<>();                    // JSON keys of relationship properties
+    
+    public TranslationPlan (Model m) {
+        model = m;
+        for (var p : m.propertyL()) {
+            var ns = p.namespace();
+            if (null == ns) continue;
+            var nsU = ns.uri();
+            var pn  = p.name();
+            add(nsU, pn);
+            if (capitalize(pn).equals(pn)) {
+                add(nsU, pn + "Ref");
+                add(nsU, uncapitalize(pn) + "Ref");
+            }
+            if (p.isRelationship() && p == m.qnToProperty(p.qname())) relKeys.add(p.qname());
+            addRepeatables(p.classType());
+        }
+        for (var ct : m.classTypeL()) addRepeatables(ct);
+        for (var ns : m.namespaceList()) {
+            var nsU = ns.uri();
+            add(nsU, "AssociationAugmentation");
+            add(nsU, "ObjectAugmentation");
+            for (var arec : ns.augL()) {
+                var ct = arec.classType();
+                if (null != ct && ct.name().endsWith("Type")) 
+                    add(nsU, ct.name().substring(0, ct.name().length()-4) + "Augmentation");
+            }
+        }
+        for (var v : knownVersions()) {
+            var sU = builtinNSU(v, "STRUCTURES");
+            if (sU.isEmpty()) continue;
+            add(sU, "id");
+            add(sU, "ref");
+            add(sU, "uri");
+        }
+    }
+    
+    public Model model ()                       { return model; }
+    
+    /**
+     * Returns the plan entry for an element or attribute name.  Never null.
+     * @param nsU - namespace URI
+     * @param lname - local name
+     */
+    public Entry lookup (String nsU, String lname) {
+        var nsplan = plan.get(nsU);
+        if (null != nsplan) {
+            var res = nsplan.get(lname);
+            if (null != res) return res;
+        }
+        return compute(nsU, lname);
+    }
+    
+    /**
+     * Returns true if property p is repeatable in class ct.
+     */
+    public boolean isRepeatable (ClassType ct, Property p) {
+        var ps = repeatables.get(ct);
+        if (null != ps) return ps.contains(p);
+        return ct.isRepeatableProperty(p);
+    }
+    
+    /**
+     * Returns true if the JSON key is the qname of a relationship property.
+     */
+    public boolean isRelationshipKey (String key) {
+        return relKeys.contains(key);
+    }
+    
+    public boolean hasRelationships ()          { return !relKeys.isEmpty(); }
+    
+    private void add (String nsU, String lname) {
+        var nsplan = plan.computeIfAbsent(nsU, k -> new HashMap<>());
+        if (!nsplan.containsKey(lname)) nsplan.put(lname, compute(nsU, lname));
+    }
+    
+    private void addRepeatables (ClassType ct) {
+        if (null == ct || repeatables.containsKey(ct)) return;
+        var ps = Collections.newSetFromMap(new IdentityHashMap<Property,Boolean>());
+        for (var pa : ct.propL()) {
+            if (pa.maxOccursVal() > 1 || pa.isMaxUnbounded()) ps.add(pa.property());
+        }
+        repeatables.put(ct, ps);
+    }
+    
+    // Works out the entry for a name from the model.
+    private Entry compute (String nsU, String lname) {
+        var p  = model.uriToProperty(Model.makeURI(nsU, lname));
+        var ns = model.namespaceObj(nsU);
+        ClassType ct     = null;
+        DataProperty lp  = null;
+        if (null != p) {
+            ct = p.classType();
+            if (p.isObjectProperty() && null != ct) {
+                var rct = ct;
+                while (null != rct.subClassOf()) rct = rct.subClassOf();
+                lp = rct.literalDataProperty();
+            }
+        }
+        String refKey = null;
+        Property rp   = null;
+        if (lname.endsWith("Ref")) {
+            var rpnam = capitalize(lname.substring(0, lname.length()-3));
+            refKey = Model.makeURI(nsU, rpnam);
+            rp     = model.uriToProperty(refKey);
+        }
+        return new Entry(
+            p,
+            ct,
+            lp,
+            null == p ? null : p.qname(),
+            null != ns,
+            null != ct && ct.isAdapterClass(),
+            null != ns && ns.isAugmentation(lname),
+            null != p && p.isAttribute(),
+            NSK_STRUCTURES == namespaceToKind(nsU),
+            null != ct && ct.hasXmlLang(),
+            refKey,
+            rp);
+    }
+}
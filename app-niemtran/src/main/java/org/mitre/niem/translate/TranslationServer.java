@@ -0,0 +1,273 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import static org.mitre.niem.translate.XMLMsgToJSON.CONVERT_OK;
+import org.xml.sax.InputSource;
+
+/**
+ * A class for a long-running translator.  The server holds one or more
+ * message models, loaded once, and converts messages sent to it in frames
+ * over a stream (stdin/stdout, or a local socket connection).  Requests are
+ * converted concurrently on a pool of worker threads; responses are written
+ * as they complete, and so may not be in request order.
+ * <p>
+ * A request frame is an ASCII header line followed by the XML message bytes:
+ * <pre>
+ *   x2j &lt;id&gt; &lt;model&gt; &lt;length&gt;\n
+ *   &lt;length bytes of XML&gt;
+ * </pre>
+ * A response frame is an ASCII header line followed by a UTF-8 JSON object:
+ * <pre>
+ *   &lt;id&gt; &lt;length&gt;\n
+ *   {"status":"ok"|"warn"|"error", "warnings":[...], "message":{...}, "error":"..."}
+ * </pre>
+ * The id is any token chosen by the client to match responses to requests.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class TranslationServer {
+    static final Logger LOG = LogManager.getLogger(TranslationServer.class);
+    
+    private static final int MAX_HEADER = 1024;
+    private static final Gson gson = new Gson();
+    
+    private final Map<String,TranslationPlan> plans;
+    private final int threads;
+    private final ExecutorService pool;
+    private final ThreadLocal<Map<TranslationPlan,XMLMsgToJSON>> tranL = ThreadLocal.withInitial(HashMap::new);
+    
+    /**
+     * Constructs a server for the message models in the map.  Each model
+     * should be frozen.
+     * @param plans - translation plans, keyed by the model name used in requests
+     * @param threads - number of worker threads
+     */
+    public TranslationServer (Map<String,TranslationPlan> plans, int threads) {
+        this.plans   = Map.copyOf(plans);
+        this.threads = Math.max(1, threads);
+        this.pool    = Executors.newFixedThreadPool(this.threads);
+    }
+    
+    public void shutdown ()                     { pool.shutdown(); }
+    
+    /** A request frame */
+    public record Request (String op, String id, String model, byte[] body) {}
+    
+    /** A response frame */
+    public record Response (String id, JsonObject body) {}
+    
+    /**
+     * Serves one connection:  reads requests from the input stream until 
+     * it ends, and writes each response to the output stream.  Returns after
+     * the last response is written.
+     * @param in - request stream
+     * @param out - response stream
+     * @throws IOException 
+     */
+    public void serve (InputStream in, OutputStream out) throws IOException {
+        var pending = new Phaser(1);
+        var permits = new Semaphore(4 * threads);     // bounds the requests held in memory
+        try {
+            Request req;
+            while (null != (req = readRequest(in))) {
+                var r = req;
+                permits.acquireUninterruptibly();
+                pending.register();
+                pool.execute(() -> {
+                    try {
+                        var body = handle(r);
+                        synchronized (out) {
+                            writeFrame(out, r.id() + " " + body.length, body);
+                            out.flush();
+                        }
+                    } catch (IOException ex) {
+                        LOG.error("can't write response {}: {}", r.id(), ex.getMessage());
+                    } finally {
+                        permits.release();
+                        pending.arriveAndDeregister();
+                    }
+                });
+            }
+        } finally {
+            pending.arriveAndAwaitAdvance();
+        }
+    }
+    
+    /**
+     * Accepts connections on the server socket until it is closed.  Each
+     * connection is read on its own (virtual) thread; all connections share
+     * the worker threads.
+     * @param ss - server socket
+     */
+    public void listen (ServerSocket ss) {
+        while (!ss.isClosed()) {
+            Socket s;
+            try {
+                s = ss.accept();
+            } catch (IOException ex) {
+                if (!ss.isClosed()) LOG.error("can't accept connection: {}", ex.getMessage());
+                continue;
+            }
+            Thread.ofVirtual().start(() -> {
+                try (s) {
+                    serve(new BufferedInputStream(s.getInputStream()), new BufferedOutputStream(s.getOutputStream()));
+                } catch (IOException ex) {
+                    LOG.error("connection from {}: {}", s.getRemoteSocketAddress(), ex.getMessage());
+                }
+            });
+        }
+    }
+    
+    /**
+     * Converts one request in the calling thread.
+     * @param req - request frame
+     * @return response body, a UTF-8 JSON object
+     */
+    public byte[] handle (Request req) {
+        var res = new JsonObject();
+        var tp  = plans.get(req.model());
+        if (!"x2j".equals(req.op())) 
+            error(res, "unknown operation " + req.op());
+        else if (null == tp) 
+            error(res, "unknown model " + req.model());
+        else {
+            var tran = tranL.get().computeIfAbsent(tp, XMLMsgToJSON::new);
+            var msg  = new JsonObject();
+            try {
+                var xmlIS  = new InputSource(new ByteArrayInputStream(req.body()));
+                var status = tran.convert(xmlIS, msg);
+                var warnA  = new JsonArray();
+                for (var w : tran.warnings()) warnA.add(w);
+                res.addProperty("status", CONVERT_OK == status ? "ok" : "warn");
+                res.add("warnings", warnA);
+                res.add("message", msg);
+            } catch (Exception ex) {
+                error(res, ex.getMessage());
+            }
+        }
+        return gson.toJson(res).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static void error (JsonObject res, String msg) {
+        res.addProperty("status", "error");
+        res.addProperty("error", msg);
+    }
+    
+    /**
+     * Writes a request frame.
+     * @param out - request stream
+     * @param id - request id (no white space)
+     * @param model - model name
+     * @param xml - XML message bytes
+     * @throws IOException 
+     */
+    public static void writeRequest (OutputStream out, String id, String model, byte[] xml) throws IOException {
+        writeFrame(out, String.format("x2j %s %s %d", id, model, xml.length), xml);
+    }
+    
+    /**
+     * Reads a request frame.
+     * @param in - request stream
+     * @return request, or null at the end of the stream
+     * @throws IOException on a malformed frame
+     */
+    public static Request readRequest (InputStream in) throws IOException {
+        var hdr = readHeader(in);
+        if (null == hdr) return null;
+        var tok = hdr.split(" ");
+        if (4 != tok.length) throw new IOException("malformed request header: " + hdr);
+        return new Request(tok[0], tok[1], tok[2], readBody(in, tok[3]));
+    }
+    
+    /**
+     * Reads a response frame.
+     * @param in - response stream
+     * @return response, or null at the end of the stream
+     * @throws IOException on a malformed frame
+     */
+    public static Response readResponse (InputStream in) throws IOException {
+        var hdr = readHeader(in);
+        if (null == hdr) return null;
+        var tok = hdr.split(" ");
+        if (2 != tok.length) throw new IOException("malformed response header: " + hdr);
+        var body = new String(readBody(in, tok[1]), StandardCharsets.UTF_8);
+        return new Response(tok[0], JsonParser.parseString(body).getAsJsonObject());
+    }
+    
+    private static void writeFrame (OutputStream out, String hdr, byte[] body) throws IOException {
+        out.write((hdr + "\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+    }
+    
+    // Returns the next header line, or null at the end of the stream
+    private static String readHeader (InputStream in) throws IOException {
+        var buf = new ByteArrayOutputStream();
+        int c;
+        while (-1 != (c = in.read()) && '\n' != c) {
+            if (buf.size() >= MAX_HEADER) throw new IOException("frame header too long");
+            buf.write(c);
+        }
+        if (-1 == c && 0 == buf.size()) return null;
+        if (-1 == c) throw new EOFException("incomplete frame header");
+        return buf.toString(StandardCharsets.US_ASCII).strip();
+    }
+    
+    private static byte[] readBody (InputStream in, String lenS) throws IOException {
+        int len;
+        try {
+            len = Integer.parseInt(lenS);
+        } catch (NumberFormatException ex) {
+            throw new IOException("bad frame length: " + lenS);
+        }
+        if (len < 0) throw new IOException("bad frame length: " + lenS);
+        var body = in.readNBytes(len);
+        if (body.length != len) throw new EOFException("incomplete frame");
+        return body;
+    }
+}
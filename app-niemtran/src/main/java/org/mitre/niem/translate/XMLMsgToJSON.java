@@ -23,30 +23,50 @@
  */
 package org.mitre.niem.translate;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.function.Consumer;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
-import static org.apache.commons.lang3.StringUtils.capitalize;
+import javax.xml.parsers.SAXParser;
+import javax.xml.validation.Schema;
+import javax.xml.validation.TypeInfoProvider;
+import javax.xml.validation.ValidatorHandler;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.mitre.niem.cmf.ClassType;
 import org.mitre.niem.cmf.Datatype;
 import org.mitre.niem.cmf.Model;
+import org.mitre.niem.cmf.Property;
 import static org.mitre.niem.utility.URIfuncs.URIStringToFile;
 import org.mitre.niem.xml.ParserBootstrap;
-import static org.mitre.niem.xsd.NamespaceKind.NSK_STRUCTURES;
-import static org.mitre.niem.xsd.NamespaceKind.namespaceToKind;
+import org.mitre.niem.xml.SAXErrorHandler;
+import org.w3c.dom.TypeInfo;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
@@ -62,23 +82,75 @@ import org.xml.sax.helpers.DefaultHandler;
 public class XMLMsgToJSON {
     static final Logger LOG = LogManager.getLogger(XMLMsgToJSON.class);
     
-    private Model model;
+    private static final TypeAdapter<JsonElement> ELEMENT = new Gson().getAdapter(JsonElement.class);
+    private static final Gson COMPACT = new Gson();
+    
+    private final Model model;
+    private final TranslationPlan plan;
+    private SAXParser parser = null;
+    private SAXHandler handler = null;
+    private Schema schema = null;
+    private ValidatorHandler validator = null;
+    private final List<String> vmsgs = new ArrayList<>();
     private int status = CONVERT_OK;
+    private final List<String> warnings = new ArrayList<>();
  
     /**
      * Constructs a new NIEM XML to NIEM JSON message transformer.
      * Messages to be transformed must be instances of the message type described
      * by the Model object.  You need a separate transformer object for each 
      * NIEM message type.  You can reuse a transformer object on any number of
-     * messages of that type.
+     * messages of that type.  A transformer object keeps its SAX parser
+     * between messages and is not thread-safe; transformers in different 
+     * threads can share a model object that has been frozen with Model.freeze().
      * @param m - NIEM message type model
      */
     public XMLMsgToJSON (Model m) {
-        model = m;
+        this(new TranslationPlan(m));
+    }
+    
+    /**
+     * Constructs a new NIEM XML to NIEM JSON message transformer from the 
+     * translation plan of a message type model.  Building the plan takes time;
+     * transformers for the same message type can share one plan.
+     * @param tp - translation plan for the NIEM message type model
+     */
+    public XMLMsgToJSON (TranslationPlan tp) {
+        plan  = tp;
+        model = tp.model();
+    }
+    
+    public TranslationPlan plan ()              { return plan; }
+    
+    /**
+     * Returns the warnings and errors from the last message converted.
+     * These are also written to the log.
+     */
+    public List<String> warnings ()             { return Collections.unmodifiableList(warnings); }
+    
+    /**
+     * Validate each message against a schema while it is converted.  The 
+     * document is parsed once; a ValidatorHandler from the schema passes the
+     * SAX events on to the converter.  Validation messages are available from
+     * validationMessages(), and a message that is not valid converts with status 
+     * CONVERT_INVALID.  The schema types of elements not in the model (e.g. in
+     * an adapter) choose number and boolean values in the JSON.
+     * @param s - message schema, or null for no validation
+     */
+    public void setSchema (Schema s) {
+        schema    = s;
+        validator = null;
     }
     
+    /**
+     * Returns the validation messages from the last message converted.
+     * The list is empty if there is no schema or the message is valid.
+     */
+    public List<String> validationMessages ()   { return Collections.unmodifiableList(vmsgs); }
+    
     public static int CONVERT_OK = 0;
     public static int CONVERT_WARN = 1;
+    public static int CONVERT_INVALID = 2;
     
     /**
      * Creates a NIEM JSON message from a NIEM XML message, provided as an InputStream.
@@ -89,82 +161,267 @@ public class XMLMsgToJSON {
      * 
      * @param xmlIS - InputStream with the XML message
      * @param json - JsonObject to receive the NIEM JSON message data
-     * @return - conversion status code (0 = OK, 1 = warnings encountered)
+     * @return - conversion status code (0 = OK, 1 = warnings encountered, 2 = not schema-valid)
      * @throws ParserConfigurationException
      * @throws SAXException
      * @throws IOException 
      */
     public int convert (InputSource xmlIS, JsonObject json) throws ParserConfigurationException, SAXException, IOException {
-        var h   = new SAXHandler(json);
-        var p   = ParserBootstrap.sax2Parser();
-        p.parse(xmlIS, h);
+        handler().begin(json);
+        parse(xmlIS);
         return(status);
     }
     
+    /**
+     * Creates a NIEM JSON message from a NIEM XML message, writing it through
+     * a JsonWriter as the XML is parsed.  The message pairs are written into 
+     * the JSON object the writer has begun; the caller begins and ends that 
+     * object, and may write more pairs (e.g. "@context") after the message.
+     * <p>
+     * No object tree is built.  The pairs of each open object are held as
+     * compact JSON text, grouped by key, until the object ends; then each key
+     * is written once, as an array when the property is repeatable in its
+     * class or occurs more than once.  Relationship properties are held until
+     * the end of their parent object, where they are written as "@annotation".
+     * The result is the same JSON as convert() creates, except that pairs may
+     * appear in a different order.  Memory use is about the size of the JSON
+     * text of the largest open object, rather than the size of an object tree
+     * for the whole message.
+     * 
+     * @param xmlIS - InputStream with the XML message
+     * @param jw - JsonWriter positioned within an object
+     * @return - conversion status code (0 = OK, 1 = warnings encountered, 2 = not schema-valid)
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     * @throws IOException 
+     */
+    public int convert (InputSource xmlIS, JsonWriter jw) throws ParserConfigurationException, SAXException, IOException {
+        handler().begin(jw);
+        try {
+            parse(xmlIS);
+        } catch (SAXException ex) {
+            if (ex.getCause() instanceof IOException iox) throw iox;
+            throw ex;
+        }
+        return(status);
+    }
+    
+    /**
+     * The outcome of converting one message in a message stream.  The line
+     * number is the line holding the message in the NDJSON output, or 0 if
+     * the message could not be converted; the error string is then non-null.
+     */
+    public record MessageStatus (int index, String name, int status, List<String> warnings, List<String> validation, String error, long line) {}
+    
+    /**
+     * Converts every message in a message source to newline-delimited JSON,
+     * one JSON object per line.  The same SAX parser and handler are used for
+     * each message.  The status of each message is passed to the report
+     * consumer as it is converted; a message that can't be parsed or 
+     * converted is reported and skipped.
+     * 
+     * @param src - source of XML messages
+     * @param ndjson - writer for the NDJSON output
+     * @param report - receives the status of each message (may be null)
+     * @return - CONVERT_OK if every message converted without warnings, else
+     *  the highest status code of any message
+     * @throws ParserConfigurationException
+     * @throws IOException if the source can't be read or the output written
+     */
+    public int convertStream (MessageSource src, Writer ndjson, Consumer<MessageStatus> report) throws ParserConfigurationException, IOException {
+        var res   = CONVERT_OK;
+        var index = 0;
+        var line  = 0L;
+        MessageSource.Message msg;
+        while (null != (msg = src.next())) {
+            var jobj = new JsonObject();
+            String err = null;
+            int st;
+            try {
+                st = convert(new InputSource(msg.in()), jobj);
+            } catch (SAXException ex) {
+                st  = CONVERT_WARN;
+                err = ex.getMessage();
+            } catch (RuntimeException ex) {
+                // Bad content, eg. "abc" for a decimal, fails this message only
+                st  = CONVERT_WARN;
+                err = ex.toString();
+            }
+            var outL = 0L;
+            if (null == err) {
+                COMPACT.toJson(jobj, ndjson);
+                ndjson.write('\n');
+                outL = ++line;
+            }
+            res = Math.max(res, st);
+            if (null != report) report.accept(new MessageStatus(index, msg.name(), st, List.copyOf(warnings), List.copyOf(vmsgs), err, outL));
+            index++;
+        }
+        ndjson.flush();
+        return res;
+    }
+    
+    private SAXHandler handler () {
+        if (null == handler) handler = new SAXHandler();
+        return handler;
+    }
+    
+    // Parses one message with this transformer's SAX parser and handler
+    private void parse (InputSource xmlIS) throws ParserConfigurationException, SAXException, IOException {
+        if (null == parser) parser = ParserBootstrap.sax2Parser();
+        status = CONVERT_OK;
+        warnings.clear();
+        vmsgs.clear();
+        try {
+            if (null == schema) {
+                handler.types = null;
+                parser.parse(xmlIS, handler);
+                return;
+            }
+            // Parser -> validator -> converter
+            if (null == validator) {
+                validator = schema.newValidatorHandler();
+                validator.setContentHandler(handler);
+            }
+            var verr = new SAXErrorHandler();
+            validator.setErrorHandler(verr);
+            handler.types = validator.getTypeInfoProvider();
+            var rdr = parser.getXMLReader();
+            rdr.setContentHandler(validator);
+            rdr.setErrorHandler(handler);
+            try {
+                rdr.parse(xmlIS);
+            } finally {
+                vmsgs.addAll(verr.messages());
+            }
+            if (!vmsgs.isEmpty()) status = CONVERT_INVALID;
+        } finally {
+            parser.reset();
+        }
+    }
+    
+    // The state for one open element.  A frame holds its JSON object in memory
+    // until it is opened, after which its pairs are held as compact JSON text.
+    // Frames are only opened in streaming mode.
+    private static class Frame {
+        TranslationPlan.Entry pe;       // plan entry for this element
+        Property p;                     // model property, or null
+        String key;                     // JSON key for this element
+        ClassType otype;                // class type of CCC element in model
+        ClassType ptype;                // class type of parent element
+        boolean adaptF;                 // are we within an adapter property?
+        String lang;                    // current in-scope value of xml:lang
+        boolean aug;                    // augmentation element
+        boolean stream;                 // frame may be opened
+        boolean opened;                 // frame pairs are held as JSON text
+        boolean transparent;            // augmentation element writing into its parent
+        Frame target;                   // frame receiving this element's value
+        Frame out;                      // frame receiving the values of child elements
+        JsonObject obj;                 // json object for XML element, until opened
+        JsonObject ann;                 // relationship pairs of an opened frame
+        Pairs pairs;                    // held pairs of an opened frame
+        String xsBase;                  // XSD primitive type from validation, if not in model
+    }
+    
+    // The pairs of an opened frame, as compact JSON text.  A key can occur 
+    // again anywhere in its object, so the pairs are held until the object
+    // ends; then each key is written once, as an array if it repeats.
+    private static class Pairs {
+        final Map<String,List<String>> vals = new LinkedHashMap<>();  // key -> JSON text of each value
+        final Set<String> arrays = new HashSet<>();                   // keys of repeatable properties
+    }
+    
     private class SAXHandler extends DefaultHandler {
         
         private Locator loc;
         private String base = "";
-        private StringBuilder chars = new StringBuilder();
-        private final Stack<String> langS = new Stack<>();                // current in-scope value of xml:lang
-        private final Stack<ClassType> ctypeS = new Stack<>();            // class type of CCC element in model
-        private final Stack<Boolean> adapterS = new Stack<>();            // are we within an adapter property?
-        private final Stack<JsonObject> objS = new Stack<>();             // json object for XML element
+        private final StringBuilder chars = new StringBuilder();
+        private final Stack<Frame> frameS = new Stack<>();
+        private JsonWriter jw;
+        private TypeInfoProvider types = null;      // from the validator, if any
+        
+        // Prepares the handler to write the next message into a JsonObject
+        void begin (JsonObject m) {
+            var root = rootFrame(null);
+            root.obj = m;
+        }
         
-        SAXHandler(JsonObject m) {   
-            objS.push(m);
-            adapterS.push(false);
-            ctypeS.push(null);
-            langS.push("en-US");
+        // Prepares the handler to write the next message through a JsonWriter
+        void begin (JsonWriter w) {
+            var root = rootFrame(w);
+            root.stream = true;
+            root.opened = true;
+            root.pairs  = new Pairs();
+        }
+        
+        private Frame rootFrame (JsonWriter w) {
+            loc  = null;
+            base = "";
+            jw   = w;
+            chars.setLength(0);
+            frameS.clear();
+            var root = new Frame();
+            root.adaptF = false;
+            root.lang   = "en-US";
+            root.out    = root;
+            frameS.push(root);
+            return root;
         }
         
         @Override
-        public void startElement(String nsuri, String lname, String qName, Attributes atts) {
+        public void startElement(String nsuri, String lname, String qName, Attributes atts) throws SAXException {
+            var parent = frameS.peek();
+            var f      = new Frame();
             
             // Handle xml:base in the message element; reject it elsewhere
             var baseAtt = atts.getValue("xml:base");
             if (null != baseAtt) {
-                if (1 == objS.size()) base = baseAtt;
+                if (1 == frameS.size()) base = baseAtt;
                 else { 
-                    LOG.warn("xml:base on interior element at {} (ignored)", locstr());
-                    status = CONVERT_WARN;
+                    report(Level.WARN, "xml:base on interior element at {} (ignored)", locstr());
                 }
             }
             // Handle xml:lang if present; preserve in-scope value otherwise
             var langAtt = atts.getValue("xml:lang");
-            if (null == langAtt) langS.push(langS.peek());
-            else langS.push(langAtt);
+            if (null == langAtt) f.lang = parent.lang;
+            else f.lang = langAtt;
             
-            var pU = model.makeURI(nsuri, lname);
-            var p  = model.uriToProperty(pU);
-            var ns = model.namespaceObj(nsuri);
+            var pe = plan.lookup(nsuri, lname);
+            var p  = pe.property();
+            f.pe = pe;
+            f.p  = p;
+            f.key = null == p ? qName : pe.key();
+            f.ptype = parent.otype;
             
-            var adaptF = adapterS.peek();
-            if (null != p && null != p.classType() && p.classType().isAdapterClass()) adaptF = true;
-            adapterS.push(adaptF);
+            var adaptF = parent.adaptF;
+            if (pe.isAdapter()) adaptF = true;
+            f.adaptF = adaptF;
             
-            if (null != ns && ns.isAugmentation(lname)) {
-                ctypeS.push(null);
+            if (pe.isAugmentation()) {
+                f.otype = null;
             }
-            else if (!adaptF && (null == p || null == ns)) {
-                LOG.warn("unknown element {} at {} (ignored)", qName, locstr());
-                ctypeS.push(null);
-                status = CONVERT_WARN;
+            else if (!adaptF && (null == p || !pe.isKnownNS())) {
+                report(Level.WARN, "unknown element {} at {} (ignored)", qName, locstr());
+                f.otype = null;
             }
-            else if (null == p) ctypeS.push(null);  // unknown property inside adapter element
-            else ctypeS.push(p.classType());        // will be null if p is a data property
+            else if (null == p) f.otype = null;     // unknown property inside adapter element
+            else f.otype = pe.classType();          // will be null if p is a data property
             
-            var obj = new JsonObject();            
-            objS.push(obj);
+            // Schema type from validation, for elements not in the model
+            if (null == p && null != types) f.xsBase = xsBase(types.getElementTypeInfo());
+            
+            var obj = new JsonObject();
+            f.obj = obj;
             
             for (int i = 0; i < atts.getLength(); i++) {
+                if (null != types && !types.isSpecified(i)) continue;   // default from schema
                 var ansU = atts.getURI(i);              // namespace URI for this attribute
                 var aQ   = atts.getQName(i);            // QName of this attribute in message
                 var anam = atts.getLocalName(i);
                 var aval = atts.getValue(i);
-                var aU   = model.makeURI(ansU, anam);   // model URI for this component
-                var aP   = model.uriToProperty(aU);
-                if (NSK_STRUCTURES == namespaceToKind(ansU)) {
+                var ae   = plan.lookup(ansU, anam);     // plan entry for this component
+                var aP   = ae.property();
+                if (ae.isStructures()) {
                     switch (anam) {
                         case "id":
                         case "ref":
@@ -175,22 +432,18 @@ public class XMLMsgToJSON {
                             else obj.addProperty("@id", base + aval);
                             break;
                         default:
-                            LOG.warn("unknown attribute {} at {} (ignored)", aQ, locstr());        
-                            status = CONVERT_WARN;
+                            report(Level.WARN, "unknown attribute {} at {} (ignored)", aQ, locstr());
                     }
                 }
                 else if (anam.endsWith("Ref")) {
-                    var rpnam = capitalize(anam.substring(0, anam.length()-3));
-                    var rpQ   = model.makeURI(ansU, rpnam);
-                    var rP    = model.uriToProperty(rpQ);
+                    var rpQ   = ae.refKey();
+                    var rP    = ae.refProperty();
                     if (null == rP) {
-                        LOG.warn("unknown reference attribute {} at {} (ignored)", aQ, locstr());
-                        status = CONVERT_WARN;
+                        report(Level.WARN, "unknown reference attribute {} at {} (ignored)", aQ, locstr());
                         continue;
                     }
                     if (aval.isBlank()) {
-                        LOG.warn("empty reference attribute {} at {}", aQ, locstr());
-                        status = CONVERT_WARN;
+                        report(Level.WARN, "empty reference attribute {} at {}", aQ, locstr());
                         continue;
                     }
                     var refA = new JsonArray();
@@ -203,12 +456,11 @@ public class XMLMsgToJSON {
                     }
                     obj.add(rpQ, refA);                    
                 }
-                else if (null == aP || !aP.isAttribute()) {
+                else if (!ae.isAttribute()) {
                     if (adaptF)
                         obj.addProperty(aQ, aval);
                     else if (!"xsi:nil".equals(aQ)) {
-                        LOG.warn("unknown attribute {} at {} (ignored)", aQ, locstr());                    
-                        status = CONVERT_WARN;
+                        report(Level.WARN, "unknown attribute {} at {} (ignored)", aQ, locstr());
                     }
                 }
                 else {
@@ -216,44 +468,68 @@ public class XMLMsgToJSON {
                 }
             }
             
-            chars = new StringBuilder();
-            
+            // Decide where this element goes.  In streaming mode, the first
+            // child element opens its parent object.
+            var outP = parent.out;
+            f.target = outP;
+            f.out    = f;
+            if (pe.isAugmentation()) {
+                f.aug = true;
+                if (outP.stream) {
+                    open(outP);
+                    f.transparent = true;
+                    f.out = outP;
+                    for (var ks : obj.keySet()) {
+                        if (!"@id".equals(ks)) addPair(outP, ks, false, obj.get(ks));
+                    }
+                    f.obj = null;
+                }
+            }
+            else {
+                f.stream = outP.stream && !plan.isRelationshipKey(f.key);
+                if (f.stream) open(outP);
+            }
+            frameS.push(f);
+            chars.setLength(0);
         }
 
         @Override
         public void endElement(String nsuri, String lname, String qName) throws SAXException {
-            var obj    = objS.pop();
-            var parent = objS.peek();
-            var otype  = ctypeS.pop();
-            var ptype  = ctypeS.peek();
-            var adaptF = adapterS.pop();
-            var lang   = langS.pop();
-            var pU     = model.makeURI(nsuri, lname);
-            var p      = model.uriToProperty(pU);
-            var ns     = model.namespaceObj(nsuri);
-            var key    = qName;
+            var f      = frameS.pop();
+            var parent = frameS.peek();
+            var otype  = f.otype;
+            var lang   = f.lang;
+            var pe     = f.pe;
+            var p      = f.p;
+            var key    = f.key;
             var cval   = chars.toString().trim();
             
             // For an augmentation element, just copy all the pairs into the parent.
             // But ignore any pairs from reference attributes.
-            if (null != ns && ns.isAugmentation(lname)) {
-                for (var ks : obj.keySet()) {
-                    if (!"@id".equals(ks))
-                        parent.add(ks, obj.get(ks));
+            if (f.aug) {
+                if (!f.transparent) {
+                    for (var ks : f.obj.keySet()) {
+                        if (!"@id".equals(ks))
+                            parent.obj.add(ks, f.obj.get(ks));
+                    }
                 }
                 return;
             }
-            
-            // Use model prefix for key when element is defined in model
-            if (null != p) key = p.qname();
+            try {
+                if (f.opened) {
+                    endOpened(f, cval);
+                    return;
+                }
+            } catch (IOException ex) {
+                throw new SAXException(ex);
+            }
+            var obj = f.obj;
             
             // Object of literal class always has a literal property, possibly
             // inherited.
             var isPrim = false;
-            if (null != p && p.isObjectProperty() && null != p.classType()) {
-                var ct = p.classType();
-                while (null != ct.subClassOf()) ct = ct.subClassOf();
-                var lp = ct.literalDataProperty();
+            if (null != p && p.isObjectProperty() && null != pe.classType()) {
+                var lp = pe.literalProperty();
                 if (null != lp) {
                     var valE = valuePrimitive(lp.datatype(), cval);
                     obj.add(lp.qname(), valE);
@@ -262,11 +538,11 @@ public class XMLMsgToJSON {
             }
             // Simple content of unknown element with attributes is represented as @value
             else if (null == p && !obj.entrySet().isEmpty()) {
-                obj.addProperty("@value", cval);
+                obj.add("@value", schemaPrimitive(f.xsBase, cval));
                 isPrim = true;
             }
             // Add @language pair if needed in this object property
-            if (isPrim && null != otype && otype.hasXmlLang() && !"en-US".equals(lang)) {
+            if (isPrim && null != otype && pe.hasXmlLang() && !"en-US".equals(lang)) {
                 obj.addProperty("@language", lang);
             }
             // If obj is empty at this point, then this element is a number, string, or boolean.
@@ -274,21 +550,52 @@ public class XMLMsgToJSON {
             // Create an object with a FooLiteral pair if this is an object property.
             JsonElement value = obj;
             if (obj.entrySet().isEmpty()) {
-                if (null == p) value = valuePrimitive(null, cval);
+                if (null == p) value = schemaPrimitive(f.xsBase, cval);
                 else if (p.isDataProperty()) value = valuePrimitive(p.datatype(), cval);
                 else {
-                    var ct = p.classType();
-                    while (null != ct.subClassOf()) ct = ct.subClassOf();
-                    var lp = ct.literalDataProperty();
+                    var lp = pe.literalProperty();
                     var lv = valuePrimitive(lp.datatype(), cval);
                     obj.add(lp.qname(), lv);
                 }            
             }
-            // Add value to parent object, key is this element QName.
-            // If parent object has an array for that key, add value to that array.
-            // If parent object has another element for that key, convert to an array.
-            // If this property is repeatable in parent type, add new array with value.
-            // Otherwise add key, value pair to parent object.
+            // Now find any relationship properties in this object.
+            // Gather them up into a single @annotation pair.
+            if (plan.hasRelationships()) {
+                var annP = new JsonObject();
+                for (var pkey : obj.keySet()) {
+                    if (!plan.isRelationshipKey(pkey)) continue;
+                    var pval = obj.get(pkey);
+                    annP.add(pkey, pval);
+                }
+                if (!annP.isEmpty()) { 
+                    obj.add("@annotation", annP);
+                    for (var pkey : annP.keySet())
+                        obj.remove(pkey);
+                }
+            }
+            // Add value to the parent object, or write it if the parent is opened
+            var t = f.target;
+            if (t.opened) addPair(t, key, isRepeatable(f), value);
+            else addToObject(t.obj, key, value, f.ptype, p);
+        }
+        
+        @Override
+        public void endDocument () throws SAXException {
+            var root = frameS.peek();
+            if (!root.opened) return;
+            try {
+                writePairs(jw, root.pairs);
+            } catch (IOException ex) {
+                throw new SAXException(ex);
+            }
+        }
+        
+        // Add value to parent object, key is this element QName.
+        // If parent object has an array for that key, add value to that array.
+        // If parent object has another element for that key, convert to an array.
+        // If this property is repeatable in parent type, add new array with value.
+        // Otherwise add key, value pair to parent object.
+        private void addToObject (JsonObject parent, String key, JsonElement value, ClassType ptype, Property p) {
             var pel = parent.get(key);
             if (null != pel) {
                 if (pel.isJsonArray()) pel.getAsJsonArray().add(value);
@@ -300,28 +607,112 @@ public class XMLMsgToJSON {
                     parent.add(key, ary);                    
                 }
             }
-            else if (null != ptype && ptype.isRepeatableProperty(p)) {
+            else if (null != ptype && plan.isRepeatable(ptype, p)) {
                 var ary =  new JsonArray();
                 ary.add(value);
                 parent.add(key, ary);
             }
             else parent.add(key, value);
-            
-            // Now find any relationship properties in this object.
-            // Gather them up into a single @annotation pair.
-            var annP = new JsonObject();
-            for (var pkey : obj.keySet()) {
-                var prop = model.qnToProperty(pkey);
-                if (null == prop) continue;
-                if (!prop.isRelationship()) continue;
-                var pval = obj.get(pkey);
-                annP.add(pkey, pval);
-            }
-            if (!annP.isEmpty()) { 
-                obj.add("@annotation", annP);
-                for (var pkey : annP.keySet())
-                    obj.remove(pkey);
+        }
+        
+        private boolean isRepeatable (Frame f) {
+            return null != f.ptype && plan.isRepeatable(f.ptype, f.p);
+        }
+        
+        // Starts holding the pairs of a frame as JSON text.  Its target is 
+        // already opened.  Pairs held so far are moved, except relationship pairs.
+        private void open (Frame f) {
+            if (f.opened) return;
+            f.pairs  = new Pairs();
+            f.opened = true;
+            for (var me : f.obj.entrySet()) addPair(f, me.getKey(), false, me.getValue());
+            f.obj = null;
+        }
+        
+        // Finishes the object for an opened frame, as text for its target
+        private void endOpened (Frame f, String cval) throws IOException {
+            var pe = f.pe;
+            var p  = f.p;
+            var sw = new StringWriter();
+            var w  = new JsonWriter(sw);
+            w.beginObject();
+            writePairs(w, f.pairs);
+            var isPrim = false;
+            if (null != p && p.isObjectProperty() && null != pe.classType()) {
+                var lp = pe.literalProperty();
+                if (null != lp) {
+                    w.name(lp.qname());
+                    ELEMENT.write(w, valuePrimitive(lp.datatype(), cval));
+                    isPrim = true;
+                }
+            }
+            else if (null == p) {
+                w.name("@value");
+                ELEMENT.write(w, schemaPrimitive(f.xsBase, cval));
+                isPrim = true;
             }
+            if (isPrim && null != f.otype && pe.hasXmlLang() && !"en-US".equals(f.lang)) {
+                w.name("@language").value(f.lang);
+            }
+            if (null != f.ann && !f.ann.isEmpty()) {
+                w.name("@annotation");
+                ELEMENT.write(w, f.ann);
+            }
+            w.endObject();
+            w.flush();
+            addText(f.target.pairs, f.key, isRepeatable(f), sw.toString());
+        }
+        
+        // Adds a pair to an opened frame.  Relationship pairs are kept apart.
+        private void addPair (Frame f, String key, boolean repF, JsonElement value) {
+            if (plan.isRelationshipKey(key)) {
+                if (null == f.ann) f.ann = new JsonObject();
+                addToObject(f.ann, key, value, null, null);
+            }
+            else addText(f.pairs, key, repF, ELEMENT.toJson(value));
+        }
+        
+        private void addText (Pairs ps, String key, boolean repF, String text) {
+            ps.vals.computeIfAbsent(key, k -> new ArrayList<>()).add(text);
+            if (repF) ps.arrays.add(key);
+        }
+        
+        // Writes each held key once; an array if the key repeats or is repeatable
+        private void writePairs (JsonWriter w, Pairs ps) throws IOException {
+            for (var me : ps.vals.entrySet()) {
+                var key  = me.getKey();
+                var valL = me.getValue();
+                var aryF = valL.size() > 1 || ps.arrays.contains(key);
+                w.name(key);
+                if (aryF) w.beginArray();
+                for (var text : valL) copyValue(w, text);
+                if (aryF) w.endArray();
+            }
+        }
+        
+        // Writes a value held as text.  Values for the caller's writer are 
+        // copied token by token, so that its formatting applies throughout.
+        private void copyValue (JsonWriter w, String text) throws IOException {
+            if (w != jw) {
+                w.jsonValue(text);
+                return;
+            }
+            var r = new JsonReader(new StringReader(text));
+            var depth = 0;
+            do {
+                switch (r.peek()) {
+                    case BEGIN_OBJECT -> { r.beginObject(); w.beginObject(); depth++; }
+                    case END_OBJECT   -> { r.endObject(); w.endObject(); depth--; }
+                    case BEGIN_ARRAY  -> { r.beginArray(); w.beginArray(); depth++; }
+                    case END_ARRAY    -> { r.endArray(); w.endArray(); depth--; }
+                    case NAME         -> w.name(r.nextName());
+                    case STRING       -> w.value(r.nextString());
+                    case NUMBER       -> w.jsonValue(r.nextString());
+                    case BOOLEAN      -> w.value(r.nextBoolean());
+                    case NULL         -> { r.nextNull(); w.nullValue(); }
+                    default           -> throw new IOException("unexpected end of JSON text");
+                }
+            } while (depth > 0);
         }
 
         @Override
@@ -334,19 +725,24 @@ public class XMLMsgToJSON {
         
         @Override
         public void error (SAXParseException ex) {
-            LOG.error("SAX: {}", ex.getMessage());
-            status = CONVERT_WARN;
+            report(Level.ERROR, "SAX: {}", ex.getMessage());
         }
          
         @Override
         public void fatalError (SAXParseException ex) {
-            LOG.error("SAX fatal: {}", ex.getMessage());
-            status = CONVERT_WARN;
+            report(Level.ERROR, "SAX fatal: {}", ex.getMessage());
         }
         
         @Override
         public void warning (SAXParseException ex) {
-            LOG.error("SAX: {}", ex.getMessage());
+            report(Level.ERROR, "SAX: {}", ex.getMessage());
+        }
+        
+        // Logs a problem with the message and records it in the warnings list
+        private void report (Level level, String fmt, Object... args) {
+            var msg = new ParameterizedMessage(fmt, args);
+            LOG.log(level, msg);
+            warnings.add(msg.getFormattedMessage());
             status = CONVERT_WARN;
         }
         
@@ -373,6 +769,10 @@ public class XMLMsgToJSON {
                 var xsbase = dt.baseXS();
                 bname = xsbase.name();
             }
+            return valuePrimitive(bname, val);
+        }
+        
+        private JsonPrimitive valuePrimitive (String bname, String val) {
             if (numbers.contains(bname)) {
                 var number = new BigDecimal(val);
                 return new JsonPrimitive(number);
@@ -381,6 +781,31 @@ public class XMLMsgToJSON {
                 return new JsonPrimitive("true".equals(val));
             else 
                 return new JsonPrimitive(val);
-        }        
+        }
+        
+        // Returns the primitive for a value with a schema type from validation.
+        // An invalid value is kept as a string; the validator has reported it.
+        private JsonPrimitive schemaPrimitive (String bname, String val) {
+            if (null == bname) return new JsonPrimitive(val);
+            try {
+                return valuePrimitive(bname, val);
+            } catch (NumberFormatException ex) {
+                return new JsonPrimitive(val);
+            }
+        }
+        
+        private static final List<String> xsBases = List.of("boolean", "decimal", "double", "float");
+        
+        // Returns the XSD primitive type (of those that are not strings in
+        // JSON) for an element's simple content, or null
+        private static String xsBase (TypeInfo ti) {
+            if (null == ti) return null;
+            var derive = TypeInfo.DERIVATION_RESTRICTION | TypeInfo.DERIVATION_EXTENSION;
+            for (var b : xsBases) {
+                if (XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(ti.getTypeNamespace()) && b.equals(ti.getTypeName())) return b;
+                if (ti.isDerivedFrom(XMLConstants.W3C_XML_SCHEMA_NS_URI, b, derive)) return b;
+            }
+            return null;
+        }
     } 
 }
@@ -0,0 +1,294 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
+import static org.apache.commons.io.FilenameUtils.removeExtension;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import static org.mitre.niem.translate.XMLMsgToJSON.CONVERT_INVALID;
+import static org.mitre.niem.translate.XMLMsgToJSON.CONVERT_OK;
+import static org.mitre.niem.translate.XMLMsgToJSON.CONVERT_WARN;
+
+/**
+ * A class to convert many NIEM XML messages of one message type to NIEM JSON,
+ * using a pool of worker threads.  The workers share one translation plan.
+ * Each worker thread has its own XMLMsgToJSON object, and so its own SAX parser.
+ * Each message foo.xml is written to foo.json in the same directory.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class XMLtoJSONBatch {
+    private final TranslationPlan plan;
+    private final Gson gson;
+    private int threads = 1;
+    private boolean force = false;
+    private boolean stream = false;
+    private JsonElement context = null;
+    private Schema schema = null;
+    
+    public XMLtoJSONBatch (TranslationPlan tp, Gson g) {
+        plan = tp;
+        gson = g;
+    }
+    
+    public void setThreads (int n)              { threads = Math.max(1, n); }
+    public void setForce (boolean f)            { force = f; }
+    public void setStream (boolean f)           { stream = f; }
+    public void setContext (JsonElement c)      { context = c; }
+    public void setSchema (Schema s)            { schema = s; }
+    
+    public static final int SKIPPED = -1;
+    
+    /**
+     * The outcome of converting one message.  Status is CONVERT_OK, CONVERT_WARN
+     * or CONVERT_INVALID for a converted message, or SKIPPED when the JSON file
+     * exists.  The error string is non-null for a message that could not
+     * be converted.  The warnings are the conversion warnings for the message.
+     * The validation messages are empty unless there is a schema.
+     */
+    public record Result (File xmlF, int status, long bytes, String error, List<String> warnings, List<String> validation) {
+        public boolean isSkipped ()     { return SKIPPED == status; }
+        public boolean isInvalid ()     { return null == error && CONVERT_INVALID == status; }
+        public boolean isWarning ()     { return null == error && CONVERT_WARN == status; }
+        public boolean isError ()       { return null != error && !isSkipped(); }
+    }
+    
+    // A result with warnings or errors, and its position in the batch
+    private record Problem (long seq, Result result) {}
+    
+    /**
+     * The outcome of a batch run.  Only the results with warnings or errors
+     * are kept, in the order the messages were listed.
+     */
+    public record Summary (int count, int converted, int warned, int invalid, int failed, int skipped, long bytes, long nanos, List<Result> problems) {
+        public double msgsPerSec ()     { return 0 == nanos ? 0.0 : converted * 1e9 / nanos; }
+        public double mbPerSec ()       { return 0 == nanos ? 0.0 : bytes * 1e9 / nanos / (1024.0 * 1024.0); }
+        
+        public String format () {
+            var sb = new StringBuilder();
+            sb.append(String.format("%d messages: %d converted, %d with warnings, %d invalid, %d failed, %d skipped%n", 
+                    count, converted, warned, invalid, failed, skipped));
+            sb.append(String.format("%.3f sec, %.1f msgs/s, %.2f MB/s%n", 
+                    nanos / 1e9, msgsPerSec(), mbPerSec()));
+            for (var r : problems) {
+                if (r.isSkipped()) sb.append(String.format("  skipped  %s: %s%n", r.xmlF(), r.error()));
+                else if (r.isError()) sb.append(String.format("  error    %s: %s%n", r.xmlF(), r.error()));
+                else if (r.isInvalid()) sb.append(String.format("  invalid  %s: %d messages%n", r.xmlF(), r.validation().size()));
+                else {
+                    sb.append(String.format("  warnings %s: %d warnings%n", r.xmlF(), r.warnings().size()));
+                    for (var w : r.warnings()) sb.append(String.format("    %s%n", w));
+                }
+            }
+            return sb.toString();
+        }
+    }
+    
+    /**
+     * Returns true if the argument is a glob pattern instead of a file name.
+     */
+    public static boolean isGlob (String arg) {
+        return arg.matches(".*[*?\\[{].*");
+    }
+    
+    /**
+     * Returns a stream of the XML message files named by a command line argument.
+     * A directory names all of the *.xml files it contains, at any depth.
+     * A glob pattern (e.g. "msgs/**&#47;*.xml") names the files it matches.
+     * Anything else names a single file.  The caller must close the stream.
+     * @param arg - file name, directory name, or glob pattern
+     * @return stream of files
+     * @throws IOException 
+     */
+    public static Stream<File> expand (String arg) throws IOException {
+        if (isGlob(arg)) {
+            var slash = arg.replace('\\', '/');
+            var gpos  = slash.split("[*?\\[{]", 2)[0].lastIndexOf('/');
+            var baseS = gpos < 0 ? "." : slash.substring(0, gpos + 1);
+            var pat   = gpos < 0 ? slash : slash.substring(gpos + 1);
+            var base  = Path.of(baseS);
+            var depth = pat.contains("**") ? Integer.MAX_VALUE : pat.split("/").length;
+            var pm    = FileSystems.getDefault().getPathMatcher("glob:" + pat);
+            return Files.walk(base, depth)
+                    .filter(Files::isRegularFile)
+                    .filter(p -> pm.matches(base.relativize(p)))
+                    .sorted()
+                    .map(Path::toFile);
+        }
+        var f = new File(arg);
+        if (f.isDirectory()) {
+            return Files.walk(f.toPath())
+                    .filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(".xml"))
+                    .sorted()
+                    .map(Path::toFile);
+        }
+        return Stream.of(f);
+    }
+    
+    /**
+     * Converts all of the message files named by the arguments.
+     * @param args - file names, directory names, or glob patterns
+     * @param report - called with each result, from the worker thread (may be null)
+     * @return batch summary
+     * @throws IOException if a directory or pattern can't be read
+     */
+    public Summary run (List<String> args, Consumer<Result> report) throws IOException {
+        var start     = System.nanoTime();
+        var count     = new AtomicInteger(0);
+        var converted = new AtomicInteger(0);
+        var warned    = new AtomicInteger(0);
+        var invalid   = new AtomicInteger(0);
+        var failed    = new AtomicInteger(0);
+        var skipped   = new AtomicInteger(0);
+        var bytes     = new AtomicLong(0);
+        var problems  = Collections.synchronizedList(new ArrayList<Problem>());
+        var tranL     = ThreadLocal.withInitial(() -> {
+            var t = new XMLMsgToJSON(plan);
+            t.setSchema(schema);
+            return t;
+        });
+        var permits   = new Semaphore(4 * threads);     // bounds the queue of waiting files
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (var arg : args) {
+                try (var files = expand(arg)) {
+                    files.forEach((xmlF) -> {
+                        var seq = count.getAndIncrement();
+                        permits.acquireUninterruptibly();
+                        pool.execute(() -> {
+                            try {
+                                var r = convert(tranL.get(), xmlF);
+                                if (r.isSkipped()) skipped.incrementAndGet();
+                                else if (r.isError()) failed.incrementAndGet();
+                                else {
+                                    converted.incrementAndGet();
+                                    bytes.addAndGet(r.bytes());
+                                    if (r.isWarning()) warned.incrementAndGet();
+                                    if (r.isInvalid()) invalid.incrementAndGet();
+                                }
+                                if (CONVERT_OK != r.status() || null != r.error()) problems.add(new Problem(seq, r));
+                                if (null != report) report.accept(r);
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    });
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException ex) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        var res = problems.stream()
+                .sorted((a, b) -> Long.compare(a.seq(), b.seq()))
+                .map(Problem::result)
+                .toList();
+        var nanos = System.nanoTime() - start;
+        return new Summary(count.get(), converted.get(), warned.get(), invalid.get(), failed.get(), skipped.get(), bytes.get(), nanos, res);
+    }
+    
+    /**
+     * Converts one message file, in the calling thread.
+     * @param tran - message transformer for this thread
+     * @param xmlF - XML message file
+     * @return conversion result
+     */
+    public Result convert (XMLMsgToJSON tran, File xmlF) {
+        var jsonF = new File(removeExtension(xmlF.getPath()) + ".json");
+        if (jsonF.exists() && !force) 
+            return new Result(xmlF, SKIPPED, 0, jsonF.getPath() + ": file exists", List.of(), List.of());
+        var bytes = xmlF.length();
+        String err;
+        try (var fis = new FileInputStream(xmlF);
+             var jsonW = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(jsonF), StandardCharsets.UTF_8))) {
+            var xmlIS = new InputSource(fis);
+            xmlIS.setSystemId(xmlF.toURI().toString());
+            int status;
+            if (stream) {
+                var jw = gson.newJsonWriter(jsonW);
+                jw.beginObject();
+                status = tran.convert(xmlIS, jw);
+                if (null != context) {
+                    jw.name("@context");
+                    gson.toJson(context, jw);
+                }
+                jw.endObject();
+                jw.flush();
+            }
+            else {
+                var jobj = new JsonObject();
+                status = tran.convert(xmlIS, jobj);
+                if (null != context) jobj.add("@context", context);
+                gson.toJson(jobj, jsonW);
+            }
+            return new Result(xmlF, status, bytes, null, List.copyOf(tran.warnings()), List.copyOf(tran.validationMessages()));
+        } catch (ParserConfigurationException ex) {
+            err = "parser configuration error: " + ex.getMessage();
+        } catch (SAXException ex) {
+            err = "error parsing: " + ex.getMessage();
+        } catch (IOException ex) {
+            err = "I/O error: " + ex.getMessage();
+        } catch (RuntimeException ex) {
+            err = "error converting: " + ex;
+        }
+        // Don't leave a partial result behind for a failed message
+        jsonF.delete();
+        return new Result(xmlF, CONVERT_OK, bytes, err, List.copyOf(tran.warnings()), List.copyOf(tran.validationMessages()));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mitre.niem.cmf.ModelXMLReader;
+import org.mitre.niem.xml.ParserBootstrap;
+import org.xml.sax.InputSource;
+
+/**
+ * Compares per-message latency of the x2j command with the translation server
+ * over a loopback socket.  Run with "gradle :app-niemtran:benchmark".
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Tag("benchmark")
+public class TranslationServerBenchmark {
+    private final static String resDN = "src/test/resources/";
+    private final static String MODEL = "literal";
+    private final static int CLI_RUNS = 5;
+    private final static int WARMUP   = 500;
+    private final static int RUNS     = 2000;
+    private final static int CLIENTS  = 4;
+    
+    @TempDir
+    File tmpD;
+    
+    public TranslationServerBenchmark() {
+    }
+    
+    @Test
+    public void benchLatency () throws Exception {
+        var cmfF = new File(resDN, MODEL + ".cmf");
+        var xmlF = new File(tmpD, MODEL + ".xml");
+        Files.copy(new File(resDN, MODEL + ".xml").toPath(), xmlF.toPath());
+        var xml  = Files.readAllBytes(xmlF.toPath());
+        
+        // x2j as a separate process: JVM startup, model load, one message
+        var java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        var cp   = System.getProperty("java.class.path");
+        var cliT = new long[CLI_RUNS];
+        for (int i = 0; i < CLI_RUNS; i++) {
+            var start = System.nanoTime();
+            var pb = new ProcessBuilder(java, "-cp", cp, NIEMTran.class.getName(), "x2j", "-f", cmfF.getPath(), xmlF.getPath());
+            pb.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            assertEquals(0, pb.start().waitFor());
+            cliT[i] = System.nanoTime() - start;
+        }
+        // x2j work in this JVM: parser init, model load, one message
+        var gson = new GsonBuilder().setPrettyPrinting().create();
+        for (int i = 0; i < WARMUP / 10; i++) inProcess(cmfF, xml, gson);
+        var inT = new long[RUNS / 10];
+        for (int i = 0; i < inT.length; i++) {
+            var start = System.nanoTime();
+            inProcess(cmfF, xml, gson);
+            inT[i] = System.nanoTime() - start;
+        }
+        // Server on a loopback socket: one client, one request at a time
+        var model  = new ModelXMLReader().readFiles(cmfF).freeze();
+        var server = new TranslationServer(Map.of(MODEL, new TranslationPlan(model)), CLIENTS);
+        long[] srvT;
+        double tput;
+        try (var ss = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread.ofVirtual().start(() -> server.listen(ss));
+            try (var s = new Socket(ss.getInetAddress(), ss.getLocalPort())) {
+                var out = new BufferedOutputStream(s.getOutputStream());
+                var in  = new BufferedInputStream(s.getInputStream());
+                for (int i = 0; i < WARMUP; i++) roundTrip(out, in, xml, i);
+                srvT = new long[RUNS];
+                for (int i = 0; i < RUNS; i++) {
+                    var start = System.nanoTime();
+                    roundTrip(out, in, xml, i);
+                    srvT[i] = System.nanoTime() - start;
+                }
+            }
+            // Several clients at once, each one request at a time
+            var threads = new ArrayList<Thread>();
+            var start   = System.nanoTime();
+            for (int c = 0; c < CLIENTS; c++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    try (var s = new Socket(ss.getInetAddress(), ss.getLocalPort())) {
+                        var out = new BufferedOutputStream(s.getOutputStream());
+                        var in  = new BufferedInputStream(s.getInputStream());
+                        for (int i = 0; i < RUNS; i++) roundTrip(out, in, xml, i);
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }));
+            }
+            for (var t : threads) t.join();
+            tput = CLIENTS * RUNS * 1e9 / (System.nanoTime() - start);
+        }
+        server.shutdown();
+        
+        System.out.println(String.format("x2j latency per message (%s.xml, %d bytes)", MODEL, xml.length));
+        System.out.println(String.format("  CLI process      %10.3f ms median", median(cliT) / 1e6));
+        System.out.println(String.format("  CLI in-process   %10.3f ms median", median(inT) / 1e6));
+        System.out.println(String.format("  server loopback  %10.3f ms median, %.3f ms p99", median(srvT) / 1e6, pct(srvT, 0.99) / 1e6));
+        System.out.println(String.format("  server %d clients %9.1f msgs/s", CLIENTS, tput));
+    }
+    
+    private static void inProcess (File cmfF, byte[] xml, Gson gson) throws Exception {
+        ParserBootstrap.init();
+        var model = new ModelXMLReader().readFiles(cmfF);
+        var tran  = new XMLMsgToJSON(model.freeze());
+        var jobj  = new JsonObject();
+        tran.convert(new InputSource(new ByteArrayInputStream(xml)), jobj);
+        gson.toJson(jobj);
+    }
+    
+    private static void roundTrip (BufferedOutputStream out, BufferedInputStream in, byte[] xml, int i) throws Exception {
+        TranslationServer.writeRequest(out, "m" + i, MODEL, xml);
+        out.flush();
+        var r = TranslationServer.readResponse(in);
+        assertEquals("ok", r.body().get("status").getAsString());
+    }
+    
+    private static double median (long[] t)     { return pct(t, 0.5); }
+    
+    private static double pct (long[] t, double p) {
+        var s = t.clone();
+        Arrays.sort(s);
+        return s[Math.min(s.length - 1, (int)(p * s.length))];
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import com.google.gson.JsonObject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.mitre.niem.cmf.ModelXMLReader;
+import org.xml.sax.InputSource;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class TranslationServerTest {
+    
+    private final static String resDN = "src/test/resources/";
+    private final static String[] names = { "augCCwA", "augCCwE", "augSCwE", "literal" };
+    
+    public TranslationServerTest() {
+    }
+    
+    @Test
+    public void testServe () throws Exception {
+        var plans  = plans();
+        var expect = expected(plans);
+        var server = new TranslationServer(plans, 4);
+        
+        // 40 requests, then one for an unknown model and one with bad XML
+        var reqs = new ByteArrayOutputStream();
+        for (int i = 0; i < 40; i++) {
+            var mn = names[i % names.length];
+            TranslationServer.writeRequest(reqs, "r" + i, mn, Files.readAllBytes(new File(resDN, mn + ".xml").toPath()));
+        }
+        TranslationServer.writeRequest(reqs, "nomodel", "nosuch", new byte[0]);
+        TranslationServer.writeRequest(reqs, "badxml", "literal", "<not-closed>".getBytes());
+        var resps = new ByteArrayOutputStream();
+        server.serve(new ByteArrayInputStream(reqs.toByteArray()), resps);
+        server.shutdown();
+        
+        var in = new ByteArrayInputStream(resps.toByteArray());
+        var got = new HashMap<String,JsonObject>();
+        TranslationServer.Response r;
+        while (null != (r = TranslationServer.readResponse(in))) got.put(r.id(), r.body());
+        assertEquals(42, got.size());
+        for (int i = 0; i < 40; i++) {
+            var body = got.get("r" + i);
+            assertEquals("ok", body.get("status").getAsString());
+            assertEquals(0, body.getAsJsonArray("warnings").size());
+            assertEquals(expect.get(names[i % names.length]), body.getAsJsonObject("message"));
+        }
+        assertEquals("error", got.get("nomodel").get("status").getAsString());
+        assertEquals("error", got.get("badxml").get("status").getAsString());
+    }
+    
+    @Test
+    public void testSocket () throws Exception {
+        var plans  = plans();
+        var expect = expected(plans);
+        var server = new TranslationServer(plans, 2);
+        try (var ss = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread.ofVirtual().start(() -> server.listen(ss));
+            try (var s = new Socket(ss.getInetAddress(), ss.getLocalPort())) {
+                var out = new BufferedOutputStream(s.getOutputStream());
+                var in  = new BufferedInputStream(s.getInputStream());
+                for (var mn : names) {
+                    TranslationServer.writeRequest(out, mn, mn, Files.readAllBytes(new File(resDN, mn + ".xml").toPath()));
+                    out.flush();
+                    var r = TranslationServer.readResponse(in);
+                    assertEquals(mn, r.id());
+                    assertEquals(expect.get(mn), r.body().getAsJsonObject("message"));
+                }
+                s.shutdownOutput();
+                assertNull(TranslationServer.readResponse(in));
+            }
+        }
+        server.shutdown();
+    }
+    
+    static Map<String,TranslationPlan> plans () {
+        var plans = new HashMap<String,TranslationPlan>();
+        for (var mn : names) {
+            var model = new ModelXMLReader().readFiles(new File(resDN, mn + ".cmf")).freeze();
+            plans.put(mn, new TranslationPlan(model));
+        }
+        return plans;
+    }
+    
+    static Map<String,JsonObject> expected (Map<String,TranslationPlan> plans) throws Exception {
+        var res = new HashMap<String,JsonObject>();
+        for (var mn : names) {
+            var jobj = new JsonObject();
+            try (var is = new FileInputStream(new File(resDN, mn + ".xml"))) {
+                new XMLMsgToJSON(plans.get(mn)).convert(new InputSource(is), jobj);
+            }
+            res.put(mn, jobj);
+        }
+        return res;
+    }
+}
@@ -26,12 +26,27 @@ package org.mitre.niem.translate;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mitre.niem.cmf.ModelXMLReader;
+import org.mitre.niem.xml.XMLSchema;
 import org.xml.sax.InputSource;
 
 /**
@@ -44,6 +59,9 @@ public class XMLMsgToJSONTest {
     private final static Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private final static String resDN = "src/test/resources/";
     
+    @TempDir
+    File tmpD;
+    
     public XMLMsgToJSONTest() {
     }
     
@@ -109,4 +127,266 @@ public class XMLMsgToJSONTest {
         assertEquals("foo", gn.getAsJsonPrimitive("nc:personNameCommentText").getAsString());
     }
     
+    @Test
+    public void testPlan () throws Exception {
+        var rdr   = new ModelXMLReader();
+        var model = rdr.readFiles(new File(resDN, "literal.cmf")).freeze();
+        var plan  = new TranslationPlan(model);
+        var nsU   = model.prefixToNamespaceObj("nc").uri();
+        var pe    = plan.lookup(nsU, "PersonGivenName");
+        assertEquals("nc:PersonGivenName", pe.key());
+        assertEquals("nc:TextLiteral", pe.literalProperty().qname());
+        assertTrue(pe.isKnownNS());
+        assertFalse(pe.isAugmentation());
+        var ue    = plan.lookup(nsU, "NoSuchElement");
+        assertNull(ue.property());
+        assertTrue(ue.isKnownNS());
+        
+        // Translators sharing one plan produce the same message
+        var json1 = translate(new XMLMsgToJSON(model), "literal.xml");
+        var json2 = translate(new XMLMsgToJSON(plan), "literal.xml");
+        var json3 = translate(new XMLMsgToJSON(plan), "literal.xml");
+        assertEquals(json1, json2);
+        assertEquals(json1, json3);
+    }
+    
+    @Test
+    public void testStream () throws Exception {
+        var rdr = new ModelXMLReader();
+        for (var mn : List.of("augCCwA", "augCCwE", "augSCwE", "literal")) {
+            var model = rdr.readFiles(new File(resDN, mn + ".cmf")).freeze();
+            var tran  = new XMLMsgToJSON(model);
+            var tree  = JsonParser.parseString(translate(tran, mn + ".xml"));
+            var sw    = new StringWriter();
+            try (var is = new FileInputStream(new File(resDN, mn + ".xml"))) {
+                var jw = gson.newJsonWriter(sw);
+                jw.beginObject();
+                tran.convert(new InputSource(is), jw);
+                jw.endObject();
+                jw.flush();
+            }
+            assertEquals(tree, JsonParser.parseString(sw.toString()), mn);
+        }
+    }
+    
+    @Test
+    public void testStreamRepeatedAugmentation () throws Exception {
+        var rdr   = new ModelXMLReader();
+        var model = rdr.readFiles(new File(resDN, "augCCwE.cmf")).freeze();
+        var tran  = new XMLMsgToJSON(model);
+        var xml   = """
+            <t:Message
+             xmlns:nc="https://docs.oasis-open.org/niemopen/ns/model/niem-core/6.0/"
+             xmlns:t="http://example.com/test/">
+              <nc:PersonEducation>
+                <t:EducationAugmentation>
+                  <nc:PersonName><nc:PersonGivenName>Peter</nc:PersonGivenName></nc:PersonName>
+                  <nc:PersonName><nc:PersonGivenName>Paul</nc:PersonGivenName></nc:PersonName>
+                  <t:StringProp>An augmentation</t:StringProp>
+                </t:EducationAugmentation>
+              </nc:PersonEducation>
+            </t:Message>
+            """;
+        var jobj = new JsonObject();
+        tran.convert(new InputSource(new StringReader(xml)), jobj);
+        var sw = new StringWriter();
+        var jw = gson.newJsonWriter(sw);
+        jw.beginObject();
+        tran.convert(new InputSource(new StringReader(xml)), jw);
+        jw.endObject();
+        jw.flush();
+        
+        var stream = sw.toString();
+        assertEquals(stream.indexOf("\"nc:PersonName\""), stream.lastIndexOf("\"nc:PersonName\""));
+        assertEquals(jobj, JsonParser.parseString(stream));
+        var pe = jobj.getAsJsonObject("t:Message").getAsJsonObject("nc:PersonEducation");
+        assertEquals(2, pe.getAsJsonArray("nc:PersonName").size());
+    }
+    
+    @Test
+    public void testStreamNonAdjacentRepeats () throws Exception {
+        var rdr   = new ModelXMLReader();
+        var model = rdr.readFiles(new File(resDN, "literal.cmf")).freeze();
+        var tran  = new XMLMsgToJSON(model);
+        var xml   = """
+            <t:Message
+             xmlns:nc="https://docs.oasis-open.org/niemopen/ns/model/niem-core/6.0/"
+             xmlns:t="http://example.com/test/">
+              <nc:PersonName>
+                <nc:PersonGivenName>Peter</nc:PersonGivenName>
+                <nc:PersonMiddleName>Death</nc:PersonMiddleName>
+                <nc:PersonSurName>Wimsey</nc:PersonSurName>
+                <nc:PersonMiddleName>Bredon</nc:PersonMiddleName>
+                <nc:PersonGivenName>Harriet</nc:PersonGivenName>
+              </nc:PersonName>
+            </t:Message>
+            """;
+        var jobj = new JsonObject();
+        tran.convert(new InputSource(new StringReader(xml)), jobj);
+        var sw = new StringWriter();
+        var jw = gson.newJsonWriter(sw);
+        jw.beginObject();
+        tran.convert(new InputSource(new StringReader(xml)), jw);
+        jw.endObject();
+        jw.flush();
+
+        var stream = sw.toString();
+        for (var key : List.of("\"nc:PersonGivenName\"", "\"nc:PersonMiddleName\"")) 
+            assertEquals(stream.indexOf(key), stream.lastIndexOf(key), key);
+        assertEquals(jobj, JsonParser.parseString(stream));
+        var pn = jobj.getAsJsonObject("t:Message").getAsJsonArray("nc:PersonName").get(0).getAsJsonObject();
+        assertEquals(2, pn.getAsJsonArray("nc:PersonGivenName").size());
+        assertEquals(2, pn.getAsJsonArray("nc:PersonMiddleName").size());
+    }
+    
+    @Test
+    public void testConvertStream () throws Exception {
+        var rdr    = new ModelXMLReader();
+        var model  = rdr.readFiles(new File(resDN, "literal.cmf")).freeze();
+        var tran   = new XMLMsgToJSON(model);
+        var msg    = Files.readAllBytes(new File(resDN, "literal.xml").toPath());
+        var expect = JsonParser.parseString(translate(tran, "literal.xml"));
+        
+        // Concatenated documents, long enough to cross buffer boundaries, one bad,
+        // one with processing instructions that are not declarations
+        var pimsg = new String(msg).replaceFirst("\\?>", "?>\n<?xml-model href=\"t.sch\"?>\n<?xml-stylesheet href=\"t.xsl\"?>");
+        var cat = new ByteArrayOutputStream();
+        for (int i = 0; i < 200; i++) {
+            if (50 == i) cat.write("<?xml version=\"1.0\"?>\n<not-closed>\n".getBytes());
+            cat.write(100 == i ? pimsg.getBytes() : msg);
+            cat.write("\n\n".getBytes());
+        }
+        var statL = new ArrayList<XMLMsgToJSON.MessageStatus>();
+        var out   = new StringWriter();
+        var src   = MessageSource.concatenated(new ByteArrayInputStream(cat.toByteArray()), "cat");
+        assertEquals(XMLMsgToJSON.CONVERT_WARN, tran.convertStream(src, out, statL::add));
+        var lines = out.toString().split("\n");
+        assertEquals(200, lines.length);
+        for (var line : lines) assertEquals(expect, JsonParser.parseString(line));
+        assertEquals(201, statL.size());
+        assertNotNull(statL.get(50).error());
+        assertEquals(0, statL.get(50).line());
+        assertEquals(51, statL.get(51).line());
+        assertEquals("cat#52", statL.get(51).name());
+        
+        // Zip archive; only the *.xml entries are messages
+        var zbytes = new ByteArrayOutputStream();
+        try (var zout = new ZipOutputStream(zbytes)) {
+            for (var en : List.of("a.xml", "README", "sub/b.xml")) {
+                zout.putNextEntry(new ZipEntry(en));
+                zout.write(en.endsWith(".xml") ? msg : "readme".getBytes());
+                zout.closeEntry();
+            }
+        }
+        statL.clear();
+        out = new StringWriter();
+        src = MessageSource.zip(new ByteArrayInputStream(zbytes.toByteArray()));
+        assertEquals(XMLMsgToJSON.CONVERT_OK, tran.convertStream(src, out, statL::add));
+        assertEquals(List.of("a.xml", "sub/b.xml"), statL.stream().map(XMLMsgToJSON.MessageStatus::name).toList());
+        for (var line : out.toString().split("\n")) assertEquals(expect, JsonParser.parseString(line));
+        
+        // Tar archive
+        statL.clear();
+        out = new StringWriter();
+        try (var tsrc = MessageSource.open(new File(resDN, "msgs.tar"))) {
+            assertEquals(XMLMsgToJSON.CONVERT_OK, tran.convertStream(tsrc, out, statL::add));
+        }
+        assertEquals(List.of("msgs/sub/b.xml", "msgs/sub/c.xml", "msgs/a.xml"), statL.stream().map(XMLMsgToJSON.MessageStatus::name).toList());
+        for (var line : out.toString().split("\n")) assertEquals(expect, JsonParser.parseString(line));
+    }
+    
+    @Test
+    public void testConvertStreamEmbeddedDeclaration () throws Exception {
+        var rdr   = new ModelXMLReader();
+        var model = rdr.readFiles(new File(resDN, "literal.cmf")).freeze();
+        var tran  = new XMLMsgToJSON(model);
+        var msg   = Files.readString(new File(resDN, "literal.xml").toPath())
+            .replaceFirst("\\?>", "?>\n<!-- copied from\n<?xml version=\"1.0\"?>\n-->")
+            .replace(">Wimsey<", "><![CDATA[<?xml version=\"1.0\"?>]]><");
+        var expect = new JsonObject();
+        tran.convert(new InputSource(new StringReader(msg)), expect);
+        
+        // Long enough to cross buffer boundaries
+        var cat = new StringBuilder();
+        for (int i = 0; i < 300; i++) cat.append(msg).append("\n");
+        var statL = new ArrayList<XMLMsgToJSON.MessageStatus>();
+        var out   = new StringWriter();
+        var src   = MessageSource.concatenated(new ByteArrayInputStream(cat.toString().getBytes()), "cat");
+        assertEquals(XMLMsgToJSON.CONVERT_OK, tran.convertStream(src, out, statL::add));
+        assertEquals(300, statL.size());
+        var lines = out.toString().split("\n");
+        assertEquals(300, lines.length);
+        for (var line : lines) assertEquals(expect, JsonParser.parseString(line));
+    }
+    
+    @Test
+    public void testConvertStreamBadValue () throws Exception {
+        // Every string in this model is a decimal, so "Peter" can't be converted
+        var cmf  = Files.readString(new File(resDN, "literal.cmf").toPath())
+                .replace("<Name>string</Name>", "<Name>decimal</Name>");
+        var cmfF = new File(tmpD, "decimal.cmf");
+        Files.writeString(cmfF.toPath(), cmf);
+        var tran = new XMLMsgToJSON(new ModelXMLReader().readFiles(cmfF).freeze());
+        var msg  = Files.readAllBytes(new File(resDN, "literal.xml").toPath());
+        var good = new String(msg).replaceAll(">[A-Z][a-z]+<", ">1<").getBytes();
+        var cat  = new ByteArrayOutputStream();
+        cat.write(msg);
+        cat.write(good);
+        
+        var statL = new ArrayList<XMLMsgToJSON.MessageStatus>();
+        var out   = new StringWriter();
+        var src   = MessageSource.concatenated(new ByteArrayInputStream(cat.toByteArray()), "cat");
+        assertEquals(XMLMsgToJSON.CONVERT_WARN, tran.convertStream(src, out, statL::add));
+        assertEquals(2, statL.size());
+        assertTrue(statL.get(0).error().contains("NumberFormatException"));
+        assertEquals(0, statL.get(0).line());
+        assertNull(statL.get(1).error());
+        assertEquals(1, statL.get(1).line());
+        assertEquals(1, out.toString().split("\n").length);
+    }
+    
+    @Test
+    public void testValidate () throws Exception {
+        var rdr    = new ModelXMLReader();
+        var model  = rdr.readFiles(new File(resDN, "literal.cmf")).freeze();
+        var tran   = new XMLMsgToJSON(model);
+        var expect = JsonParser.parseString(translate(tran, "literal.xml"));
+        var xs     = new XMLSchema(new File(resDN, "literal.xsd").getPath());
+        tran.setSchema(xs.javaxSchema());
+        
+        // Valid message: same JSON, no validation messages
+        var jobj = new JsonObject();
+        try (var is = new FileInputStream(new File(resDN, "literal.xml"))) {
+            assertEquals(XMLMsgToJSON.CONVERT_OK, tran.convert(new InputSource(is), jobj));
+        }
+        assertEquals(expect, jobj);
+        assertTrue(tran.validationMessages().isEmpty());
+        
+        // Invalid message: still converted, with validation messages
+        var msg = Files.readString(new File(resDN, "literal.xml").toPath())
+                .replace("<nc:PersonSurName>", "<nc:PersonSurName>Lord</nc:PersonSurName>\n    <nc:PersonSurName>");
+        jobj = new JsonObject();
+        assertEquals(XMLMsgToJSON.CONVERT_INVALID, tran.convert(new InputSource(new StringReader(msg)), jobj));
+        assertFalse(tran.validationMessages().isEmpty());
+        assertTrue(tran.validationMessages().get(0).contains("PersonSurName"));
+        var sn = jobj.getAsJsonObject("t:Message").getAsJsonArray("nc:PersonName").get(0).getAsJsonObject().getAsJsonArray("nc:PersonSurName");
+        assertEquals(2, sn.size());
+        
+        // Streaming mode validates too
+        var sw = new StringWriter();
+        var jw = gson.newJsonWriter(sw);
+        jw.beginObject();
+        assertEquals(XMLMsgToJSON.CONVERT_INVALID, tran.convert(new InputSource(new StringReader(msg)), jw));
+        jw.endObject();
+        assertEquals(jobj, JsonParser.parseString(sw.toString()));
+    }
+    
+    private static String translate (XMLMsgToJSON tran, String fn) throws Exception {
+        var jobj = new JsonObject();
+        try (var is = new FileInputStream(new File(resDN, fn))) {
+            tran.convert(new InputSource(is), jobj);
+        }
+        return gson.toJson(jobj);
+    }
+    
 }
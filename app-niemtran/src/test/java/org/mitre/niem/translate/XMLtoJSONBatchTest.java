@@ -0,0 +1,141 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.translate;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mitre.niem.cmf.ModelXMLReader;
+import org.xml.sax.InputSource;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class XMLtoJSONBatchTest {
+    
+    private final static String resDN = "src/test/resources/";
+    
+    @TempDir
+    File tmpD;
+    
+    public XMLtoJSONBatchTest() {
+    }
+    
+    @Test
+    public void testBatch () throws Exception {
+        var rdr   = new ModelXMLReader();
+        var model = rdr.readFiles(new File(resDN, "literal.cmf")).freeze();
+        var plan  = new TranslationPlan(model);
+        var msgF  = new File(resDN, "literal.xml");
+        var expect = new JsonObject();
+        try (var is = new FileInputStream(msgF)) {
+            new XMLMsgToJSON(plan).convert(new InputSource(is), expect);
+        }
+        // 40 messages in two directories, one bad message, one existing result
+        for (int i = 0; i < 40; i++) {
+            var dir = new File(tmpD, i % 2 == 0 ? "a" : "a/b");
+            dir.mkdirs();
+            Files.copy(msgF.toPath(), new File(dir, "m" + i + ".xml").toPath());
+        }
+        Files.writeString(new File(tmpD, "a/bad.xml").toPath(), "<not-closed>");
+        Files.writeString(new File(tmpD, "a/b/m1.json").toPath(), "{}");
+        
+        var batch = new XMLtoJSONBatch(plan, new GsonBuilder().setPrettyPrinting().create());
+        batch.setThreads(4);
+        var sum = batch.run(List.of(new File(tmpD, "a").getPath()), null);
+        assertEquals(41, sum.count());
+        assertEquals(39, sum.converted());
+        assertEquals(1, sum.failed());
+        assertEquals(1, sum.skipped());
+        assertEquals(2, sum.problems().size());
+        assertTrue(sum.bytes() > 0);
+        for (int i = 0; i < 40; i++) {
+            if (1 == i) continue;
+            var jsonF = new File(tmpD, (i % 2 == 0 ? "a" : "a/b") + "/m" + i + ".json");
+            assertEquals(expect, JsonParser.parseString(Files.readString(jsonF.toPath())));
+        }
+        assertEquals("{}", Files.readString(new File(tmpD, "a/b/m1.json").toPath()));
+        
+        // Glob pattern, streaming mode, overwriting the results
+        batch.setStream(true);
+        batch.setForce(true);
+        sum = batch.run(List.of(tmpD.getPath() + "/a/b/*.xml"), null);
+        assertEquals(20, sum.count());
+        assertEquals(20, sum.converted());
+        assertEquals(expect, JsonParser.parseString(Files.readString(new File(tmpD, "a/b/m1.json").toPath())));
+    }
+    
+    @Test
+    public void testWarnings () throws Exception {
+        var model = new ModelXMLReader().readFiles(new File(resDN, "literal.cmf")).freeze();
+        var msg   = Files.readString(new File(resDN, "literal.xml").toPath())
+                .replace("<nc:PersonSurName>", "<nc:NoSuchElement/>\n    <nc:PersonSurName>");
+        var msgD  = new File(tmpD, "msgs");
+        msgD.mkdirs();
+        Files.writeString(new File(msgD, "m.xml").toPath(), msg);
+        
+        var batch = new XMLtoJSONBatch(new TranslationPlan(model), new GsonBuilder().create());
+        var sum   = batch.run(List.of(msgD.getPath()), null);
+        assertEquals(1, sum.warned());
+        var r = sum.problems().get(0);
+        assertEquals(1, r.warnings().size());
+        assertTrue(r.warnings().get(0).contains("unknown element nc:NoSuchElement"));
+        var fmt = sum.format();
+        assertTrue(fmt.contains("m.xml: 1 warnings"));
+        assertTrue(fmt.contains(r.warnings().get(0)));
+    }
+    
+    @Test
+    public void testBadValue () throws Exception {
+        // Every string in this model is a decimal, so "Peter" can't be converted
+        var cmf  = Files.readString(new File(resDN, "literal.cmf").toPath())
+                .replace("<Name>string</Name>", "<Name>decimal</Name>");
+        var cmfF = new File(tmpD, "decimal.cmf");
+        Files.writeString(cmfF.toPath(), cmf);
+        var model = new ModelXMLReader().readFiles(cmfF).freeze();
+        var msgD  = new File(tmpD, "msgs");
+        msgD.mkdirs();
+        Files.copy(new File(resDN, "literal.xml").toPath(), new File(msgD, "m.xml").toPath());
+        
+        var batch = new XMLtoJSONBatch(new TranslationPlan(model), new GsonBuilder().create());
+        for (var stream : List.of(false, true)) {
+            batch.setStream(stream);
+            var sum = batch.run(List.of(msgD.getPath()), null);
+            assertEquals(1, sum.failed());
+            assertTrue(sum.problems().get(0).error().contains("NumberFormatException"));
+            assertFalse(new File(msgD, "m.json").exists());
+        }
+    }
+}
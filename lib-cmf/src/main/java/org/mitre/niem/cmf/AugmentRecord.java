@@ -47,6 +47,7 @@ public class AugmentRecord extends PropertyAssociation {
     private ClassType classType = null;                 // cmf:Class
     private String index = "";                          // cmf:AugmentationIndex
     private Set<String> codeS = new HashSet<>();        // cmf:GlobalClassCode
+    private Namespace namespace = null;                 // namespace containing this record
     
     public ClassType classType ()                   { return classType; }
     public String index ()                          { return index; }
@@ -58,11 +59,18 @@ public class AugmentRecord extends PropertyAssociation {
         return res.toString();
     }
     
-    public void setClassType (ClassType ct)         { classType = ct; }
+    public void setClassType (ClassType ct)         { classType = ct; referenceChange(); }
     public void setIndex (String s)                 { index = s; }
     public void addCode (String s)                  { if (null != s) codeS.add(s); }
     public void removeCode (String s)               { codeS.remove(s); }
     public void clearCodes ()                       { codeS.clear(); }
+    
+    void setNamespace (Namespace ns)                { namespace = ns; }
+    
+    @Override
+    void referenceChange () {
+        if (null != namespace) namespace.referenceChange();
+    }
         
     
     
@@ -76,10 +76,12 @@ public class ClassType extends Component {
     public void setIsAbstract (boolean f)       { isAbstract = f; }
     @Override
     public void setReferenceCode (String s)     { super.setReferenceCode(s); refCode = s; }
-    public void setSubclass (ClassType c)       { subclass = c; }
+    public void setSubclass (ClassType c)       { subclass = c; referenceChange(); }
     
     public void addPropertyAssociation (PropertyAssociation pa) {
         propL.add(pa);
+        pa.setOwner(this);
+        referenceChange();
     }
     public void addAnyProperty (AnyProperty ap) {
         anyL.add(ap);
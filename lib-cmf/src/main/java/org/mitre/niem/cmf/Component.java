@@ -151,6 +151,12 @@ public abstract class Component extends CMFObject implements Comparable<Componen
         if (null != model) model.componentUpdate();
     }
     
+    // Notify the model object that a reference from one of its components 
+    // to another has changed.
+    void referenceChange () {
+        if (null != model) model.referenceUpdate();
+    }
+    
     
     @Override
     public boolean addChild (String eln, String loc, CMFObject child) throws CMFException {
@@ -24,6 +24,7 @@
 package org.mitre.niem.cmf;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -71,11 +72,36 @@ public class Model extends CMFObject {
     private final Map<String,Property> propMap          = new HashMap<>();  // uri -> Property
     private List<Component> ordComp      = null;
     private List<Namespace> ordNS        = null;
+    private volatile ModelIndex index    = null;
+    private volatile Frozen frozen       = null;
     
-    public List<ClassType> classTypeL ()                { return new ArrayList<>(classMap.values()); }
-    public List<Datatype> datatypeL ()                  { return new ArrayList<>(dtypeMap.values()); }
-    public List<Property> propertyL ()                  { return new ArrayList<>(propMap.values()); }
-    public List<DataProperty> dataPropertyL ()          { return new ArrayList<>(dpropMap.values()); }
+    // Precomputed views of a frozen model
+    private record Frozen (
+        List<ClassType> classTypeL,
+        List<Datatype> datatypeL,
+        List<Property> propertyL,
+        List<DataProperty> dataPropertyL,
+        List<Component> componentL,
+        List<Namespace> namespaceL,
+        Set<Namespace> namespaceS,
+        ModelIndex index) { }
+    
+    public List<ClassType> classTypeL () {
+        var fz = frozen;
+        return null != fz ? fz.classTypeL() : new ArrayList<>(classMap.values()); 
+    }
+    public List<Datatype> datatypeL () {
+        var fz = frozen;
+        return null != fz ? fz.datatypeL() : new ArrayList<>(dtypeMap.values()); 
+    }
+    public List<Property> propertyL () {
+        var fz = frozen;
+        return null != fz ? fz.propertyL() : new ArrayList<>(propMap.values()); 
+    }
+    public List<DataProperty> dataPropertyL () {
+        var fz = frozen;
+        return null != fz ? fz.dataPropertyL() : new ArrayList<>(dpropMap.values()); 
+    }
     
     public Component qnToComponent (String qn)          { return compMap.get(qnToURI(qn)); }
     public ClassType qnToClassType (String qn)          { return classMap.get(qnToURI(qn)); }
@@ -103,7 +129,10 @@ public class Model extends CMFObject {
         if (preOrURI.contains(":")) return nsUToNamespaceObj(preOrURI);
         return prefixToNamespaceObj(preOrURI);
     }
-    public Set<Namespace> namespaceSet ()               { return nsS; }
+    public Set<Namespace> namespaceSet () {
+        var fz = frozen;
+        return null != fz ? fz.namespaceS() : nsS;
+    }
     
     
     /**
@@ -202,9 +231,10 @@ public class Model extends CMFObject {
 
    
     public void addNamespace (Namespace n) throws CMFException {
+        checkNotFrozen();
         if (null == n) return;
         if (uri2ns.containsKey(n.uri())) return;
-        var cnsuri = nsmap.getPrefix(n.prefix());
+        var cnsuri = nsmap.getURI(n.prefix());
         if (null != cnsuri && !n.uri().equals(cnsuri)) {
             throw new CMFException(String.format(
                 "Can't add namespace %s=%s (prefix already assigned to %s)",
@@ -214,40 +244,49 @@ public class Model extends CMFObject {
         nsS.add(n);
         uri2ns.put(n.uri(), n);
         ordNS = null;
+        index = null;
         n.setModel(this);
     }
     
     public void addClassType (ClassType c) {
+        checkNotFrozen();
         if (null == c) return;
         compMap.put(c.uri(), c); 
         classMap.put(c.uri(), c);
         ordComp = null;
+        index   = null;
         c.setModel(this);
     }
     
     public void addDataProperty (DataProperty c) {
+        checkNotFrozen();
         if (null == c) return;
         compMap.put(c.uri(), c); 
         propMap.put(c.uri(), c);
         dpropMap.put(c.uri(), c);
-        ordComp = null;       
+        ordComp = null;
+        index   = null;
         c.setModel(this);
     }
     
     public void addDatatype (Datatype c) {
+        checkNotFrozen();
         if (null == c) return;
         compMap.put(c.uri(), c); 
         dtypeMap.put(c.uri(), c);
         ordComp = null;
+        index   = null;
         c.setModel(this);
     }
     
     public void addObjectProperty (ObjectProperty c) {
+        checkNotFrozen();
         if (null == c) return;
         compMap.put(c.uri(), c); 
         propMap.put(c.uri(), c);
         opropMap.put(c.uri(), c);
-        ordComp = null;        
+        ordComp = null;
+        index   = null;
         c.setModel(this);
     }
     
@@ -257,31 +296,91 @@ public class Model extends CMFObject {
     }
     
     public void removeClassType (ClassType ct) {
+        checkNotFrozen();
         if (null == ct) return;
         compMap.remove(ct.uri());
         classMap.remove(ct.uri());
         ordComp = null;
+        index   = null;
     }
     
     public void removeDatatype (String dtU) {
+        checkNotFrozen();
         compMap.remove(dtU);
         dtypeMap.remove(dtU);
         ordComp = null;
+        index   = null;
     }
     
     public void removeObjectProperty (ObjectProperty c) {
+        checkNotFrozen();
         if (null == c) return;
         compMap.remove(c.uri());
         propMap.remove(c.uri());
         opropMap.remove(c.uri());
         ordComp = null;
+        index   = null;
     }
   
+    // Flags for the component maps, used by the binary snapshot reader and writer
+    static final int MAP_COMP     = 1;
+    static final int MAP_CLASS    = 2;
+    static final int MAP_DATAPROP = 4;
+    static final int MAP_DATATYPE = 8;
+    static final int MAP_OBJPROP  = 16;
+    static final int MAP_PROP     = 32;
+    
+    Set<String> componentKeys ()                        { return compMap.keySet(); }
+    
+    // Puts a component into the selected maps under the given key, exactly
+    // as it was when the snapshot was written.
+    void restoreComponent (String key, Component c, int flags) {
+        checkNotFrozen();
+        if (0 != (flags & MAP_COMP))     compMap.put(key, c);
+        if (0 != (flags & MAP_CLASS))    classMap.put(key, (ClassType)c);
+        if (0 != (flags & MAP_DATAPROP)) dpropMap.put(key, (DataProperty)c);
+        if (0 != (flags & MAP_DATATYPE)) dtypeMap.put(key, (Datatype)c);
+        if (0 != (flags & MAP_OBJPROP))  opropMap.put(key, (ObjectProperty)c);
+        if (0 != (flags & MAP_PROP))     propMap.put(key, (Property)c);
+        ordComp = null;
+        index   = null;
+    }
+    
     public void componentUpdate () {
         ordComp = null;
+        index   = null;
+    }
+    
+    // Called when a reference between components in the model has changed.
+    void referenceUpdate () {
+        index = null;
     }
     
+    /**
+     * Returns the reverse-reference index for this model.  The index is built
+     * on first use and rebuilt after the model changes.
+     * @return ModelIndex object
+     */
+    public ModelIndex index () {
+        var fz = frozen;
+        if (null != fz) return fz.index();
+        var res = index;
+        if (null != res) return res;
+        synchronized (this) {
+            if (null == index) index = new ModelIndex(this);
+            return index;
+        }
+    }
+    
+    public List<ModelIndex.PropertyUse> propertyUseL (Property p)   { return index().propertyUseL(p); }
+    public List<ClassType> propertyUserL (Property p)               { return index().propertyUserL(p); }
+    public List<ClassType> subclassL (ClassType c)                  { return index().subclassL(c); }
+    public List<Property> subpropertyL (Property p)                 { return index().subpropertyL(p); }
+    public List<AugmentRecord> augmentRecordL (ClassType c)         { return index().augmentRecordL(c); }
+    
     public List<Namespace> namespaceList () {
+        var fz = frozen;
+        if (null != fz) return fz.namespaceL();
         if (null != ordNS) return ordNS;
         ordNS = new ArrayList<>(nsS);
         Collections.sort(ordNS);
@@ -289,6 +388,8 @@ public class Model extends CMFObject {
     }
     
     public List<Component> componentList () {
+        var fz = frozen;
+        if (null != fz) return fz.componentL();
         if (null != ordComp) return ordComp;
         ordComp = new ArrayList<>();
         for (var c : compMap.values()) {
@@ -300,6 +401,47 @@ public class Model extends CMFObject {
     }
 
 
+    /**
+     * Makes this model read-only and returns it.  A frozen model has 
+     * precomputed, unmodifiable, sorted lists of its components and namespaces,
+     * and a precomputed index, so it can be shared by many threads without
+     * copying lists or racing on the lazy caches.  Adding or removing a
+     * namespace or component throws IllegalStateException.  The components 
+     * of a frozen model must not be changed.
+     * @return this model
+     */
+    public synchronized Model freeze () {
+        if (null != frozen) return this;
+        var ctL  = sortedView(classMap.values());
+        var pL   = sortedView(propMap.values());
+        var nsL  = Collections.unmodifiableList(new ArrayList<>(namespaceList()));
+        frozen = new Frozen(
+            ctL,
+            sortedView(dtypeMap.values()),
+            pL,
+            sortedView(dpropMap.values()),
+            Collections.unmodifiableList(new ArrayList<>(componentList())),
+            nsL,
+            Collections.unmodifiableSet(new HashSet<>(nsS)),
+            new ModelIndex(ctL, pL, nsL));
+        ordComp = null;
+        ordNS   = null;
+        index   = null;
+        return this;
+    }
+    
+    public boolean isFrozen ()                          { return null != frozen; }
+    
+    private static <T extends Component> List<T> sortedView (Collection<T> values) {
+        var res = new ArrayList<T>(values);
+        Collections.sort(res);
+        return Collections.unmodifiableList(res);
+    }
+    
+    private void checkNotFrozen () {
+        if (null != frozen) throw new IllegalStateException("can't change a frozen model");
+    }
+
     @Override
     public boolean addChild (String eln, String loc, CMFObject child) throws CMFException {
         return child.addToModel(eln, loc, this);
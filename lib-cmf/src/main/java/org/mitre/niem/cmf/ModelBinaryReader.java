@@ -0,0 +1,319 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import static org.mitre.niem.cmf.CMFObject.CMF_CLASS;
+import static org.mitre.niem.cmf.CMFObject.CMF_DATAPROP;
+import static org.mitre.niem.cmf.CMFObject.CMF_DATATYPE;
+import static org.mitre.niem.cmf.CMFObject.CMF_LIST;
+import static org.mitre.niem.cmf.CMFObject.CMF_OBJECTPROP;
+import static org.mitre.niem.cmf.CMFObject.CMF_RESTRICTION;
+import static org.mitre.niem.cmf.CMFObject.CMF_UNION;
+import static org.mitre.niem.cmf.ModelBinaryWriter.KIND_PROPERTY;
+import static org.mitre.niem.cmf.ModelBinaryWriter.MAGIC;
+import static org.mitre.niem.cmf.ModelBinaryWriter.PA_AUGMENT;
+import static org.mitre.niem.cmf.ModelBinaryWriter.VERSION;
+import org.mitre.niem.xml.LanguageString;
+
+/**
+ * A class to read a Model object from a binary snapshot written by 
+ * ModelBinaryWriter.  The snapshot file is memory-mapped and decoded directly;
+ * there is no XML parsing.  The Model object is the same as the one that was
+ * written, which is the same as the one ModelXMLReader returns for the CMF file.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ModelBinaryReader {
+    static final Logger LOG = LogManager.getLogger(ModelBinaryReader.class);
+    
+    public ModelBinaryReader () { }
+    
+    private ByteBuffer buf;                 // snapshot contents
+    private String[] strA;                  // string table
+    private Namespace[] nsA;                // namespace objects by index
+    private Component[] compA;              // component objects by index
+    
+    /**
+     * Creates a Model object from a binary snapshot file.
+     * @param f - snapshot file
+     * @return Model object, or null upon fatal error.
+     */
+    public Model readFile (File f) {
+        try (var ch = FileChannel.open(f.toPath(), READ)) {
+            var mbuf = ch.map(READ_ONLY, 0, ch.size());
+            return read(mbuf);
+        } catch (IOException ex) {
+            LOG.error("{}: i/o error: {}", f.getName(), ex.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Creates a Model object from a binary snapshot in a buffer.
+     * @param b - buffer with snapshot contents
+     * @return Model object, or null upon fatal error.
+     */
+    public Model read (ByteBuffer b) {
+        buf = b;
+        try {
+            if (MAGIC != buf.getInt()) {
+                LOG.error("not a CMF binary snapshot");
+                return null;
+            }
+            var vers = buf.getInt();
+            if (VERSION != vers) {
+                LOG.error("unsupported CMF binary snapshot version {}", vers);
+                return null;
+            }
+            return readModel();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException ex) {
+            LOG.error("corrupt CMF binary snapshot: {}", ex.toString());
+        } catch (CMFException ex) {
+            LOG.error(ex.getMessage());
+        } finally {
+            buf   = null;
+            strA  = null;
+            nsA   = null;
+            compA = null;
+        }
+        return null;
+    }
+    
+    private Model readModel () throws CMFException {
+        var m = new Model();
+        strA = new String[count()];
+        for (int i = 0; i < strA.length; i++) {
+            var b = new byte[count()];
+            buf.get(b);
+            strA[i] = new String(b, UTF_8);
+        }
+        // Create all the Namespace and Component objects, then populate them.
+        // The model's own XSD namespace object is reused.
+        nsA = new Namespace[count()];
+        for (int i = 0; i < nsA.length; i++) {
+            var inModel = buf.get() != 0;
+            var uri     = readString();
+            var ns      = inModel ? m.nsUToNamespaceObj(uri) : null;
+            if (null == ns) {
+                ns = new Namespace();
+                ns.setURI(uri);
+            }
+            nsA[i] = ns;
+        }
+        compA = new Component[count()];
+        for (int i = 0; i < compA.length; i++) {
+            var kind = buf.get();
+            compA[i] = switch (kind) {
+                case CMF_CLASS       -> new ClassType();
+                case CMF_DATAPROP    -> new DataProperty();
+                case CMF_DATATYPE    -> new Datatype();
+                case CMF_LIST        -> new ListType();
+                case CMF_OBJECTPROP  -> new ObjectProperty();
+                case CMF_RESTRICTION -> new Restriction();
+                case CMF_UNION       -> new Union();
+                case KIND_PROPERTY   -> new Property();
+                default -> throw new CMFException(String.format("corrupt CMF binary snapshot: component kind %d", kind));
+            };
+        }
+        for (var ns : nsA) readNamespace(ns);
+        var inModelA = new boolean[compA.length];
+        for (int i = 0; i < compA.length; i++) inModelA[i] = readComponent(compA[i]);
+        
+        // Now put the objects in the model, exactly as they were
+        var nsct = buf.getInt();
+        for (int i = 0; i < nsct; i++) m.addNamespace(nsA[buf.getInt()]);
+        var ect = buf.getInt();
+        for (int i = 0; i < ect; i++) {
+            var key   = readString();
+            var c     = compA[buf.getInt()];
+            var flags = buf.get();
+            m.restoreComponent(key, c, flags);
+        }
+        for (int i = 0; i < compA.length; i++) 
+            if (inModelA[i]) compA[i].setModel(m);
+        return m;
+    }
+    
+    private void readNamespace (Namespace ns) throws CMFException {
+        ns.setPrefix(readString());
+        ns.setDocumentFilePath(readString());
+        ns.setKindCode(readString());
+        ns.setVersion(readString());
+        ns.setArchVersion(readString());
+        ns.setLanguage(readString());
+        for (var ls : readLangStrings()) ns.addDocumentation(ls.text(), ls.lang());
+        ns.setConformanceTargets(readStrings());
+        var ltct = buf.getInt();
+        for (int i = 0; i < ltct; i++) {
+            var lt = new LocalTerm();
+            lt.setTerm(readString());
+            lt.setLiteral(readString());
+            lt.setDocumentation(readString());
+            for (var s : readStrings()) lt.addSource(s);
+            for (var ls : readLangStrings()) lt.addCitation(ls);
+            ns.addLocalTerm(lt);
+        }
+        var arct = buf.getInt();
+        for (int i = 0; i < arct; i++) ns.addAugmentRecord((AugmentRecord)readAssociation());
+        var idct = buf.getInt();
+        for (int i = 0; i < idct; i++) {
+            var nsU = readString();
+            for (var ls : readLangStrings()) ns.addImportDocumentation(nsU, ls);
+        }
+    }
+    
+    // Populates a component object; returns true if it belongs to the model
+    private boolean readComponent (Component c) throws CMFException {
+        var inModel = buf.get() != 0;
+        c.setOutsideURI(readString());
+        c.setNamespace(readNamespaceRef());
+        c.setName(readString());
+        c.setIsDeprecated(buf.get() != 0);
+        c.setDocumentation(readLangStrings());
+        switch (c) {
+        case ClassType ct -> {
+            ct.setIsAbstract(buf.get() != 0);
+            ct.setReferenceCode(readString());
+            ct.setSubclass((ClassType)readComponentRef());
+            var pact = buf.getInt();
+            for (int i = 0; i < pact; i++) ct.addPropertyAssociation(readAssociation());
+            var apct = buf.getInt();
+            for (int i = 0; i < apct; i++) {
+                var ap = new AnyProperty();
+                ap.setMinOccurs(readString());
+                ap.setMaxOccurs(readString());
+                ap.setIsAttribute(buf.get() != 0);
+                ap.setNsConstraint(readString());
+                ap.setProcessCode(readString());
+                ct.addAnyProperty(ap);
+            }
+        }
+        case Property p -> {
+            p.setIsAbstract(buf.get() != 0);
+            p.setIsOrdered(buf.get() != 0);
+            p.setIsRelationship(buf.get() != 0);
+            p.setSubproperty((Property)readComponentRef());
+            if (p instanceof DataProperty dp) {
+                dp.setIsAttribute(buf.get() != 0);
+                dp.setIsRefAttribute(buf.get() != 0);
+                dp.setDatatype((Datatype)readComponentRef());
+            }
+            else if (p instanceof ObjectProperty op) {
+                op.setClassType((ClassType)readComponentRef());
+                op.setReferenceCode(readString());
+            }
+        }
+        case ListType lt -> {
+            lt.setItemType((Datatype)readComponentRef());
+            lt.setIsOrdered(buf.get() != 0);
+        }
+        case Restriction r -> {
+            r.setBase((Datatype)readComponentRef());
+            var fct = buf.getInt();
+            for (int i = 0; i < fct; i++) {
+                var f = new Facet();
+                f.setCategory(readString());
+                f.setValue(readString());
+                f.setDocumentation(readLangStrings());
+                r.addFacet(f);
+            }
+            if (buf.get() != 0) 
+                r.setCodeListBinding(new CodeListBinding(readString(), readString(), buf.get() != 0));
+        }
+        case Union u -> {
+            var mct = buf.getInt();
+            for (int i = 0; i < mct; i++) u.addMember((Datatype)readComponentRef());
+        }
+        default -> { }
+        }
+        return inModel;
+    }
+    
+    private PropertyAssociation readAssociation () throws CMFException {
+        var kind = buf.get();
+        var pa   = PA_AUGMENT == kind ? new AugmentRecord() : new PropertyAssociation();
+        pa.setProperty((Property)readComponentRef());
+        pa.setMinOccurs(readString());
+        pa.setMaxOccurs(readString());
+        pa.setDocumentation(readLangStrings());
+        if (pa instanceof AugmentRecord ar) {
+            ar.setClassType((ClassType)readComponentRef());
+            ar.setIndex(readString());
+            for (var code : readStrings()) ar.addCode(code);
+        }
+        return pa;
+    }
+    
+    private Namespace readNamespaceRef () {
+        var i = buf.getInt();
+        return i < 0 ? null : nsA[i];
+    }
+    
+    private Component readComponentRef () {
+        var i = buf.getInt();
+        return i < 0 ? null : compA[i];
+    }
+    
+    private List<LanguageString> readLangStrings () throws CMFException {
+        var ct  = count();
+        var lsL = new ArrayList<LanguageString>(ct);
+        for (int i = 0; i < ct; i++) lsL.add(new LanguageString(readString(), readString()));
+        return lsL;
+    }
+    
+    private List<String> readStrings () throws CMFException {
+        var ct = count();
+        var sL = new ArrayList<String>(ct);
+        for (int i = 0; i < ct; i++) sL.add(readString());
+        return sL;
+    }
+    
+    // Reads a count of items or bytes that follow.  Every item takes at least
+    // one byte, so a count larger than what is left must be corrupt; catch it
+    // before allocating an array for it.
+    private int count () throws CMFException {
+        var n = buf.getInt();
+        if (n < 0 || n > buf.remaining()) 
+            throw new CMFException(String.format("corrupt CMF binary snapshot: count %d with %d bytes left", n, buf.remaining()));
+        return n;
+    }
+    
+    private String readString () {
+        var i = buf.getInt();
+        return i < 0 ? null : strA[i];
+    }
+}
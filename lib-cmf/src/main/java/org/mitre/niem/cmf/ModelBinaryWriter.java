@@ -0,0 +1,355 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.mitre.niem.xml.LanguageString;
+
+/**
+ * A class for writing a Model object as a binary snapshot, which 
+ * ModelBinaryReader can load without any XML parsing.  The snapshot has a
+ * table of all the strings in the model (URIs, names, documentation), 
+ * followed by the Namespace and Component objects, which refer to strings and
+ * to each other by integer index.  Layout:
+ * <pre>
+ *   magic, version
+ *   string count, (UTF-8 byte count, bytes)...
+ *   namespace count, (in-model flag, URI)...
+ *   component count, (kind)...
+ *   namespace bodies, component bodies
+ *   model namespace list, model component map entries
+ * </pre>
+ * Every object reachable from the model is written once, so objects shared 
+ * in the model are shared in the loaded model too.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ModelBinaryWriter {
+    static final Logger LOG = LogManager.getLogger(ModelBinaryWriter.class);
+    
+    static final int MAGIC   = 0x434d4642;      // "CMFB"
+    static final int VERSION = 1;
+    static final int KIND_PROPERTY = 0;         // placeholder Property, not Data or Object
+    static final int PA_PLAIN   = 0;            // PropertyAssociation
+    static final int PA_AUGMENT = 1;            // AugmentRecord
+    
+    public ModelBinaryWriter () { }
+    
+    private final Map<String,Integer> str2index = new HashMap<>();
+    private final List<String> strL = new ArrayList<>();
+    private final Map<Namespace,Integer> ns2index = new IdentityHashMap<>();
+    private final List<Namespace> nsL = new ArrayList<>();
+    private final Map<Component,Integer> comp2index = new IdentityHashMap<>();
+    private final List<Component> compL = new ArrayList<>();
+    
+    /**
+     * Writes a Model object as a binary snapshot to a file.  Returns true on success.
+     * Returns false on failure, with diagnostic messages written to Log4J2.
+     * @param m - Model object
+     * @param f - output file
+     */
+    public boolean writeBinary (Model m, File f) {
+        try (var os = new FileOutputStream(f)) {
+            return writeBinary(m, os);
+        } catch (IOException ex) {
+            LOG.error("{}: i/o error: {}", f.getName(), ex.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Writes a Model object as a binary snapshot to a stream.  Returns true on success.
+     * Returns false on failure, with diagnostic messages written to Log4J2.
+     * @param m - Model object
+     * @param os - OutputStream
+     */
+    public boolean writeBinary (Model m, OutputStream os) {
+        str2index.clear(); strL.clear();
+        ns2index.clear();  nsL.clear();
+        comp2index.clear(); compL.clear();
+        try {
+            collect(m);
+            var bos  = new ByteArrayOutputStream();
+            var body = new DataOutputStream(bos);
+            writeBody(m, body);
+            body.flush();
+            var out = new DataOutputStream(os);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strL.size());
+            for (var s : strL) {
+                var b = s.getBytes(UTF_8);
+                out.writeInt(b.length);
+                out.write(b);
+            }
+            bos.writeTo(out);
+            out.flush();
+        } catch (IOException ex) {
+            LOG.error("i/o error: {}", ex.getMessage());
+            return false;
+        }
+        return true;
+    }
+    
+    // Assign an index to every Namespace and Component object reachable from the model.
+    // References can lead to placeholder components that are not in the model maps.
+    private void collect (Model m) {
+        for (var ns : m.namespaceList()) addNamespace(ns);
+        for (var key : m.componentKeys()) {
+            addComponent(m.uriToComponent(key));
+            addComponent(m.uriToClassType(key));
+            addComponent(m.uriToDataProperty(key));
+            addComponent(m.uriToDatatype(key));
+            addComponent(m.uriToObjectProperty(key));
+            addComponent(m.uriToProperty(key));
+        }
+        int ci = 0;
+        int ni = 0;
+        while (ci < compL.size() || ni < nsL.size()) {
+            while (ci < compL.size()) {
+                var c = compL.get(ci++);
+                addNamespace(c.namespace());
+                switch (c) {
+                case ClassType ct -> {
+                    addComponent(ct.subClassOf());
+                    for (var pa : ct.propL()) addAssociation(pa);
+                }
+                case DataProperty dp -> { addComponent(dp.subPropertyOf()); addComponent(dp.datatype()); }
+                case ObjectProperty op -> { addComponent(op.subPropertyOf()); addComponent(op.classType()); }
+                case Property p -> addComponent(p.subPropertyOf());
+                case ListType lt -> addComponent(lt.itemType());
+                case Restriction r -> addComponent(r.base());
+                case Union u -> { for (var mt : u.memberL()) addComponent(mt); }
+                default -> { }
+                }
+            }
+            while (ni < nsL.size()) 
+                for (var ar : nsL.get(ni++).augL()) addAssociation(ar);
+        }
+    }
+    
+    private void addAssociation (PropertyAssociation pa) {
+        addComponent(pa.property());
+        addComponent(pa.classType());
+    }
+    
+    private void addNamespace (Namespace ns) {
+        if (null == ns || ns2index.containsKey(ns)) return;
+        ns2index.put(ns, nsL.size());
+        nsL.add(ns);
+    }
+    
+    private void addComponent (Component c) {
+        if (null == c || comp2index.containsKey(c)) return;
+        comp2index.put(c, compL.size());
+        compL.add(c);
+    }
+    
+    private void writeBody (Model m, DataOutputStream out) throws IOException {
+        out.writeInt(nsL.size());
+        for (var ns : nsL) {
+            out.writeBoolean(m.nsUToNamespaceObj(ns.uri()) == ns);
+            writeString(out, ns.uri());
+        }
+        out.writeInt(compL.size());
+        for (var c : compL) out.writeByte(c.getType() < 0 ? KIND_PROPERTY : c.getType());
+        for (var ns : nsL) writeNamespace(out, ns);
+        for (var c : compL) writeComponent(out, m, c);
+        
+        var mnsL = m.namespaceList();
+        out.writeInt(mnsL.size());
+        for (var ns : mnsL) out.writeInt(ns2index.get(ns));
+        
+        // One entry for each distinct object under each key in the model maps
+        var entryL = new ArrayList<Object[]>();
+        for (var key : m.componentKeys()) {
+            var objs = new IdentityHashMap<Component,Integer>();
+            objs.merge(m.uriToComponent(key), Model.MAP_COMP, (a,b) -> a|b);
+            if (null != m.uriToClassType(key))      objs.merge(m.uriToClassType(key), Model.MAP_CLASS, (a,b) -> a|b);
+            if (null != m.uriToDataProperty(key))   objs.merge(m.uriToDataProperty(key), Model.MAP_DATAPROP, (a,b) -> a|b);
+            if (null != m.uriToDatatype(key))       objs.merge(m.uriToDatatype(key), Model.MAP_DATATYPE, (a,b) -> a|b);
+            if (null != m.uriToObjectProperty(key)) objs.merge(m.uriToObjectProperty(key), Model.MAP_OBJPROP, (a,b) -> a|b);
+            if (null != m.uriToProperty(key))       objs.merge(m.uriToProperty(key), Model.MAP_PROP, (a,b) -> a|b);
+            objs.forEach((c, flags) -> entryL.add(new Object[]{ key, c, flags }));
+        }
+        out.writeInt(entryL.size());
+        for (var e : entryL) {
+            writeString(out, (String)e[0]);
+            out.writeInt(comp2index.get((Component)e[1]));
+            out.writeByte((Integer)e[2]);
+        }
+    }
+    
+    private void writeNamespace (DataOutputStream out, Namespace ns) throws IOException {
+        writeString(out, ns.prefix());
+        writeString(out, ns.documentFilePath());
+        writeString(out, ns.kindCode());
+        writeString(out, ns.version());
+        writeString(out, ns.archVersion());
+        writeString(out, ns.language());
+        writeLangStrings(out, ns.docL());
+        writeStrings(out, ns.ctargL());
+        out.writeInt(ns.locTermL().size());
+        for (var lt : ns.locTermL()) {
+            writeString(out, lt.term());
+            writeString(out, lt.literal());
+            writeString(out, lt.documentation());
+            writeStrings(out, lt.sourceL());
+            writeLangStrings(out, lt.citationL());
+        }
+        out.writeInt(ns.augL().size());
+        for (var ar : ns.augL()) writeAssociation(out, ar);
+        out.writeInt(ns.idocs().size());
+        for (var me : ns.idocs().entrySet()) {
+            writeString(out, me.getKey());
+            writeLangStrings(out, me.getValue());
+        }
+    }
+    
+    private void writeComponent (DataOutputStream out, Model m, Component c) throws IOException {
+        out.writeBoolean(null != c.model());
+        writeString(out, c.outsideURI());
+        writeNamespaceRef(out, c.namespace());
+        writeString(out, c.name());
+        out.writeBoolean(c.isDeprecated());
+        writeLangStrings(out, c.docL());
+        switch (c) {
+        case ClassType ct -> {
+            out.writeBoolean(ct.isAbstract());
+            writeString(out, ct.referenceCode());
+            writeComponentRef(out, ct.subClassOf());
+            out.writeInt(ct.propL().size());
+            for (var pa : ct.propL()) writeAssociation(out, pa);
+            out.writeInt(ct.anyL().size());
+            for (var ap : ct.anyL()) {
+                writeString(out, ap.minOccurs());
+                writeString(out, ap.maxOccurs());
+                out.writeBoolean(ap.isAttribute());
+                writeString(out, ap.nsConstraint());
+                writeString(out, ap.processCode());
+            }
+        }
+        case Property p -> {
+            out.writeBoolean(p.isAbstract());
+            out.writeBoolean(p.isOrdered());
+            out.writeBoolean(p.isRelationship());
+            writeComponentRef(out, p.subPropertyOf());
+            if (p instanceof DataProperty dp) {
+                out.writeBoolean(dp.isAttribute());
+                out.writeBoolean(dp.isRefAttribute());
+                writeComponentRef(out, dp.datatype());
+            }
+            else if (p instanceof ObjectProperty op) {
+                writeComponentRef(out, op.classType());
+                writeString(out, op.referenceCode());
+            }
+        }
+        case ListType lt -> {
+            writeComponentRef(out, lt.itemType());
+            out.writeBoolean(lt.isOrdered());
+        }
+        case Restriction r -> {
+            writeComponentRef(out, r.base());
+            out.writeInt(r.facetL().size());
+            for (var f : r.facetL()) {
+                writeString(out, f.category());
+                writeString(out, f.value());
+                writeLangStrings(out, f.docL());
+            }
+            var clb = r.codeListBinding();
+            out.writeBoolean(null != clb);
+            if (null != clb) {
+                writeString(out, clb.codeListURI());
+                writeString(out, clb.column());
+                out.writeBoolean(clb.isConstraining());
+            }
+        }
+        case Union u -> {
+            out.writeInt(u.memberL().size());
+            for (var mt : u.memberL()) writeComponentRef(out, mt);
+        }
+        default -> { }
+        }
+    }
+    
+    private void writeAssociation (DataOutputStream out, PropertyAssociation pa) throws IOException {
+        var isAug = pa instanceof AugmentRecord;
+        out.writeByte(isAug ? PA_AUGMENT : PA_PLAIN);
+        writeComponentRef(out, pa.property());
+        writeString(out, pa.minOccurs());
+        writeString(out, pa.maxOccurs());
+        writeLangStrings(out, pa.docL());
+        if (isAug) {
+            writeComponentRef(out, pa.classType());
+            writeString(out, pa.index());
+            writeStrings(out, new ArrayList<>(pa.codeS()));
+        }
+    }
+    
+    private void writeNamespaceRef (DataOutputStream out, Namespace ns) throws IOException {
+        out.writeInt(null == ns ? -1 : ns2index.get(ns));
+    }
+    
+    private void writeComponentRef (DataOutputStream out, Component c) throws IOException {
+        out.writeInt(null == c ? -1 : comp2index.get(c));
+    }
+    
+    private void writeLangStrings (DataOutputStream out, List<LanguageString> lsL) throws IOException {
+        out.writeInt(lsL.size());
+        for (var ls : lsL) {
+            writeString(out, ls.text());
+            writeString(out, ls.lang());
+        }
+    }
+    
+    private void writeStrings (DataOutputStream out, List<String> sL) throws IOException {
+        out.writeInt(sL.size());
+        for (var s : sL) writeString(out, s);
+    }
+    
+    private void writeString (DataOutputStream out, String s) throws IOException {
+        if (null == s) { out.writeInt(-1); return; }
+        var index = str2index.get(s);
+        if (null == index) {
+            index = strL.size();
+            str2index.put(s, index);
+            strL.add(s);
+        }
+        out.writeInt(index);
+    }
+}
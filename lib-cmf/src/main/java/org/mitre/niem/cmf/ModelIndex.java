@@ -0,0 +1,106 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class for the reverse references in a Model object:  the classes that 
+ * use a property, the direct subclasses of a class, the direct subproperties
+ * of a property, and the augmentations of a class.  Keys are component URIs,
+ * so placeholder objects for the same component find the same entries.
+ * Lists are in the same order as the model's component lists.  The index is
+ * a snapshot; Model throws it away when the model changes.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ModelIndex {
+    
+    /**
+     * A property association in a class.
+     */
+    public record PropertyUse (ClassType classType, PropertyAssociation association) { }
+    
+    private final Map<String,List<PropertyUse>> puses    = new HashMap<>();  // property URI -> uses in classes
+    private final Map<String,List<ClassType>> pusers     = new HashMap<>();  // property URI -> classes using it
+    private final Map<String,List<ClassType>> subclasses = new HashMap<>();  // class URI -> direct subclasses
+    private final Map<String,List<Property>> subprops    = new HashMap<>();  // property URI -> direct subproperties
+    private final Map<String,List<AugmentRecord>> augs   = new HashMap<>();  // class URI -> augment records
+    
+    public ModelIndex (Model m) {
+        this(m.classTypeL(), m.propertyL(), m.namespaceList());
+    }
+    
+    ModelIndex (List<ClassType> ctL, List<Property> pL, List<Namespace> nsL) {
+        for (var ct : ctL) {
+            var sub = ct.subClassOf();
+            if (null != sub) add(subclasses, sub.uri(), ct);
+            for (var pa : ct.propL()) {
+                var pU  = pa.property().uri();
+                add(puses, pU, new PropertyUse(ct, pa));
+                var uL = pusers.get(pU);
+                if (null == uL || uL.get(uL.size()-1) != ct) add(pusers, pU, ct);
+            }
+        }
+        for (var p : pL) {
+            var sup = p.subPropertyOf();
+            if (null != sup) add(subprops, sup.uri(), p);
+        }
+        for (var ns : nsL) {
+            for (var ar : ns.augL()) {
+                var ct = ar.classType();
+                if (null != ct) add(augs, ct.uri(), ar);
+            }
+        }
+        seal(puses);
+        seal(pusers);
+        seal(subclasses);
+        seal(subprops);
+        seal(augs);
+    }
+    
+    public List<PropertyUse> propertyUseL (Property p)      { return get(puses, p); }
+    public List<ClassType> propertyUserL (Property p)       { return get(pusers, p); }
+    public List<ClassType> subclassL (ClassType c)          { return get(subclasses, c); }
+    public List<Property> subpropertyL (Property p)         { return get(subprops, p); }
+    public List<AugmentRecord> augmentRecordL (ClassType c) { return get(augs, c); }
+    
+    private static <V> void add (Map<String,List<V>> map, String key, V value) {
+        map.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+    }
+    
+    private static <V> void seal (Map<String,List<V>> map) {
+        map.replaceAll((k, v) -> Collections.unmodifiableList(v));
+    }
+    
+    private static <V> List<V> get (Map<String,List<V>> map, Component c) {
+        if (null == c) return Collections.emptyList();
+        return map.getOrDefault(c.uri(), Collections.emptyList());
+    }
+}
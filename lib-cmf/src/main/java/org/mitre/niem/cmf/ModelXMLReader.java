@@ -25,6 +25,7 @@ package org.mitre.niem.cmf;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +42,7 @@ import static org.mitre.niem.cmf.CMFObject.CMF_NAMESPACE;
 import static org.mitre.niem.cmf.CMFObject.CMF_OBJECTPROP;
 import static org.mitre.niem.cmf.CMFObject.CMF_RESTRICTION;
 import static org.mitre.niem.cmf.CMFObject.CMF_UNION;
+import org.mitre.niem.utility.ParallelMap;
 import static org.mitre.niem.utility.URIfuncs.URIStringToFile;
 import org.mitre.niem.xml.ParserBootstrap;
 import static org.mitre.niem.xsd.NIEMConstants.CMF_NS_URI;
@@ -62,9 +64,31 @@ public class ModelXMLReader {
 
     public ModelXMLReader () { }
     
+    /**
+     * Constructs a reader that parses each CMF file once instead of three times.
+     * The resulting Model object is identical to the one from the three-pass reader.
+     * @param onePass - true for the single-pass reader
+     */
+    public ModelXMLReader (boolean onePass) { this.onePass = onePass; }
+    
+    /**
+     * Sets the number of threads used to parse CMF files in readFiles().  
+     * Parallel parsing is only done by the single-pass reader, so a value 
+     * greater than 1 selects it.  The files are still merged into the Model 
+     * in list order, so the result does not depend on the number of threads.
+     * @param n - number of parser threads
+     */
+    public void setThreads (int n) {
+        threads = Math.max(1, n);
+        if (threads > 1) onePass = true;
+    }
+    
     private Model model;                            // object created from all the CMF input files
     private Map<File,Map<String,CMFObject>> idmaps; // each file has its own @id -> Object map
-    private boolean ok = true;                      // flag to abort readFiles() upon fatal error  
+    private Map<File,List<Fixup>> fixups;           // each file has its own unresolved references
+    private boolean onePass = false;                // parse each file once, then resolve references
+    private int threads = 1;                        // number of parser threads in single-pass mode
+    private volatile boolean ok = true;             // flag to abort readFiles() upon fatal error  
    
     /**
      * Creates a Model object from one or more CMF files in XML format.
@@ -90,6 +114,7 @@ public class ModelXMLReader {
     }
 
     private void execute (List<File> cmfFL) {
+        if (onePass) { executeOnePass(cmfFL); return; }
         // Three phases to creating a Model object from one or more CMF files.
         //   1. Create all the Namespace objects
         //   2. Create all the Component objects
@@ -329,69 +354,7 @@ public class ModelXMLReader {
                 break;  // Done with Component elements
             }
             // Not a namespace or component; create right kind of object for element
-            if (null == obj) switch (eln) {
-                case "AnyPropertyAssociation":   obj = new AnyProperty(); break;
-                case "AugmentationRecord":       obj = new AugmentRecord(); break;
-                case "ChildPropertyAssociation": obj = new PropertyAssociation(); break; 
-                case "CodeListBinding":          obj = new CodeListBinding(); break;
-                case "Facet":                    obj = new Facet(); break;
-                case "ImportDocumentation":      obj = new ImportDoc(); break;
-                case "List":                     obj = new Datatype(); break;
-                case "LocalTerm":                obj = new LocalTerm(); break;
-                case "Model":                    obj = new Model(); break;
-                case "Restriction":              obj = new Restriction(); break;
-                case "Union":                    obj = new Union(); break;
-                
-                case "ListItemDatatype":
-                case "RestrictionBase":
-                case "SubClassOf":
-                case "SubPropertyOf":
-                case "UnionMemberDatatype":
-                    fail("element %s must be a reference, can't have content", eln);
-                    break;
-
-                case "AbstractIndicator":
-                case "ArchitectureVersionName":
-                case "AttributeIndicator":
-                case "AugmentableIndicator":
-                case "AugmentationIndex":
-                case "AugmentedGlobalComponentID":
-                case "CodeListColumnName":
-                case "CodeListConstrainingIndicator":
-                case "CodeListURI":
-                case "ConformanceTargetURI":
-                case "DocumentationText":   
-                case "DeprecatedIndicator":
-                case "DocumentFilePathText":
-                case "ExternalAdapterTypeIndicator":
-                case "FacetCategoryCode":
-                case "FacetValue":
-                case "GlobalClassCode":
-                case "MaxOccursQuantity": 
-                case "MetadataIndicator":
-                case "MinOccursQuantity": 
-                case "Name":        
-                case "NamespaceConstraintText":
-                case "NamespaceCategoryCode":
-                case "NamespaceLanguageName":
-                case "NamespacePrefixText":                    
-                case "NamespaceURI": 
-                case "NamespaceVersionText":   
-                case "OrderedPropertyIndicator":
-                case "ProcessingCode":
-                case "RefAttributeIndicator":
-                case "ReferenceCode":
-                case "RelationshipIndicator":
-                case "SourceCitationText":
-                case "SourceURI":   
-                case "TermLiteralText":
-                case "TermName":
-                case "WhiteSpaceValueCode":
-                    obj = new SimpleContent(eln, lang);
-                    break;
-                default:
-                    fail("%s is not a CMF element", eln);
-            }
+            if (null == obj) obj = newContentObject(eln, lang);
             objStack.push(obj);
         }
         @Override
@@ -409,6 +372,237 @@ public class ModelXMLReader {
         }
     }
 
+
+    // Single-pass mode: each CMF file is parsed once.  Namespace and Component 
+    // objects and all of their content are created as the elements are read.  
+    // Namespace and Component definitions and all reference elements (perhaps 
+    // forward references) are recorded as unresolved placeholders.  These are 
+    // resolved in a fixup phase after all files are read.  The fixup phase follows 
+    // the lookup rules of the three-pass reader, in the same order, so the Model 
+    // object is the same as the one from the three-pass reader.  The parse doesn't
+    // touch the Model, so files can be parsed in parallel.
+    private void executeOnePass (List<File> cmfFL) {
+        ok = true;
+        idmaps = new HashMap<>();
+        fixups = new HashMap<>();
+        for (var f : cmfFL) idmaps.put(f, new HashMap<>());
+        for (var f : cmfFL) fixups.put(f, new ArrayList<>());
+        try {
+            ParallelMap.map(cmfFL, threads, (f) -> {
+                saxParse(f, new OnePassHandler(idmaps.get(f), fixups.get(f)));
+                return f;
+            });
+        } catch (IOException | SAXException | ParserConfigurationException | RuntimeException ex) {
+            LOG.error("Internal error in parser thread: {}", ex.getMessage()); ok = false;
+        }
+        if (!ok) return;
+        try {
+            for (var f : cmfFL) addNamespaces(fixups.get(f));
+            for (var f : cmfFL) addComponents(idmaps.get(f), fixups.get(f));
+            for (var f : cmfFL) resolveReferences(idmaps.get(f), fixups.get(f));
+        } catch (SAXException ex) {
+            LOG.error(ex.getMessage()); ok = false;     // already formatted by fixupFail()
+        }
+    }
+    
+    private class OnePassHandler extends CMFHandler {
+        private final List<Fixup> fixL;
+        
+        private OnePassHandler (Map<String,CMFObject> id2obj, List<Fixup> fixL) { 
+            super(id2obj); 
+            this.fixL = fixL;
+        }
+        
+        @Override
+        public void startElement(String ens, String eln, String eQN, Attributes atts) throws SAXException {
+            if (!CMF_NS_URI.equals(ens)) fail("%s is not a CMF element", eQN);
+            super.startElement(ens, eln, eQN, atts);
+            CMFObject obj = null;
+            switch (eln) {
+            case "Model":               obj = model; break;
+            case "Namespace":           obj = new Namespace(); break;
+            case "Class":               obj = new ClassType(); break;
+            case "DataProperty":        obj = new DataProperty(); break;
+            case "Datatype":            obj = new Datatype(); break;
+            case "List":                obj = new ListType(); break;
+            case "ObjectProperty":      obj = new ObjectProperty(); break;
+            case "Restriction":         obj = new Restriction(); break;
+            case "Union":               obj = new Union(); break;
+            case "ListItemDatatype":
+            case "RestrictionBase":
+            case "SubClassOf":
+            case "SubPropertyOf":
+            case "UnionMemberDatatype":
+                break;                  // always a reference; resolved in fixup phase
+            default:
+                obj = newContentObject(eln, langS.peek());
+            }
+            objStack.push(obj);
+        }
+        @Override
+        public void endElement (String ens, String eln, String eQN) throws SAXException {
+            var child  = objStack.pop();
+            var parent = objStack.peek();
+            var locstr = locSS.peek();
+            var lang   = langS.peek();
+            var sval   = charS.peek().toString();
+            var sa     = strAS.peek();
+            var id     = sa.id();
+            var uri    = sa.uri();
+            if (null == id && null != uri && uri.startsWith("#")) id = uri.substring(1);
+            switch (eln) {
+            case "Namespace":
+                // Namespace definitions are added to the model in fixup phase
+                var ns = (Namespace)child;
+                if (ns.uri().isBlank()) {
+                    fixL.add(new Fixup(parent, null, eln, locstr, lang, sa));
+                    child = null;
+                }
+                else if (null != id) id2obj.put(id, child);
+                else if (null != uri && !uri.startsWith("#") && !uri.equals(child.uri())) 
+                    fail("wrong @uri for Namespace object");
+                if (null != child) fixL.add(new Fixup(parent, child, eln, locstr, lang, sa));
+                child = null;
+                break;
+            case "Class":
+            case "DataProperty":
+            case "Datatype":
+            case "List":
+            case "ObjectProperty":
+            case "Restriction":
+            case "Union":
+                // Component definitions are added to the model in fixup phase, 
+                // once the Namespace reference is resolved
+                var comp = (Component)child;
+                if (comp.name().isEmpty()) child = null;
+                else if (null != id) id2obj.put(id, child);
+                fixL.add(new Fixup(parent, child, eln, locstr, lang, sa));
+                child = null;
+                break;
+            case "ListItemDatatype":
+            case "RestrictionBase":
+            case "SubClassOf":
+            case "SubPropertyOf":
+            case "UnionMemberDatatype":
+                fixL.add(new Fixup(parent, null, eln, locstr, lang, sa));
+                break;
+            }
+            if (null != child) {
+                child.setContent(sval);
+                if (null != parent) parent.addChild(eln, locstr, child);
+            }
+            super.endElement(ens, eln, eQN);
+        }
+    }
+    
+    // First fixup step: add the Namespace definitions to the model.  Same as the first pass.
+    private void addNamespaces (List<Fixup> fixL) throws SAXException {
+        for (var f : fixL) {
+            if (!"Namespace".equals(f.eln()) || null == f.obj()) continue;
+            f.obj().addToModel(f.eln(), f.sa().uri(), model);
+            if (null != f.parent()) f.parent().addChild(f.eln(), f.locstr(), f.obj());
+        }
+    }
+    
+    // Second fixup step: resolve the Namespace reference in each Component definition,
+    // then add the Component to the model.  Same rules as the second pass.
+    private void addComponents (Map<String,CMFObject> id2obj, List<Fixup> fixL) throws SAXException {
+        for (var f : fixL) {
+            var id  = f.sa().id();
+            var ref = f.sa().ref();
+            var uri = f.sa().uri();
+            if ("Namespace".equals(f.eln())) {
+                if (null != f.obj()) continue;
+                CMFObject obj = null;
+                if (null == id && null != ref) id = ref;
+                if (null == id && null != uri && uri.startsWith("#")) id = uri.substring(1);
+                if (null != id) obj = id2obj.get(id);
+                if (null == obj && null != uri && !uri.startsWith("#")) obj = model.nsUToNamespaceObj(uri);
+                if (null == obj) fixupFail(f, "No object for this Namespace reference");
+                if (CMF_NAMESPACE != obj.getType()) fixupFail(f, "reference %s is not a Namespace object", id);
+                if (f.parent() instanceof Component) f.parent().addChild(f.eln(), f.locstr(), obj);
+            }
+            else if (null != f.obj()) {
+                var comp = (Component)f.obj();
+                if (null != uri && !uri.startsWith("#") && !uri.equals(comp.uri()))
+                    fixupFail(f, "wrong @uri for this Component (should be %s)", comp.uri());
+                comp.addToModel(f.eln(), uri, model);
+            }
+        }
+    }
+    
+    // Third fixup step: resolve all references, in document order, creating
+    // placeholders for outside components.  Same rules as the third pass.
+    private void resolveReferences (Map<String,CMFObject> id2obj, List<Fixup> fixL) throws SAXException {
+        for (var f : fixL) {
+            var eln = f.eln();
+            var id  = f.sa().id();
+            var ref = f.sa().ref();
+            var uri = f.sa().uri();
+            var obj = f.obj();
+            if (null == id && null != uri && uri.startsWith("#")) id = uri.substring(1);
+            if ("Namespace".equals(eln)) {
+                if (null != obj) continue;
+                if (null != id) obj = id2obj.get(id);
+                if (null == obj && null != ref) obj = model.prefixToNamespaceObj(ref);
+                if (null == obj && null != uri && !uri.startsWith("#")) obj = model.prefixToNamespaceObj(uri);
+                if (null == obj) fixupFail(f, "No namespace object for this reference");
+                if (CMF_NAMESPACE != obj.getType()) fixupFail(f, "reference %s is not a Namespace", id);
+            }
+            // Component definition with absolute @uri becomes an outside component
+            else if (null != obj) {
+                if (null == id && null == uri) fixupFail(f, "No component object for this reference");
+                if (null == id) {
+                    ((Component)obj).setOutsideURI(uri);
+                    model.addChild(eln, f.lang(), obj);
+                }
+            }
+            else {
+                if (null != id) obj = id2obj.get(id);
+                if (null == obj && null != ref) obj = id2obj.get(ref);
+                if (null == obj && (null == uri || uri.startsWith("#"))) fixupFail(f, "No component object for this reference");
+                // Create placeholder for outside component
+                if (null == obj) {
+                    switch (eln) {
+                    case "Class":               obj = new ClassType(uri); break;
+                    case "DataProperty":        obj = new DataProperty(uri); break;
+                    case "Datatype":            obj = new Datatype(uri); break;
+                    case "List":                obj = new ListType(uri); break;
+                    case "ListItemDatatype":    obj = new Datatype(uri); break;
+                    case "ObjectProperty":      obj = new ObjectProperty(uri); break;
+                    case "Restriction":         obj = new Restriction(uri); break;
+                    case "RestrictionBase":     obj = new Datatype(uri); break;
+                    case "SubClassOf":          obj = new ClassType(uri); break;
+                    case "SubPropertyOf":       obj = new Property(uri); break;
+                    case "Union":               obj = new Union(uri); break;
+                    case "UnionMemberDatatype": obj = new Datatype(uri); break;
+                    }
+                    model.addChild(eln, f.lang(), obj);
+                }
+                // Check whether object reference is the right kind of component
+                else switch (eln) {
+                    case "Class":               if (CMF_CLASS != obj.getType()) fixupFail(f, "reference %s is not a Class", id); break;
+                    case "DataProperty":        if (CMF_DATAPROP != obj.getType()) fixupFail(f, "reference %s is not a DataProperty", id); break;
+                    case "Datatype":            if (!obj.isDatatype()) fixupFail(f, "reference %s is not a Datatype", id); break;
+                    case "List":                if (CMF_LIST != obj.getType()) fixupFail(f, "reference %s is not a List", id); break;
+                    case "ListItemDatatype":    if (!obj.isDatatype()) fixupFail(f, "reference %s is not a Datatype", id); break;
+                    case "ObjectProperty":      if (CMF_OBJECTPROP != obj.getType()) fixupFail(f, "reference %s is not an ObjectProperty", id); break;
+                    case "Restriction":         if (CMF_RESTRICTION != obj.getType()) fixupFail(f, "reference %s is not a Restriction", id); break;
+                    case "RestrictionBase":     if (!obj.isDatatype()) fixupFail(f, "reference %s is not a Datatype", id); break;
+                    case "SubClassOf":          if (CMF_CLASS != obj.getType()) fixupFail(f, "reference %s is not a Class", id); break;
+                    case "SubPropertyOf":       if (!obj.isProperty()) fixupFail(f, "reference %s is not a Property object", id); break;
+                    case "Union":               if (CMF_UNION != obj.getType()) fixupFail(f, "reference %s is not a Union", id); break;
+                    case "UnionMemberDatatype": if (!obj.isDatatype()) fixupFail(f, "reference %s is not a Datatype", id); break;
+                }
+            }
+            if (null != f.parent()) f.parent().addChild(eln, f.locstr(), obj);
+        }
+    }
+    
+    private static void fixupFail (Fixup f, String fmt, Object... args) throws SAXException {
+        var msg = String.format(fmt, args);
+        throw new SAXException(String.format("%s: %s", f.locstr(), msg));
+    }
     
     private void saxParse (File cmfF, CMFHandler h) {
         try {
@@ -491,6 +685,74 @@ public class ModelXMLReader {
             var msg = String.format("%s:%s: %s: %s", fn, loc.getLineNumber(), kind, ex.getLocalizedMessage());
             return msg;
         }
+        // Creates the object for an element that is not a Namespace or Component
+        protected CMFObject newContentObject (String eln, String lang) throws SAXException {
+            CMFObject obj = null;
+            switch (eln) {
+            case "AnyPropertyAssociation":   obj = new AnyProperty(); break;
+            case "AugmentationRecord":       obj = new AugmentRecord(); break;
+            case "ChildPropertyAssociation": obj = new PropertyAssociation(); break; 
+            case "CodeListBinding":          obj = new CodeListBinding(); break;
+            case "Facet":                    obj = new Facet(); break;
+            case "ImportDocumentation":      obj = new ImportDoc(); break;
+            case "List":                     obj = new Datatype(); break;
+            case "LocalTerm":                obj = new LocalTerm(); break;
+            case "Model":                    obj = new Model(); break;
+            case "Restriction":              obj = new Restriction(); break;
+            case "Union":                    obj = new Union(); break;
+            
+            case "ListItemDatatype":
+            case "RestrictionBase":
+            case "SubClassOf":
+            case "SubPropertyOf":
+            case "UnionMemberDatatype":
+                fail("element %s must be a reference, can't have content", eln);
+                break;
+
+            case "AbstractIndicator":
+            case "ArchitectureVersionName":
+            case "AttributeIndicator":
+            case "AugmentableIndicator":
+            case "AugmentationIndex":
+            case "AugmentedGlobalComponentID":
+            case "CodeListColumnName":
+            case "CodeListConstrainingIndicator":
+            case "CodeListURI":
+            case "ConformanceTargetURI":
+            case "DocumentationText":   
+            case "DeprecatedIndicator":
+            case "DocumentFilePathText":
+            case "ExternalAdapterTypeIndicator":
+            case "FacetCategoryCode":
+            case "FacetValue":
+            case "GlobalClassCode":
+            case "MaxOccursQuantity": 
+            case "MetadataIndicator":
+            case "MinOccursQuantity": 
+            case "Name":        
+            case "NamespaceConstraintText":
+            case "NamespaceCategoryCode":
+            case "NamespaceLanguageName":
+            case "NamespacePrefixText":                    
+            case "NamespaceURI": 
+            case "NamespaceVersionText":   
+            case "OrderedPropertyIndicator":
+            case "ProcessingCode":
+            case "RefAttributeIndicator":
+            case "ReferenceCode":
+            case "RelationshipIndicator":
+            case "SourceCitationText":
+            case "SourceURI":   
+            case "TermLiteralText":
+            case "TermName":
+            case "WhiteSpaceValueCode":
+                obj = new SimpleContent(eln, lang);
+                break;
+            default:
+                fail("%s is not a CMF element", eln);
+            }
+            return obj;
+        }
         protected void fail (String fmt, Object... args) throws SAXException {
             var sysid = loc.getSystemId();
             var line  = loc.getLineNumber();
@@ -501,5 +763,9 @@ public class ModelXMLReader {
         }    
     }
     private record StructuresAtt (String id, String ref, String uri) { }
+    
+    // An unresolved reference (obj is null) or a Namespace or Component definition,
+    // recorded by the single-pass handler
+    private record Fixup (CMFObject parent, CMFObject obj, String eln, String locstr, String lang, StructuresAtt sa) { }
         
 }
@@ -0,0 +1,456 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import static javax.xml.XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI;
+import static javax.xml.XMLConstants.XML_NS_URI;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.mitre.niem.xml.LanguageString;
+import static org.mitre.niem.xsd.NIEMConstants.CMF_NS_URI;
+import static org.mitre.niem.xsd.NIEMConstants.CMF_STRUCTURES_NS_URI;
+import org.mitre.niem.xsd.NamespaceKind;
+import static org.mitre.niem.xsd.NamespaceKind.NSK_XML;
+
+/**
+ * A class for writing a Model object to a CMF file in XML format, without
+ * building a DOM.  Components are written to an XMLStreamWriter as they are
+ * visited, so memory use does not grow with the size of the model.  The 
+ * output is the same, byte for byte, as from ModelXMLWriter: same element 
+ * order, same indenting, and the same layout of the root element.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ModelXMLStreamWriter {
+    static final Logger LOG = LogManager.getLogger(ModelXMLStreamWriter.class);  
+    
+    private static final String ROOT_START = 
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<Model \n"
+        + "  xmlns=\"" + CMF_NS_URI + "\"\n"
+        + "  xmlns:cmf=\"" + CMF_NS_URI + "\"\n"
+        + "  xmlns:structures=\"" + CMF_STRUCTURES_NS_URI + "\"\n"
+        + "  xmlns:xsi=\"" + W3C_XML_SCHEMA_INSTANCE_NS_URI + "\"\n"
+        + "  xml:lang=\"en-US\">\n";
+    
+    private XMLStreamWriter xw = null;
+    private Set<Namespace> nsS = null;
+    private final ArrayDeque<Start> pending = new ArrayDeque<>(); // start tags not yet written
+    private int depth = 1;                                          // of the next child element
+    private boolean newline = false;                                // begin next element on a new line?
+    
+    private record Start (String eln, String[] atts) { }
+    
+    public ModelXMLStreamWriter () { }
+    
+    /**
+     * Write a Model object as CMF-XML to a stream.  Returns true on success.  
+     * Returns false on failure, with diagnostic messages written to Log4J2.
+     * @param m - Model object
+     * @param w - output writer
+     */
+    public boolean writeXML (Model m, Writer w) {
+        return writeXML(m, m.namespaceSet(), w);
+    }
+    
+    /**
+     * Writes components from a specified set of namespaces as CMF-XML to a stream.
+     * Returns false on failure, with diagnostic messages written to Log4J2.
+     * @param m - Model object
+     * @param nsparam - set of namespace URIs or prefix strings
+     * @param w  - output writer
+     */
+    public boolean writeXML (Model m, List<String> nsparam, Writer w) {
+        var nsS = ModelXMLWriter.namespaceSet(m, nsparam);
+        if (null == nsS) return false;
+        return writeXML(m, nsS, w);
+    }
+    
+    // The root start tag is written straight to the output, because an
+    // XMLStreamWriter can't put its attributes on separate lines.
+    private boolean writeXML (Model m, Set<Namespace>nsS, Writer w) {
+        this.nsS = nsS;
+        depth    = 1;
+        newline  = false;
+        pending.clear();
+        try {
+            w.write(ROOT_START);
+            xw = XMLOutputFactory.newDefaultFactory().createXMLStreamWriter(w);
+            for (var n : m.namespaceList()) writeNamespace(n);
+            for (var c : m.componentList()) if (c.isProperty())     writeComponent(c);
+            for (var c : m.componentList()) if (c.isClassType())    writeComponent(c);
+            for (var c : m.componentList()) if (c.isDatatype())     writeComponent(c);
+            xw.flush();
+            if (newline) w.write("\n");
+            w.write("</Model>\n");
+        } catch (XMLStreamException ex) {
+            LOG.error("XML stream error: {}", ex.getMessage());
+            return false;
+        } catch (IOException ex) {
+            LOG.error("i/o error: {}", ex.getMessage());
+            return false;
+        } finally {
+            xw = null;
+            this.nsS = null;
+        }
+        return true;
+    }
+    
+    private void writeNamespace (Namespace x) throws XMLStreamException {
+        if (null == x) return;
+        if (!nsS.contains(x)) return;
+        start("Namespace", "structures:id", x.prefix());
+        writeSimpleChild("NamespaceURI", x.uri());
+        writeSimpleChild("NamespacePrefixText", x.prefix());
+        if (NSK_XML != NamespaceKind.namespaceToKind(x.uri()))
+            for (var dls : x.docL()) writeDocumentation(dls);
+        for (var cta : x.ctargL()) writeSimpleChild("ConformanceTargetURI", cta);
+        writeSimpleChild("DocumentFilePathText", x.documentFilePath());
+        writeSimpleChild("NamespaceCategoryCode", x.kindCode());
+        writeSimpleChild("NamespaceVersionText", x.version());
+        writeSimpleChild("ArchitectureVersionName", x.archVersion());
+        writeSimpleChild("NamespaceLanguageName", x.language());
+        writeImportDocs(x);
+        var augL = new ArrayList<>(x.augL());
+        var locL = new ArrayList<>(x.locTermL());
+        Collections.sort(augL);
+        Collections.sort(locL);
+        for (AugmentRecord z : augL) writeAugmentRecord(z);
+        for (LocalTerm z : locL) writeLocalTerm(z);
+        end();
+    }
+    
+    private void writeComponent (Component x) throws XMLStreamException {
+        if (null == x) return;
+        if (x.isOutsideRef()) return;
+        if (!nsS.contains(x.namespace())) return;
+        start(x.cmfElement(), "structures:id", x.idRef());
+        writeSimpleChild("Name", x.name());
+        writeNamespaceReference(x.namespace());
+        for (var dls : x.docL()) writeDocumentation(dls);
+        writeOptionalIndicator("DeprecatedIndicator", x.isDeprecated());
+        switch (x) {
+        case ClassType ct -> writeClassTypeChildren(ct);
+        case Property p -> {
+            writePropertyChildren(p);
+            if (p instanceof DataProperty dp) writeDataPropertyChildren(dp);
+            else if (p instanceof ObjectProperty op) writeObjectPropertyChildren(op);
+        }
+        case ListType lt -> writeListTypeChildren(lt);
+        case Restriction r -> writeRestrictionChildren(r);
+        case Union u -> writeUnionChildren(u);
+        default -> { }
+        }
+        end();
+    }
+    
+    private void writeClassTypeChildren (ClassType x) throws XMLStreamException {
+        writeOptionalIndicator("AbstractIndicator", x.isAbstract());
+        writeComponentReference("SubClassOf", x.subClassOf());
+        writeSimpleChild("ReferenceCode", x.referenceCode());
+        for (var cpa : x.propL()) writePropertyAssociation(cpa);
+        for (var ap : x.anyL()) writeAnyProperty(ap);
+    }
+    
+    private void writeDataPropertyChildren (DataProperty x) throws XMLStreamException {
+        writeComponentReference("Datatype", x.datatype());
+        writeOptionalIndicator("AttributeIndicator", x.isAttribute());
+        writeOptionalIndicator("RefAttributeIndicator", x.isRefAttribute());
+    }
+    
+    private void writeListTypeChildren (ListType x) throws XMLStreamException {
+        writeComponentReference("ListItemDatatype", x.itemType());
+        writeOptionalIndicator("OrderedPropertyIndicator", x.isOrdered());
+    }
+    
+    private void writeObjectPropertyChildren (ObjectProperty x) throws XMLStreamException {
+        writeSimpleChild("ReferenceCode", x.referenceCode());
+        writeComponentReference("Class", x.classType());
+    }
+    
+    private void writePropertyChildren (Property x) throws XMLStreamException {
+        writeOptionalIndicator("AbstractIndicator", x.isAbstract());
+        writeComponentReference("SubPropertyOf", x.subPropertyOf());
+        writeOptionalIndicator("RelationshipIndicator", x.isRelationship());
+        writeOptionalIndicator("OrderedPropertyIndicator", x.isOrdered());
+    }
+    
+    private void writeRestrictionChildren (Restriction x) throws XMLStreamException {
+        writeComponentReference("RestrictionBase", x.base());
+        for (var f : x.facetL()) writeFacet(f);
+        writeCodeListBinding(x.codeListBinding());
+    }
+    
+    private void writeUnionChildren (Union x) throws XMLStreamException {
+        for (var mt : x.memberL()) writeComponentReference("UnionMemberDatatype", mt);
+    }
+    
+    private void writeAnyProperty (AnyProperty x) throws XMLStreamException {
+        if (null == x) return;
+        start("AnyPropertyAssociation");
+        writeSimpleChild("MinOccursQuantity", x.minOccurs());
+        writeSimpleChild("MaxOccursQuantity", x.maxOccurs());
+        writeOptionalIndicator("AttributeIndicator", x.isAttribute());
+        writeSimpleChild("NamespaceConstraintText", x.nsConstraint());
+        writeSimpleChild("ProcessingCode", x.processCode());
+        end();
+    }
+    
+    private void writeAugmentRecord (AugmentRecord x) throws XMLStreamException {
+        if (null == x) return;
+        start("AugmentationRecord");
+        writeComponentReference(x.classType());
+        writeComponentReference(x.property());
+        writeSimpleChild("MinOccursQuantity", x.minOccurs());
+        writeSimpleChild("MaxOccursQuantity", x.maxOccurs());
+        writeSimpleChild("AugmentationIndex", x.index());
+        var gccL = new ArrayList<>(x.codeS());
+        Collections.sort(gccL);
+        for (var code : gccL) writeSimpleChild("GlobalClassCode", code);
+        end();
+    }
+    
+    private void writeCodeListBinding (CodeListBinding x) throws XMLStreamException {
+        if (null == x) return;
+        start("CodeListBinding");
+        writeSimpleChild("CodeListURI", x.codeListURI());
+        writeSimpleChild("CodeListColumnName", x.column());
+        writeOptionalIndicator("CodeListConstrainingIndicator", x.isConstraining());
+        end();
+    }
+    
+    private void writeComponentReference (Component x) throws XMLStreamException {
+        if (null == x) return;
+        writeComponentReference(x.cmfElement(), x);
+    }
+    
+    private void writeComponentReference (String eln, Component x) throws XMLStreamException {
+        if (null == x) return;
+        if (!x.outsideURI().isEmpty() || !nsS.contains(x.namespace())) 
+            writeLeaf(eln, null, "structures:uri", x.uri(), "xsi:nil", "true");
+        else
+            writeLeaf(eln, null, "structures:ref", x.idRef(), "xsi:nil", "true");
+    }
+    
+    private void writeDocumentation (LanguageString x) throws XMLStreamException {
+        if (null == x) return;
+        writeLanguageString("DocumentationText", x);
+    }
+    
+    private void writeFacet (Facet x) throws XMLStreamException {
+        if (null == x) return;
+        start("Facet");
+        writeSimpleChild("FacetCategoryCode", x.category());
+        writePerhapsEmptySimpleChild("FacetValue", x.value());
+        for (var d : x.docL()) writeDocumentation(d);
+        end();
+    }
+    
+    private void writeImportDocs (Namespace x) throws XMLStreamException {
+        if (null == x) return;
+        for (var me : x.idocs().entrySet()) {
+            start("ImportDocumentation");
+            writeSimpleChild("NamespaceURI", me.getKey());
+            for (var ls : me.getValue()) writeLanguageString("DocumentationText", ls);
+            end();
+        }
+    }
+    
+    private void writeLanguageString (String eln, LanguageString x) throws XMLStreamException {
+        if (null == x) return;
+        if ("en-US".equals(x.lang())) writeLeaf(eln, x.text());
+        else writeLeaf(eln, x.text(), "xml:lang", null == x.lang() ? "" : x.lang());
+    }
+    
+    private void writeLocalTerm (LocalTerm x) throws XMLStreamException {
+        if (null == x) return;
+        start("LocalTerm");
+        writeSimpleChild("TermName", x.term());
+        writeSimpleChild("DocumentationText", x.documentation());
+        writeSimpleChild("TermLiteralText", x.literal());
+        for (var suri : x.sourceL())  writeSimpleChild("SourceURI", suri);
+        for (var cit : x.citationL()) writeLanguageString("SourceCitationText", cit);
+        end();
+    }
+
+    private void writeNamespaceReference (Namespace x) throws XMLStreamException {
+        if (null == x) return;
+        if (x.prefix().isEmpty()) return;
+        writeLeaf("Namespace", null, "structures:ref", x.prefix(), "xsi:nil", "true");
+    }
+    
+    private void writePropertyAssociation (PropertyAssociation x) throws XMLStreamException {
+        if (null == x) return;
+        start("ChildPropertyAssociation");
+        writeComponentReference(x.property());
+        writeSimpleChild("MinOccursQuantity", x.minOccurs());
+        writeSimpleChild("MaxOccursQuantity", x.maxOccurs());
+        for (var dls : x.docL()) writeDocumentation(dls);
+        end();
+    }
+    
+    private void writePerhapsEmptySimpleChild (String eln, String value) throws XMLStreamException {
+        if (null == value) return;
+        writeLeaf(eln, value);
+    }
+    
+    private void writeSimpleChild (String eln, String value) throws XMLStreamException {
+        if (null == value) return;
+        if (value.isEmpty()) return;
+        writePerhapsEmptySimpleChild(eln, value);
+    }
+    
+    private void writeOptionalIndicator (String eln, boolean value) throws XMLStreamException {
+        if (value) writeSimpleChild(eln, "true");
+    }
+    
+    // Starts an element that may have element children.  Attributes are
+    // given as name, value pairs, in alphabetical order by name.  The start
+    // tag waits until the first child, so an element without any is <empty/>.
+    private void start (String eln, String... atts) throws XMLStreamException {
+        writePending();
+        pending.push(new Start(eln, atts));
+    }
+    
+    private void end () throws XMLStreamException {
+        if (!pending.isEmpty()) {
+            var s = pending.pop();
+            writeLeaf(s.eln(), null, s.atts());
+            return;
+        }
+        depth--;
+        indent();
+        xw.writeEndElement();
+    }
+    
+    private void writePending () throws XMLStreamException {
+        for (var it = pending.descendingIterator(); it.hasNext(); ) {
+            var s = it.next();
+            indent();
+            xw.writeStartElement(s.eln());
+            writeAttributes(s.atts());
+            depth++;
+        }
+        pending.clear();
+    }
+    
+    // Writes an element with no children, or only text
+    private void writeLeaf (String eln, String text, String... atts) throws XMLStreamException {
+        writePending();
+        indent();
+        if (null == text || text.isEmpty()) {
+            xw.writeEmptyElement(eln);
+            writeAttributes(atts);
+        }
+        else {
+            xw.writeStartElement(eln);
+            writeAttributes(atts);
+            writeText(text);
+            xw.writeEndElement();
+        }
+    }
+    
+    private void writeAttributes (String[] atts) throws XMLStreamException {
+        for (int i = 0; i < atts.length; i += 2) {
+            var qn = atts[i];
+            var value = atts[i+1];
+            var ci = qn.indexOf(':');
+            var prefix = qn.substring(0, ci);
+            var uri = switch (prefix) {
+                case "structures" -> CMF_STRUCTURES_NS_URI;
+                case "xsi"        -> W3C_XML_SCHEMA_INSTANCE_NS_URI;
+                default           -> XML_NS_URI;
+            };
+            xw.writeAttribute(prefix, uri, qn.substring(ci+1), value);
+        }
+    }
+    
+    private void indent () throws XMLStreamException {
+        if (newline) xw.writeCharacters("\n");
+        xw.writeCharacters("  ".repeat(depth));
+        newline = true;
+    }
+    
+    // Text is escaped as by XMLWriter: markup characters, control characters,
+    // and each half of a surrogate pair become references.  XMLWriter drops
+    // blank lines, so blank lines inside the text are dropped here too.
+    private void writeText (String s) throws XMLStreamException {
+        int lnStart = 0;
+        boolean first = true;
+        while (lnStart <= s.length()) {
+            var nl = s.indexOf('\n', lnStart);
+            var lnEnd = nl < 0 ? s.length() : nl;
+            var last = nl < 0;
+            if (first || last || !isBlank(s, lnStart, lnEnd)) {
+                if (!first) xw.writeCharacters("\n");
+                writeEscaped(s, lnStart, lnEnd);
+            }
+            first = false;
+            lnStart = lnEnd + 1;
+        }
+    }
+    
+    private void writeEscaped (String s, int from, int to) throws XMLStreamException {
+        int clean = from;
+        for (int i = from; i < to; i++) {
+            var c = s.charAt(i);
+            String ref = null;
+            switch (c) {
+                case '<':  ref = "lt"; break;
+                case '>':  ref = "gt"; break;
+                case '&':  ref = "amp"; break;
+                case '\t': break;
+                default:  
+                    if (c < 0x20 || (c >= 0x7F && c <= 0x9F) || c == 0x2028 || Character.isSurrogate(c))
+                        ref = "#" + (int)c;
+            }
+            if (null == ref) continue;
+            if (i > clean) xw.writeCharacters(s.substring(clean, i));
+            xw.writeEntityRef(ref);
+            clean = i + 1;
+        }
+        if (to > clean) xw.writeCharacters(s.substring(clean, to));
+    }
+    
+    // True if the line will be blank once written; escaped characters aren't.
+    private static boolean isBlank (String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            var c = s.charAt(i);
+            if (' ' == c || '\t' == c) continue;
+            if (c <= 0x9F || c == 0x2028 || Character.isSurrogate(c) || !Character.isWhitespace(c)) return false;
+        }
+        return true;
+    }
+}
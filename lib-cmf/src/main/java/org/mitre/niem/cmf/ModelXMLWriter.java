@@ -74,6 +74,14 @@ public class ModelXMLWriter {
      * @param os  - output stream
      */
     public boolean writeXML (Model m, List<String> nsparam, Writer w) {
+        var nsS = namespaceSet(m, nsparam);
+        if (null == nsS) return false;
+        return writeXML(m, nsS, w);
+    }
+    
+    // Returns the set of namespace objects for a list of URIs and prefixes,
+    // or null if any is not in the model
+    static Set<Namespace> namespaceSet (Model m, List<String> nsparam) {
         var nsS = new HashSet<Namespace>();
         for (var s : nsparam) {
             Namespace ns = null;
@@ -81,11 +89,11 @@ public class ModelXMLWriter {
             else ns = m.prefixToNamespaceObj(s);
             if (null ==  ns) {
                 LOG.error("{}: no such namespace in model", s);
-                return false;
+                return null;
             }
             nsS.add(ns);
         }
-        return writeXML(m, nsS, w);
+        return nsS;
     }
     
     private boolean writeXML (Model m, Set<Namespace>nsS, Writer w) {
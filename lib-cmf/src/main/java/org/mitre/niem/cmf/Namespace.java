@@ -147,7 +147,17 @@ public class Namespace extends CMFObject implements Comparable<Namespace> {
         for (var ct : ctL) addConformanceTarget(ct);
     }
     public void addLocalTerm (LocalTerm lt)     { locTermL.add(lt); }
-    public void addAugmentRecord (AugmentRecord a) { augL.add(a); }
+    public void addAugmentRecord (AugmentRecord a) { 
+        augL.add(a); 
+        a.setNamespace(this);
+        referenceChange();
+    }
+    
+    // Notify the model object that a reference from this namespace's
+    // augmentation records has changed.
+    void referenceChange () {
+        if (null != model) model.referenceUpdate();
+    }
     
     
     // Following routines ensure each namespace prefix maps to at most one URI.
@@ -66,7 +66,7 @@ public class Property extends Component {
     public void setIsAbstract (boolean f)       { isAbstract = f; }
     public void setIsOrdered (boolean f)        { isOrdered = f; }
     public void setIsRelationship (boolean f)   { isRelationship = f; }
-    public void setSubproperty (Property p)     { subprop = p; }
+    public void setSubproperty (Property p)     { subprop = p; referenceChange(); }
     
     @Override
     public boolean addChild (String eln, String loc, CMFObject child) throws CMFException {
@@ -42,6 +42,7 @@ public class PropertyAssociation extends CMFObject implements Comparable<Propert
     private String minOccurs = "1";                                 // cmf:MinOccursQuantity
     private String maxOccurs = "1";                                 // cmf:MaxOccursQuantity
     private final List<LanguageString> docL = new ArrayList<>();    // cmf:DocumentationText
+    private ClassType owner = null;                                 // class containing this association
     
     public Property property ()         { return property; }
     public String minOccurs ()          { return minOccurs; }
@@ -58,7 +59,7 @@ public class PropertyAssociation extends CMFObject implements Comparable<Propert
     public String index ()              { return ""; }
     public Set<String> codeS ()         { return Set.of(); }    
     
-    public void setProperty (Property p)    { property = p; }
+    public void setProperty (Property p)    { property = p; referenceChange(); }
     public void setMinOccurs (String s)     { minOccurs = s; }
     public void setMaxOccurs (String s)     { maxOccurs = s; }
     
@@ -70,6 +71,14 @@ public class PropertyAssociation extends CMFObject implements Comparable<Propert
         docL.addAll(dL);
     }   
     
+    void setOwner (ClassType ct)            { owner = ct; }
+    
+    // Notify the model object that a reference from this association 
+    // to a component has changed.
+    void referenceChange () {
+        if (null != owner) owner.referenceChange();
+    }
+    
     public int stringToInt (String s) {
         int res = 0;
         try { res = Integer.parseInt(s); }
@@ -75,21 +75,12 @@ public class JSONProperty {
       propsToCheck.add(property);
     }
 
+    // Look up the classes with this property in the model index
+    // and grab each min/max
     for (var prop : propsToCheck) {
-      var searchName = prop.name();
-
-      // Look through the components for a class with this property
-      // if you find one, grab its min/max
-      for (var cl : prop.model().classTypeL()) {
-
-        // Skip any non-class components
-        var propsList = cl.propL();
-        for (var p : propsList) {
-          if (p.property().name().equals(searchName)) {
-            Cardinality c = new Cardinality(prop, p);
-            cardinalities.put(cl.name(), c);
-          }
-        }
+      for (var use : property.model().propertyUseL(prop)) {
+        Cardinality c = new Cardinality(prop, use.association());
+        cardinalities.put(use.classType().name(), c);
       }
     }
 
@@ -152,23 +143,14 @@ public class JSONProperty {
   }
 
   private boolean isPropertyUsedInClasses() {
-    String searchName = property.name();
+    Property searchProp = property;
 
     if (property.subPropertyOf() != null) {
-      searchName = property.subPropertyOf().name();
+      searchProp = property.subPropertyOf();
     }
 
     // See if the property is used in any classes
-    for (var cl : property.model().classTypeL()) {
-
-        for (var cls : cl.propL()) {
-          if (cls.property().name().equals(searchName)) {
-            return true;
-          }
-        }
-      
-    }
-    return false;
+    return !property.model().propertyUseL(searchProp).isEmpty();
   }
 
   private void processXMLDataType() {
@@ -74,13 +74,11 @@ public class ModelToRDF {
         if (null != p.classType()) rv = "owl:ObjectProperty";
         else if (null != p.datatype()) rv = "owl:DataProperty";
         else {
-            for (var op : m.propertyL()) {
-                if (op.subPropertyOf() == p) {
-                    String rv2 = propertyKind(op);
-                    if (null != rv2) {
-                        rv = rv2;
-                        break;
-                    }
+            for (var op : m.subpropertyL(p)) {
+                String rv2 = propertyKind(op);
+                if (null != rv2) {
+                    rv = rv2;
+                    break;
                 }
             }
         }
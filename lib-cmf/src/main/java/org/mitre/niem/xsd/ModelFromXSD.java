@@ -32,9 +32,6 @@ import java.util.Map;
 import java.util.Set;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
 import static javax.xml.XMLConstants.XML_NS_URI;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.xerces.xs.XSAnnotation;
@@ -78,9 +75,7 @@ import org.mitre.niem.cmf.Property;
 import org.mitre.niem.cmf.PropertyAssociation;
 import org.mitre.niem.cmf.Restriction;
 import org.mitre.niem.cmf.Union;
-import org.mitre.niem.utility.MapToList;
-import static org.mitre.niem.xml.XMLSchemaDocument.evalForNodes;
-import static org.mitre.niem.xml.XMLSchemaDocument.evalForString;
+import org.mitre.niem.utility.PhaseTimer;
 import static org.mitre.niem.xml.XMLSchemaDocument.getDocumentation;
 import static org.mitre.niem.xml.XMLSchemaDocument.getLanguageString;
 import static org.mitre.niem.xml.XMLSchemaDocument.qnToName;
@@ -108,21 +103,9 @@ public class ModelFromXSD {
     private Model m = null;
     private NIEMSchema sch = null;
     private XSModel xs = null;
+    private final PhaseTimer timer = new PhaseTimer("ModelFromXSD");    // elapsed time of each phase
 
-    private XPathExpression XPR_ANYATT = null;
-    private XPathExpression XPR_BASE = null;
-    private XPathExpression XPR_CHILDREN = null;
-    
     public ModelFromXSD () throws XMLSchemaException {
-        var XPF = XPathFactory.newInstance();
-        try {
-            XPR_ANYATT   = XPF.newXPath().compile(".//*[local-name()='anyAttribute']");
-            XPR_BASE     = XPF.newXPath().compile("(.//*[@base != ''])[1]/@base");
-            XPR_CHILDREN = XPF.newXPath().compile(
-                ".//*[(local-name()='attribute' or local-name()='element' or local-name()='any' or local-name() = 'anyAttribute')]");
-        } catch (XPathExpressionException ex) {
-            throw new XMLSchemaException(ex.getMessage());
-        }
      }
     
     public Model createModel (String... args) throws XMLSchemaException, CMFException {
@@ -133,71 +116,123 @@ public class ModelFromXSD {
     public Model createModel (NIEMSchema s) throws CMFException {
         m = new Model();
         sch = s;
-        xs = sch.xsmodel();
+        timer.clear();
+        timer.start();
+        xs = sch.xsmodel();                 timer.mark("assembleSchema");
         buildElementLists();                // the component elements in model schema documents
+        timer.mark("buildElementLists", comp2Element.size());
         createNamespaces();                 // an object for each model namespace
+        timer.mark("createNamespaces", nsCount);
         processAugmentRecords();            // note each augmented class and any global augs
+        timer.mark("processAugmentRecords", augments.values().stream().mapToInt(List::size).sum());
         processTypeDefinitions();           // now we can distinguish datatypes from literal classes
+        timer.mark("processTypeDefinitions", datatypeUs.size() + cscClassUs.size() + litClassUs.size());
         initializeDatatypes();              // now we can create Datatype objects
+        timer.mark("initializeDatatypes", m.datatypeL().size());
         populateDatatypes();                // and with all Datatypes in hand, we can fill them out
+        timer.mark("populateDatatypes", m.datatypeL().size());
         initializeClassTypes();             // create ClassType objects for CCC types and literalClass types
+        timer.mark("initializeClassTypes", m.classTypeL().size());
         createPropertiesFromAttributes();   // attribute properties can be created in one pass
+        timer.mark("createPropertiesFromAttributes", m.propertyL().size());
         initializePropertiesFromElements(); // element properties require the init/populate 2-step
+        timer.mark("initializePropertiesFromElements", m.propertyL().size());
         populatePropertiesFromElements();   // now all subproperty objects are initalized
+        timer.mark("populatePropertiesFromElements", m.propertyL().size());
         createLiteralProperties();
+        timer.mark("createLiteralProperties", m.propertyL().size());
         populateClassTypes();
+        timer.mark("populateClassTypes", m.classTypeL().size());
         createAugmentRecords();
+        timer.mark("createAugmentRecords", augRecCount);
+        LOG.debug("Model construction phases:\n{}", timer.format());
         return m;
     }
     
-    // Construct a list of top-level type definition and component declaration
-    // elements for each schema document.  Also collect the appinfo attributes for
-    // all defs and decls in the schema.
-//    private Map<String,List<Element>> types         = new HashMap<>();  // list of type defns in namespace
-    private MapToList<String,Element> types         = new MapToList<>();
-    private Map<String,List<Element>> elements      = new HashMap<>();  // list of element decls in namespace
-    private Map<String,List<Element>> attributes    = new HashMap<>();  // list of attribute decls in namespace
-    private Map<String,Element> comp2Element        = new HashMap<>();  // component URI -> sdoc Element
+    /**
+     * Returns the timer holding the elapsed time, allocated bytes, and object
+     * count of each phase of the last createModel call.  Add a listener to
+     * receive each phase as it finishes.
+     */
+    public PhaseTimer phaseTimer ()     { return timer; }
+    
+    // Note the namespace and name of every top-level type definition and 
+    // component declaration in the schema documents.  Also collect the appinfo
+    // attributes for all defs and decls in the schema.  No DOM nodes are kept:
+    // each phase looks up the elements it needs in the schema document, so that
+    // in low-memory mode the DOMs can be discarded and parsed again as needed.
+    private record ElementRef (String nsU, String name) { }
+    private Map<String,ElementRef> comp2Element     = new HashMap<>();  // component URI -> sdoc element
     private Map<String,Map<String,String>> appinfo  = new HashMap<>();  // component URI -> appinfo map
     private void buildElementLists () {
         for (var sd : sch.schemaDocL()) {
             var vers  = sd.niemVersion();
             var nsU   = sd.targetNamespace();
-//            var tL    = new ArrayList<Element>();   // type definitions
-            var eL    = new ArrayList<Element>();   // element declarations
-            var aL    = new ArrayList<Element>();   // attribute declarations
             var appU = builtinNSU(vers, "APPINFO"); // appinfo namespace URI in this document
-//            types.put(nsU, tL);
-            elements.put(nsU, eL);
-            attributes.put(nsU, aL);
-            var root  = sd.dom().getDocumentElement();
-            var ndsl = root.getChildNodes();
-            for (int i = 0; i < ndsl.getLength(); i++) {
-                var node = ndsl.item(i);
-                if (ELEMENT_NODE != node.getNodeType()) continue;
-                var schE  = (Element)node;
+            for (var schE : sd.topLevelComponents()) {
                 var name  = schE.getAttribute("name");
-                if (name.isEmpty()) continue;
                 var compU = makeURI(nsU, name);
-                comp2Element.put(compU, schE);
-                var ln = node.getLocalName();
-                switch(node.getLocalName()) {
-                    case "complexType":
-//                    case "simpleType": tL.add(schE); break;
-                    case "simpleType": types.add(nsU, schE); break;
-                    case "element":    eL.add(schE); break;
-                    case "attribute":  aL.add(schE); break;
-                }
+                comp2Element.put(compU, new ElementRef(nsU, name));
                 var appi = getAppinfoAttributes(schE, appU);
                 appinfo.put(compU, appi);
             }
         }
     }
     
+    // Returns the schema document element for a component URI, or null.
+    private Element compElement (String compU) {
+        var ref = comp2Element.get(compU);
+        if (null == ref) return null;
+        var sd = sch.schemaDocument(ref.nsU());
+        return null == sd ? null : sd.topLevelComponent(ref.name());
+    }
+    
+    // Returns the top-level type definitions ("complexType", "simpleType"), 
+    // element declarations ("element"), or attribute declarations ("attribute")
+    // in the schema document for a namespace, in document order.
+    private List<Element> topElements (String nsU, String... kinds) {
+        var res = new ArrayList<Element>();
+        var sd  = sch.schemaDocument(nsU);
+        if (null == sd) return res;
+        var kindS = Set.of(kinds);
+        for (var e : sd.topLevelComponents()) 
+            if (kindS.contains(e.getLocalName())) res.add(e);
+        return res;
+    }
+    
+    // What we need from the descendants of a type definition element: the 
+    // attribute, element, and wildcard declarations in document order; the first
+    // non-empty @base; whether there is an xs:anyAttribute.  One walk of the DOM
+    // subtree gets all three.  (These were XPath expressions, which were slow.)
+    private static class TypeIndex {
+        private final List<Element> decls = new ArrayList<>();
+        private String baseQ = "";
+        private boolean anyAttribute = false;
+        
+        TypeIndex (Element typeE) { walk(typeE); }
+        
+        private void walk (Element e) {
+            for (var node = e.getFirstChild(); null != node; node = node.getNextSibling()) {
+                if (ELEMENT_NODE != node.getNodeType()) continue;
+                var ce = (Element)node;
+                var ln = ce.getLocalName();
+                if ("attribute".equals(ln) || "element".equals(ln) || "any".equals(ln)) decls.add(ce);
+                else if ("anyAttribute".equals(ln)) {
+                    decls.add(ce);
+                    anyAttribute = true;
+                }
+                if (baseQ.isEmpty()) baseQ = ce.getAttribute("base");
+                walk(ce);
+            }
+        }
+    }
+    
     // Create and populate Namespace objects for all the model namespaces.
     // The XSD namespace is automatically part of every model.  The XML namespace
     // is added later on demand.
+    private int nsCount = 0;                // number of Namespace objects created
     private void createNamespaces () throws CMFException {
+        nsCount = 0;
         for (var sd : sch.schemaDocL()) {
             var kind = sch.namespaceKind(sd);
             var kcode = kindToCode(kind);
@@ -218,6 +253,7 @@ public class ModelFromXSD {
             }
             createLocalTerms(ns, sd);
             m.addNamespace(ns);
+            nsCount++;
         }
     }
     
@@ -262,7 +298,9 @@ public class ModelFromXSD {
     // If the augmented type has simple content, the augmenting property can 
     // also be an ObjectProperty -- and then the message schema will contain a
     // reference attribute.
-    private final Map<String,List<Element>> augments = new HashMap<>(); // nsU -> appinfo:Augmentation elements
+    private record AugmentElement (         // what we need from an appinfo:Augmentation element
+        String classQ, String propQ, String use, String codes, String classU, String propU) { }
+    private final Map<String,List<AugmentElement>> augments = new HashMap<>(); // nsU -> appinfo:Augmentation elements
     private final Set<String> attAugTypeUS           = new HashSet<>(); // set of types with att augmentations
     private boolean anyGlobalLitAugF = false;
     
@@ -275,13 +313,15 @@ public class ModelFromXSD {
             var appU  = builtinNSU(vers, "APPINFO");
             var root  = sd.documentElement();
             var augNL = root.getElementsByTagNameNS(appU, "Augmentation");
-            var aeL   = new ArrayList<Element>();
+            var aeL   = new ArrayList<AugmentElement>();
             augments.put(nsU, aeL);
             for (int i = 0; i < augNL.getLength(); i++)  {
                 var augE  = (Element)augNL.item(i);                
                 var typeQ = augE.getAttribute("class");
+                var propQ = augE.getAttribute("property");
                 var codes = augE.getAttribute("globalClassCode");
-                aeL.add(augE);
+                aeL.add(new AugmentElement(typeQ, propQ, augE.getAttribute("use"), codes,
+                        sd.qnToURI(augE, typeQ), sd.qnToURI(augE, propQ)));
                 if (codes.isBlank()) {
                     var typeU = m.qnToURI(typeQ);
                     var tnsU  = m.uriToNSU(typeU);
@@ -320,12 +360,12 @@ public class ModelFromXSD {
         for (var sd : sch.schemaDocL()) {
             if (!sch.isModelNamespace(sd)) continue;
             var nsU  = sd.targetNamespace();            // namespace uri
-            var tL   = types.get(nsU);                  // type definition elements in this document
+            var tL   = topElements(nsU, "complexType", "simpleType");  // type definition elements in this document
             for (var schE : tL) {
                 var name  = schE.getAttribute("name");
                 var tU    = makeURI(nsU, name);
                 var xtype = xs.getTypeDefinition(name, nsU);
-                var baseQ = evalForString(schE, XPR_BASE);
+                var baseQ = new TypeIndex(schE).baseQ;
                 var baseU = qnToURI(schE, baseQ);
                 tU2XS.put(tU, xtype);
                 baseTypeU.put(tU, baseU);
@@ -344,7 +384,7 @@ public class ModelFromXSD {
         // Divide CSCs into datatypes and possible literal classes
         var maybeLitTUs = new HashSet<String>();        // possible literal class uris
         for (var cscU : cscTUs) {
-            var schE   = comp2Element.get(cscU);
+            var schE   = compElement(cscU);
             var xtype  = tU2XS.get(cscU);
             var xctype = (XSComplexTypeDefinition)xtype;
             var appi   = appinfo.get(cscU);
@@ -353,10 +393,7 @@ public class ModelFromXSD {
             if (!litF) litF = hasAttributes(xctype);
             if (!litF) litF = attAugTypeUS.contains(cscU);
             if (!litF) litF = anyGlobalLitAugF;
-            if (!litF) {
-                var anyAtt = evalForNodes(schE, XPR_ANYATT);
-                litF = anyAtt.getLength() > 0;
-            }
+            if (!litF) litF = new TypeIndex(schE).anyAttribute;
             if (litF) {
                 cscClassUs.add(cscU);
                 maybeLitTUs.add(cscU);
@@ -463,7 +500,7 @@ public class ModelFromXSD {
             var sd     = sch.schemaDocument(nsU);
             var vers   = sd.niemVersion();
             var clsaU  = builtinNSU(vers, "CLSA");           // code list appinfo URI
-            var schE   = comp2Element.get(dtU);
+            var schE   = compElement(dtU);
             var xstype = dtU2xstype.get(dtU);
             var appi   = appinfo.get(dtU);
             populateComponent(dt, schE, appi);
@@ -643,8 +680,7 @@ public class ModelFromXSD {
         for (var ns : m.namespaceSet()) {
             if (!isModelKind(codeToKind(ns.kindCode()))) continue;
             var nsU = ns.uri();
-            var tL  = types.get(nsU);
-            if (null == tL) continue;
+            var tL  = topElements(nsU, "complexType", "simpleType");
             for (var e : tL) {
                 if (!"complexType".equals(e.getLocalName())) continue;
                 var name   = e.getAttribute("name");
@@ -680,7 +716,7 @@ public class ModelFromXSD {
             var ns   = m.namespaceObj(nsU);                // namespace object
             var vers = sd.niemVersion();
             var appU = builtinNSU(vers, "APPINFO");        // appinfo ns URI in this document
-            var aL   = attributes.get(nsU);
+            var aL   = topElements(nsU, "attribute");
             for (var schE : aL) {
                 var name = schE.getAttribute("name");
                 var dp   = new DataProperty(ns, name);
@@ -714,7 +750,7 @@ public class ModelFromXSD {
             if (sch.isModelNamespace(sd)) {
                 var nsU  = sd.targetNamespace();               // namespace URI
                 var ns   = m.namespaceObj(nsU);                // namespace object
-                var eL   = elements.get(nsU);
+                var eL   = topElements(nsU, "element");
                 for (var schE : eL) {
                     var name  = schE.getAttribute("name");
                     var typeQ = schE.getAttribute("type");
@@ -736,7 +772,7 @@ public class ModelFromXSD {
             else if (sch.isExternal(sd)) {
                 var nsU  = sd.targetNamespace();               // namespace URI
                 var ns   = m.namespaceObj(nsU);                // namespace object
-                var eL   = elements.get(nsU);
+                var eL   = topElements(nsU, "element");
                 for (var schE : eL) {
                     var name  = schE.getAttribute("name");
                     var xel   = xs.getElementDeclaration(name, nsU);
@@ -767,7 +803,7 @@ public class ModelFromXSD {
             var ns   = m.namespaceObj(nsU);
             var vers = sd.niemVersion();
             var appU = builtinNSU(vers, "APPINFO");
-            var eL   = elements.get(nsU);
+            var eL   = topElements(nsU, "element");
               for (var schE : eL) {
                 var appi  = getAppinfoAttributes(schE, appU);
                 var name  = schE.getAttribute("name");
@@ -815,7 +851,7 @@ public class ModelFromXSD {
     private void createLiteralProperties () {
         for (var ltU : litClassUs) {
             var ct     = m.uriToClassType(ltU);
-            var schE   = comp2Element.get(ltU);
+            var schE   = compElement(ltU);
             var dtU    = litPropTypeU.get(ltU);
             var dt     = getDatatype(dtU);
             var lpname = replaceSuffix(ct.name(), "Type", "Literal");
@@ -842,7 +878,7 @@ public class ModelFromXSD {
             var nsU  = sd.targetNamespace();               // namespace URI
             var vers = sd.niemVersion();
             var appU = builtinNSU(vers, "APPINFO");        // appinfo ns URI in this document
-            var tL   = types.get(nsU);
+            var tL   = topElements(nsU, "complexType", "simpleType");
             for (var schE : tL) {
                 var name = schE.getAttribute("name");
                 var ctU  = makeURI(nsU, name);
@@ -862,9 +898,7 @@ public class ModelFromXSD {
                 ct.setIsAbstract(xctype.getAbstract());
                 ct.setReferenceCode(appi.getOrDefault("referenceCode", ""));
             
-                var nodeL  = sd.evalForNodes(schE, XPR_CHILDREN);
-                for (int j = 0; j < nodeL.getLength(); j++) {
-                    var e = (Element)nodeL.item(j);
+                for (var e : new TypeIndex(schE).decls) {
                     var eref = e.getAttribute("ref");
                     var docL = getDocumentation(e);
                     var min  = e.getAttribute("minOccurs");
@@ -905,7 +939,7 @@ public class ModelFromXSD {
                             if (!max.isBlank()) cpa.setMaxOccurs(max);
                             if (!min.isBlank()) cpa.setMinOccurs(min);
                         }
-                        ct.propL().add(cpa);
+                        ct.addPropertyAssociation(cpa);
                         break;
                     case "any":                 
                     case "anyAttribute":
@@ -929,7 +963,9 @@ public class ModelFromXSD {
     // belonging to the appropriate Namespace.  Remove all augmentation components
     // (FooAugmentation, FooAugmentationPoint, FooAugmentationType) from the model.
     private static Set VALID_CODES = Set.of("ASSOCIATION", "OBJECT", "LITERAL");
+    private int augRecCount = 0;            // number of AugmentRecord objects created
     private void createAugmentRecords () {
+        augRecCount = 0;
         for (var aprop : augPropL) {
             ClassType atype = null;
             String gcode = null;          
@@ -955,6 +991,7 @@ public class ModelFromXSD {
                 if (cpa.property().isAttribute()) arec.setIndex("-1");
                 else arec.setIndex(Integer.toString(index++));
                 augns.addAugmentRecord(arec);
+                augRecCount++;
             }
             m.removeObjectProperty(aprop);
         }
@@ -972,6 +1009,7 @@ public class ModelFromXSD {
             arec.setMinOccurs("0");
             arec.setMaxOccurs("unbounded");
             augns.addAugmentRecord(arec);
+            augRecCount++;
             p.setSubproperty(null);
         }
         for (var op: augPointL) m.removeObjectProperty(op);
@@ -986,12 +1024,12 @@ public class ModelFromXSD {
             var aeL = augments.get(nsU);
             if (null == aeL) continue;
             for (var ae : aeL) {
-                var classQ = ae.getAttribute("class");
-                var propQ  = ae.getAttribute("property");
-                var use    = ae.getAttribute("use");
-                var codes  = ae.getAttribute("globalClassCode");
-                var classU = sd.qnToURI(ae, classQ);
-                var propU  = sd.qnToURI(ae, propQ);
+                var classQ = ae.classQ();
+                var propQ  = ae.propQ();
+                var use    = ae.use();
+                var codes  = ae.codes();
+                var classU = ae.classU();
+                var propU  = ae.propU();
                 var ct     = m.uriToClassType(classU);
                 var p      = m.uriToProperty(propU);
                 var codeL  = new String[0];
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeSet;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
 import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
 import static javax.xml.XMLConstants.XML_NS_URI;
@@ -68,6 +69,7 @@ import static org.mitre.niem.utility.IndefiniteArticle.articalize;
 import org.mitre.niem.utility.MapToList;
 import org.mitre.niem.utility.MapToSet;
 import org.mitre.niem.utility.NaturalOrderIgnoreCaseComparator;
+import org.mitre.niem.utility.PhaseTimer;
 import org.mitre.niem.utility.ResourceManager;
 import org.mitre.niem.xml.LanguageString;
 import org.mitre.niem.xml.ParserBootstrap;
@@ -108,6 +110,10 @@ public class ModelToXMLSchema {
     protected final Set<String> extNSs                  = new HashSet<>();      // URIs of external namespaces
     protected final MapToSet<String,String> subGroupL   = new MapToSet<>();     // propU -> set of substitutable propUs
     protected final Set<String> refNSs                  = new HashSet<>();      // URIs of referenced namespaces
+    protected final PhaseTimer timer                    = new PhaseTimer();     // elapsed time of each phase
+    protected int threads = Runtime.getRuntime().availableProcessors();         // number of document writer threads
+    protected boolean incremental = false;                                      // only write documents that changed?
+    protected SchemaManifest manifest = null;                                   // manifest, in incremental mode
     
     public ModelToXMLSchema (Model m) {
         this.m = m;
@@ -121,6 +127,33 @@ public class ModelToXMLSchema {
         catalogPath = path;
     }
     
+    /**
+     * Sets the number of threads used to build and write the model schema
+     * documents.  Each thread handles one namespace at a time.  The schema 
+     * documents do not depend on the number of threads.
+     * @param n - number of writer threads
+     */
+    public void setThreads (int n) {
+        threads = Math.max(1, n);
+    }
+    
+    /**
+     * Turns incremental mode on or off.  In incremental mode, the generator 
+     * keeps a manifest of content hashes in the output directory, and only 
+     * writes the schema documents whose inputs changed since the last run.
+     * Builtin documents and the catalog are only written when their contents
+     * change.  The pile is the same as one written from scratch.
+     * @param f - true for incremental mode
+     */
+    public void setIncremental (boolean f) {
+        incremental = f;
+    }
+    
+    /**
+     * Returns the elapsed time of each phase in the last call to writeModelXSD.
+     */
+    public PhaseTimer phaseTimer ()     { return timer; }
+    
     public void setRootNamespace (String nsPrefixOrURI) {
         if (null == nsPrefixOrURI) return;
         rootNS = m.namespaceObj(nsPrefixOrURI);
@@ -147,23 +180,36 @@ public class ModelToXMLSchema {
      * @param outD 
      */
     public void writeModelXSD (File outD) throws ParserConfigurationException, IOException {
-        collectArchVersions();
-        collectNamespacePrefixes();
-        collectNamespaceKinds();
-        establishFilePaths();
-        identifySimpleTypes();
-        buildSubstitutionMap();
-        processAugmentations();
+        timer.clear();
+        timer.start();
+        collectArchVersions();          timer.mark("collectArchVersions");
+        collectNamespacePrefixes();     timer.mark("collectNamespacePrefixes");
+        collectNamespaceKinds();        timer.mark("collectNamespaceKinds");
+        establishFilePaths();           timer.mark("establishFilePaths");
+        identifySimpleTypes();          timer.mark("identifySimpleTypes");
+        buildSubstitutionMap();         timer.mark("buildSubstitutionMap");
+        processAugmentations();         timer.mark("processAugmentations");
 
         for (var ns : m.namespaceSet())
             if (ns.isExternal()) extNSs.add(ns.uri());
-        for (var ns : m.namespaceSet()) 
-            if (ns.isModelNS()) writeModelDocument(ns, outD);
+        freezeSharedMaps();
+        List<Namespace> modelNSL = new ArrayList<>();
+        for (var ns : m.namespaceList())
+            if (ns.isModelNS()) modelNSL.add(ns);
+        manifest = null;
+        if (incremental) {
+            modelNSL = staleNamespaces(modelNSL, outD);
+            timer.mark("staleNamespaces");
+        }
+        writeModelDocuments(modelNSL, outD);
+        timer.mark("writeModelDocuments");
         for (var vers : archVersions)
             writeVersionBuiltins(vers, outD);
+        timer.mark("writeVersionBuiltins");
         if (null != catalogPath) {
             var catF = new File(outD, catalogPath);
-            var outS = new FileOutputStream(catF);
+            var outF = null == manifest ? catF : new File(outD, catalogPath + ".tmp");
+            var outS = new FileOutputStream(outF);
             var outW = new OutputStreamWriter(outS, "UTF-8");
             var catW = new XMLCatalogCreator();
             var catP = new File(catalogPath).toPath();
@@ -171,8 +217,11 @@ public class ModelToXMLSchema {
             else catP = catP.getParent();
             catW.writeCatalog(namespaceU2Path, catP, outW);
             outW.close();
+            if (catF != outF) SchemaManifest.replaceIfChanged(outF, catF);
+            timer.mark("writeCatalog");
         }
-            
+        if (null != manifest) manifest.write(outD);
+        LOG.debug("Schema generation phases:\n{}", timer.format());
     }
 
     // Examine all the namespaces to collect all the NIEM versions.  If the version
@@ -409,6 +458,72 @@ public class ModelToXMLSchema {
         objAugPA.setMaxOccurs("unbounded");        
     }
     
+    // The preparatory phases are finished; nothing changes the shared maps
+    // after this point.  Freezing them means a lookup of a missing key no longer
+    // adds an empty entry, so the document writer threads can share them.
+    // Also build the model's cached namespace and component lists now, instead
+    // of racing to do it in the writer threads.
+    protected void freezeSharedMaps () {
+        subGroupL.freeze();
+        ctU2augL.freeze();
+        nsU2refAttNS.freeze();
+        for (var nsctU2augL : nsAugs.values()) nsctU2augL.freeze();
+        m.namespaceList();
+        m.componentList();
+    }
+    
+    // In incremental mode, returns the model namespaces whose schema documents
+    // must be written.  The other documents are current; the namespaces they
+    // reference come from the manifest.
+    protected List<Namespace> staleNamespaces (List<Namespace> nsL, File outD) {
+        manifest = SchemaManifest.read(outD);
+        var inHash = SchemaManifest.inputHashes(m, nsL, contextKey());
+        var res    = new ArrayList<Namespace>();
+        for (var ns : nsL) {
+            var nsU = ns.uri();
+            if (manifest.isStale(nsU, namespaceU2Path.getOrDefault(nsU, ""), inHash.get(nsU), outD)) res.add(ns);
+            else refNSs.addAll(manifest.references(nsU));
+        }
+        LOG.debug("{} of {} schema documents must be written", res.size(), nsL.size());
+        return res;
+    }
+    
+    // Everything besides the CMF of the namespaces that goes into a schema
+    // document: the generator settings and the maps built by the preparatory
+    // phases.  Substitutions and augmentations cross namespace boundaries, so
+    // they are here too.  A change here makes every document stale.
+    protected String contextKey () {
+        var sb = new StringBuilder();
+        sb.append(getClass().getName()).append('\n');
+        sb.append(useArchVersion).append(' ').append(catalogPath).append(' ');
+        sb.append(null == rootNS ? "" : rootNS.uri()).append('\n');
+        for (var vers : new TreeSet<>(archVersions)) sb.append(vers).append('\n');
+        var nsUs = new TreeSet<String>(namespaceU2Path.keySet());
+        nsUs.addAll(namespaceU2Kind.keySet());
+        for (var ns : m.namespaceList()) nsUs.add(ns.uri());
+        for (var nsU : nsUs)
+            sb.append(String.format("%s %s %s %s %s%n", nsU, prefixMap.getPrefix(nsU), 
+                namespaceU2Path.get(nsU), namespaceU2Kind.get(nsU), extNSs.contains(nsU)));
+        var stQs = new TreeSet<String>();
+        for (var dt : simpleTypes) stQs.add(dt.uri());
+        for (var stQ : stQs) sb.append(stQ).append('\n');
+        for (var pU : new TreeSet<>(subGroupL.keySet()))
+            sb.append(pU).append(" <- ").append(new TreeSet<>(subGroupL.get(pU))).append('\n');
+        for (var ctU : new TreeSet<>(ctU2augL.keySet()))
+            for (var pa : ctU2augL.get(ctU))
+                sb.append(String.format("%s + %s %s %s%n", ctU, pa.property().uri(), pa.minOccurs(), pa.maxOccurs()));
+        for (var pU : new TreeSet<>(nsU2refAttNS.keySet()))
+            sb.append(pU).append(" @ ").append(new TreeSet<>(nsU2refAttNS.get(pU))).append('\n');
+        return sb.toString();
+    }
+    
+    // Write the schema document for each model namespace.  Each document is
+    // built from the frozen shared maps and its own namespace, so the documents
+    // can be built and written in parallel without changing the results.
+    protected void writeModelDocuments (List<Namespace> nsL, File outD) throws ParserConfigurationException, IOException {
+        ParallelDocumentWriter.writeAll(nsL, outD, threads, this::writeModelDocument);
+    }
+    
     // Adds a PropertyAssociation to a property list, but only if it 
     // isn't already there.  Also replaces an optional property with a required.
     protected void addToPropList (List<PropertyAssociation> lst, PropertyAssociation pa) {
@@ -431,7 +546,7 @@ public class ModelToXMLSchema {
     
     protected void writeModelDocument (Namespace ns, File outD) throws ParserConfigurationException, IOException {       
         // Initialize the document and xs:schema root element
-        var db   = ParserBootstrap.docBuilder();
+        var db   = ParserBootstrap.threadDocBuilder();
         var doc  = db.newDocument();
         var root = doc.createElementNS(W3C_XML_SCHEMA_NS_URI, "xs:schema");
         doc.appendChild(root);
@@ -489,7 +604,8 @@ public class ModelToXMLSchema {
         // At this point we know all of the referenced namespaces.
         // Create namespace declarations; add import elements in a pleasing order.
         refnsUs.add(nsU);
-        refNSs.addAll(refnsUs);
+        synchronized (refNSs) { refNSs.addAll(refnsUs); }
+        if (null != manifest) manifest.addReferences(nsU, refnsUs);
         var op = namespaceU2Path.get(nsU);
         var outF = new File(outD, namespaceU2Path.get(nsU));
         var outP = new File(namespaceU2Path.get(nsU)).getParentFile().toPath();
@@ -1152,9 +1268,11 @@ public class ModelToXMLSchema {
             var path = namespaceU2Path.get(nsU);
             var outF = new File(outD, path);
             var outP = outF.toPath().getParent();
+            var dstF = null == manifest ? outF : new File(outD, path + ".tmp");
             try {
                 Files.createDirectories(outP);
-                rmgr.copyResourceToFile(res, outF);
+                rmgr.copyResourceToFile(res, dstF);
+                if (dstF != outF) SchemaManifest.replaceIfChanged(dstF, outF);
             } catch (IOException ex) {
                 LOG.error("Can't create builtin schema documents for {}: {}", vers, ex.getMessage());
             }
@@ -1162,8 +1280,7 @@ public class ModelToXMLSchema {
     }
     
     protected void writeXSD (Document doc, File outF) throws IOException {
-        var pF   = outF.getParentFile();
-        pF.mkdirs();
+        Files.createDirectories(outF.getParentFile().toPath());
         var os = new FileOutputStream(outF);
         var ow = new OutputStreamWriter(os, "UTF-8");
         var xsdW = new XSDWriter();
@@ -37,6 +37,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
 import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
 import static javax.xml.XMLConstants.XML_NS_URI;
@@ -67,6 +68,7 @@ import static org.mitre.niem.utility.IndefiniteArticle.articalize;
 import org.mitre.niem.utility.MapToList;
 import org.mitre.niem.utility.MapToSet;
 import org.mitre.niem.utility.NaturalOrderIgnoreCaseComparator;
+import org.mitre.niem.utility.PhaseTimer;
 import org.mitre.niem.utility.ResourceManager;
 import org.mitre.niem.xml.LanguageString;
 import org.mitre.niem.xml.ParserBootstrap;
@@ -103,6 +105,11 @@ public class ModelToXSDModel {
     protected final Set<String> extNSs                  = new HashSet<>();      // URIs of external namespaces
     protected final Set<String> refNSs                  = new HashSet<>();      // URIs of referenced namespaces
     protected final MapToSet<String,String> proxyUs     = new MapToSet<>();     // proxy nsU -> set of proxy type QNs
+    protected final PhaseTimer timer                    = new PhaseTimer();     // elapsed time of each phase
+    protected int threads = Runtime.getRuntime().availableProcessors();         // number of document writer threads
+    protected boolean incremental = false;                                      // only write documents that changed?
+    protected SchemaManifest manifest = null;                                   // manifest, in incremental mode
+    private final ThreadLocal<String> docNSU = new ThreadLocal<>();             // namespace of document being built
     
     public ModelToXSDModel (Model m) {
         this.m = m;
@@ -116,6 +123,33 @@ public class ModelToXSDModel {
         catalogPath = path;
     }
     
+    /**
+     * Sets the number of threads used to build and write the model schema
+     * documents.  Each thread handles one namespace at a time.  The schema 
+     * documents do not depend on the number of threads.
+     * @param n - number of writer threads
+     */
+    public void setThreads (int n) {
+        threads = Math.max(1, n);
+    }
+    
+    /**
+     * Turns incremental mode on or off.  In incremental mode, the generator 
+     * keeps a manifest of content hashes in the output directory, and only 
+     * writes the schema documents whose inputs changed since the last run.
+     * Builtin documents and the catalog are only written when their contents
+     * change.  The pile is the same as one written from scratch.
+     * @param f - true for incremental mode
+     */
+    public void setIncremental (boolean f) {
+        incremental = f;
+    }
+    
+    /**
+     * Returns the elapsed time of each phase in the last call to writeModelXSD.
+     */
+    public PhaseTimer phaseTimer ()     { return timer; }
+    
     public void setRootNamespace (String nsPrefixOrURI) {
         if (null == nsPrefixOrURI) return;
         rootNS = m.namespaceObj(nsPrefixOrURI);
@@ -142,20 +176,34 @@ public class ModelToXSDModel {
      * @param outD 
      */
     public void writeModelXSD (File outD) throws ParserConfigurationException, IOException {        
-        collectArchVersions();
-        collectNamespacePrefixes();
-        collectNamespaceKinds();
-        establishFilePaths();
-        identifySimpleTypes();
+        timer.clear();
+        timer.start();
+        collectArchVersions();          timer.mark("collectArchVersions");
+        collectNamespacePrefixes();     timer.mark("collectNamespacePrefixes");
+        collectNamespaceKinds();        timer.mark("collectNamespaceKinds");
+        establishFilePaths();           timer.mark("establishFilePaths");
+        identifySimpleTypes();          timer.mark("identifySimpleTypes");
         for (var ns : m.namespaceSet())
             if (ns.isExternal()) extNSs.add(ns.uri());
-        for (var ns : m.namespaceSet()) 
-            if (ns.isModelNS()) writeModelDocument(ns, outD);
+        m.namespaceList();              // build these cached lists before the writer threads race to do it
+        m.componentList();
+        List<Namespace> modelNSL = new ArrayList<>();
+        for (var ns : m.namespaceList())
+            if (ns.isModelNS()) modelNSL.add(ns);
+        manifest = null;
+        if (incremental) {
+            modelNSL = staleNamespaces(modelNSL, outD);
+            timer.mark("staleNamespaces");
+        }
+        writeModelDocuments(modelNSL, outD);
+        timer.mark("writeModelDocuments");
         for (var vers : archVersions)
             writeVersionBuiltins(vers, outD);
+        timer.mark("writeVersionBuiltins");
         if (null != catalogPath) {
             var catF = new File(outD, catalogPath);
-            var outS = new FileOutputStream(catF);
+            var outF = null == manifest ? catF : new File(outD, catalogPath + ".tmp");
+            var outS = new FileOutputStream(outF);
             var outW = new OutputStreamWriter(outS, "UTF-8");
             var catW = new XMLCatalogCreator();
             var catP = new File(catalogPath).toPath();
@@ -163,8 +211,69 @@ public class ModelToXSDModel {
             else catP = catP.getParent();
             catW.writeCatalog(namespaceU2Path, catP, outW);
             outW.close();
+            if (catF != outF) SchemaManifest.replaceIfChanged(outF, catF);
+            timer.mark("writeCatalog");
         }
-            
+        if (null != manifest) manifest.write(outD);
+        LOG.debug("Schema generation phases:\n{}", timer.format());
+    }
+    
+    // In incremental mode, returns the model namespaces whose schema documents
+    // must be written.  The other documents are current; the namespaces and 
+    // proxy types they use come from the manifest.
+    protected List<Namespace> staleNamespaces (List<Namespace> nsL, File outD) {
+        manifest = SchemaManifest.read(outD);
+        var inHash = SchemaManifest.inputHashes(m, nsL, contextKey());
+        var res    = new ArrayList<Namespace>();
+        for (var ns : nsL) {
+            var nsU = ns.uri();
+            if (manifest.isStale(nsU, namespaceU2Path.getOrDefault(nsU, ""), inHash.get(nsU), outD)) res.add(ns);
+            else {
+                refNSs.addAll(manifest.references(nsU));
+                for (var px : manifest.proxies(nsU)) {
+                    var f = px.split(" ");
+                    proxyUs.add(f[0], f[1]);
+                }
+            }
+        }
+        LOG.debug("{} of {} schema documents must be written", res.size(), nsL.size());
+        return res;
+    }
+    
+    // Everything besides the CMF of the namespaces that goes into a schema
+    // document: the generator settings and the maps built by the preparatory
+    // phases.  A change here makes every document stale.
+    protected String contextKey () {
+        var sb = new StringBuilder();
+        sb.append(getClass().getName()).append('\n');
+        sb.append(useArchVersion).append(' ').append(catalogPath).append(' ');
+        sb.append(null == rootNS ? "" : rootNS.uri()).append('\n');
+        for (var vers : new TreeSet<>(archVersions)) sb.append(vers).append('\n');
+        var nsUs = new TreeSet<String>(namespaceU2Path.keySet());
+        nsUs.addAll(namespaceU2Kind.keySet());
+        for (var ns : m.namespaceList()) nsUs.add(ns.uri());
+        for (var nsU : nsUs)
+            sb.append(String.format("%s %s %s %s %s%n", nsU, prefixMap.getPrefix(nsU), 
+                namespaceU2Path.get(nsU), namespaceU2Kind.get(nsU), extNSs.contains(nsU)));
+        var stQs = new TreeSet<String>();
+        for (var dt : simpleTypes) stQs.add(dt.uri());
+        for (var stQ : stQs) sb.append(stQ).append('\n');
+        return sb.toString();
+    }
+    
+    // Write the schema document for each model namespace.  A document depends
+    // only on its namespace and on the maps built by the preparatory phases, 
+    // which don't change after this point, so the documents can be built and
+    // written in parallel without changing the results.  The model's cached
+    // namespace and component lists must be built before calling this.
+    protected void writeModelDocuments (List<Namespace> nsL, File outD) throws ParserConfigurationException, IOException {
+        ParallelDocumentWriter.writeAll(nsL, outD, threads, this::writeModelDocument);
+    }
+    
+    // Proxy types are collected from every document, perhaps by several threads.
+    protected void addProxyType (String proxyU, String name) {
+        synchronized (proxyUs) { proxyUs.add(proxyU, name); }
+        if (null != manifest) manifest.addProxy(docNSU.get(), proxyU, name);
     }
 
     // Examine all the namespaces to collect all the NIEM versions.  If the version
@@ -291,7 +400,8 @@ public class ModelToXSDModel {
     
     protected void writeModelDocument (Namespace ns, File outD) throws ParserConfigurationException, IOException {       
         // Initialize the document and xs:schema root element
-        var db   = ParserBootstrap.docBuilder();
+        docNSU.set(ns.uri());
+        var db   = ParserBootstrap.threadDocBuilder();
         var doc  = db.newDocument();
         var root = doc.createElementNS(W3C_XML_SCHEMA_NS_URI, "xs:schema");
         doc.appendChild(root);
@@ -394,7 +504,8 @@ public class ModelToXSDModel {
         // Create namespace declarations; add import elements in a pleasing order.
         refnsUs.add(nsU);
         refnsUs.add(bc2U.get("STRUCTURES"));
-        refNSs.addAll(refnsUs);
+        synchronized (refNSs) { refNSs.addAll(refnsUs); }
+        if (null != manifest) manifest.addReferences(nsU, refnsUs);
         var op = namespaceU2Path.get(nsU);
         var outF = new File(outD, namespaceU2Path.get(nsU));
         var outP = new File(namespaceU2Path.get(nsU)).getParentFile().toPath();
@@ -679,7 +790,7 @@ public class ModelToXSDModel {
             var baseQ = proxyPre + ":" + dt.name();
             exE.setAttribute("base", baseQ);
             refnsUs.add(proxyU);
-            proxyUs.add(proxyU, dt.name());
+            addProxyType(proxyU, dt.name());
         }   
         else LOG.error("Can't determine extension base for {}", ct.qname());
         eL.add(ctE);
@@ -791,7 +902,7 @@ public class ModelToXSDModel {
             if (!p.isAttribute() && W3C_XML_SCHEMA_NS_URI.equals(pt.namespaceURI())) {
                 ptQ = proxyPre + ":" + pt.name();
                 refnsUs.add(proxyU);
-                proxyUs.add(proxyU, pt.name());
+                addProxyType(proxyU, pt.name());
             }
             else if (p.isAttribute() && !ptQ.endsWith("SimpleType"))
                 ptQ = replaceSuffix(ptQ, "Type", "SimpleType");
@@ -1005,7 +1116,7 @@ public class ModelToXSDModel {
         if (simpleTypes.contains(dt)) return replaceSuffix(dt.qname(), "Type", "SimpleType");
         else if (W3C_XML_SCHEMA_NS_URI.equals(dt.namespaceURI())) {
             refnsUs.add(proxyU);
-            proxyUs.add(proxyU, dt.name());
+            addProxyType(proxyU, dt.name());
             return proxyPre + ":" + dt.name();
         }
         else return dt.qname();
@@ -1036,13 +1147,15 @@ public class ModelToXSDModel {
             var path = namespaceU2Path.get(nsU);
             var outF = new File(outD, path);
             var outP = outF.toPath().getParent();
+            var dstF = null == manifest ? outF : new File(outD, path + ".tmp");
             try {
                 Files.createDirectories(outP);
                 if ("NIEM-XS".equals(kcode)) {
                     var structU = NamespaceKind.builtinNSU(vers, "STRUCTURES");
-                    writeProxyDocument(vers, nsU, structU, res, outF);
+                    writeProxyDocument(vers, nsU, structU, res, dstF);
                 }                    
-                else rmgr.copyResourceToFile(res, outF);
+                else rmgr.copyResourceToFile(res, dstF);
+                if (dstF != outF && dstF.isFile()) SchemaManifest.replaceIfChanged(dstF, outF);
             } catch (IOException ex) {
                 LOG.error("Can't create builtin schema documents for {}: {}", vers, ex.getMessage());
             }
@@ -1111,8 +1224,7 @@ public class ModelToXSDModel {
     }
     
     protected void writeXSD (Document doc, File outF, Map<String,String> bc2pre) throws IOException {
-        var pF   = outF.getParentFile();
-        pF.mkdirs();
+        Files.createDirectories(outF.getParentFile().toPath());
         var os = new FileOutputStream(outF);
         var ow = new OutputStreamWriter(os, "UTF-8");
         var xsdW = new NIEMXSDWriter(bc2pre);
@@ -57,6 +57,14 @@ public class NIEMSchemaDocument extends XMLSchemaDocument {
         super(sdF);
     }
     
+    @Override
+    public void preload () {
+        super.preload();
+        if (null == dom()) return;
+        ctAssertions();
+        niemVersion();
+    }
+    
     /**
      * Returns the namespace URI for the conformance target attributes specification
      * used in this schema document.  Returns the empty string if no CTAS namespace
@@ -23,6 +23,7 @@
  */
 package org.mitre.niem.xsd;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import static org.mitre.niem.xml.XMLSchemaDocument.makeQN;
@@ -35,6 +36,9 @@ import org.mitre.niem.xml.XSDWriter;
  */
 public class NIEMXSDWriter extends XSDWriter {
     
+    // attribute order for the appinfo elements, which depends on the appinfo prefix
+    private final Map<String,List<String>> appinfoOrder = new HashMap<>();
+    
     public NIEMXSDWriter () { }
     
     public NIEMXSDWriter (Map<String,String> bc2pre) {
@@ -42,7 +46,14 @@ public class NIEMXSDWriter extends XSDWriter {
         var aPre = bc2pre.get("APPINFO");
         var ltQ  = makeQN(aPre, "LocalTerm");
         var augQ = makeQN(aPre, "Augmentation");
-        reorderMap.add(ltQ, "term");
-        reorderMap.addAll(augQ, List.of("class", "property", "use", "globalClassCode"));
+        appinfoOrder.put(ltQ, List.of("term"));
+        appinfoOrder.put(augQ, List.of("class", "property", "use", "globalClassCode"));
+    }
+    
+    @Override
+    protected List<String> reorderKeys (String tag) {
+        var keyL = appinfoOrder.get(tag);
+        if (null != keyL) return keyL;
+        return super.reorderKeys(tag);
     }
 }
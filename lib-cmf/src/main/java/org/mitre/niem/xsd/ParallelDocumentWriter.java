@@ -0,0 +1,67 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xsd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import javax.xml.parsers.ParserConfigurationException;
+import org.mitre.niem.cmf.Namespace;
+import org.mitre.niem.utility.ParallelMap;
+import org.xml.sax.SAXException;
+
+/**
+ * Writes one schema document per model namespace, on a pool of threads.  Each
+ * writer thread should build its document with ParserBootstrap.threadDocBuilder().
+ * The documents are written serially when there is only one thread or one 
+ * document.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+class ParallelDocumentWriter {
+    
+    /** Builds and writes the schema document for one namespace. */
+    interface DocumentWriter {
+        void write (Namespace ns, File outD) throws ParserConfigurationException, IOException;
+    }
+    
+    private ParallelDocumentWriter () { }
+    
+    /**
+     * Writes the schema document for each namespace in the list, returning
+     * after all are written.  The first exception from any writer is thrown.
+     * @param nsL - namespaces to write
+     * @param outD - output directory
+     * @param threads - maximum number of writer threads
+     * @param w - writer for one document
+     */
+    static void writeAll (List<Namespace> nsL, File outD, int threads, DocumentWriter w) throws ParserConfigurationException, IOException {
+        try {
+            ParallelMap.map(nsL, threads, (ns) -> { w.write(ns, outD); return ns; });
+        } catch (SAXException ex) {
+            throw new IOException(ex);      // DocumentWriter doesn't throw these
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xsd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.mitre.niem.cmf.Model;
+import org.mitre.niem.cmf.ModelXMLStreamWriter;
+import org.mitre.niem.cmf.Namespace;
+import org.mitre.niem.cmf.ReferenceGraph;
+import static org.mitre.niem.utility.ContentHash.sha256;
+
+/**
+ * A class for the manifest of an XSD pile written by ModelToXSDModel or 
+ * ModelToXMLSchema.  The manifest records, for each model namespace, a hash
+ * of everything its schema document is generated from, plus a hash of the 
+ * document itself.  On the next run, a schema document is only regenerated 
+ * when one of those hashes no longer matches.<p>
+ * 
+ * The input hash of a namespace covers the generator settings and model-wide 
+ * maps (the "context" string), and the CMF of the namespace and of every 
+ * namespace it can reach in the ReferenceGraph.  The manifest also keeps the 
+ * namespaces each document references and the proxy types it uses, because 
+ * the builtin documents depend on them.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class SchemaManifest {
+    static final Logger LOG = LogManager.getLogger(SchemaManifest.class);
+    
+    public static final String MANIFEST_FILE = ".cmftool-manifest";
+    private static final String MANIFEST_HEADER = "# cmftool schema manifest 1";
+    
+    private static class Entry {
+        String path = "";                                   // document path in output directory
+        String inHash = "";                                 // hash of generator input
+        String outHash = "";                                // hash of written document
+        final Set<String> refs = new TreeSet<>();           // referenced namespace URIs
+        final Set<String> proxies = new TreeSet<>();        // proxyNSU + " " + type name
+    }
+    
+    private final Map<String,Entry> old = new HashMap<>();  // nsU -> entry from previous run
+    private final Map<String,Entry> cur = new TreeMap<>();  // nsU -> entry for this run
+    
+    private SchemaManifest () { }
+    
+    /**
+     * Returns the manifest in the output directory, or an empty manifest if
+     * there isn't one (or it can't be read).
+     */
+    public static SchemaManifest read (File outD) {
+        var res  = new SchemaManifest();
+        var manF = new File(outD, MANIFEST_FILE);
+        if (!manF.isFile()) return res;
+        try {
+            var lines = Files.readAllLines(manF.toPath(), StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !MANIFEST_HEADER.equals(lines.get(0))) return res;
+            for (var line : lines.subList(1, lines.size())) {
+                var f = line.split("\t");
+                if (f.length < 3) continue;
+                var e = res.old.computeIfAbsent(f[1], k -> new Entry());
+                switch (f[0]) {
+                case "doc":   if (f.length > 4) { e.path = f[2]; e.inHash = f[3]; e.outHash = f[4]; } break;
+                case "ref":   e.refs.add(f[2]); break;
+                case "proxy": if (f.length > 3) e.proxies.add(f[2] + " " + f[3]); break;
+                }
+            }
+        } catch (IOException ex) {
+            LOG.error("Can't read schema manifest {}: {}", manF, ex.getMessage());
+            res.old.clear();
+        }
+        return res;
+    }
+    
+    /**
+     * Writes this run's manifest to the output directory.  Call this after
+     * all of the documents are written; a builtin document may replace a 
+     * model document, so the document hashes are computed here.
+     */
+    public synchronized void write (File outD) throws IOException {
+        for (var e : cur.values()) {
+            if (!e.outHash.isEmpty()) continue;
+            var docF = new File(outD, e.path);
+            if (docF.isFile()) e.outHash = sha256(docF);
+        }
+        var lines = new ArrayList<String>();
+        lines.add(MANIFEST_HEADER);
+        cur.forEach((nsU, e) -> {
+            lines.add(String.join("\t", "doc", nsU, e.path, e.inHash, e.outHash));
+            for (var r : e.refs) lines.add(String.join("\t", "ref", nsU, r));
+            for (var p : e.proxies) lines.add(String.join("\t", "proxy", nsU, p.replace(' ', '\t')));
+        });
+        var tmpF = new File(outD, MANIFEST_FILE + ".tmp");
+        Files.write(tmpF.toPath(), lines, StandardCharsets.UTF_8);
+        replaceIfChanged(tmpF, new File(outD, MANIFEST_FILE));
+    }
+    
+    /**
+     * Returns true if the schema document for a namespace must be generated; 
+     * that is, if the previous run didn't write the same document from the same 
+     * input, or if the document was changed since.  A document that is still 
+     * current is carried over into this run's manifest.
+     */
+    public synchronized boolean isStale (String nsU, String path, String inHash, File outD) {
+        var e = old.get(nsU);
+        var stale = null == e || !e.path.equals(path) || !e.inHash.equals(inHash);
+        if (!stale) {
+            try {
+                var docF = new File(outD, path);
+                stale = !docF.isFile() || !e.outHash.equals(sha256(docF));
+            } catch (IOException ex) {
+                stale = true;
+            }
+        }
+        if (stale) {
+            e = new Entry();
+            e.path   = path;
+            e.inHash = inHash;
+        }
+        cur.put(nsU, e);
+        return stale;
+    }
+    
+    /** Returns the namespaces referenced by the document for a namespace. */
+    public synchronized Set<String> references (String nsU) {
+        var e = cur.get(nsU);
+        return null == e ? Set.of() : new TreeSet<>(e.refs);
+    }
+    
+    /** Returns the proxy types used by the document for a namespace, as "proxyNSU name" strings. */
+    public synchronized Set<String> proxies (String nsU) {
+        var e = cur.get(nsU);
+        return null == e ? Set.of() : new TreeSet<>(e.proxies);
+    }
+    
+    public synchronized void addReferences (String nsU, Collection<String> refnsUs) {
+        var e = cur.get(nsU);
+        if (null != e) e.refs.addAll(refnsUs);
+    }
+    
+    public synchronized void addProxy (String nsU, String proxyU, String name) {
+        if (null == nsU) return;
+        var e = cur.get(nsU);
+        if (null != e) e.proxies.add(proxyU + " " + name);
+    }
+    
+    /**
+     * Returns the input hash for the schema document of each namespace in 
+     * the list.  The hash covers the context string, and the CMF of the
+     * namespace and every namespace reachable from it.
+     * @param m - Model object
+     * @param nsL - namespaces for which a schema document will be generated
+     * @param context - generator settings and model-wide maps
+     * @return map of namespace URI to input hash
+     */
+    public static Map<String,String> inputHashes (Model m, List<Namespace> nsL, String context) {
+        var cmfHash = new HashMap<Namespace,String>();
+        for (var ns : m.namespaceList()) {
+            var sw = new StringWriter();
+            new ModelXMLStreamWriter().writeXML(m, List.of(ns.uri()), sw);
+            cmfHash.put(ns, sha256(sw.toString()));
+        }
+        var refGraph = new ReferenceGraph(m);
+        var res = new HashMap<String,String>();
+        for (var ns : nsL) {
+            var reach = new TreeMap<String,String>();
+            for (var rns : refGraph.reachableFrom(ns)) reach.put(rns.uri(), cmfHash.getOrDefault(rns, ""));
+            var sb = new StringBuilder(context);
+            reach.forEach((u, h) -> sb.append(u).append(' ').append(h).append('\n'));
+            res.put(ns.uri(), sha256(sb.toString()));
+        }
+        return res;
+    }
+    
+    /**
+     * Moves the new file over the old one, unless their contents are the same;
+     * then the new file is deleted and the old one is left untouched.
+     */
+    public static void replaceIfChanged (File newF, File oldF) throws IOException {
+        if (oldF.isFile() && -1L == Files.mismatch(newF.toPath(), oldF.toPath()))
+            Files.delete(newF.toPath());
+        else 
+            Files.move(newF.toPath(), oldF.toPath(), REPLACE_EXISTING);
+    }
+}
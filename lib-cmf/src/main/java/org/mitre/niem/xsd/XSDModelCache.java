@@ -0,0 +1,194 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xsd;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.TreeMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.mitre.niem.cmf.Model;
+import org.mitre.niem.cmf.ModelBinaryReader;
+import org.mitre.niem.cmf.ModelBinaryWriter;
+import static org.mitre.niem.utility.ContentHash.sha256;
+import org.mitre.niem.xml.XMLSchema;
+
+/**
+ * A class for a persistent cache of Model objects created from schema piles.
+ * An entry is found by the x2m arguments (schema documents, catalogs, and 
+ * namespace URIs), and is only used if every document in the pile and every
+ * catalog still has the content it had when the entry was stored.  Each entry 
+ * holds a binary snapshot of the Model, and the messages and summary text 
+ * that go with it.<p>
+ * 
+ * The Model is built from the assembled pile as a whole, so a change to any 
+ * document in the pile invalidates the entry.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class XSDModelCache {
+    static final Logger LOG = LogManager.getLogger(XSDModelCache.class);
+    
+    // Entries from a different generator are never reused.  The build version
+    // (with its build date) covers released jars; bump the number by hand with 
+    // every change to the model generator or to the binary model format, 
+    // because a build from classes has no version.
+    private static final String CACHE_VERSION = "x2m cache 2 " + 
+            Objects.requireNonNullElse(XSDModelCache.class.getPackage().getImplementationVersion(), "dev");
+    private static final String DEPS_FILE     = "pile.txt";
+    private static final String MODEL_FILE    = "model.bin";
+    private static final String MSGS_FILE     = "messages.txt";
+    private static final String SUMMARY_FILE  = "summary.txt";
+    
+    private final File cacheD;
+    
+    /**
+     * The cached results for a schema pile.
+     */
+    public record Entry (Model model, String messages, String summary) { }
+    
+    public XSDModelCache (File cacheD) {
+        this.cacheD = cacheD;
+    }
+    
+    /**
+     * Returns the cached results for the schema pile specified by the arguments, 
+     * or null if there aren't any, or if any pile document or catalog has changed.
+     * @param args - schema documents, catalogs, and namespace URIs, as for XMLSchema
+     * @return cache entry or null
+     */
+    public Entry lookup (String... args) {
+        var entD = new File(cacheD, argsKey(args));
+        var depF = new File(entD, DEPS_FILE);
+        if (!depF.isFile()) return null;
+        try {
+            var lines = Files.readAllLines(depF.toPath(), UTF_8);
+            if (lines.isEmpty() || !CACHE_VERSION.equals(lines.get(0))) return null;
+            for (var line : lines.subList(1, lines.size())) {
+                var f = line.split("\t", 2);
+                if (2 != f.length) return null;
+                var docF = new File(new URI(f[1]));
+                if (!docF.isFile() || !f[0].equals(sha256(docF))) {
+                    LOG.debug("cache entry for {} is stale", f[1]);
+                    return null;
+                }
+            }
+            // Any failure to read the cached model is a miss
+            Model m;
+            try {
+                m = new ModelBinaryReader().readFile(new File(entD, MODEL_FILE));
+            } catch (RuntimeException ex) {
+                LOG.debug("can't read cached model in {}: {}", entD, ex.toString());
+                return null;
+            }
+            if (null == m) return null;
+            var msgs = Files.readString(new File(entD, MSGS_FILE).toPath(), UTF_8);
+            var summ = Files.readString(new File(entD, SUMMARY_FILE).toPath(), UTF_8);
+            return new Entry(m, msgs, summ);
+        } catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+            LOG.debug("can't use cache entry {}: {}", entD, ex.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Stores the results for the schema pile specified by the arguments.  Returns
+     * true on success.  Returns false on failure, with diagnostic messages written 
+     * to Log4J2; the cache is unchanged.
+     * @param s - schema object created from the arguments
+     * @param m - Model object created from the schema
+     * @param messages - text to be cached with the model
+     * @param summary - text to be cached with the model
+     * @param args - schema documents, catalogs, and namespace URIs, as for XMLSchema
+     */
+    public boolean store (XMLSchema s, Model m, String messages, String summary, String... args) {
+        var key  = argsKey(args);
+        var entD = new File(cacheD, key);
+        File tmpD = null;
+        try {
+            // Every document Xerces read: catalogs, then schema documents
+            var docs = new TreeMap<String,String>();
+            for (var catU : s.initialCatalogs()) docs.put(catU, "");
+            for (var catU : s.resolver().allCatalogs()) docs.put(catU, "");
+            for (var sd : s.schemaDocumentL()) docs.put(sd.docURI().toString(), "");
+            var lines = new ArrayList<String>();
+            lines.add(CACHE_VERSION);
+            for (var docU : docs.keySet()) 
+                lines.add(sha256(new File(new URI(docU))) + "\t" + docU);
+            
+            // Write the entry in a temporary directory, then move it into place
+            Files.createDirectories(cacheD.toPath());
+            tmpD = Files.createTempDirectory(cacheD.toPath(), key + ".").toFile();
+            if (!new ModelBinaryWriter().writeBinary(m, new File(tmpD, MODEL_FILE))) {
+                FileUtils.deleteDirectory(tmpD);
+                return false;
+            }
+            Files.writeString(new File(tmpD, MSGS_FILE).toPath(), messages, UTF_8);
+            Files.writeString(new File(tmpD, SUMMARY_FILE).toPath(), summary, UTF_8);
+            Files.write(new File(tmpD, DEPS_FILE).toPath(), lines, UTF_8);
+            if (entD.exists()) FileUtils.deleteDirectory(entD);
+            Files.move(tmpD.toPath(), entD.toPath(), ATOMIC_MOVE);
+            return true;
+        } catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+            LOG.error("can't store model in cache {}: {}", cacheD, ex.getMessage());
+            try {
+                if (null != tmpD) FileUtils.deleteDirectory(tmpD);
+            } catch (IOException iex) { }   // IGNORE
+            return false;
+        }
+    }
+    
+    // The cache key is the hash of the argument list, with each file argument
+    // replaced by its canonical path.  A namespace URI argument is used as is;
+    // the catalogs determine what it resolves to.
+    static String argsKey (String... args) {
+        var sb = new StringBuilder(CACHE_VERSION).append('\n');
+        for (var arg : args) {
+            String path = arg;
+            try {
+                var u = new URI(arg);
+                if (null != u.getScheme()) path = "file".equals(u.getScheme()) ? u.getPath() : null;
+            } catch (URISyntaxException ex) { }     // IGNORE, it's a file path
+            if (null == path) sb.append(arg);
+            else {
+                try {
+                    sb.append(new File(path).getCanonicalFile().toURI());
+                } catch (IOException ex) {
+                    sb.append(arg);
+                }
+            }
+            sb.append('\n');
+        }
+        return sha256(sb.toString());
+    }
+}
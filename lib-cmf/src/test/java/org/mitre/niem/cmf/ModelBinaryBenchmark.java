@@ -0,0 +1,86 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Compares loading the test resource models from CMF and from binary snapshots.
+ * Run with "gradle :lib-cmf:benchmark".
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Tag("benchmark")
+public class ModelBinaryBenchmark {
+    private final static String resDN = "src/test/resources/cmf/";
+    private final static int WARMUP = 20;
+    private final static int RUNS   = 100;
+    
+    @TempDir
+    File tmpD;
+    
+    public ModelBinaryBenchmark() {
+    }
+    
+    @Test
+    public void benchLoad () {
+        var cmfFL = new ArrayList<File>(FileUtils.listFiles(new File(resDN), new String[]{"cmf"}, false));
+        cmfFL.sort(null);
+        var binFL = new ArrayList<File>();
+        for (var cmfF : cmfFL) {
+            var binF = new File(tmpD, cmfF.getName() + ".bin");
+            assertTrue(new ModelBinaryWriter().writeBinary(new ModelXMLReader().readFiles(cmfF), binF));
+            binFL.add(binF);
+        }
+        for (int i = 0; i < WARMUP; i++) { readAll(cmfFL, false); readAll(binFL, true); }
+        var tx = time(cmfFL, false);
+        var tb = time(binFL, true);
+        System.out.println(String.format("Model load, %d files x %d runs", cmfFL.size(), RUNS));
+        System.out.println(String.format("  CMF XML   %8.2f ms/run", tx / 1e6 / RUNS));
+        System.out.println(String.format("  snapshot  %8.2f ms/run", tb / 1e6 / RUNS));
+        System.out.println(String.format("  speedup   %8.2fx", (double)tx / tb));
+    }
+    
+    private static long time (List<File> fL, boolean binary) {
+        var start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) readAll(fL, binary);
+        return System.nanoTime() - start;
+    }
+    
+    private static void readAll (List<File> fL, boolean binary) {
+        for (var f : fL) {
+            var m = binary ? new ModelBinaryReader().readFile(f) : new ModelXMLReader().readFiles(f);
+            assertNotNull(m);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ModelBinaryTest extends ModelAssertions {
+    private final static String resDN = "src/test/resources/cmf/";
+    
+    @TempDir
+    File tmpD;
+    
+    public ModelBinaryTest() {
+    }
+    
+    // Snapshot round trip must produce the same model for every CMF test file
+    @Test
+    public void testRoundTrip () throws Exception {
+        var resDF = new File(resDN);
+        var cmfFL = FileUtils.listFiles(resDF, new String[]{"cmf"}, false);
+        for (var cmfF : cmfFL) {
+            var m1 = new ModelXMLReader().readFiles(cmfF);
+            var m2 = roundTrip(m1, cmfF.getName());
+            assertEquals(writeModel(m1), writeModel(m2), cmfF.getName());
+        }
+    }
+    
+    @Test
+    public void testAssertions () throws Exception {
+        checkAugment(roundTrip("augment.cmf"));
+        checkClass(roundTrip("class.cmf"));
+        checkCodeListBinding(roundTrip("codeListBinding.cmf"));
+        checkDatatypes(roundTrip("datatypes.cmf"));
+        checkExternals(roundTrip("externals.cmf"));
+        checkLocalTerm(roundTrip("localTerm.cmf"));
+        checkNamespace(roundTrip("namespace.cmf"));
+        checkUnion(roundTrip("union.cmf"));
+    }
+    
+    // Placeholder objects and shared objects must survive the round trip
+    @Test
+    public void testPartial () throws Exception {
+        var cfL = List.of(new File(resDN, "partial-1.cmf"), new File(resDN, "partial-2.cmf"));
+        var m1  = new ModelXMLReader().readFiles(cfL);
+        var m2  = roundTrip(m1, "partial");
+        assertEquals(writeModel(m1), writeModel(m2));
+        var dp = m2.uriToProperty("http://example.com/part2/AnElement");
+        assertTrue(dp.outsideURI().isEmpty());
+        assertSame(m2, dp.model());
+        assertSame(dp, m2.uriToComponent(dp.uri()));
+        assertSame(m2.nsUToNamespaceObj(dp.namespace().uri()), dp.namespace());
+    }
+    
+    @Test
+    public void testBadSnapshot () {
+        assertNull(new ModelBinaryReader().read(ByteBuffer.wrap(new byte[]{ 1, 2, 3, 4, 5, 6, 7, 8 })));
+        assertNull(new ModelBinaryReader().read(ByteBuffer.wrap(new byte[]{ 0x43, 0x4d })));
+    }
+    
+    // A truncated or corrupt snapshot is an error, not an exception
+    @Test
+    public void testCorruptSnapshot () throws Exception {
+        var binF = new File(tmpD, "augment.bin");
+        assertTrue(new ModelBinaryWriter().writeBinary(new ModelXMLReader().readFiles(new File(resDN, "augment.cmf")), binF));
+        var bytes = Files.readAllBytes(binF.toPath());
+        for (var len : List.of(8, 12, 16, bytes.length / 2, bytes.length - 1))
+            assertNull(new ModelBinaryReader().read(ByteBuffer.wrap(bytes, 0, len)), "truncated at " + len);
+        for (var n : List.of(-1, Integer.MAX_VALUE)) {
+            var bad = ByteBuffer.wrap(bytes.clone());
+            bad.putInt(8, n);           // string table size
+            assertNull(new ModelBinaryReader().read(bad), "string count " + n);
+            bad = ByteBuffer.wrap(bytes.clone());
+            bad.putInt(12, n);          // length of first string
+            assertNull(new ModelBinaryReader().read(bad), "string length " + n);
+        }
+    }
+    
+    private Model roundTrip (String fn) throws Exception {
+        return roundTrip(new ModelXMLReader().readFiles(new File(resDN, fn)), fn);
+    }
+    
+    private Model roundTrip (Model m, String fn) throws Exception {
+        var binF = new File(tmpD, fn + ".bin");
+        assertTrue(new ModelBinaryWriter().writeBinary(m, binF));
+        assertTrue(Files.size(binF.toPath()) > 0);
+        var res = new ModelBinaryReader().readFile(binF);
+        assertNotNull(res, fn);
+        return res;
+    }
+    
+    private static String writeModel (Model m) throws Exception {
+        var sw = new StringWriter();
+        new ModelXMLWriter().writeXML(m, sw);
+        return sw.toString();
+    }
+}
@@ -23,6 +23,13 @@
  */
 package org.mitre.niem.cmf;
 
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mitre.niem.cmf.Model.uriToName;
@@ -106,4 +113,117 @@ public class ModelTest {
         assertEquals("", m.qnToURI("structures:ObjPoint"));
     }
     
+    @Test
+    public void testIndex () throws Exception {
+        var m   = new Model();
+        var ns  = new Namespace("n", "http://someNS/");
+        m.addNamespace(ns);
+        var ct1 = new ClassType(ns, "FooType");
+        var ct2 = new ClassType(ns, "BarType");
+        var ap  = new ObjectProperty(ns, "AbsProp");
+        var op  = new ObjectProperty(ns, "FooProp");
+        var dp  = new DataProperty(ns, "BarProp");
+        ap.setIsAbstract(true);
+        op.setSubproperty(ap);
+        ct2.setSubclass(ct1);
+        var pa1 = new PropertyAssociation();
+        pa1.setProperty(op);
+        ct1.addPropertyAssociation(pa1);
+        m.addClassType(ct1);
+        m.addClassType(ct2);
+        m.addObjectProperty(ap);
+        m.addObjectProperty(op);
+        m.addDataProperty(dp);
+        
+        assertEquals(1, m.propertyUseL(op).size());
+        assertSame(ct1, m.propertyUseL(op).get(0).classType());
+        assertSame(pa1, m.propertyUseL(op).get(0).association());
+        assertEquals(List.of(ct1), m.propertyUserL(op));
+        assertTrue(m.propertyUseL(dp).isEmpty());
+        assertEquals(List.of(ct2), m.subclassL(ct1));
+        assertTrue(m.subclassL(ct2).isEmpty());
+        assertEquals(List.of(op), m.subpropertyL(ap));
+        assertTrue(m.augmentRecordL(ct1).isEmpty());
+        
+        // Index must follow changes to the model
+        var pa2 = new PropertyAssociation();
+        pa2.setProperty(dp);
+        ct2.addPropertyAssociation(pa2);
+        assertEquals(List.of(ct2), m.propertyUserL(dp));
+        var ar = new AugmentRecord();
+        ar.setProperty(dp);
+        ar.setClassType(ct1);
+        ns.addAugmentRecord(ar);
+        assertEquals(List.of(ar), m.augmentRecordL(ct1));
+        dp.setSubproperty(ap);
+        assertEquals(2, m.subpropertyL(ap).size());
+        
+        // ... including edits to associations and records after a lookup
+        pa1.setProperty(dp);
+        assertTrue(m.propertyUseL(op).isEmpty());
+        assertEquals(List.of(ct1, ct2), m.propertyUserL(dp));
+        ar.setClassType(ct2);
+        assertTrue(m.augmentRecordL(ct1).isEmpty());
+        assertEquals(List.of(ar), m.augmentRecordL(ct2));
+        pa1.setProperty(op);
+        ar.setClassType(ct1);
+        
+        m.removeClassType(ct2);
+        assertTrue(m.subclassL(ct1).isEmpty());
+        assertTrue(m.propertyUserL(dp).isEmpty());
+        
+        // Placeholder objects find the same entries
+        var ph = new ObjectProperty("http://someNS/FooProp");
+        assertEquals(List.of(ct1), m.propertyUserL(ph));
+    }
+    
+    @Test
+    public void testFreeze () throws Exception {
+        var cfL = List.of(new File("src/test/resources/cmf/partial-1.cmf"), new File("src/test/resources/cmf/partial-2.cmf"));
+        var m   = new ModelXMLReader().readFiles(cfL);
+        var sw1 = new StringWriter();
+        new ModelXMLWriter().writeXML(m, sw1);
+        var ctL = m.classTypeL();
+        var pL  = m.propertyL();
+        assertFalse(m.isFrozen());
+        assertSame(m, m.freeze());
+        assertTrue(m.isFrozen());
+        assertSame(m, m.freeze());
+        
+        // Same contents, sorted and unmodifiable
+        var sw2 = new StringWriter();
+        new ModelXMLWriter().writeXML(m, sw2);
+        assertEquals(sw1.toString(), sw2.toString());
+        Collections.sort(ctL);
+        Collections.sort(pL);
+        assertEquals(ctL, m.classTypeL());
+        assertEquals(pL, m.propertyL());
+        assertSame(m.classTypeL(), m.classTypeL());
+        assertSame(m.componentList(), m.componentList());
+        assertSame(m.index(), m.index());
+        assertThrows(UnsupportedOperationException.class, () -> m.classTypeL().clear());
+        assertThrows(UnsupportedOperationException.class, () -> m.namespaceList().clear());
+        assertThrows(UnsupportedOperationException.class, () -> m.namespaceSet().clear());
+        assertThrows(IllegalStateException.class, () -> m.addClassType(new ClassType(m.namespaceList().get(0), "NewType")));
+        assertThrows(IllegalStateException.class, () -> m.addNamespace(new Namespace("new", "http://new/")));
+        assertThrows(IllegalStateException.class, () -> m.removeClassType(ctL.get(0)));
+        
+        // Many threads share the frozen model
+        var pool = Executors.newFixedThreadPool(8);
+        var futL = new ArrayList<Future<String>>();
+        for (int i = 0; i < 32; i++) futL.add(pool.submit(() -> describe(m)));
+        var exp = describe(m);
+        for (var fut : futL) assertEquals(exp, fut.get());
+        pool.shutdown();
+    }
+    
+    private static String describe (Model m) {
+        var sb = new StringBuilder();
+        for (var c : m.componentList()) sb.append(c.qname()).append(" ");
+        for (var p : m.propertyL()) 
+            for (var ct : m.propertyUserL(p)) sb.append(ct.qname()).append("/").append(p.qname()).append(" ");
+        for (var ns : m.namespaceList()) sb.append(m.nsUToNamespaceObj(ns.uri()).prefix()).append(" ");
+        return sb.toString();
+    }
+    
 }
@@ -0,0 +1,75 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the three-pass and single-pass CMF readers on the test resources.
+ * Run with "gradle :lib-cmf:benchmark".
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Tag("benchmark")
+public class ModelXMLReaderBenchmark {
+    private final static String resDN = "src/test/resources/cmf/";
+    private final static int WARMUP = 20;
+    private final static int RUNS   = 100;
+    
+    public ModelXMLReaderBenchmark() {
+    }
+    
+    @Test
+    public void benchReaders () {
+        var cmfFL = new ArrayList<File>(FileUtils.listFiles(new File(resDN), new String[]{"cmf"}, false));
+        cmfFL.sort(null);
+        for (int i = 0; i < WARMUP; i++) { readAll(cmfFL, false); readAll(cmfFL, true); }
+        var t3 = time(cmfFL, false);
+        var t1 = time(cmfFL, true);
+        System.out.println(String.format("ModelXMLReader, %d files x %d runs", cmfFL.size(), RUNS));
+        System.out.println(String.format("  three-pass  %8.2f ms/run", t3 / 1e6 / RUNS));
+        System.out.println(String.format("  single-pass %8.2f ms/run", t1 / 1e6 / RUNS));
+        System.out.println(String.format("  speedup     %8.2fx", (double)t3 / t1));
+    }
+    
+    private static long time (List<File> cmfFL, boolean onePass) {
+        var start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) readAll(cmfFL, onePass);
+        return System.nanoTime() - start;
+    }
+    
+    private static void readAll (List<File> cmfFL, boolean onePass) {
+        for (var cmfF : cmfFL) {
+            var m = new ModelXMLReader(onePass).readFiles(cmfF);
+            assertNotNull(m);
+        }
+    }
+}
@@ -24,9 +24,11 @@
 package org.mitre.niem.cmf;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import nl.altindag.log.LogCaptor;
+import org.apache.commons.io.FileUtils;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
@@ -301,6 +303,49 @@ public class ModelXMLReaderTest extends ModelAssertions {
     }
     
     
+    // Single-pass reader must produce the same model as the three-pass reader
+    @Test
+    public void testOnePass () throws Exception {
+        var resDF = new File(resDN);
+        var cmfFL = FileUtils.listFiles(resDF, new String[]{"cmf"}, false);
+        for (var cmfF : cmfFL) {
+            var m3 = new ModelXMLReader().readFiles(cmfF);
+            var m1 = new ModelXMLReader(true).readFiles(cmfF);
+            assertEquals(writeModel(m3), writeModel(m1), cmfF.getName());
+        }
+        var cfL = List.of(new File(resDN, "partial-1.cmf"), new File(resDN, "partial-2.cmf"));
+        var m3  = new ModelXMLReader().readFiles(cfL);
+        var m1  = new ModelXMLReader(true).readFiles(cfL);
+        assertEquals(writeModel(m3), writeModel(m1));
+        var dp = m1.uriToProperty("http://example.com/part2/AnElement");
+        assertTrue(dp.outsideURI().isEmpty());
+        assertEmptyLogs();
+    }
+    
+    // Parallel parsing must produce the same model, and still detect conflicts
+    @Test
+    public void testParallel () throws Exception {
+        var cfL = List.of(new File(resDN, "partial-1.cmf"), new File(resDN, "partial-2.cmf"));
+        var m1  = new ModelXMLReader(true).readFiles(cfL);
+        var rdr = new ModelXMLReader();
+        rdr.setThreads(4);
+        var m2  = rdr.readFiles(cfL);
+        assertEquals(writeModel(m1), writeModel(m2));
+        assertEmptyLogs();
+        
+        cfL = List.of(new File(resDN, "component.cmf"), new File(resDN, "namespace.cmf"));
+        assertNull(rdr.readFiles(cfL));
+        var errors = logs.get(0).getErrorLogs();
+        assertEquals(1, errors.size());
+        assertThat(errors.get(0)).contains("prefix already assigned");
+    }
+    
+    private static String writeModel (Model m) throws Exception {
+        var sw = new StringWriter();
+        new ModelXMLWriter().writeXML(m, sw);
+        return sw.toString();
+    }
+    
     public static List<LogCaptor> logs;      
     @BeforeAll
     public static void setupLogCaptor () {
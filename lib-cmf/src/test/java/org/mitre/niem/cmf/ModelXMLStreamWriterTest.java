@@ -0,0 +1,109 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.io.FileUtils;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.mitre.niem.xsd.ModelFromXSD;
+import org.mitre.niem.xsd.NIEMSchema;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ModelXMLStreamWriterTest {
+    private final static String resDN = "src/test/resources/cmf/";
+    private final static String xsdDN = "src/test/resources/xsd6/";
+    
+    public ModelXMLStreamWriterTest() {
+    }
+    
+    // Output must be the same as from the DOM writer, for the whole model 
+    // and for each namespace by itself
+    @Test
+    public void testSameAsDOMWriter () throws Exception {
+        var cmfFL = FileUtils.listFiles(new File(resDN), new String[]{"cmf"}, false);
+        for (var cmfF : cmfFL) {
+            var m = new ModelXMLReader().readFiles(cmfF);
+            assertSame(m, null, cmfF.getName());
+            for (var ns : m.namespaceList()) assertSame(m, List.of(ns.prefix()), cmfF.getName() + " " + ns.prefix());
+        }
+    }
+    
+    @Test
+    public void testSameForSchemaModels () throws Exception {
+        var xsdFL = FileUtils.listFiles(new File(xsdDN), new String[]{"xsd"}, false);
+        for (var xsdF : xsdFL) {
+            var m = new ModelFromXSD().createModel(new NIEMSchema(xsdF));
+            assertSame(m, null, xsdF.getName());
+        }
+    }
+    
+    // Documentation with markup, control, and non-BMP characters, and with 
+    // blank lines, which the DOM writer drops
+    @Test
+    public void testAwkwardText () throws Exception {
+        var text = "ab <>&\"'\t\n\r\u0001\u007f\u0085é  😀";
+        var rand = new Random(3);
+        var m    = new Model();
+        var ns   = new Namespace("ex", "http://example.com/ex/");
+        m.addNamespace(ns);
+        for (int i = 0; i < 100; i++) {
+            var sb = new StringBuilder();
+            for (int j = rand.nextInt(12); j > 0; j--) sb.append(text.charAt(rand.nextInt(text.length())));
+            var doc = sb.toString().replace("\ud83d", "😀").replace("\ude00", "😀").replace("\ud83d😀\ude00", "😀");
+            var dt  = new Datatype(ns, "Type" + i);
+            dt.addDocumentation(doc, 0 == i % 3 ? "fr" : "en-US");
+            m.addDatatype(dt);
+        }
+        var r = new Restriction(ns, "EmptyFacetType");
+        var f = new Facet();
+        f.setCategory("enumeration");
+        f.setValue("");
+        r.addFacet(f);
+        m.addDatatype(r);
+        assertSame(m, null, "awkward text");
+    }
+    
+    private static void assertSame (Model m, List<String> nsL, String msg) throws Exception {
+        var dw = new StringWriter();
+        var sw = new StringWriter();
+        if (null == nsL) {
+            assertTrue(new ModelXMLWriter().writeXML(m, dw));
+            assertTrue(new ModelXMLStreamWriter().writeXML(m, sw));
+        }
+        else {
+            assertTrue(new ModelXMLWriter().writeXML(m, nsL, dw));
+            assertTrue(new ModelXMLStreamWriter().writeXML(m, nsL, sw));
+        }
+        assertEquals(dw.toString(), sw.toString(), msg);
+    }
+}
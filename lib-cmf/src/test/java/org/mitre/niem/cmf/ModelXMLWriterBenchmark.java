@@ -0,0 +1,90 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.cmf;
+
+import java.io.File;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mitre.niem.xsd.ModelFromXSD;
+import org.mitre.niem.xsd.NIEMSchema;
+
+/**
+ * Compares the DOM and streaming CMF writers on the NIEM core model in the
+ * test resources: time per write and bytes allocated per write.
+ * Run with "gradle :lib-cmf:benchmark".
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Tag("benchmark")
+public class ModelXMLWriterBenchmark {
+    private final static String xsdFN = "src/test/resources/xsd6/niem/niem-core.xsd";
+    private final static int WARMUP = 10;
+    private final static int RUNS   = 20;
+    
+    public ModelXMLWriterBenchmark() {
+    }
+    
+    @Test
+    public void benchWriters () throws Exception {
+        var m = new ModelFromXSD().createModel(new NIEMSchema(new File(xsdFN)));
+        for (int i = 0; i < WARMUP; i++) { write(m, false); write(m, true); }
+        var dom = measure(m, false);
+        var str = measure(m, true);
+        System.out.println(String.format("CMF writers, %d namespaces, %d components, %d chars x %d runs", 
+            m.namespaceList().size(), m.componentList().size(), write(m, true), RUNS));
+        System.out.println(String.format("  DOM       %8.2f ms/run %8.1f MB allocated/run", dom[0] / 1e6 / RUNS, dom[1] / 1e6 / RUNS));
+        System.out.println(String.format("  streaming %8.2f ms/run %8.1f MB allocated/run", str[0] / 1e6 / RUNS, str[1] / 1e6 / RUNS));
+        System.out.println(String.format("  speedup   %8.2fx", (double)dom[0] / str[0]));
+    }
+    
+    private static long[] measure (Model m, boolean stream) throws Exception {
+        var mx = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        var tid = Thread.currentThread().threadId();
+        var mem = mx.getThreadAllocatedBytes(tid);
+        var start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) write(m, stream);
+        return new long[]{ System.nanoTime() - start, mx.getThreadAllocatedBytes(tid) - mem };
+    }
+    
+    private static long write (Model m, boolean stream) {
+        var cw = new CountingWriter();
+        if (stream) assertTrue(new ModelXMLStreamWriter().writeXML(m, cw));
+        else assertTrue(new ModelXMLWriter().writeXML(m, cw));
+        return cw.count;
+    }
+    
+    // Counts the output instead of keeping it
+    private static class CountingWriter extends Writer {
+        long count = 0;
+        @Override public void write (char[] cbuf, int off, int len) { count += len; }
+        @Override public void write (String s, int off, int len)    { count += len; }
+        @Override public void write (int c) { count++; }
+        @Override public void flush () { }
+        @Override public void close () { }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.json;
+
+import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.mitre.niem.cmf.ClassType;
+import org.mitre.niem.cmf.DataProperty;
+import org.mitre.niem.cmf.Datatype;
+import org.mitre.niem.cmf.Model;
+import org.mitre.niem.cmf.Namespace;
+import org.mitre.niem.cmf.ObjectProperty;
+import org.mitre.niem.cmf.PropertyAssociation;
+
+/**
+ * Shows how m2jmsg (ModelToJSON) time scales with model size, using generated
+ * models with a fixed number of properties per class.  Time per class should 
+ * stay about the same as the model grows.
+ * Run with "gradle :lib-cmf:benchmark".
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Tag("benchmark")
+public class ModelToJSONBenchmark {
+    private final static int[] SIZES  = { 250, 500, 1000, 2000, 4000 };
+    private final static int PROPS    = 4;      // properties per class
+    private final static int WARMUP   = 3;
+    private final static int RUNS     = 5;
+    
+    public ModelToJSONBenchmark() {
+    }
+    
+    @Test
+    public void benchScaling () throws Exception {
+        for (int i = 0; i < WARMUP; i++) new ModelToJSON(makeModel(SIZES[0])).writeJSON();
+        System.out.println(String.format("ModelToJSON, %d properties per class", PROPS));
+        for (var n : SIZES) {
+            var m = makeModel(n);
+            var start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                var json = new ModelToJSON(m).writeJSON();
+                assertFalse(json.isEmpty());
+            }
+            var ms = (System.nanoTime() - start) / 1e6 / RUNS;
+            System.out.println(String.format("  %5d classes %10.2f ms/run %8.3f ms/100 classes", n, ms, ms * 100 / n));
+        }
+    }
+    
+    // Each class has PROPS properties: half object properties for other
+    // classes, half data properties.  Every property is used in one class.
+    private static Model makeModel (int n) throws Exception {
+        var m  = new Model();
+        var ns = new Namespace("ex", "http://example.com/bench/");
+        ns.setKindCode("EXTENSION");
+        m.addNamespace(ns);
+        var str = new Datatype(m.nsUToNamespaceObj(W3C_XML_SCHEMA_NS_URI), "string");
+        m.addDatatype(str);
+        var ctA = new ClassType[n];
+        for (int i = 0; i < n; i++) {
+            ctA[i] = new ClassType(ns, String.format("Thing%dType", i));
+            m.addClassType(ctA[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < PROPS; j++) {
+                var pa = new PropertyAssociation();
+                if (0 == j % 2) {
+                    var op = new ObjectProperty(ns, String.format("Thing%dLink%d", i, j));
+                    op.setClassType(ctA[(i + j + 1) % n]);
+                    m.addObjectProperty(op);
+                    pa.setProperty(op);
+                }
+                else {
+                    var dp = new DataProperty(ns, String.format("Thing%dText%d", i, j));
+                    dp.setDatatype(str);
+                    m.addDataProperty(dp);
+                    pa.setProperty(dp);
+                }
+                pa.setMinOccurs("0");
+                pa.setMaxOccurs("unbounded");
+                ctA[i].addPropertyAssociation(pa);
+            }
+        }
+        return m;
+    }
+}
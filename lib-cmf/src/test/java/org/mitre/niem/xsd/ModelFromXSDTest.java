@@ -26,6 +26,7 @@ package org.mitre.niem.xsd;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import nl.altindag.log.LogCaptor;
@@ -36,7 +37,9 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeAll;
 import org.mitre.niem.cmf.Model;
 import static org.mitre.niem.cmf.ModelAssertions.*;
+import org.mitre.niem.cmf.ModelXMLStreamWriter;
 import org.mitre.niem.cmf.ModelXMLWriter;
+import org.mitre.niem.xml.XMLSchemaDocument;
 
 /**
  *
@@ -58,6 +61,29 @@ public class ModelFromXSDTest {
         assertEmptyLogs();
     }
 
+    @Test
+    public void testPhaseTimer () throws Exception {
+        var mb  = new ModelFromXSD();
+        var sch = new NIEMSchema(resDN + "xsd6/augment.xsd");
+        var seen = new ArrayList<String>();
+        mb.phaseTimer().addListener((timer, phase, nanos, bytes, count) -> seen.add(phase));
+        var model = mb.createModel(sch);
+        var timer = mb.phaseTimer();
+        assertThat(timer.nanos().keySet()).containsExactly(
+                "assembleSchema", "buildElementLists", "createNamespaces", "processAugmentRecords",
+                "processTypeDefinitions", "initializeDatatypes", "populateDatatypes", 
+                "initializeClassTypes", "createPropertiesFromAttributes", 
+                "initializePropertiesFromElements", "populatePropertiesFromElements",
+                "createLiteralProperties", "populateClassTypes", "createAugmentRecords");
+        assertThat(seen).containsExactlyElementsOf(timer.nanos().keySet());
+        assertThat(timer.counts().get("createNamespaces")).isPositive().isLessThanOrEqualTo(model.namespaceList().size());
+        assertThat(timer.counts().get("populateClassTypes")).isGreaterThanOrEqualTo(model.classTypeL().size());
+        assertThat(timer.counts().get("createAugmentRecords")).isPositive();
+        assertThat(timer.totalBytes()).isPositive();
+        assertThat(timer.format()).contains("createAugmentRecords");
+        assertEmptyLogs();
+    }
+    
     @Test
     public void testArchVersions () throws Exception {
         var mb  = new ModelFromXSD();
@@ -85,6 +111,45 @@ public class ModelFromXSDTest {
         assertEmptyLogs();
     }
   
+    @Test
+    public void testAugmentLowMemory () throws Exception {
+        try {
+            XMLSchemaDocument.setLowMemory(true);
+            var mb  = new ModelFromXSD();
+            var sch = new NIEMSchema(resDN + "xsd6/augment.xsd");
+            var model = mb.createModel(sch);
+            checkAugment(model);
+        } finally {
+            XMLSchemaDocument.setLowMemory(false);
+        }
+        assertEmptyLogs();
+    }
+    
+    // Discard every schema document DOM after every phase, forcing a re-parse
+    // in each phase, as if the garbage collector had cleared them all.
+    @Test
+    public void testReparseSameModel () throws Exception {
+        String[] pile = { resDN + "xsd6/niem/niem-core.xsd", resDN + "xsd6/niem/xml-catalog.xml" };
+        var expected = new StringWriter();
+        new ModelXMLStreamWriter().writeXML(new ModelFromXSD().createModel(new NIEMSchema(pile)), expected);
+        var actual = new StringWriter();
+        try {
+            XMLSchemaDocument.setLowMemory(true);
+            var mb  = new ModelFromXSD();
+            var sch = new NIEMSchema(pile);
+            var releases = new ArrayList<String>();
+            mb.phaseTimer().addListener((timer, phase, nanos, bytes, count) -> {
+                for (var sd : sch.schemaDocL()) sd.releaseDOM();
+                releases.add(phase);
+            });
+            new ModelXMLStreamWriter().writeXML(mb.createModel(sch), actual);
+            assertThat(releases).hasSize(mb.phaseTimer().nanos().size());
+        } finally {
+            XMLSchemaDocument.setLowMemory(false);
+        }
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+    }
+  
     @Test
     public void testClass () throws Exception {
         var mb  = new ModelFromXSD();
@@ -26,8 +26,13 @@ package org.mitre.niem.xsd;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -88,6 +93,86 @@ public class ModelToXMLSchemaTest {
         var goodXSD = msgs.isEmpty();
         assertTrue(goodXSD);        
     }
+    
+    @Test
+    public void testThreadsSameOutput () throws Exception {
+        var resF  = new File(resDN);
+        var files = new ArrayList<>(FileUtils.listFiles(resF, new String[]{"xsd"}, false));
+        files.add(new File(resDN, "niem/niem-core.xsd"));
+        for (var xsdF : files) {
+            if ("externals.xsd".equals(xsdF.getName())) continue;
+            if ("imports.xsd".equals(xsdF.getName())) continue;
+            var model  = new ModelFromXSD().createModel(new NIEMSchema(xsdF));
+            var seqD   = new File(tmpD, "seq");
+            var parD   = new File(tmpD, "par");
+            FileUtils.deleteDirectory(seqD);
+            FileUtils.deleteDirectory(parD);
+            var seqW = new ModelToXMLSchema(model);
+            seqW.setThreads(1);
+            seqW.setCatalogPath("xml-catalog.xml");
+            seqW.writeModelXSD(seqD);
+            var parW = new ModelToXMLSchema(model);
+            parW.setThreads(4);
+            parW.setCatalogPath("xml-catalog.xml");
+            parW.writeModelXSD(parD);
+            
+            var seqFL = relativePaths(seqD);
+            assertEquals(seqFL, relativePaths(parD), xsdF.getName());
+            for (var fn : seqFL) 
+                assertArrayEquals(Files.readAllBytes(new File(seqD, fn).toPath()), 
+                        Files.readAllBytes(new File(parD, fn).toPath()), xsdF.getName() + " " + fn);
+        }
+    }
+    @Test
+    public void testIncremental () throws Exception {
+        var model = new ModelFromXSD().createModel(new NIEMSchema(new File(resDN, "niem/niem-core.xsd")));
+        var incD  = new File(tmpD, "inc");
+        var fullD = new File(tmpD, "full");
+        var m2x   = new ModelToXMLSchema(model);
+        m2x.setIncremental(true);
+        m2x.setCatalogPath("xml-catalog.xml");
+        m2x.writeModelXSD(incD);
+        assertTrue(new File(incD, SchemaManifest.MANIFEST_FILE).isFile());
+        
+        // Nothing changed, so nothing is written
+        var fileL = FileUtils.listFiles(incD, null, true);
+        for (var f : fileL) f.setLastModified(1000000L);
+        m2x = new ModelToXMLSchema(model);
+        m2x.setIncremental(true);
+        m2x.setCatalogPath("xml-catalog.xml");
+        m2x.writeModelXSD(incD);
+        for (var f : fileL) assertEquals(1000000L, f.lastModified(), f.getName());
+        
+        // Change one component; only documents that depend on it are written
+        var ct  = model.classTypeL().stream().filter((c) -> "nc".equals(c.namespace().prefix())).findFirst().get();
+        var ncF = new File(incD, model.namespaceObj("nc").documentFilePath());
+        ct.addDocumentation("Changed for the incremental test.", "en-US");
+        m2x = new ModelToXMLSchema(model);
+        m2x.setIncremental(true);
+        m2x.setCatalogPath("xml-catalog.xml");
+        m2x.writeModelXSD(incD);
+        assertTrue(ncF.lastModified() != 1000000L);
+        assertTrue(fileL.stream().anyMatch((f) -> 1000000L == f.lastModified()));
+        
+        // Same pile as one written from scratch
+        m2x = new ModelToXMLSchema(model);
+        m2x.setCatalogPath("xml-catalog.xml");
+        m2x.writeModelXSD(fullD);
+        var incFL = relativePaths(incD);
+        incFL.remove(SchemaManifest.MANIFEST_FILE);
+        var fullFL = relativePaths(fullD);
+        assertEquals(fullFL, incFL);
+        for (var fn : fullFL) 
+            assertArrayEquals(Files.readAllBytes(new File(fullD, fn).toPath()), 
+                    Files.readAllBytes(new File(incD, fn).toPath()), fn);
+    }
+    
+    private List<String> relativePaths (File dir) {
+        var res = new ArrayList<String>();
+        for (var f : FileUtils.listFiles(dir, null, true)) res.add(dir.toPath().relativize(f.toPath()).toString());
+        res.sort(null);
+        return res;
+    }
 //    
 //    @Test
 //    public void testOneFile () throws Exception {
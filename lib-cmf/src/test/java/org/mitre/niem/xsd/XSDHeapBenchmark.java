@@ -0,0 +1,148 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xsd;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mitre.niem.xml.XMLSchemaDocument;
+
+/**
+ * Compares the peak heap needed to assemble a schema pile and build its 
+ * model, with and without low-memory mode.  Peak heap is the smallest -Xmx 
+ * with which a fresh JVM (serial collector) can do the job, found by binary 
+ * search.  Low-memory mode can only help when a pile has several large
+ * documents, so besides the niem-core test pile, the benchmark builds one
+ * from renamed copies of niem-core.xsd.
+ * Run with "gradle :lib-cmf:benchmark".
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Tag("benchmark")
+public class XSDHeapBenchmark {
+    private final static String resDN = "src/test/resources/xsd6/niem/";
+    private final static String NC_URI = "niemopen/ns/model/niem-core/6.0/";
+    private final static int COPIES = 6;
+    private final static int MIN_MB = 4;
+    private final static int MAX_MB = 1024;
+    
+    @TempDir
+    File tmpD;
+    
+    public XSDHeapBenchmark() {
+    }
+    
+    @Test
+    public void benchPeakHeap () throws Exception {
+        var small = List.of(resDN + "niem-core.xsd", resDN + "xml-catalog.xml");
+        var large = copiesPile();
+        System.out.println("Smallest -Xmx for NIEMSchema + createModel (serial GC)");
+        System.out.println(String.format("  %-28s %10s %10s", "pile", "normal", "low-memory"));
+        for (var pile : List.of(small, large)) {
+            var normal = smallestHeap(false, pile);
+            var low    = smallestHeap(true, pile);
+            assertTrue(normal > 0 && low > 0);
+            var label  = pile == small ? "niem-core" : String.format("niem-core x %d copies", COPIES);
+            System.out.println(String.format("  %-28s %7d MB %7d MB", label, normal, low));
+        }
+    }
+    
+    // Copies of niem-core.xsd in their own namespaces, next to the utility
+    // schemas they import.
+    private List<String> copiesPile () throws Exception {
+        var pileD = new File(tmpD, "pile");
+        FileUtils.copyDirectory(new File(resDN), pileD);
+        var nc  = Files.readString(new File(pileD, "niem-core.xsd").toPath());
+        var res = new ArrayList<String>();
+        for (int i = 1; i <= COPIES; i++) {
+            var copyF = new File(pileD, "niem-core-copy" + i + ".xsd");
+            Files.writeString(copyF.toPath(), nc.replace(NC_URI, "niemopen/ns/model/niem-core-copy" + i + "/6.0/"));
+            res.add(copyF.getPath());
+        }
+        res.add(new File(pileD, "xml-catalog.xml").getPath());
+        return res;
+    }
+    
+    // Binary search for the smallest heap limit that works
+    private static int smallestHeap (boolean lowMemory, List<String> pile) throws Exception {
+        int lo = MIN_MB, hi = MAX_MB;
+        if (!run(lowMemory, hi, pile)) return -1;
+        while (lo < hi) {
+            var mid = (lo + hi) / 2;
+            if (run(lowMemory, mid, pile)) hi = mid;
+            else lo = mid + 1;
+        }
+        return hi;
+    }
+    
+    private static boolean run (boolean lowMemory, int mb, List<String> pile) throws Exception {
+        var java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        var cmd  = new ArrayList<String>();
+        cmd.add(java);
+        cmd.add("-Xmx" + mb + "m");
+        cmd.add("-XX:+UseSerialGC");
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(XSDHeapBenchmark.class.getName());
+        cmd.add(Boolean.toString(lowMemory));
+        cmd.addAll(pile);
+        var proc = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        var out  = new String(proc.getInputStream().readAllBytes());
+        return 0 == proc.waitFor() && out.contains("OK ");
+    }
+    
+    /**
+     * Builds the model for a schema pile once in this JVM; prints OK and the 
+     * heap pool peak.  Exits non-zero on OutOfMemoryError.
+     * @param args - low-memory flag, then the schema pile arguments
+     */
+    public static void main (String[] args) {
+        try {
+            XMLSchemaDocument.setLowMemory(Boolean.parseBoolean(args[0]));
+            var sch = new NIEMSchema(Arrays.copyOfRange(args, 1, args.length));
+            var m   = new ModelFromXSD().createModel(sch);
+            long peak = 0;
+            for (var pool : ManagementFactory.getMemoryPoolMXBeans())
+                if (MemoryType.HEAP == pool.getType()) peak += pool.getPeakUsage().getUsed();
+            System.out.println(String.format("OK %d components, heap pool peak %.1f MB", 
+                    m.componentList().size(), peak / 1048576.0));
+        } catch (OutOfMemoryError ex) {
+            System.exit(2);
+        } catch (Exception ex) {
+            System.out.println(ex.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xsd;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import org.apache.commons.io.FileUtils;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mitre.niem.cmf.Model;
+import org.mitre.niem.cmf.ModelXMLStreamWriter;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class XSDModelCacheTest {
+    private final static String resDN = "src/test/resources/";
+    
+    @TempDir
+    File tmpD;
+    
+    @Test
+    public void testLookup () throws Exception {
+        var pileD  = new File(tmpD, "pile");
+        var cacheD = new File(tmpD, "cache");
+        FileUtils.copyDirectory(new File(resDN, "xsd6"), pileD);
+        var args  = new String[]{ new File(pileD, "augment.xsd").toString() };
+        var cache = new XSDModelCache(cacheD);
+        assertNull(cache.lookup(args));
+        
+        var s = new NIEMSchema(args);
+        var m = new ModelFromXSD().createModel(s);
+        assertTrue(cache.store(s, m, "messages\n", "summary\n", args));
+        
+        // Same pile, named by a different path
+        var hit = cache.lookup(new File(pileD, "../pile/augment.xsd").toString());
+        assertNotNull(hit);
+        assertEquals(cmf(m), cmf(hit.model()));
+        assertEquals("messages\n", hit.messages());
+        assertEquals("summary\n", hit.summary());
+        
+        // A change to an imported document invalidates the entry
+        var coreF = new File(pileD, "niem/niem-core-skel.xsd");
+        Files.writeString(coreF.toPath(), "\n", StandardOpenOption.APPEND);
+        assertNull(cache.lookup(args));
+        
+        // Store again, then it's a hit
+        s = new NIEMSchema(args);
+        m = new ModelFromXSD().createModel(s);
+        assertTrue(cache.store(s, m, "", "", args));
+        assertNotNull(cache.lookup(args));
+        
+        // A corrupt model file is a miss
+        for (var binF : FileUtils.listFiles(cacheD, new String[]{"bin"}, true)) {
+            var bytes = Files.readAllBytes(binF.toPath());
+            ByteBuffer.wrap(bytes).putInt(8, -1);
+            Files.write(binF.toPath(), bytes);
+        }
+        assertNull(cache.lookup(args));
+    }
+    
+    private String cmf (Model m) {
+        var sw = new StringWriter();
+        new ModelXMLStreamWriter().writeXML(m, sw);
+        return sw.toString();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A class for the SHA-256 hash of file and string contents, as a hex string.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ContentHash {
+    
+    private ContentHash () { }
+    
+    public static String sha256 (byte[] b) {
+        try {
+            var md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(b));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);     // CAN'T HAPPEN, every JVM has SHA-256
+        }
+    }
+    
+    public static String sha256 (String s) {
+        return sha256(s.getBytes(UTF_8));
+    }
+    
+    public static String sha256 (File f) throws IOException {
+        return sha256(Files.readAllBytes(f.toPath()));
+    }
+}
@@ -25,6 +25,7 @@ package org.mitre.niem.utility;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +47,22 @@ public class MapToList<K,V> {
         this.map = new HashMap<>(); 
     }
     
+    private boolean frozen = false;
+    
+    /**
+     * Makes this map read-only, so that it can be shared by several threads.
+     * Afterward, get() returns an empty list for a missing key instead of
+     * adding one, and any attempt to change the map or its lists throws
+     * UnsupportedOperationException.
+     */
+    public void freeze () {
+        if (frozen) return;
+        map.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        frozen = true;
+    }
+    
+    public boolean isFrozen ()  { return frozen; }
+    
     public void add (K key, V value) {
         var lst = get(key);
         lst.add(value);
@@ -59,6 +76,7 @@ public class MapToList<K,V> {
     public List<V> get (K key) {
         var lst = map.get(key);
         if (null == lst) {
+            if (frozen) return Collections.emptyList();
             lst = new ArrayList<>();
             map.put(key, lst);          
         }
@@ -78,6 +96,7 @@ public class MapToList<K,V> {
     }
     
     public void removeKey (K key) {
+        checkNotFrozen();
         map.remove(key);
     }
     
@@ -92,5 +111,9 @@ public class MapToList<K,V> {
     
     public Set<K> keySet ()     { return map.keySet(); }
     public int size ()          { return map.size(); }
-    public void clear ()        { map.clear(); }    
+    public void clear ()        { checkNotFrozen(); map.clear(); }
+    
+    private void checkNotFrozen () {
+        if (frozen) throw new UnsupportedOperationException("map is frozen");
+    }    
 }
@@ -45,6 +45,22 @@ public class MapToSet<K,V> {
         this.map = new HashMap<>(); 
     }
     
+    private boolean frozen = false;
+    
+    /**
+     * Makes this map read-only, so that it can be shared by several threads.
+     * Afterward, get() returns an empty set for a missing key instead of
+     * adding one, and any attempt to change the map or its sets throws
+     * UnsupportedOperationException.
+     */
+    public void freeze () {
+        if (frozen) return;
+        map.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+        frozen = true;
+    }
+    
+    public boolean isFrozen ()  { return frozen; }
+    
     public void add (K key, V value) {
         var s = get(key);
         s.add(value);
@@ -58,6 +74,7 @@ public class MapToSet<K,V> {
     public Set<V> get (K key) {
         var s = map.get(key);
         if (null == s) {
+            if (frozen) return Collections.emptySet();
             s = new HashSet<>();
             map.put(key, s);
         }
@@ -71,6 +88,7 @@ public class MapToSet<K,V> {
     }
     
     public void removeKey (K key) {
+        checkNotFrozen();
         map.remove(key);
     }
     
@@ -85,6 +103,10 @@ public class MapToSet<K,V> {
     
     public Set<K> keySet ()     { return map.keySet(); }
     public int size ()          { return map.size(); }
-    public void clear ()        { map.clear(); }
+    public void clear ()        { checkNotFrozen(); map.clear(); }
+    
+    private void checkNotFrozen () {
+        if (frozen) throw new UnsupportedOperationException("map is frozen");
+    }
     
 }
@@ -0,0 +1,94 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.utility;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.parsers.ParserConfigurationException;
+import org.xml.sax.SAXException;
+
+/**
+ * Applies a function to each item in a list, on a fixed pool of threads, 
+ * returning the results in list order.  The items are processed serially 
+ * when there is only one thread or one item.  The first exception thrown 
+ * by the function (in list order) is thrown again by map(); the remaining 
+ * tasks are cancelled.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ParallelMap {
+    
+    /** The function applied to each item; it may parse or write XML. */
+    @FunctionalInterface
+    public interface Task<T,R> {
+        R apply (T item) throws IOException, SAXException, ParserConfigurationException;
+    }
+    
+    private ParallelMap () { }
+    
+    /**
+     * Returns the result of the task for each item, in item order.
+     * @param items - list of task inputs
+     * @param threads - maximum number of threads
+     * @param task - function applied to each item
+     * @return list of task results
+     * @throws IOException - from a task, or if interrupted while waiting
+     * @throws SAXException - from a task
+     * @throws ParserConfigurationException - from a task
+     */
+    public static <T,R> List<R> map (List<T> items, int threads, Task<T,R> task) 
+            throws IOException, SAXException, ParserConfigurationException {
+        var res = new ArrayList<R>(items.size());
+        if (threads < 2 || items.size() < 2) {
+            for (var item : items) res.add(task.apply(item));
+            return res;
+        }
+        var exec = Executors.newFixedThreadPool(Math.min(threads, items.size()));
+        try {
+            var futL = new ArrayList<Future<R>>(items.size());
+            for (var item : items)
+                futL.add(exec.submit(() -> task.apply(item)));
+            for (var fut : futL) res.add(fut.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for parallel tasks", ex);
+        } catch (ExecutionException ex) {
+            var cause = ex.getCause();
+            if (cause instanceof IOException ioe) throw ioe;
+            if (cause instanceof SAXException sex) throw sex;
+            if (cause instanceof ParserConfigurationException pce) throw pce;
+            if (cause instanceof RuntimeException rex) throw rex;
+            if (cause instanceof Error err) throw err;
+            throw new IOException(cause);
+        } finally {
+            exec.shutdownNow();
+        }
+        return res;
+    }
+}
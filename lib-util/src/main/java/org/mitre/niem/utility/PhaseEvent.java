@@ -0,0 +1,62 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.utility;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for one phase marked by a PhaseTimer.  The event
+ * duration is the elapsed time of the phase.  Costs next to nothing unless a
+ * recording with this event enabled is running; e.g.
+ *    java -XX:StartFlightRecording:filename=x2m.jfr ...
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Name("org.mitre.niem.Phase")
+@Label("Phase")
+@Category("NIEM")
+@Description("One phase of a multi-phase operation, such as model construction")
+class PhaseEvent extends Event {
+    
+    @Label("Timer")
+    String timer;
+    
+    @Label("Phase")
+    String phase;
+    
+    @Label("Allocated")
+    @Description("Bytes allocated by the marking thread during the phase")
+    @DataAmount
+    long allocated;
+    
+    @Label("Count")
+    @Description("Number of objects the phase reports, or -1")
+    long count;
+}
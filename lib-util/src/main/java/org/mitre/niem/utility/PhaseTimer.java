@@ -0,0 +1,172 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.utility;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class for recording the elapsed time of each phase in a sequence of phases.
+ * Call start() before the first phase, then mark() with the name of each phase
+ * as it finishes.  A phase that is marked more than once gets the total time.
+ * <p>
+ * Besides elapsed time, the timer records the bytes allocated by the marking
+ * thread during each phase (work handed to other threads isn't counted), and
+ * an optional count of the objects the phase produced.  Each mark also emits
+ * a Flight Recorder PhaseEvent and is passed to any registered Listener.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class PhaseTimer {
+    
+    /**
+     * Receives the measurements for each phase as it is marked.
+     */
+    public interface Listener {
+        void phase (String timer, String phase, long nanos, long bytes, long count);
+    }
+    
+    private static final com.sun.management.ThreadMXBean THREADS;
+    static {
+        com.sun.management.ThreadMXBean tb = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean b 
+                && b.isThreadAllocatedMemorySupported()) {
+            tb = b;
+            if (!tb.isThreadAllocatedMemoryEnabled()) tb.setThreadAllocatedMemoryEnabled(true);
+        }
+        THREADS = tb;
+    }
+    
+    private final String name;
+    private final Map<String,Long> nanos  = new LinkedHashMap<>();   // phase name -> elapsed nanoseconds
+    private final Map<String,Long> bytes  = new LinkedHashMap<>();   // phase name -> allocated bytes
+    private final Map<String,Long> counts = new LinkedHashMap<>();   // phase name -> object count
+    private final List<Listener> listeners = new ArrayList<>();
+    private long last = System.nanoTime();
+    private long lastBytes = allocated();
+    private PhaseEvent event = newEvent();
+    
+    public PhaseTimer () { this(""); }
+    
+    public PhaseTimer (String name) { 
+        this.name = name;
+    }
+    
+    public String name ()                           { return name; }
+    public void addListener (Listener l)            { listeners.add(l); }
+    public void removeListener (Listener l)         { listeners.remove(l); }
+    
+    public void start () { 
+        last = System.nanoTime(); 
+        lastBytes = allocated();
+        event = newEvent();
+    }
+    
+    public void mark (String phase) {
+        mark(phase, -1);
+    }
+    
+    /**
+     * Records the end of a phase, along with a count of the objects it 
+     * produced (or -1 if the count means nothing for this phase).
+     */
+    public void mark (String phase, long count) {
+        var now   = System.nanoTime();
+        event.end();
+        var alloc = allocated();
+        var dt    = now - last;
+        var db    = alloc < 0 ? -1 : alloc - lastBytes;
+        nanos.merge(phase, dt, Long::sum);
+        if (db >= 0) bytes.merge(phase, db, Long::sum);
+        if (count >= 0) counts.put(phase, count);
+        if (event.shouldCommit()) {
+            event.timer     = name;
+            event.phase     = phase;
+            event.allocated = db;
+            event.count     = count;
+            event.commit();
+        }
+        for (var l : listeners) l.phase(name, phase, dt, db, count);
+        event = newEvent();
+        last = System.nanoTime();
+        lastBytes = allocated();
+    }
+    
+    public void clear () { 
+        nanos.clear(); 
+        bytes.clear();
+        counts.clear();
+    }
+    
+    public Map<String,Long> nanos ()    { return Collections.unmodifiableMap(nanos); }
+    public Map<String,Long> bytes ()    { return Collections.unmodifiableMap(bytes); }
+    public Map<String,Long> counts ()   { return Collections.unmodifiableMap(counts); }
+    
+    public long total () {
+        long sum = 0;
+        for (var t : nanos.values()) sum += t;
+        return sum;
+    }
+    
+    public long totalBytes () {
+        long sum = 0;
+        for (var b : bytes.values()) sum += b;
+        return sum;
+    }
+    
+    /**
+     * Returns a table of phase names, elapsed milliseconds, allocated megabytes,
+     * and object counts, one line for each phase in the order they were first 
+     * marked, plus a total.
+     */
+    public String format () {
+        var width = "total".length();
+        for (var phase : nanos.keySet()) width = Math.max(width, phase.length());
+        var fmt = "  %-" + width + "s %10.1f ms %10.1f MB %10s";
+        var nl  = System.lineSeparator();
+        var sb  = new StringBuilder();
+        nanos.forEach((phase, t) -> {
+            var b = bytes.getOrDefault(phase, 0L);
+            var c = counts.containsKey(phase) ? counts.get(phase).toString() : "";
+            sb.append(String.format(fmt, phase, t / 1e6, b / 1048576.0, c).stripTrailing()).append(nl);
+        });
+        sb.append(String.format(fmt, "total", total() / 1e6, totalBytes() / 1048576.0, "").stripTrailing()).append(nl);
+        return sb.toString();
+    }
+    
+    private static long allocated () {
+        return null == THREADS ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+    
+    private static PhaseEvent newEvent () {
+        var e = new PhaseEvent();
+        e.begin();
+        return e;
+    }
+}
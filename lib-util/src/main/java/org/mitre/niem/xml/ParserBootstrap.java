@@ -74,11 +74,12 @@ public class ParserBootstrap {
     }
     
     /**
-     * Initialize a particular parser factory.
+     * Initialize a particular parser factory.  Synchronized, so that parser
+     * objects can be obtained from more than one thread.
      * @param which
      * @throws ParserConfigurationException 
      */
-    public static void init (int which) throws ParserConfigurationException {
+    public static synchronized void init (int which) throws ParserConfigurationException {
         System.setProperty("javax.xml.parsers.SAXParserFactory", "org.apache.xerces.jaxp.SAXParserFactoryImpl");
         System.setProperty("javax.xml.parsers.DocumentBuilderFactory", "org.apache.xerces.jaxp.DocumentBuilderFactoryImpl");            
         System.setProperty("javax.xml.transform.TransformerFactory", "org.apache.xalan.processor.TransformerFactoryImpl");
@@ -130,11 +131,12 @@ public class ParserBootstrap {
     
     /**
      * Returns a SAXParser object.OK to reuse these after a reset() call.
+     * Synchronized, because the factory is shared.
      * @return namespace aware SAXParser object
      * @throws org.xml.sax.SAXException
      * @throws ParserConfigurationException
      */
-    public static SAXParser sax2Parser () throws ParserConfigurationException, SAXException {
+    public static synchronized SAXParser sax2Parser () throws ParserConfigurationException, SAXException {
         init(BOOTSTRAP_SAX2);
         return Holder.instance.sax2Fact.newSAXParser();
     }
@@ -150,6 +152,26 @@ public class ParserBootstrap {
         return Holder.instance.db;
     }
     
+    /**
+     * Returns a DocumentBuilder object for the calling thread.  Unlike 
+     * docBuilder(), which returns one shared object, this is safe to use on 
+     * several threads at once.  Each thread gets its own builder, reset on
+     * every call.
+     * @return namespace aware DocumentBuilder object
+     * @throws ParserConfigurationException
+     */
+    public static DocumentBuilder threadDocBuilder () throws ParserConfigurationException {
+        var db = threadDB.get();
+        if (null == db) {
+            db = docBuilderFactory().newDocumentBuilder();
+            threadDB.set(db);
+        }
+        else db.reset();
+        return db;
+    }
+    
+    private static final ThreadLocal<DocumentBuilder> threadDB = new ThreadLocal<>();
+    
     public static TransformerFactory transFactory () {
         try {
             init(BOOTSTRAP_TRANSFORMERFACTORY);
@@ -0,0 +1,374 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.validation.Schema;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.xerces.impl.XMLEntityManager;
+import org.apache.xerces.impl.xs.SchemaGrammar;
+import org.apache.xerces.impl.xs.XSDDescription;
+import org.apache.xerces.impl.xs.XMLSchemaLoader;
+import org.apache.xerces.impl.xs.util.XSGrammarPool;
+import org.apache.xerces.jaxp.validation.XMLSchemaFactory;
+import org.apache.xerces.util.DOMEntityResolverWrapper;
+import org.apache.xerces.util.ErrorHandlerWrapper;
+import org.apache.xerces.util.URI.MalformedURIException;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.Grammar;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.apache.xerces.xs.XSModel;
+import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
+import static org.mitre.niem.utility.ContentHash.sha256;
+import static org.mitre.niem.utility.URIfuncs.URIStringToFile;
+import org.w3c.dom.DOMErrorHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * A process-wide pool of compiled Xerces schema grammars, shared by every 
+ * XMLSchema object when enabled.  Assembling a schema pile compiles one grammar
+ * per namespace; the NIEM builtins and niem-core are the same in almost every
+ * pile, and there is no need to compile them again for the next pile, or for 
+ * the javax Schema object after the XSModel object.
+ * <p>
+ * A grammar is pooled under its target namespace together with a hash of the 
+ * content of each schema document that went into it, and into each grammar it
+ * imports.  A pooled grammar is reused only when every one of those documents
+ * still has the same content, and when the pile's catalog resolves each of
+ * those namespaces to the same document.  Otherwise the pile compiles its own.
+ * Grammars are only pooled from piles that assemble without any messages, so 
+ * that a pile reusing a grammar never misses a warning it would otherwise see.
+ * <p>
+ * The pool is off by default.  Lookup counts are kept so that you can see 
+ * whether it is paying its way.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class SharedGrammarPool {
+    static final Logger LOG = LogManager.getLogger(SharedGrammarPool.class);
+    
+    private static volatile boolean enabled = false;
+    
+    // namespace URI -> pooled grammars for that namespace
+    private static final Map<String,List<Entry>> pool = new HashMap<>();
+    
+    // canonical file path -> content hash, good while size and mtime don't change
+    private static final Map<String,FileHash> fileHashes = new ConcurrentHashMap<>();
+
+    private static final AtomicLong hits   = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong stale  = new AtomicLong();
+    
+    // A pooled grammar, plus the document hash of each grammar in its import closure
+    private record Entry (SchemaGrammar grammar, Map<SchemaGrammar,String> closure) { }
+    
+    private record FileHash (long size, long mtime, String hash) { }
+    
+    private SharedGrammarPool () { }
+    
+    /**
+     * Turns the shared grammar pool on or off for all XMLSchema objects.
+     * Turning it off does not discard the pooled grammars; see {@link #clear()}.
+     * @param on true to enable the pool
+     */
+    public static void setEnabled (boolean on)  { enabled = on; }
+    
+    public static boolean isEnabled ()          { return enabled; }
+    
+    /**
+     * Discards every pooled grammar and resets the lookup counts.
+     */
+    public static synchronized void clear () {
+        pool.clear();
+        fileHashes.clear();
+        hits.set(0);
+        misses.set(0);
+        stale.set(0);
+    }
+    
+    /** Returns the number of lookups answered with a pooled grammar. */
+    public static long hits ()      { return hits.get(); }
+    
+    /** Returns the number of lookups for a namespace with no usable pooled grammar. */
+    public static long misses ()    { return misses.get(); }
+    
+    /** Returns the number of pooled grammars rejected because a document changed. */
+    public static long stale ()     { return stale.get(); }
+    
+    /** Returns the number of grammars in the pool. */
+    public static synchronized int size () {
+        int count = 0;
+        for (var el : pool.values()) count += el.size();
+        return count;
+    }
+    
+    /** Returns the fraction of lookups answered with a pooled grammar. */
+    public static double hitRate () {
+        long h = hits.get();
+        long t = h + misses.get();
+        return 0 == t ? 0.0 : (double)h / t;
+    }
+    
+    /**
+     * Returns a one-line summary of the pool size and lookup counts.
+     * @return summary string
+     */
+    public static String statistics () {
+        return String.format("grammar pool: %d grammars, %d hits, %d misses (%d stale), hit rate %.1f%%",
+                size(), hits(), misses(), stale(), 100.0 * hitRate());
+    }
+    
+    /**
+     * Assembles an XSModel object from a list of schema document URIs, reusing 
+     * and adding to the pooled grammars.  Same loader configuration as
+     * XMLSchema.xsmodel() uses without the pool.
+     * @param docs schema document URIs
+     * @param resolver catalog resolver; may be null
+     * @param msgs list to receive assembly messages
+     * @return XSModel object, or null on error
+     */
+    static XSModel xsmodel (List<String> docs, XMLResolver resolver, DOMErrorHandler handler, List<String> msgs) {
+        var loader = new XMLSchemaLoader();
+        var lpool  = new LoadPool(resolver);
+        loader.setProperty(XMLSchemaLoader.XMLGRAMMAR_POOL, lpool);
+        loader.setParameter("validate", true);
+        loader.setParameter("error-handler", handler);
+        if (null != resolver) loader.setParameter("resource-resolver", resolver);
+        try {
+            for (var doc : docs) loader.loadGrammar(new XMLInputSource(null, doc, null));
+        } catch (Exception ex) {
+            msgs.add(String.format("[fatal] %s", ex.getMessage()));
+            return null;
+        }
+        if (msgs.isEmpty()) lpool.publish();
+        return lpool.toXSModel();
+    }
+    
+    /**
+     * Creates a javax Schema object from a list of schema document URIs, reusing
+     * and adding to the pooled grammars.  Same checking as SchemaFactory.newSchema()
+     * does without the pool.
+     * @param docs schema document URIs
+     * @param resolver catalog resolver; may be null
+     * @param h error handler to receive assembly messages
+     * @return Schema object
+     * @throws SAXException 
+     */
+    static Schema javaxSchema (List<String> docs, XMLResolver resolver, SAXErrorHandler h) throws SAXException {
+        var loader = new XMLSchemaLoader();
+        var lpool  = new LoadPool(resolver);
+        loader.setProperty(XMLSchemaLoader.XMLGRAMMAR_POOL, lpool);
+        loader.setFeature("http://apache.org/xml/features/validation/schema-full-checking", true);
+        loader.setErrorHandler(new ErrorHandlerWrapper(h));
+        if (null != resolver) loader.setEntityResolver(new DOMEntityResolverWrapper(resolver));
+        try {
+            for (var doc : docs) loader.loadGrammar(new XMLInputSource(null, doc, null));
+        } catch (IOException | XNIException ex) {
+            throw new SAXException(ex.getMessage());
+        }
+        if (h.messages().isEmpty()) lpool.publish();
+        lpool.lockPool();
+        var factory = new XMLSchemaFactory();
+        factory.setErrorHandler(h);
+        if (null != resolver) factory.setResourceResolver(resolver);
+        return factory.newSchema(lpool);
+    }
+    
+    // Returns a pooled grammar for the namespace, if there is one compiled from
+    // the document Xerces would read, whose documents are unchanged, and which
+    // the resolver agrees with.  Otherwise null.
+    private static synchronized SchemaGrammar lookup (String nsU, String docPath, XMLResolver resolver) {
+        var el = pool.get(nsU);
+        if (null == el) { misses.incrementAndGet(); return null; }
+        boolean changed = false;
+        for (var e : el) {
+            if (null != docPath && !locationFiles(e.grammar()).contains(docPath)) continue;
+            if (!resolvesTo(e, resolver)) continue;
+            if (isCurrent(e)) {
+                hits.incrementAndGet();
+                return e.grammar();
+            }
+            changed = true;
+        }
+        if (changed) stale.incrementAndGet();
+        misses.incrementAndGet();
+        return null;
+    }
+    
+    // Adds a grammar compiled by a pile to the pool, unless it has no documents
+    // (the schema-for-schemas), is already pooled, or its content is already pooled.
+    private static synchronized void offer (SchemaGrammar g) {
+        var nsU = g.getTargetNamespace();
+        if (null == nsU || W3C_XML_SCHEMA_NS_URI.equals(nsU)) return;
+        if (null == g.getDocumentLocations() || 0 == g.getDocumentLocations().getLength()) return;
+        var closure = new LinkedHashMap<SchemaGrammar,String>();
+        if (!addClosure(g, closure)) return;
+        var el = pool.computeIfAbsent(nsU, k -> new ArrayList<>());
+        for (var e : el) 
+            if (e.grammar() == g || closure.get(g).equals(e.closure().get(e.grammar()))) return;
+        el.add(new Entry(g, closure));
+        LOG.debug("pooled grammar for {}", nsU);
+    }
+    
+    // Puts the document hash for a grammar and everything it imports into the
+    // closure map.  Returns false if a document can't be hashed.
+    private static boolean addClosure (SchemaGrammar g, Map<SchemaGrammar,String> closure) {
+        if (closure.containsKey(g)) return true;
+        if (W3C_XML_SCHEMA_NS_URI.equals(g.getTargetNamespace())) return true;
+        var dh = documentHash(g);
+        if (null == dh) return false;
+        closure.put(g, dh);
+        var imports = g.getImportedGrammars();
+        if (null == imports) return true;
+        for (var ig : imports) 
+            if (!addClosure((SchemaGrammar)ig, closure)) return false;
+        return true;
+    }
+    
+    // True if every document in the entry's closure has the same content as 
+    // when the grammar was pooled.
+    private static boolean isCurrent (Entry e) {
+        for (var me : e.closure().entrySet()) {
+            var dh = documentHash(me.getKey());
+            if (!me.getValue().equals(dh)) return false;
+        }
+        return true;
+    }
+    
+    // False if the resolver maps one of the closure namespaces to a document 
+    // that wasn't used to compile its pooled grammar.
+    private static boolean resolvesTo (Entry e, XMLResolver resolver) {
+        if (null == resolver) return true;
+        for (var g : e.closure().keySet()) {
+            var resU = resolver.resolveURI(g.getTargetNamespace());
+            if (XMLResolver.NO_MAP.equals(resU) || XMLResolver.REMOTE_MAP.equals(resU)) continue;
+            var resF = URIStringToFile(resU);
+            if (null == resF || !locationFiles(g).contains(canonicalPath(resF))) return false;
+        }
+        return true;
+    }
+    
+    // Returns the hash of the contents of the grammar's documents, or null
+    // if one of them can't be read.
+    private static String documentHash (SchemaGrammar g) {
+        var sb = new StringBuilder();
+        for (var path : new TreeSet<>(locationFiles(g))) {
+            var fh = fileHash(path);
+            if (null == fh) return null;
+            sb.append(path).append('\t').append(fh).append('\n');
+        }
+        return sha256(sb.toString());
+    }
+    
+    private static Set<String> locationFiles (SchemaGrammar g) {
+        var res  = new HashSet<String>();
+        var locs = g.getDocumentLocations();
+        for (int i = 0; null != locs && i < locs.getLength(); i++) {
+            var f = URIStringToFile(locs.item(i));
+            if (null != f) res.add(canonicalPath(f));
+        }
+        return res;
+    }
+    
+    private static String canonicalPath (File f) {
+        try { return f.getCanonicalPath(); } 
+        catch (IOException ex) { return f.getAbsolutePath(); }
+    }
+    
+    private static String fileHash (String path) {
+        var f = new File(path);
+        long size  = f.length();
+        long mtime = f.lastModified();
+        var fh = fileHashes.get(path);
+        if (null != fh && fh.size() == size && fh.mtime() == mtime) return fh.hash();
+        try {
+            fh = new FileHash(size, mtime, sha256(f));
+        } catch (IOException ex) {
+            LOG.debug("can't hash {}: {}", path, ex.getMessage());
+            return null;
+        }
+        fileHashes.put(path, fh);
+        return fh.hash();
+    }
+    
+    // The grammar pool seen by the Xerces loader for one pile.  Grammars compiled
+    // or reused by the pile are kept here; a namespace not yet seen in the pile
+    // is looked up in the shared pool.  Grammars are published to the shared 
+    // pool only after the whole pile is assembled.
+    private static class LoadPool extends XSGrammarPool {
+        private final XMLResolver resolver;
+        
+        LoadPool (XMLResolver r) { super(); resolver = r; }
+        
+        @Override
+        public Grammar retrieveGrammar (XMLGrammarDescription desc) {
+            var g = super.retrieveGrammar(desc);
+            if (null != g || !XMLGrammarDescription.XML_SCHEMA.equals(desc.getGrammarType())) return g;
+            var nsU = desc.getNamespace();
+            if (null == nsU) return null;
+            return lookup(nsU, documentPath(desc), resolver);
+        }
+        
+        // Returns the path of the document Xerces will read for this description,
+        // if that is known from its location and not decided by the resolver.  
+        // The initial documents in a pile are never resolved.
+        private String documentPath (XMLGrammarDescription desc) {
+            boolean initial = desc instanceof XSDDescription xd && XSDDescription.CONTEXT_PREPARSE == xd.getContextType();
+            if (!initial && null != resolver) {
+                var resU = resolver.resolveURI(desc.getNamespace());
+                if (!XMLResolver.NO_MAP.equals(resU) && !XMLResolver.REMOTE_MAP.equals(resU)) return null;
+            }
+            var locU = desc.getLiteralSystemId();
+            if (null == locU && desc instanceof XSDDescription xd && null != xd.getLocationHints() && xd.getLocationHints().length > 0)
+                locU = xd.getLocationHints()[0];
+            if (null == locU) return null;
+            try {
+                locU = XMLEntityManager.expandSystemId(locU, desc.getBaseSystemId(), false);
+            } catch (MalformedURIException ex) {
+                return null;
+            }
+            var f = URIStringToFile(locU);
+            return null == f ? null : canonicalPath(f);
+        }
+        
+        void publish () {
+            for (var g : retrieveInitialGrammarSet(XMLGrammarDescription.XML_SCHEMA)) 
+                offer((SchemaGrammar)g);
+        }
+    }
+}
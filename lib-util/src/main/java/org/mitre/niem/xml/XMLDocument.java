@@ -23,18 +23,20 @@
  */
 package org.mitre.niem.xml;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
+import java.util.List;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.mitre.niem.utility.ParallelMap;
+import org.xml.sax.SAXException;
 
 /**
  * A utility class for working with XML documents.
@@ -46,6 +48,74 @@ public class XMLDocument {
 
     static final Logger LOG = LogManager.getLogger(XMLDocument.class);
     
+    // Stop reading a file that has no start tag in the first megabyte
+    static final int SNIFF_LIMIT = 1 << 20;
+    
+    // StAX factories aren't promised to be thread-safe; one per thread
+    private static final ThreadLocal<XMLInputFactory> sniffFactory = ThreadLocal.withInitial(() -> {
+        var f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return f;
+    });
+    
+    /**
+     * Reads the first start tag of an XML document to obtain the namespace URI
+     * and local name of the document element, and its @targetNamespace attribute.
+     * Reading stops at the first start tag, or after SNIFF_LIMIT bytes.  
+     * Returns empty strings if the file is not an XML document.
+     * @param path - file name of XML document
+     * @return XMLRootElement record
+     * @throws IOException 
+     */
+    public static XMLRootElement sniffRootElement (String path) throws IOException {
+        try (var is = BoundedInputStream.builder()
+                .setInputStream(new BufferedInputStream(new FileInputStream(path), 8192))
+                .setMaxCount(SNIFF_LIMIT)
+                .get()) {
+            var sr = sniffFactory.get().createXMLStreamReader(is);
+            try {
+                while (sr.hasNext()) {
+                    if (XMLStreamConstants.START_ELEMENT == sr.next()) {
+                        var ns  = sr.getNamespaceURI();
+                        var tns = sr.getAttributeValue(null, "targetNamespace");
+                        return new XMLRootElement(null == ns ? "" : ns, sr.getLocalName(), null == tns ? "" : tns);
+                    }
+                }
+            } finally {
+                sr.close();
+            }
+        } catch (XMLStreamException ex) {
+            var line = null == ex.getLocation() ? 0 : ex.getLocation().getLineNumber();
+            LOG.warn("parse error at {} line {}:  {}", path, line, ex.getMessage());
+        }
+        return new XMLRootElement("", "", "");
+    }
+    
+    /**
+     * Reads the first start tag of many XML documents, in parallel.  The result 
+     * list is in path list order.  An entry is null if the file can't be read;
+     * call sniffRootElement on that path to get the exception.
+     * @param paths - file names of XML documents
+     * @param threads - number of reader threads
+     * @return list of XMLRootElement records
+     */
+    public static List<XMLRootElement> sniffRootElements (List<String> paths, int threads) {
+        try {
+            return ParallelMap.map(paths, threads, XMLDocument::sniffOrNull);
+        } catch (IOException | SAXException | ParserConfigurationException ex) {
+            throw new IllegalStateException(ex);        // only if interrupted
+        }
+    }
+    
+    private static XMLRootElement sniffOrNull (String path) {
+        try {
+            return sniffRootElement(path);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+    
     /**
      * Reads an XML document to obtain the namespace URI, of the document element.
      * Returns the empty string if the document element does not have a namespace.
@@ -55,24 +125,7 @@ public class XMLDocument {
      * @throws IOException 
      */
     public static String getXMLDocumentElementNamespace (String path) throws IOException {
-        String ns = null;
-        try {
-            FileInputStream is = new FileInputStream(path);
-            XMLEventReader er = XMLInputFactory.newFactory().createXMLEventReader(is);
-            while (null == ns && er.hasNext()) {
-                XMLEvent e = er.nextEvent();
-                if (e.isStartElement()) {
-                    StartElement se = e.asStartElement();
-                    QName qn = se.getName();
-                    ns = qn.getNamespaceURI();
-                }
-            }
-            is.close();
-        } catch (XMLStreamException ex) {
-            LOG.warn("parse error at {} line {}:  {}", path, ex.getLocation().getLineNumber(), ex.getMessage());
-        }
-        if (null == ns) return "";
-        return ns;
+        return sniffRootElement(path).namespace();
     }
     
     /**
@@ -96,28 +149,8 @@ public class XMLDocument {
      * @throws IOException 
      */
     public static String getXSDTargetNamespace (String path) throws IOException {
-        String tns = null;
-        try {
-            FileInputStream is = new FileInputStream(path);
-            XMLEventReader er = XMLInputFactory.newFactory().createXMLEventReader(is);
-            while (null == tns && er.hasNext()) {
-                XMLEvent e = er.nextEvent();
-                if (e.isStartElement()) {
-                    var se   = e.asStartElement();
-                    var seqn = se.getName();
-                    if (!W3C_XML_SCHEMA_NS_URI.equals(seqn.getNamespaceURI())
-                            || !"schema".equals(seqn.getLocalPart())) return "";
-                    var tnsa = new QName("targetNamespace");
-                    var a    = se.getAttributeByName(tnsa);
-                    tns = a.getValue();
-                }
-            }
-            is.close();
-        } catch (XMLStreamException ex) {
-            LOG.warn("parse error at {} line {}:  {}", path, ex.getLocation().getLineNumber(), ex.getMessage());
-        }
-        if (null == tns) return "";
-        return tns;
+        var root = sniffRootElement(path);
+        return root.isSchema() ? root.targetNamespace() : "";
     } 
     
     /**
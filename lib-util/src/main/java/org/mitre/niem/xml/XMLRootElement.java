@@ -0,0 +1,48 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xml;
+
+import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
+
+/**
+ * A record for what you can learn about an XML document from its first start 
+ * tag: the document element namespace and local name, and @targetNamespace.
+ * All empty strings if the file is not an XML document.
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public record XMLRootElement (
+    String namespace,                       // document element namespace URI
+    String localName,                       // document element local name
+    String targetNamespace) {               // @targetNamespace, if any
+    
+    /**
+     * True if the document element is xs:schema.
+     * @return true for a schema document
+     */
+    public boolean isSchema () {
+        return W3C_XML_SCHEMA_NS_URI.equals(namespace) && "schema".equals(localName);
+    }
+}
@@ -55,6 +55,7 @@ import org.apache.xerces.xs.XSLoader;
 import org.apache.xerces.xs.XSModel;
 import org.apache.xerces.xs.XSNamespaceItem;
 import org.apache.xerces.xs.XSNamespaceItemList;
+import org.mitre.niem.utility.ParallelMap;
 import static org.mitre.niem.utility.URIfuncs.URIStringToFile;
 import static org.mitre.niem.xml.XMLResolver.*;
 import org.w3c.dom.DOMConfiguration;
@@ -139,8 +140,10 @@ public class XMLSchema {
      */
     public XMLSchema (String... args) throws XMLSchemaException {
         List<Integer> iNSindex = new ArrayList<>();
+        List<String> pathL = new ArrayList<>();     // file path arguments, in order
+        List<String> furiL = new ArrayList<>();     // canonical file URI for each path
         
-        // Go through the arguments, figure out what they are, validate them
+        // Go through the arguments, figure out what they are
         for (var arg : args) {
             // Handle an argument in URI syntax.  
             // Anything other than a file: URI is a namespace URI.
@@ -157,39 +160,48 @@ public class XMLSchema {
                 // Any other URI is an initial namespace URI
                 else {
                     initialNS.add(arg);                   // resolve this when we have the catalog
-                    schemaDocs.add(null);                 // leave a space in the list of schema documents
-                    iNSindex.add(schemaDocs.size() - 1);  // remember the index of the space
+                    pathL.add(null);
+                    furiL.add(null);
                 }
             } 
             else path = arg;        // not a URI
-            // If we have a string with a file: URI or a pathname, it's a catalog 
-            // or a schema document. Parse the first element to see which.
             if (null != path) {
-                String furi   = null;        // file URI string constructed from filename path
-                String docnsU = null;        // namespace of document element in file
                 try {
                     var f  = new File(path);
                     var cf = f.getCanonicalFile();
-                    furi = cf.toURI().toString();
+                    furiL.add(cf.toURI().toString());
+                    pathL.add(path);
                 } catch (IOException ex) {
                     throw new XMLSchemaException(String.format("Can't canonicalize path %s: %s", path, ex.getMessage()));
                 }
-                try {
-                    docnsU = XMLDocument.getXMLDocumentElementNamespace(path);
-                } catch (IOException ex) {
-                    throw new XMLSchemaException(String.format("I/O error with %s: %s", path, ex.getMessage()));
-                }
-                if (XML_CATALOG_NS_URI.equals(docnsU)) catalogs.add(furi);
-                else if (W3C_XML_SCHEMA_NS_URI.equals(docnsU)) schemaDocs.add(furi);
-                else throw new XMLSchemaException(String.format("%s is not a schema document or XML catalog", path));
             }
         }
+        // If we have a file: URI or a pathname, it's a catalog or a schema 
+        // document.  Read the first start tag of each, all at once, to see which.
+        var rootL = XMLDocument.sniffRootElements(pathL.stream().filter(p -> null != p).toList(), threads);
+        int ri = 0;
+        for (int i = 0; i < pathL.size(); i++) {
+            var path = pathL.get(i);
+            if (null == path) {
+                schemaDocs.add(null);                 // leave a space in the list of schema documents
+                iNSindex.add(schemaDocs.size() - 1);  // remember the index of the space
+                continue;
+            }
+            var root = rootL.get(ri++);
+            if (null == root) root = sniffForError(path, "I/O error with %s: %s");
+            var docnsU = root.namespace();
+            var furi   = furiL.get(i);
+            if (XML_CATALOG_NS_URI.equals(docnsU)) catalogs.add(furi);
+            else if (W3C_XML_SCHEMA_NS_URI.equals(docnsU)) schemaDocs.add(furi);
+            else throw new XMLSchemaException(String.format("%s is not a schema document or XML catalog", path));
+        }
         // Create the resolver object.  OK if there are no catalog files
         resolver = new XMLResolver(catalogs);
         resmsgL  = resolver.allMessages();
 
         // Convert each initial namespace URI to a schema document file URI
         // Check for a vast number of possible errors...
+        var sfuL = new ArrayList<URI>();
         for (int i = 0; i < initialNS.size(); i++) {
             String ns = initialNS.get(i);
             String sf = resolver.resolveURI(ns);
@@ -205,17 +217,21 @@ public class XMLSchema {
             catch (URISyntaxException ex) { 
                 throw new XMLSchemaException(String.format("%s resolves to %s, which is not valid URI syntax", ns, sf));
             }
-            // It's a valid local file URI, now see if file is XSD
-            try {
-                var dkind = XMLDocument.getXMLDocumentElementNamespace(sfu.getPath());
-                var sftns = XMLDocument.getXSDTargetNamespace(sfu.getPath());
-                if (!W3C_XML_SCHEMA_NS_URI.equals(dkind))
-                    throw new XMLSchemaException(String.format("%s resolves to %s -- not a schema document", ns, sf));                    
-                if (!sftns.equals(ns)) 
-                    throw new XMLSchemaException(String.format("%s resolves to %s -- wrong target namespace %s", ns, sf, sftns));                    
-            } catch (IOException ex) {
-                throw new XMLSchemaException(String.format("I/O error on %s: %s", sfu.getPath(), ex.getMessage()));
-            }
+            sfuL.add(sfu);
+        }
+        // It's a valid local file URI, now see if file is XSD
+        var sfRootL = XMLDocument.sniffRootElements(sfuL.stream().map(URI::getPath).toList(), threads);
+        for (int i = 0; i < initialNS.size(); i++) {
+            var ns    = initialNS.get(i);
+            var sfu   = sfuL.get(i);
+            var sf    = sfu.toString();
+            var root  = sfRootL.get(i);
+            if (null == root) root = sniffForError(sfu.getPath(), "I/O error on %s: %s");
+            var sftns = root.isSchema() ? root.targetNamespace() : "";
+            if (!W3C_XML_SCHEMA_NS_URI.equals(root.namespace()))
+                throw new XMLSchemaException(String.format("%s resolves to %s -- not a schema document", ns, sf));                    
+            if (!sftns.equals(ns)) 
+                throw new XMLSchemaException(String.format("%s resolves to %s -- wrong target namespace %s", ns, sf, sftns));                    
             // It's a schema document, so fill the hole we left in the list of file URIs.
             int index = iNSindex.get(i);
             schemaDocs.set(index, sfu.toString());
@@ -233,6 +249,16 @@ public class XMLSchema {
         }
     }  
 
+    // Sniffing a file in a batch failed with an I/O error.  Do it again to get the
+    // exception, and report it.
+    private static XMLRootElement sniffForError (String path, String fmt) throws XMLSchemaException {
+        try {
+            return XMLDocument.sniffRootElement(path);
+        } catch (IOException ex) {
+            throw new XMLSchemaException(String.format(fmt, path, ex.getMessage()));
+        }
+    }
+
     ///// XSModel stuff ////////////////////////////////////////////////////
      
     // XSModel and its assembly messages are created on demand and cached
@@ -243,10 +269,16 @@ public class XMLSchema {
      * Creates an XSModel object by assembling the schema documents in the pile,
      * using the schema documents and catalog documents provided as arguments to 
      * the constructor,  Messages from creating the object are retained and available.
+     * Uses the {@link SharedGrammarPool} when it is enabled.
      * @return XSModel object, or null on error.
      */
     public XSModel xsmodel () {
         if (null != xs) return xs;    // cached result
+        if (SharedGrammarPool.isEnabled()) {
+            xsmsgs = new ArrayList<>();
+            xs = SharedGrammarPool.xsmodel(schemaDocs, resolver, new XSModelHandler(xsmsgs), xsmsgs);
+            return xs;
+        }
         XSLoader loader;
         try {
             loader = ParserBootstrap.xsLoader(); // don't reuse these, they keep state
@@ -348,12 +380,18 @@ public class XMLSchema {
      * Creates a javax Schema object by assembling the schema documents in the pile,
      * using the schema documents and catalog documents provided as arguments to 
      * the constructor,  Messages from creating the object are retained and available.
+     * Uses the {@link SharedGrammarPool} when it is enabled.
      * @return Schema object, or null on error.
      * @throws org.xml.sax.SAXException
      */    
     public Schema javaxSchema () throws SAXException { 
         if (null != javaxSchema) return javaxSchema;
-        
+        if (SharedGrammarPool.isEnabled()) {
+            var h = new SAXErrorHandler();
+            javaxSchema = SharedGrammarPool.javaxSchema(schemaDocs, resolver, h);
+            javaxMsgs = h.messages();
+            return javaxSchema;
+        }
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);             
         SAXErrorHandler  h = new SAXErrorHandler();   
         factory.setErrorHandler(h);
@@ -434,6 +472,16 @@ public class XMLSchema {
     
     // Schema pile parsing info is created by the object constructor.
     
+    private static int threads = Runtime.getRuntime().availableProcessors();    // schema document parser threads
+    
+    /**
+     * Sets the number of threads the constructor uses to parse the schema
+     * documents in a pile.  The documents are added to the pile in XSModel
+     * order, so the result does not depend on the number of threads.
+     * @param n number of parser threads
+     */
+    public static void setThreads (int n) { threads = Math.max(1, n); }
+    
     private final List<XMLSchemaDocument> sdocL = new ArrayList<>();    // list of schema document objects
     private final Map<String,XMLSchemaDocument> sdoc = new HashMap<>(); // namespace URI -> sdoc object
     private String pileRoot;                                            // common prefix of all document paths
@@ -501,6 +549,9 @@ public class XMLSchema {
         // One entry for each namespace URI that was a @targetNamespace in any document
         // One entry if there is a no-namespace document (which is not NIEM conforming)    
         XSNamespaceItemList nslist = xs.getNamespaceItems();  
+        var seenNS = new HashSet<String>();
+        var nsuriL = new ArrayList<String>();       // namespace URI for each document
+        var sdFL   = new ArrayList<File>();         // schema document files, in XSModel order
         for (int i = 0; i < nslist.getLength(); i++) {
             XSNamespaceItem xnsi = nslist.item(i);
             String nsuri = xnsi.getSchemaNamespace();
@@ -511,24 +562,31 @@ public class XMLSchema {
                 }
                 continue;
             }
-            if (sdoc.containsKey(nsuri)) continue;
+            if (!seenNS.add(nsuri)) continue;
             if (docl.size() < 1 && !W3C_XML_SCHEMA_NS_URI.equals(nsuri))
                 throw new XMLSchemaException(String.format("Xerces weirdness: no schema document for namespace %s", nsuri)); 
             else {
                 if (docl.size() > 1) LOG.warn("Multiple documents listed for namespace {} in XSModel?", nsuri);
                 for (int j = 0; j < docl.getLength(); j++) {
                     var sdUstr = xercesLocationURI(docl.item(j));
-                    var sdF    = URIStringToFile(sdUstr);
-                    var sd     = newSchemaDocument(sdF);    // NOT new XMLSchemaDocument; see below
-                    var targNS = sd.targetNamespace();
-                    if (null != targNS && !nsuri.equals(targNS))
-                        throw new XMLSchemaException(
-                                String.format("Xerces weirdness: schema document for namespace %s has targetNamespace %s", nsuri, targNS));
-                    sdoc.put(nsuri, sd);
-                    sdocL.add(sd);
+                    nsuriL.add(nsuri);
+                    sdFL.add(URIStringToFile(sdUstr));
                 }
             }
         }
+        // Parse the documents, perhaps in parallel, then add them to the pile
+        // in XSModel order.
+        var sdL = parseSchemaDocuments(sdFL);
+        for (int i = 0; i < sdL.size(); i++) {
+            var nsuri  = nsuriL.get(i);
+            var sd     = sdL.get(i);
+            var targNS = sd.targetNamespace();
+            if (null != targNS && !nsuri.equals(targNS))
+                throw new XMLSchemaException(
+                        String.format("Xerces weirdness: schema document for namespace %s has targetNamespace %s", nsuri, targNS));
+            sdoc.put(nsuri, sd);
+            sdocL.add(sd);
+        }
         // Each schema document object has a list of all its imports, so we know 
         // all the schema documents in the pile.  Add all the catalog documents 
         // and find the greatest common prefix
@@ -558,6 +616,19 @@ public class XMLSchema {
         return furi;
     }
     
+    // Creates and preloads a schema document object for each file.  Each document
+    // is independent, so the SAX and DOM parsing can run in parallel.  The list
+    // of objects is in file list order no matter how many threads.
+    private List<XMLSchemaDocument> parseSchemaDocuments (List<File> sdFL) throws SAXException, IOException, ParserConfigurationException {
+        return ParallelMap.map(sdFL, threads, this::parseSchemaDocument);
+    }
+    
+    private XMLSchemaDocument parseSchemaDocument (File sdF) throws SAXException, IOException, ParserConfigurationException {
+        var sd = newSchemaDocument(sdF);    // NOT new XMLSchemaDocument; see below
+        sd.preload();
+        return sd;
+    }
+    
     // Override this in a derived XMLSchema class to create a derived XMLSchemaDocument object.
     protected XMLSchemaDocument newSchemaDocument (File sdF) throws SAXException, IOException, ParserConfigurationException {
         return new XMLSchemaDocument(sdF);
@@ -25,10 +25,13 @@ package org.mitre.niem.xml;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
 import static javax.xml.XMLConstants.XML_NS_URI;
 import javax.xml.parsers.ParserConfigurationException;
@@ -63,7 +66,8 @@ public class XMLSchemaDocument {
     
     private final URI docURI;                       // file URI object for this schema document
     private final File docF;                        // schema document file
-    private Document dom = null;                    // parsed schema document
+    private Parsed parsed = null;                   // parsed schema document
+    private SoftReference<Parsed> softParsed = null;// parsed schema document, in low-memory mode
     private String targetNS = null;                 // document element @targetNamespace
     private String lang = null;                     // document element @xml:lang
     private String version = null;                  // document element @version
@@ -79,7 +83,6 @@ public class XMLSchemaDocument {
      * @throws java.io.IOException
      */
     public XMLSchemaDocument (File sdF) throws ParserConfigurationException, SAXException, IOException {
-        var db = ParserBootstrap.docBuilder();
         docURI   = sdF.toURI();
         docF     = sdF;
 //        dom      = db.parse(docF);
@@ -102,25 +105,130 @@ public class XMLSchemaDocument {
      */
     public File docFile ()  { return docF; }
     
+    // In low-memory mode, a parsed DOM is only softly reachable from its 
+    // XMLSchemaDocument.  The garbage collector may discard it when the heap
+    // runs short, and dom() parses the document again the next time it is
+    // needed.  Everything else extracted from the DOM is kept.
+    private static volatile boolean lowMemory = false;
+    
+    /**
+     * Turns low-memory mode on or off for schema documents parsed afterward.
+     * In this mode, the parsed DOM of a schema document may be discarded when
+     * heap space runs short, and is parsed again when needed.  Callers that 
+     * want the benefit must not hold on to DOM nodes between uses.
+     * @param on - true for low-memory mode
+     */
+    public static void setLowMemory (boolean on)    { lowMemory = on; }
+    public static boolean isLowMemory ()            { return lowMemory; }
+    
+    // The DOM and the index of its named top-level components live and die together.
+    private static class Parsed {
+        private final Document dom;
+        private List<Element> comps = null;             // named top-level elements, document order
+        private Map<String,Element> named = null;       // @name -> last such element
+        Parsed (Document dom) { this.dom = dom; }
+    }
+    
+    private Parsed parsed () {
+        if (null != parsed) return parsed;
+        var p = null == softParsed ? null : softParsed.get();
+        if (null != p) return p;
+        Document d = null;
+        try {
+            d = ParserBootstrap.threadDocBuilder().parse(docF);
+        } catch (ParserConfigurationException ex) {
+            LOG.error("Parser configuration error: {}", ex.getMessage());
+        } catch (SAXException ex) {
+            LOG.error("Error parsing {}: {}", docF.getName(), ex.getMessage());
+        } catch (IOException ex) {
+            LOG.error("I/O error on {}: {}", docF.getName(), ex.getMessage());
+        }
+        if (null == d) return null;
+        p = new Parsed(d);
+        if (lowMemory) softParsed = new SoftReference<>(p);
+        else parsed = p;
+        return p;
+    }
+    
     /**
      * Returns the document object model for the schema document.
-     * Returns null if parsing fails.
+     * Returns null if parsing fails.  In low-memory mode, the result may be
+     * a fresh parse of the document, so don't expect the same object twice
+     * unless you are holding on to it.
      * @return DOM
      */
     public Document dom ()  { 
-        if (null == dom) {
-            try {
-                var db = ParserBootstrap.docBuilder();
-                dom = db.parse(docF);
-            } catch (ParserConfigurationException ex) {
-                LOG.error("Parser configuration error: {}", ex.getMessage());
-            } catch (SAXException ex) {
-                LOG.error("Error parsing {}: {}", docF.getName(), ex.getMessage());
-            } catch (IOException ex) {
-                LOG.error("I/O error on {}: {}", docF.getName(), ex.getMessage());
-            }
+        var p = parsed();
+        return null == p ? null : p.dom;
+    }
+    
+    /**
+     * Discards the parsed DOM.  The next call to dom() parses the document
+     * again.  Values already extracted from the DOM are kept.
+     */
+    public void releaseDOM () {
+        parsed = null;
+        softParsed = null;
+    }
+    
+    /**
+     * Returns the top-level elements of the schema document that have a
+     * name attribute (type definitions, element and attribute declarations,
+     * groups), in document order.  Returns an empty list if the document 
+     * can't be parsed.
+     * @return list of named top-level elements
+     */
+    public List<Element> topLevelComponents () {
+        var p = parsed();
+        if (null == p) return Collections.emptyList();
+        if (null == p.comps) indexComponents(p);
+        return p.comps;
+    }
+    
+    /**
+     * Returns the top-level element with the specified name attribute, or
+     * null if there isn't one.  If more than one top-level element has that
+     * name (e.g. a type and an element), returns the last.
+     * @param name - value of @name
+     * @return named top-level element
+     */
+    public Element topLevelComponent (String name) {
+        var p = parsed();
+        if (null == p) return null;
+        if (null == p.named) indexComponents(p);
+        return p.named.get(name);
+    }
+    
+    private static void indexComponents (Parsed p) {
+        var comps = new ArrayList<Element>();
+        var named = new HashMap<String,Element>();
+        var root  = p.dom.getDocumentElement();
+        for (var node = root.getFirstChild(); null != node; node = node.getNextSibling()) {
+            if (ELEMENT_NODE != node.getNodeType()) continue;
+            var e    = (Element)node;
+            var name = e.getAttribute("name");
+            if (name.isEmpty()) continue;
+            comps.add(e);
+            named.put(name, e);
         }
-        return dom; 
+        p.comps = Collections.unmodifiableList(comps);
+        p.named = named;
+    }
+    
+    /**
+     * Parses the schema document and extracts the document element attributes,
+     * documentation, and imports, so that later calls don't have to.  The
+     * namespace declarations are extracted by the constructor.  XMLSchema calls
+     * this for every document in the pile, perhaps on several threads at once.
+     * Override this to extract more in a derived class.
+     */
+    public void preload () {
+        if (null == dom()) return;
+        targetNamespace();
+        language();
+        version();
+        documentation();
+        importElements();
     }
     
     /**
@@ -234,10 +342,8 @@ public class XMLSchemaDocument {
      * @return string result
      */
     public static String evalForString (Element e, String exp) {
-        var xpf = XPathFactory.newInstance();
-        var xp  = xpf.newXPath();
         try {
-            var xpr = xp.compile(exp);
+            var xpr = compileXPath(exp);
             return evalForString(e, xpr);
         } catch (XPathExpressionException ex) { 
             LOG.error("Invalid XPath expression {}: {}", exp, ex.getMessage());
@@ -271,10 +377,8 @@ public class XMLSchemaDocument {
      * @return NodeList object or null
      */
     public static NodeList evalForNodes (Element e, String exp) {
-        var xpf = XPathFactory.newInstance();
-        var xp  = xpf.newXPath();
         try {
-            var xpr = xp.compile(exp);
+            var xpr = compileXPath(exp);
             return evalForNodes(e, xpr);
         } catch (XPathExpressionException ex) {
              LOG.error("Invalid XPath expression {}: {}", exp, ex.getMessage());
@@ -300,6 +404,21 @@ public class XMLSchemaDocument {
        return null;
     }
     
+    // Compiled XPath expressions, so the string methods don't compile the same
+    // expression on every call.  One cache per thread; XPathExpression objects 
+    // are not thread-safe.
+    private static final ThreadLocal<Map<String,XPathExpression>> xpathCache = ThreadLocal.withInitial(HashMap::new);
+    
+    private static XPathExpression compileXPath (String exp) throws XPathExpressionException {
+        var cache = xpathCache.get();
+        var xpr   = cache.get(exp);
+        if (null == xpr) {
+            xpr = XPathFactory.newInstance().newXPath().compile(exp);
+            cache.put(exp, xpr);
+        }
+        return xpr;
+    }
+    
     /**
      * Returns the local name portion of a QName
      * Returns the input string if no prefix.
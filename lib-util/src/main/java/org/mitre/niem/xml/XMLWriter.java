@@ -23,14 +23,17 @@
  */
 package org.mitre.niem.xml;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -43,7 +46,9 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 /**
@@ -51,6 +56,16 @@ import org.w3c.dom.Node;
  * Namespace declarations and attributes of the root element appear in order
  * (namespaces, then attributes) on separate indented lines.  Much easier to
  * read than a single very long line.
+ * <p>
+ * The document is walked and written straight to the output writer, one 
+ * line at a time, so nothing bigger than a line is ever held in memory.
+ * The indenting follows the rules of the Xalan serializer used by earlier
+ * versions, so the output is byte-for-byte the same.  Documents containing
+ * anything other than elements, text, and comments (CDATA sections, 
+ * processing instructions, entity references, a DOCTYPE) still go through
+ * the Transformer, with the same line-by-line rewriting applied.  That 
+ * output is held in memory until the Transformer finishes, so nothing is
+ * written if it fails.
  * 
  * @author Scott Renner
  * <a href="mailto:sar@mitre.org">sar@mitre.org</a>;llll8
@@ -73,63 +88,125 @@ public class XMLWriter {
      * @throws IOException 
      */
     public void writeXML (Document dom, Writer w) throws IOException {
-
-        // Generate XML text from the document
-        var ostr      = new StringWriter();
+        writeXML(dom, w, false);
+    }
+    
+    // Package access so the tests and benchmark can compare the DOM walker
+    // with the Transformer it replaced.
+    void writeXML (Document dom, Writer w, boolean useTransformer) throws IOException {
+        dom.getDocumentElement().normalize();
+        
+        // Choose the path before writing anything.  The Transformer output is
+        // held until it succeeds, so a failure leaves the writer untouched.
+        String text = null;
+        if (useTransformer || !Printer.canPrint(dom)) {
+            var sw = new StringWriter();
+            if (!transform(dom, sw)) return;
+            text = sw.toString();
+        }
+        //Write our own XML declaration, without @standalone
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        var lw = new LineWriter(w);
+        if (null == text) new Printer(lw).print(dom);
+        else lw.write(text);
+        lw.finish();
+    }
+    
+    // Generate XML text from the document with an indenting Transformer.
+    private static boolean transform (Document dom, Writer w) {
         var transFact = ParserBootstrap.transFactory();
         Transformer trans = null;
         try {
-            dom.getDocumentElement().normalize();
             trans = transFact.newTransformer();
             trans.setOutputProperty(OutputKeys.INDENT, "yes");
             trans.setOutputProperty(OutputKeys.METHOD, "xml");
             trans.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
             trans.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
             trans.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            trans.transform(new DOMSource(dom), new StreamResult(ostr));      
+            trans.transform(new DOMSource(dom), new StreamResult(w));      
         } catch (TransformerConfigurationException ex) {
             LOG.error("can't configure Transformer: " + ex.getMessage());
-            return;
+            return false;
         } catch (TransformerException ex) {
             LOG.error("DOM transformation error: " + ex.getMessage());
-            return;
+            return false;
+        }
+        return true;
+    }
+    
+    private static Pattern commentTagPat = Pattern.compile("-->\\s*<\\w");
+    private static Pattern tagPat = Pattern.compile("^\\s*<\\w\\S+\\s*");
+    
+    /**
+     * A writer that collects the serialized document into lines and hands 
+     * each one to handleFirstLine or handleOtherLines.  Lines before the 
+     * document element are copied as-is.  If the document begins with a
+     * comment, there is no newline between the --> and the start of the first
+     * element; the line is split there.  Blank lines after the document
+     * element are dropped.
+     */
+    private class LineWriter extends Writer {
+        private final Writer out;
+        private final StringBuilder line = new StringBuilder();
+        private boolean inProlog = true;
+        private boolean skipLF   = false;
+        
+        LineWriter (Writer out) { this.out = out; }
+        
+        @Override
+        public void write (int c) throws IOException {
+            if (skipLF && '\n' == c) { skipLF = false; return; }
+            skipLF = false;
+            if ('\r' == c) skipLF = true;
+            if ('\n' == c || '\r' == c) endLine();
+            else line.append((char)c);
+        }
+        
+        @Override
+        public void write (char[] cbuf, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) write(cbuf[i]);
         }
-        //Write our own XML declaration, without @standalone
-        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
         
-        // If the input document begins with a comment, then there may be
-        // no newline between the --> and the start of the first element.
-        // Why is that? No fscking idea. Also sometimes the Transformer
-        // double-spaces the XML output, sometimes it doesn't.
-        var br = new BufferedReader(new StringReader(ostr.toString()));        
-        var ln = br.readLine();
-        while (null != ln) {
+        @Override
+        public void write (String s, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) write(s.charAt(i));
+        }
+        
+        private void endLine () throws IOException {
+            var ln = line.toString();
+            line.setLength(0);
+            if (!inProlog) {
+                if (!ln.isBlank()) handleOtherLines(ln, out);
+                return;
+            }
             var m = commentTagPat.matcher(ln);
             if (m.find()) {
-                var s = ln.substring(0, m.end()-2);
+                out.write(ln.substring(0, m.end()-2));
+                out.write("\n");
                 ln = ln.substring(m.end()-2);
-                w.write(s);
-                w.write("\n");
-                break;
             }
-            m = tagPat.matcher(ln);
-            if (m.lookingAt()) break;
-            w.write(ln);
-            w.write("\n");
-            ln = br.readLine();
+            else if (!tagPat.matcher(ln).lookingAt()) {
+                out.write(ln);
+                out.write("\n");
+                return;
+            }
+            // Now we should have the line with the document element
+            inProlog = false;
+            handleFirstLine(ln, out);
         }
-        // Now we should have the line with the document element
-        handleFirstLine(ln, w);
         
-        while (null != (ln = br.readLine())) {
-            if (ln.isBlank()) continue;
-            handleOtherLines(ln, w);
+        // The last line need not end with a newline.
+        void finish () throws IOException {
+            if (!line.isEmpty()) endLine();
         }
+        
+        @Override
+        public void flush () throws IOException { out.flush(); }
+
+        @Override
+        public void close () throws IOException { finish(); }
     }
     
-    private static Pattern commentTagPat = Pattern.compile("-->\\s*<\\w");
-    private static Pattern tagPat = Pattern.compile("^\\s*<\\w\\S+\\s*");
-    
     // First line after the XML declaration and comments is the root element.
     // Rewrite to have namespace declarations and attributes on separate lines.
     // You can't handle arbitrary XML with regexes, but it works here.
@@ -174,6 +251,245 @@ public class XMLWriter {
         return kvm;
     }   
     
+    /**
+     * Writes a DOM the way the Xalan serializer does with indent="yes" and
+     * indent-amount="2".  Indenting is suppressed after any text, so mixed
+     * content and whitespace from a parsed document come out unchanged.
+     * Namespace declarations are emitted (and fixed up) as in the serializer:
+     * first those for the element and attribute prefixes, then the element's 
+     * attributes in DOM order.
+     */
+    private static class Printer {
+        private static final String XMLNS_URI = "http://www.w3.org/2000/xmlns/";
+        
+        private final Writer w;
+        private final ArrayDeque<Boolean> preserves = new ArrayDeque<>();
+        private final Map<String,ArrayDeque<Mapping>> prefixes = new HashMap<>();
+        private final ArrayDeque<Mapping> mappings  = new ArrayDeque<>();
+        private final List<String[]> atts = new ArrayList<>();  // uri, local, qname, value
+        private int depth = 0;
+        private boolean tagOpen      = false;
+        private boolean isPreserve   = false;
+        private boolean isPrevText   = false;
+        private boolean startNewLine = false;
+        
+        private record Mapping (String prefix, String uri, int depth) { }
+        
+        Printer (Writer w) { 
+            this.w = w; 
+            prefixes.computeIfAbsent("", k -> new ArrayDeque<>()).push(new Mapping("", "", -1));
+        }
+        
+        // True if every node in the document is one the printer handles.
+        static boolean canPrint (Node n) {
+            for (var c = n.getFirstChild(); null != c; c = c.getNextSibling()) {
+                switch (c.getNodeType()) {
+                    case Node.ELEMENT_NODE: if (!canPrint(c)) return false; break;
+                    case Node.TEXT_NODE:    if (Node.DOCUMENT_NODE == n.getNodeType()) return false; break;
+                    case Node.COMMENT_NODE: break;
+                    default: return false;
+                }
+            }
+            return true;
+        }
+        
+        void print (Document dom) throws IOException {
+            for (var c = dom.getFirstChild(); null != c; c = c.getNextSibling()) node(c);
+            if (!isPrevText) w.write("\n");
+        }
+        
+        private void node (Node n) throws IOException {
+            switch (n.getNodeType()) {
+                case Node.ELEMENT_NODE: element((Element)n); break;
+                case Node.TEXT_NODE:    text(n.getNodeValue()); break;
+                case Node.COMMENT_NODE: comment(n.getNodeValue()); break;
+            }
+        }
+        
+        private void element (Element e) throws IOException {
+            var ns  = e.getNamespaceURI();
+            var qn  = e.getNodeName();
+            var nm  = e.getAttributes();
+            if (null != ns) startPrefixMapping(null == e.getPrefix() ? "" : e.getPrefix(), ns);
+            for (int i = 0; i < nm.getLength(); i++) {
+                var a  = (Attr)nm.item(i);
+                var an = a.getNodeName();
+                var ci = an.indexOf(':');
+                if ("xmlns".equals(an) || an.startsWith("xmlns:")) 
+                    startPrefixMapping(ci < 0 ? "" : an.substring(ci+1), a.getValue());
+                else if (ci > 0 && null != a.getNamespaceURI()) 
+                    startPrefixMapping(an.substring(0, ci), a.getNamespaceURI());
+            }
+            closeStartTag();
+            if (null != ns && !ns.isEmpty()) {
+                var ci = qn.indexOf(':');
+                var prefix = ci < 0 ? "" : qn.substring(0, ci);
+                if (!ns.equals(lookup(prefix))) {
+                    startPrefixMapping(prefix, ns);
+                    addAttribute(XMLNS_URI, ci < 0 ? "xmlns" : prefix, ci < 0 ? "xmlns" : "xmlns:" + prefix, ns);
+                }
+            }
+            isPreserve = false;
+            if (shouldIndent() && startNewLine) indent(depth);
+            startNewLine = true;
+            w.write('<');
+            w.write(qn);
+            for (int i = 0; i < nm.getLength(); i++) {
+                var a   = (Attr)nm.item(i);
+                var an  = a.getNodeName();
+                var uri = a.getNamespaceURI();
+                var ln  = a.getLocalName();
+                if (null == ln) ln = an.substring(an.indexOf(':') + 1);
+                addAttribute(null == uri ? "" : uri, ln, an, a.getValue());
+            }
+            depth++;
+            tagOpen = true;
+            isPrevText = false;
+            
+            for (var c = e.getFirstChild(); null != c; c = c.getNextSibling()) node(c);
+            
+            popMappings();
+            if (tagOpen) {
+                writeAttributes();
+                w.write("/>");
+            }
+            else {
+                if (shouldIndent()) indent(depth - 1);
+                w.write("</");
+                w.write(qn);
+                w.write('>');
+                isPreserve = preserves.isEmpty() ? false : preserves.pop();
+            }
+            isPrevText = false;
+            tagOpen = false;
+            depth--;
+        }
+        
+        private void text (String s) throws IOException {
+            if (s.isEmpty()) return;
+            closeStartTag();
+            int i = 0;
+            while (i < s.length() && " \n\r\t".indexOf(s.charAt(i)) >= 0) i++;
+            if (i < s.length()) isPreserve = true;
+            for (i = 0; i < s.length(); i++) {
+                var c = s.charAt(i);
+                switch (c) {
+                    case '<':  w.write("&lt;"); break;
+                    case '>':  w.write("&gt;"); break;
+                    case '&':  w.write("&amp;"); break;
+                    case '\t': w.write(c); break;
+                    case '\n': w.write(c); break;
+                    default:   writeChar(c);
+                }
+            }
+            isPrevText = true;
+        }
+        
+        private void comment (String s) throws IOException {
+            closeStartTag();
+            if (shouldIndent()) indent(depth);
+            w.write("<!--");
+            var wasDash = false;
+            for (int i = 0; i < s.length(); i++) {
+                var c = s.charAt(i);
+                if (wasDash && '-' == c) w.write(" -");
+                else w.write(c);
+                wasDash = ('-' == c);
+            }
+            if (s.endsWith("-")) w.write(' ');
+            w.write("-->");
+            startNewLine = true;
+        }
+        
+        private void closeStartTag () throws IOException {
+            if (!tagOpen) return;
+            writeAttributes();
+            w.write('>');
+            tagOpen = false;
+            isPrevText = false;
+            preserves.push(isPreserve);
+        }
+        
+        private void writeAttributes () throws IOException {
+            for (var a : atts) {
+                w.write(' ');
+                w.write(a[2]);
+                w.write("=\"");
+                for (int i = 0; i < a[3].length(); i++) {
+                    var c = a[3].charAt(i);
+                    switch (c) {
+                        case '<':  w.write("&lt;"); break;
+                        case '>':  w.write("&gt;"); break;
+                        case '&':  w.write("&amp;"); break;
+                        case '"':  w.write("&quot;"); break;
+                        case '\t': w.write("&#9;"); break;
+                        case '\n': w.write("&#10;"); break;
+                        default:   writeChar(c);
+                    }
+                }
+                w.write('"');
+            }
+            atts.clear();
+        }
+        
+        // Control characters, C1 controls, LINE SEPARATOR, and each half of a
+        // surrogate pair become character references (as in the serializer);
+        // everything else is written as is.
+        private void writeChar (char c) throws IOException {
+            if (c < 0x20 || (c >= 0x7F && c <= 0x9F) || c == 0x2028 || Character.isSurrogate(c)) writeRef(c);
+            else w.write(c);
+        }
+        
+        private void writeRef (char c) throws IOException {
+            w.write("&#");
+            w.write(Integer.toString(c));
+            w.write(';');
+        }
+        
+        // Replaces the value of an attribute already added, as the 
+        // serializer does for namespace declarations it generated itself.
+        private void addAttribute (String uri, String local, String qname, String value) {
+            for (var a : atts) {
+                var match = uri.isEmpty() ? qname.equals(a[2]) : uri.equals(a[0]) && local.equals(a[1]);
+                if (match) { a[3] = value; return; }
+            }
+            atts.add(new String[]{ uri, local, qname, value });
+        }
+        
+        private void startPrefixMapping (String prefix, String uri) throws IOException {
+            closeStartTag();
+            if (prefix.startsWith("xml")) return;
+            var stack = prefixes.computeIfAbsent(prefix, k -> new ArrayDeque<>());
+            var top = stack.peek();
+            if (null != top && (uri.equals(top.uri()) || depth + 1 == top.depth())) return;
+            var m = new Mapping(prefix, uri, depth + 1);
+            stack.push(m);
+            mappings.push(m);
+            if (prefix.isEmpty()) addAttribute(XMLNS_URI, "xmlns", "xmlns", uri);
+            else if (!uri.isEmpty()) addAttribute(XMLNS_URI, prefix, "xmlns:" + prefix, uri);
+        }
+        
+        private String lookup (String prefix) {
+            var stack = prefixes.get(prefix);
+            return null == stack || stack.isEmpty() ? null : stack.peek().uri();
+        }
+        
+        private void popMappings () {
+            while (!mappings.isEmpty() && mappings.peek().depth() == depth) {
+                prefixes.get(mappings.pop().prefix()).pop();
+            }
+        }
+        
+        private boolean shouldIndent () {
+            return !isPreserve && !isPrevText && depth > 0;
+        }
+        
+        private void indent (int n) throws IOException {
+            if (startNewLine) w.write('\n');
+            for (int i = 0; i < 2 * n; i++) w.write(' ');
+        }
+    }
+    
     /**
      * Transforms a DOM node to its text representation.
      * @param n - Node object
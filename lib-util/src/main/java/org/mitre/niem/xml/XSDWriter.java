@@ -25,6 +25,7 @@ package org.mitre.niem.xml;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
 import org.mitre.niem.utility.MapToList;
@@ -59,10 +60,19 @@ public class XSDWriter extends XMLWriter {
                 reorderMap.add(key, reorder[i][j]);
             }
         }
+        reorderMap.freeze();
     }
     
     public XSDWriter () { }
     
+    // Returns the attribute order for an element tag, or null if the attributes
+    // are written as they come.  Subclasses with more tags override this; the
+    // static map is shared by every writer, so they can't add to it.
+    protected List<String> reorderKeys (String tag) {
+        if (!reorderMap.containsKey(tag)) return null;
+        return reorderMap.get(tag);
+    }
+    
     @Override
     protected void handleOtherLines (String line, Writer w) throws IOException  {    
         var lineM = linePat.matcher(line);
@@ -78,9 +88,9 @@ public class XSDWriter extends XMLWriter {
         if (res.endsWith("/>")) end = "/>";
         res = res.substring(0, res.length() - end.length());
         
-        if (reorderMap.containsKey(tag)) {
+        var keyL = reorderKeys(tag);
+        if (null != keyL) {
             var amap = keyValMap(res);
-            var keyL = reorderMap.get(tag);
             w.write(indent);
             w.write("<" + tag);
             for (var key : keyL) {
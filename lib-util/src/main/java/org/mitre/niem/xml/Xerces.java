@@ -23,17 +23,22 @@
  */
 package org.mitre.niem.xml;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import static java.util.Map.entry;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
+import static javax.xml.XMLConstants.XML_NS_URI;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.xerces.xs.XSAnnotation;
-import static org.apache.xerces.xs.XSAnnotation.W3C_DOM_DOCUMENT;
 import org.apache.xerces.xs.XSAttributeDeclaration;
 import org.apache.xerces.xs.XSComplexTypeDefinition;
 import static org.apache.xerces.xs.XSConstants.ATTRIBUTE_DECLARATION;
@@ -47,8 +52,10 @@ import org.apache.xerces.xs.XSSimpleTypeDefinition;
 import static org.apache.xerces.xs.XSSimpleTypeDefinition.*;
 import org.apache.xerces.xs.XSTypeDefinition;
 import static org.apache.xerces.xs.XSTypeDefinition.SIMPLE_TYPE;
-import static org.mitre.niem.xml.XMLSchemaDocument.getXMLLang;
-import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * A class with several static methods useful in conjunction with the Xerces 
@@ -60,49 +67,115 @@ import org.w3c.dom.Element;
 public class Xerces {
     static final Logger LOG = LogManager.getLogger(Xerces.class);      
 
+    // Documentation is requested for the same components over and over while
+    // building a model.  Remember the result for each XSObject (and each
+    // XSAnnotation); weak keys, so that a discarded XSModel can be collected.
+    private static final Map<XSObject,List<LanguageString>> docCache =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     /**
      * Returns a list of language strings from the document elements within the
      * annotation elements within the specified object.  Returns an empty list if
-     * the specified object doesn't have annotations.     * 
+     * the specified object doesn't have annotations.  The result is memoized 
+     * and cannot be modified.
      * @param xobj - XSObject
      * @return list of documentation language strings
      */
     public static List<LanguageString> getDocumentation (XSObject xobj) {
-        var res   = new ArrayList<LanguageString>();
+        if (xobj instanceof XSAnnotation xann) return getDocumentation(xann);
+        var res = docCache.get(xobj);
+        if (null != res) return res;
+        var docL  = new ArrayList<LanguageString>();
         var xannL = getAnnotations(xobj);
-        if (null == xannL || xannL.getLength() < 1) return res;
-        for (int i = 0; i < xannL.getLength(); i++) {
-            var xann = (XSAnnotation)xannL.item(i);
-            res.addAll(getDocumentation(xann));
+        if (null != xannL) {
+            for (int i = 0; i < xannL.getLength(); i++) {
+                var xann = (XSAnnotation)xannL.item(i);
+                docL.addAll(getDocumentation(xann));
+            }
         }
+        res = Collections.unmodifiableList(docL);
+        docCache.put(xobj, res);
         return res;
     }
     
     /**
      * Returns a list of language strings from the document elements within an
-     * annotation element.
+     * annotation element.  The annotation string is scanned with a SAX parser;
+     * no DOM is constructed.  The result is memoized and cannot be modified.
      * @param xann - XSAnnotation object
      * @return list of documentation language strings
      */
     public static List<LanguageString> getDocumentation (XSAnnotation xann) {
-        var res = new ArrayList<LanguageString>();
-        try {
-            var db  = ParserBootstrap.docBuilder();
-            var doc = db.newDocument();
-            xann.writeAnnotation(doc, W3C_DOM_DOCUMENT);
-            var ae  = doc.getDocumentElement();
-            var docNL = ae.getElementsByTagNameNS(W3C_XML_SCHEMA_NS_URI, "documentation");
-            for (int i = 0; i < docNL.getLength(); i++) {
-                var de = (Element)docNL.item(i);
-                var text = de.getTextContent();
-                var lang = getXMLLang(de);
-                res.add(new LanguageString(text, lang));                    
+        var res = docCache.get(xann);
+        if (null != res) return res;
+        var h = new DocumentationHandler();
+        var s = xann.getAnnotationString();
+        if (null != s && !s.isEmpty()) {
+            try {
+                var p = annParser.get();
+                p.reset();
+                p.parse(new InputSource(new StringReader(s)), h);
+            } catch (IOException | SAXException ex) {
+                LOG.error("Can't parse annotation: {}", ex.getMessage());
             }
-        } catch (ParserConfigurationException ex) {
-            LOG.error("Internal parser error: {}", ex.getMessage());
         }
+        res = Collections.unmodifiableList(h.result());
+        docCache.put(xann, res);
         return res;
     }
+
+    // One SAX parser per thread for annotation strings; a parser isn't thread-safe.
+    private static final ThreadLocal<SAXParser> annParser = ThreadLocal.withInitial(() -> {
+        try {
+            return ParserBootstrap.sax2Parser();
+        } catch (ParserConfigurationException | SAXException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    });
+
+    // Collects the text content and in-scope xml:lang of each xs:documentation
+    // element, in document order.  Same results as getTextContent() and 
+    // XMLSchemaDocument.getXMLLang() on the DOM written by writeAnnotation.
+    private static class DocumentationHandler extends DefaultHandler {
+        private final List<String> langStack = new ArrayList<>();     // in-scope xml:lang, "" if none
+        private final List<StringBuilder> textL = new ArrayList<>();  // text of each documentation element
+        private final List<String> langL = new ArrayList<>();         // xml:lang of each documentation element
+        private final List<Integer> openL = new ArrayList<>();        // indexes of open documentation elements
+        private final List<Boolean> isDocStack = new ArrayList<>();
+
+        @Override
+        public void startElement (String uri, String lname, String qname, Attributes atts) {
+            var lang = atts.getValue(XML_NS_URI, "lang");
+            if (null == lang || lang.isEmpty()) 
+                lang = langStack.isEmpty() ? "" : langStack.get(langStack.size()-1);
+            langStack.add(lang);
+            var isDoc = W3C_XML_SCHEMA_NS_URI.equals(uri) && "documentation".equals(lname);
+            isDocStack.add(isDoc);
+            if (isDoc) {
+                openL.add(textL.size());
+                textL.add(new StringBuilder());
+                langL.add(lang.isEmpty() ? "en-US" : lang);
+            }
+        }
+
+        @Override
+        public void endElement (String uri, String lname, String qname) {
+            langStack.remove(langStack.size()-1);
+            if (isDocStack.remove(isDocStack.size()-1)) openL.remove(openL.size()-1);
+        }
+
+        @Override
+        public void characters (char[] ch, int start, int length) {
+            for (var i : openL) textL.get(i).append(ch, start, length);
+        }
+
+        List<LanguageString> result () {
+            var res = new ArrayList<LanguageString>();
+            for (int i = 0; i < textL.size(); i++) 
+                res.add(new LanguageString(textL.get(i).toString(), langL.get(i)));
+            return res;
+        }
+    }
     
     // Returns a list of annotation elements within the specified object.  You
     // might expect that the XSObject class would have a getAnnotations method,
@@ -150,8 +223,8 @@ public class Xerces {
         entry("enumeration", FACET_ENUMERATION),
         entry("fractionDigits", FACET_FRACTIONDIGITS),
         entry("length", FACET_LENGTH),
-        entry("mxExclusive", FACET_MAXEXCLUSIVE),
-        entry("mxInclusive", FACET_MAXINCLUSIVE),
+        entry("maxExclusive", FACET_MAXEXCLUSIVE),
+        entry("maxInclusive", FACET_MAXINCLUSIVE),
         entry("maxLength", FACET_MAXLENGTH),
         entry("minExclusive", FACET_MINEXCLUSIVE),
         entry("minInclusive", FACET_MININCLUSIVE),
@@ -272,24 +345,47 @@ public class Xerces {
         "unsignedShort",      "whiteSpace",            "collapse",        
     };
     
-    private record DefaultFacet (short kind, String value) { }
-    private static final Map<String,List<DefaultFacet>> defFacet;
+    // The default facets of one builtin type.  Facet kinds are single bits,
+    // so the kinds present are a bit set, and the expected value for each 
+    // kind is indexed by its bit position.
+    private record DefaultFacets (int kinds, String[] values) {
+        boolean matches (short kind, String value) {
+            if (0 == (kinds & kind)) return false;
+            return values[Integer.numberOfTrailingZeros(kind)].equals(value);
+        }
+    }
+    private static final Map<String,DefaultFacets> defFacet;
     static {
-        defFacet = new HashMap<>();
+        var kindsM  = new HashMap<String,Integer>();
+        var valuesM = new HashMap<String,String[]>();
         for (int i = 0; i < xercesFacetData.length; i += 3) {
             var xsdtype = xercesFacetData[i];
             var element = xercesFacetData[i+1];
             var value   = xercesFacetData[i+2];
             var fkind   = facetElementNameToKind(element);
-            var dfL     = defFacet.get(xsdtype);
-            if (null == dfL) {
-                dfL = new ArrayList<>();
-                defFacet.put(xsdtype, dfL);
-            }
-            dfL.add(new DefaultFacet(fkind, value));
+            kindsM.merge(xsdtype, (int)fkind, (x, y) -> x | y);
+            valuesM.computeIfAbsent(xsdtype, k -> new String[Short.SIZE])[Integer.numberOfTrailingZeros(fkind)] = value;
         }
-        defFacet.put("anyType", new ArrayList<>());
-        defFacet.put("anySimpleType", new ArrayList<>());
+        defFacet = new HashMap<>();
+        for (var xsdtype : kindsM.keySet()) 
+            defFacet.put(xsdtype, new DefaultFacets(kindsM.get(xsdtype), valuesM.get(xsdtype)));
+        defFacet.put("anyType", new DefaultFacets(0, new String[0]));
+        defFacet.put("anySimpleType", new DefaultFacets(0, new String[0]));
+    }
+    
+    // Every facet of every simple type is checked, so remember the builtin
+    // ancestor of each type definition instead of walking the chain each time.
+    private static final Map<XSTypeDefinition,DefaultFacets> typeFacetCache = 
+            Collections.synchronizedMap(new WeakHashMap<>());
+    
+    private static DefaultFacets defaultFacets (XSTypeDefinition xtype) {
+        var res = typeFacetCache.get(xtype);
+        if (null != res) return res;
+        var btype = xtype;
+        while (!defFacet.containsKey(btype.getName())) btype = btype.getBaseType();
+        res = defFacet.get(btype.getName());
+        typeFacetCache.put(xtype, res);
+        return res;
     }
 
     /**
@@ -304,15 +400,7 @@ public class Xerces {
      * @return true for a default facet
      */
     public static boolean isDefaultFacet (XSTypeDefinition xtype, short facetKind, String value) {
-        var typeName = xtype.getName();
-        while (!defFacet.containsKey(typeName)) {
-            xtype = xtype.getBaseType();
-            typeName = xtype.getName();
-        }
-        for (var dfr : defFacet.get(typeName)) {
-            if (facetKind == dfr.kind && value.equals(dfr.value)) return true;
-        }
-        return false;
+        return defaultFacets(xtype).matches(facetKind, value);
     }
     
     public static boolean isDefaultFacet (XSTypeDefinition xtype, XSFacet f) {
@@ -0,0 +1,72 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.utility;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class ParallelMapTest {
+    
+    public ParallelMapTest() {
+    }
+
+    @Test
+    public void testOrder () throws Exception {
+        var items = IntStream.range(0, 100).boxed().toList();
+        var expect = items.stream().map((i) -> i * i).toList();
+        for (int threads : List.of(1, 4)) {
+            var res = ParallelMap.map(items, threads, (i) -> { 
+                if (0 == i % 7) Thread.onSpinWait();
+                return i * i; 
+            });
+            assertEquals(expect, res);
+        }
+    }
+    
+    @Test
+    public void testException () {
+        var items = List.of("a", "b", "sax", "io");
+        for (int threads : List.of(1, 4)) {
+            assertThrows(SAXException.class, () -> ParallelMap.map(items, threads, (s) -> {
+                if ("sax".equals(s)) throw new SAXException(s);
+                if ("io".equals(s)) throw new IOException(s);
+                return s;
+            }));
+            var ex = assertThrows(IllegalArgumentException.class, () -> ParallelMap.map(items, threads, (s) -> {
+                if ("b".equals(s)) throw new IllegalArgumentException(s);
+                return s;
+            }));
+            assertEquals("b", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xml;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.io.FileUtils;
+import static org.assertj.core.api.Assertions.assertThat;
+import org.apache.xerces.xs.XSConstants;
+import org.apache.xerces.xs.XSModel;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class SharedGrammarPoolTest {
+    
+    private static final String resDN  = "src/test/resources/";
+    
+    @TempDir
+    Path tempD;
+    
+    public SharedGrammarPoolTest () {
+    }
+    
+    @BeforeEach
+    public void setUp () {
+        SharedGrammarPool.clear();
+    }
+    
+    @AfterEach
+    public void tearDown () {
+        SharedGrammarPool.setEnabled(false);
+        SharedGrammarPool.clear();
+    }
+
+    @Test
+    public void testSameModel () throws Exception {
+        String[] args = new String[]{
+            resDN + "xsd/goodXsTest.xsd",
+            resDN + "xsd/niem/xml-catalog.xml",
+            resDN + "cat/cat1.xml"} ;
+        var plain = new XMLSchema(args);
+        var plainC = componentCounts(plain.xsmodel());
+        
+        SharedGrammarPool.setEnabled(true);
+        var first = new XMLSchema(args);
+        assertEquals(plainC, componentCounts(first.xsmodel()));
+        assertTrue(first.xsModelMsgs().isEmpty());
+        assertEquals(0, SharedGrammarPool.hits());
+        assertThat(SharedGrammarPool.size()).isGreaterThan(0);
+        
+        // javax schema for the same pile reuses the grammars from the XSModel
+        assertNotNull(first.javaxSchema());
+        assertTrue(first.javaXMsgs().isEmpty());
+        assertThat(SharedGrammarPool.hits()).isGreaterThan(0);
+        
+        var second = new XMLSchema(args);
+        assertEquals(plainC, componentCounts(second.xsmodel()));
+        assertTrue(second.xsModelMsgs().isEmpty());
+    }
+    
+    @Test
+    public void testSharedNamespaces () throws Exception {
+        SharedGrammarPool.setEnabled(true);
+        var s1 = new XMLSchema(resDN + "xsd/goodXsTest.xsd", resDN + "xsd/niem/xml-catalog.xml");
+        assertNotNull(s1.xsmodel());
+        long hits = SharedGrammarPool.hits();
+        var s2 = new XMLSchema(resDN + "xsd/withCatalog.xsd", resDN + "xsd/niem/xml-catalog.xml");
+        assertNotNull(s2.xsmodel());
+        assertTrue(s2.xsModelMsgs().isEmpty());
+        assertThat(SharedGrammarPool.hits()).isGreaterThan(hits);
+        
+        SharedGrammarPool.setEnabled(false);
+        var plain = new XMLSchema(resDN + "xsd/withCatalog.xsd", resDN + "xsd/niem/xml-catalog.xml");
+        assertEquals(componentCounts(plain.xsmodel()), componentCounts(s2.xsmodel()));
+    }
+    
+    @Test
+    public void testBadXs () throws Exception {
+        SharedGrammarPool.setEnabled(true);
+        var sch = new XMLSchema(resDN + "xsd/badXsTest.xsd");
+        assertThat(sch.xsModelMsgs()).isNotEmpty();
+        assertThat(sch.javaXMsgs()).isNotEmpty();
+        assertEquals(0, SharedGrammarPool.size());
+    }
+    
+    @Test
+    public void testChangedDocument () throws Exception {
+        var xsdD = tempD.resolve("xsd").toFile();
+        FileUtils.copyDirectory(new File(resDN + "xsd"), xsdD);
+        var args = new String[]{ 
+            new File(xsdD, "goodXsTest.xsd").toString(),
+            new File(xsdD, "niem/xml-catalog.xml").toString() };
+        SharedGrammarPool.setEnabled(true);
+        assertNotNull(new XMLSchema(args).xsmodel());
+        int size = SharedGrammarPool.size();
+        
+        // Change a document imported by niem-core; pooled niem-core must not be reused
+        var structF = new File(xsdD, "niem/utility/structures.xsd");
+        try (var fw = new FileWriter(structF, true)) {
+            fw.write("<!-- changed -->\n");
+        }
+        var s = new XMLSchema(args);
+        assertNotNull(s.xsmodel());
+        assertTrue(s.xsModelMsgs().isEmpty());
+        assertThat(SharedGrammarPool.stale()).isGreaterThan(0);
+        assertThat(SharedGrammarPool.size()).isGreaterThan(size);
+    }
+    
+    // Number of top-level components in each namespace of the model
+    private static Map<String,Integer> componentCounts (XSModel xs) throws IOException {
+        var res = new TreeMap<String,Integer>();
+        var nsl = xs.getNamespaceItems();
+        for (int i = 0; i < nsl.getLength(); i++) {
+            var ns = nsl.item(i);
+            int count = 0;
+            for (short t : new short[]{ XSConstants.ELEMENT_DECLARATION, XSConstants.ATTRIBUTE_DECLARATION, XSConstants.TYPE_DEFINITION })
+                count += ns.getComponents(t).getLength();
+            res.put(String.valueOf(ns.getSchemaNamespace()), count);
+        }
+        return res;
+    }
+}
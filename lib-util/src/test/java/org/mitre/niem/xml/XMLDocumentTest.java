@@ -25,6 +25,7 @@ package org.mitre.niem.xml;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -64,4 +65,37 @@ public class XMLDocumentTest {
         assertEquals(res, "");
     }
     
+    @Test
+    public void testSniffRootElement () throws Exception {
+        var root = XMLDocument.sniffRootElement(resDN + "xsd/xsDocTest.xsd");
+        assertEquals("http://www.w3.org/2001/XMLSchema", root.namespace());
+        assertEquals("schema", root.localName());
+        assertEquals("http://example.com/test/", root.targetNamespace());
+        assertTrue(root.isSchema());
+        root = XMLDocument.sniffRootElement(resDN + "cat/cat1.xml");
+        assertEquals("urn:oasis:names:tc:entity:xmlns:xml:catalog", root.namespace());
+        assertEquals("catalog", root.localName());
+        assertEquals("", root.targetNamespace());
+        assertFalse(root.isSchema());
+        root = XMLDocument.sniffRootElement(resDN + "xsd/00-README.txt");
+        assertEquals(new XMLRootElement("", "", ""), root);
+    }
+    
+    @Test
+    public void testSniffRootElements () throws Exception {
+        var paths = List.of(
+                resDN + "xsd/xsDocTest.xsd", 
+                resDN + "xsd/nosuch", 
+                resDN + "cat/cat1.xml",
+                resDN + "xsd/goodXsTest.xsd");
+        var one  = XMLDocument.sniffRootElements(paths, 1);
+        var four = XMLDocument.sniffRootElements(paths, 4);
+        assertEquals(one, four);
+        assertEquals(4, one.size());
+        assertEquals(XMLDocument.sniffRootElement(paths.get(0)), one.get(0));
+        assertNull(one.get(1));
+        assertEquals("catalog", one.get(2).localName());
+        assertEquals("http://example.com/goodXsTest/", one.get(3).targetNamespace());
+    }
+    
 }
@@ -77,6 +77,26 @@ public class XMLSchemaDocumentTest {
         assertNotNull(xsd.dom());
     }
 
+    @Test
+    public void testLowMemory () throws Exception {
+        var xsd = new XMLSchemaDocument(goodXsF);
+        xsd.preload();
+        try {
+            XMLSchemaDocument.setLowMemory(true);
+            var lsd = new XMLSchemaDocument(goodXsF);
+            lsd.preload();
+            assertNotNull(lsd.dom());
+            assertEquals(xsd.targetNamespace(), lsd.targetNamespace());
+            assertEquals(xsd.language(), lsd.language());
+            assertEquals(xsd.version(), lsd.version());
+            assertEquals(xsd.documentation(), lsd.documentation());
+            assertEquals(xsd.importElements(), lsd.importElements());
+            assertEquals(xsd.namespaceDeclarations().size(), lsd.namespaceDeclarations().size());
+        } finally {
+            XMLSchemaDocument.setLowMemory(false);
+        }
+    }
+    
     @Test
     public void testEval() throws Exception {
         var xsd = new XMLSchemaDocument(xsDocF);
@@ -100,6 +100,39 @@ public class XMLSchemaTest {
         }
     }
     
+    @Test
+    public void testThreadsSameResult () throws Exception {
+        String[] args = new String[]{
+            resDN + "xsd/goodXsTest.xsd",
+            resDN + "xsd/niem/xml-catalog.xml"};
+        try {
+            XMLSchema.setThreads(1);
+            var one = new XMLSchema(args);
+            XMLSchema.setThreads(4);
+            var four = new XMLSchema(args);
+            assertEquals(one.schemaDocumentL().size(), four.schemaDocumentL().size());
+            for (int i = 0; i < one.schemaDocumentL().size(); i++) {
+                var sd1 = one.schemaDocumentL().get(i);
+                var sd4 = four.schemaDocumentL().get(i);
+                assertEquals(sd1.docURI(), sd4.docURI());
+                assertEquals(sd1.targetNamespace(), sd4.targetNamespace());
+                assertEquals(nsdecls(sd1), nsdecls(sd4));
+                assertEquals(sd1.importElements(), sd4.importElements());
+            }
+            assertEquals(one.pileRoot(), four.pileRoot());
+        } finally {
+            XMLSchema.setThreads(Runtime.getRuntime().availableProcessors());
+        }
+        assertEmptyLogs();
+    }
+    
+    private static List<String> nsdecls (XMLSchemaDocument sd) {
+        var res = new ArrayList<String>();
+        for (var nsd : sd.namespaceDeclarations()) 
+            res.add(String.format("%s %s %d %d", nsd.prefix(), nsd.ns(), nsd.line(), nsd.depth()));
+        return res;
+    }
+    
     @Test
     public void testWithCatalog () throws Exception {
         String[] args = new String[]{
@@ -0,0 +1,93 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xml;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.apache.commons.io.FileUtils;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Compares the DOM-walking XMLWriter with the Transformer it replaced, 
+ * writing every schema document in the NIEM model in the test resources.
+ * Run with "gradle :lib-util:benchmark".
+ * 
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+@Tag("benchmark")
+public class XMLWriterBenchmark {
+    private final static String resDN = "src/test/resources/xsd/niem";
+    private final static int WARMUP = 10;
+    private final static int RUNS   = 30;
+    
+    public XMLWriterBenchmark() {
+    }
+    
+    @Test
+    public void benchWriters () throws Exception {
+        var dbf  = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        var db   = dbf.newDocumentBuilder();
+        var docs = new ArrayList<Document>();
+        for (var xsdF : FileUtils.listFiles(new File(resDN), new String[]{"xsd"}, true)) docs.add(db.parse(xsdF));
+        for (int i = 0; i < WARMUP; i++) { writeAll(docs, true); writeAll(docs, false); }
+        var tt = time(docs, true);
+        var tw = time(docs, false);
+        var chars = writeAll(docs, false);
+        System.out.println(String.format("XMLWriter, %d documents (%d chars) x %d runs", docs.size(), chars, RUNS));
+        System.out.println(String.format("  transformer %8.2f ms/run", tt / 1e6 / RUNS));
+        System.out.println(String.format("  DOM walk    %8.2f ms/run", tw / 1e6 / RUNS));
+        System.out.println(String.format("  speedup     %8.2fx", (double)tt / tw));
+    }
+    
+    private static long time (List<Document> docs, boolean useTransformer) throws Exception {
+        var start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) writeAll(docs, useTransformer);
+        return System.nanoTime() - start;
+    }
+    
+    // Counts the output instead of keeping it
+    private static long writeAll (List<Document> docs, boolean useTransformer) throws Exception {
+        var cw = new CountingWriter();
+        for (var doc : docs) new XMLWriter().writeXML(doc, cw, useTransformer);
+        assertTrue(cw.count > 0);
+        return cw.count;
+    }
+    
+    private static class CountingWriter extends Writer {
+        long count = 0;
+        @Override public void write (char[] cbuf, int off, int len) { count += len; }
+        @Override public void write (String s, int off, int len)    { count += len; }
+        @Override public void write (int c) { count++; }
+        @Override public void flush () { }
+        @Override public void close () { }
+    }
+}
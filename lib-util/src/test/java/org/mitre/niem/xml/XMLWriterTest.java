@@ -26,11 +26,18 @@ package org.mitre.niem.xml;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
 import javax.xml.parsers.DocumentBuilderFactory;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
 
 /**
  *
@@ -54,6 +61,23 @@ public class XMLWriterTest {
         doTest(new File(resDN, "xml/test3.xml"));
     }
     
+    // Documents the DOM walker can't print go through the Transformer, 
+    // still with exactly one declaration ahead of the content
+    @Test
+    public void testFallback () throws Exception {
+        var dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        dbf.setCoalescing(false);
+        var xml = "<?xml version=\"1.0\"?>\n<?app hint?>\n<root><a><![CDATA[<b>]]></a></root>\n";
+        var doc = dbf.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+        var sw  = new StringWriter();
+        new XMLWriter().writeXML(doc, sw);
+        var out = sw.toString();
+        assertTrue(out.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<?app hint?>"), out);
+        assertEquals(out.indexOf("<?xml "), out.lastIndexOf("<?xml "));
+        assertTrue(out.contains("<![CDATA[<b>]]>"), out);
+    }
+    
     public void doTest (File xmlF) throws Exception {
         var dbf  = DocumentBuilderFactory.newInstance();
         dbf.setNamespaceAware(true);
@@ -69,5 +93,86 @@ public class XMLWriterTest {
         assertTrue(same);        
     }
 
+    // The DOM walker must write exactly what the Transformer did
+    @Test
+    public void testSameAsTransformer () throws Exception {
+        var dbf  = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        var db   = dbf.newDocumentBuilder();
+        var xmlFL = FileUtils.listFiles(new File(resDN), new String[]{"xsd"}, true);
+        xmlFL.addAll(FileUtils.listFiles(new File(resDN, "xml"), new String[]{"xml"}, false));
+        for (var xmlF : xmlFL) {
+            var doc = db.parse(xmlF);
+            assertSame(new XMLWriter(), doc, xmlF.getName());
+            if (!xmlF.getName().endsWith(".xsd")) continue;
+            removeComments(doc);        // XSDWriter can't handle comments
+            assertSame(new XSDWriter(), doc, xmlF.getName());
+        }
+        var rand = new Random(12);
+        for (int i = 0; i < 200; i++) {
+            var doc = db.newDocument();
+            doc.appendChild(randomElement(doc, rand, 0));
+            if (rand.nextInt(4) == 0) doc.insertBefore(doc.createComment(randomText(rand)), doc.getDocumentElement());
+            assertSame(new XMLWriter(), doc, "random #" + i);
+        }
+    }
     
+    private static void assertSame (XMLWriter xw, Document doc, String msg) throws Exception {
+        var tw = new StringWriter();
+        var pw = new StringWriter();
+        xw.writeXML(doc, tw, true);
+        xw.writeXML(doc, pw, false);
+        assertEquals(tw.toString(), pw.toString(), msg);
+    }
+    
+    private static void removeComments (Node n) {
+        var c = n.getFirstChild();
+        while (null != c) {
+            var next = c.getNextSibling();
+            if (Node.COMMENT_NODE == c.getNodeType()) n.removeChild(c);
+            else removeComments(c);
+            c = next;
+        }
+    }
+    
+    private static final String[] NSU = { null, "", "http://example.com/a/", "http://example.com/b/" };
+    private static final String[] PRE = { null, "a", "b", "xmlp" };
+    
+    // Elements with random names, namespaces, attributes, text, and comments
+    private static Element randomElement (Document doc, Random rand, int depth) {
+        var nsu = NSU[rand.nextInt(NSU.length)];
+        var pre = PRE[rand.nextInt(PRE.length)];
+        var qn  = (null == pre || null == nsu || nsu.isEmpty() ? "" : pre + ":") + "e" + rand.nextInt(5);
+        var e   = doc.createElementNS(nsu, qn);
+        for (int i = rand.nextInt(4); i > 0; i--) {
+            switch (rand.nextInt(4)) {
+            case 0: e.setAttribute("x" + rand.nextInt(6), randomText(rand)); break;
+            case 1: e.setAttributeNS(NSU[2 + rand.nextInt(2)], PRE[1 + rand.nextInt(2)] + ":y" + rand.nextInt(3), randomText(rand)); break;
+            case 2: e.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:" + PRE[1 + rand.nextInt(2)], NSU[2 + rand.nextInt(2)]); break;
+            case 3: e.setAttribute("xmlns:c", "http://example.com/c/"); break;
+            }
+        }
+        int nkids = depth > 4 ? 0 : rand.nextInt(5);
+        for (int i = 0; i < nkids; i++) {
+            switch (rand.nextInt(6)) {
+            case 0: e.appendChild(doc.createTextNode(randomText(rand))); break;
+            case 1: e.appendChild(doc.createComment(randomText(rand))); break;
+            case 2: e.appendChild(doc.createTextNode(rand.nextBoolean() ? "\n  " : " ")); break;
+            default: e.appendChild(randomElement(doc, rand, depth + 1));
+            }
+        }
+        return e;
+    }
+    
+    private static final String CHARS = "ab <>&\"'\t\n\r-=\u0001\u007f\u0085\u00e9\u2028\ud83d\ude00";
+    
+    private static String randomText (Random rand) {
+        var sb = new StringBuilder();
+        for (int i = rand.nextInt(8); i > 0; i--) {
+            var c = CHARS.charAt(rand.nextInt(CHARS.length()));
+            if (Character.isSurrogate(c)) sb.append("\ud83d\ude00");
+            else sb.append(c);
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ * NOTICE
+ *
+ * This software was produced for the U. S. Government
+ * under Basic Contract No. W56KGU-18-D-0004, and is
+ * subject to the Rights in Noncommercial Computer Software
+ * and Noncommercial Computer Software Documentation
+ * Clause 252.227-7014 (FEB 2012)
+ *
+ * Copyright 2020-2025 The MITRE Corporation.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mitre.niem.xml;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static javax.xml.XMLConstants.W3C_XML_SCHEMA_NS_URI;
+import org.apache.xerces.xs.XSAnnotation;
+import static org.apache.xerces.xs.XSAnnotation.W3C_DOM_DOCUMENT;
+import static org.apache.xerces.xs.XSConstants.ELEMENT_DECLARATION;
+import static org.apache.xerces.xs.XSConstants.TYPE_DEFINITION;
+import static org.apache.xerces.xs.XSSimpleTypeDefinition.*;
+import org.apache.xerces.xs.XSObject;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.mitre.niem.xml.XMLSchemaDocument.getXMLLang;
+import org.w3c.dom.Element;
+
+/**
+ *
+ * @author Scott Renner
+ * <a href="mailto:sar@mitre.org">sar@mitre.org</a>
+ */
+public class XercesTest {
+    
+    private static final String resDN  = "src/test/resources/";
+    
+    @TempDir
+    Path tempD;
+    
+    public XercesTest () {
+    }
+
+    @Test
+    public void testDocumentationSameAsDOM () throws Exception {
+        String[] args = new String[]{
+            resDN + "xsd/niem/niem-core.xsd",
+            resDN + "xsd/niem/xml-catalog.xml"};
+        var xs = new XMLSchema(args).xsmodel();
+        var objL = new ArrayList<XSObject>();
+        var elements = xs.getComponents(ELEMENT_DECLARATION);
+        for (int i = 0; i < elements.getLength(); i++) objL.add(elements.item(i));
+        var types = xs.getComponents(TYPE_DEFINITION);
+        for (int i = 0; i < types.getLength(); i++) objL.add(types.item(i));
+        var count = 0;
+        for (var xobj : objL) {
+            var expected = new ArrayList<LanguageString>();
+            var xannL = Xerces.getAnnotations(xobj);
+            for (int i = 0; null != xannL && i < xannL.getLength(); i++) 
+                expected.addAll(domDocumentation((XSAnnotation)xannL.item(i)));
+            var docL = Xerces.getDocumentation(xobj);
+            assertEquals(expected, docL);
+            assertSame(docL, Xerces.getDocumentation(xobj));
+            count += docL.size();
+        }
+        assertTrue(count > 100);
+    }
+    
+    @Test
+    public void testDocumentationLang () throws Exception {
+        var sf = tempD.resolve("lang.xsd").toFile();
+        Files.writeString(sf.toPath(), """
+            <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema"
+              targetNamespace="http://example.com/lang/" xml:lang="fr">
+              <xs:element name="E">
+                <xs:annotation xml:lang="de">
+                  <xs:documentation>eins <b>zwei</b> <![CDATA[drei]]></xs:documentation>
+                  <xs:documentation xml:lang="en">one</xs:documentation>
+                  <xs:documentation xml:lang="">eins</xs:documentation>
+                </xs:annotation>
+              </xs:element>
+              <xs:element name="F">
+                <xs:annotation>
+                  <!-- comment -->
+                  <xs:documentation>plain</xs:documentation>
+                  <xs:appinfo>not documentation</xs:appinfo>
+                </xs:annotation>
+              </xs:element>
+            </xs:schema>
+            """);
+        var xs = new XMLSchema(new String[]{ sf.toString() }).xsmodel();
+        var e = xs.getElementDeclaration("E", "http://example.com/lang/");
+        assertThat(Xerces.getDocumentation(e)).containsExactly(
+                new LanguageString("eins zwei drei", "de"),
+                new LanguageString("one", "en"),
+                new LanguageString("eins", "de"));
+        var f = xs.getElementDeclaration("F", "http://example.com/lang/");
+        assertThat(Xerces.getDocumentation(f)).containsExactly(
+                new LanguageString("plain", "en-US"));
+        for (var xobj : List.of(e, f)) {
+            var xann = (XSAnnotation)Xerces.getAnnotations(xobj).item(0);
+            assertEquals(domDocumentation(xann), Xerces.getDocumentation(xann));
+        }
+    }
+    
+    @Test
+    public void testFacetElementNameToKind () {
+        for (short kind : new short[]{ FACET_ENUMERATION, FACET_FRACTIONDIGITS, FACET_LENGTH,
+                FACET_MAXEXCLUSIVE, FACET_MAXINCLUSIVE, FACET_MAXLENGTH, FACET_MINEXCLUSIVE,
+                FACET_MININCLUSIVE, FACET_MINLENGTH, FACET_PATTERN, FACET_TOTALDIGITS, FACET_WHITESPACE }) {
+            assertEquals(kind, Xerces.facetElementNameToKind(Xerces.facetKindToElementName(kind)));
+        }
+        assertEquals(-1, Xerces.facetElementNameToKind("mxInclusive"));
+    }
+    
+    @Test
+    public void testIsDefaultFacet () throws Exception {
+        var sf = tempD.resolve("facet.xsd").toFile();
+        Files.writeString(sf.toPath(), """
+            <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema"
+              targetNamespace="http://example.com/facet/">
+              <xs:simpleType name="SmallType">
+                <xs:restriction base="xs:byte">
+                  <xs:maxInclusive value="100"/>
+                </xs:restriction>
+              </xs:simpleType>
+              <xs:simpleType name="SmallerType">
+                <xs:restriction base="SmallType" xmlns="http://example.com/facet/">
+                  <xs:minLength value="1"/>
+                </xs:restriction>
+              </xs:simpleType>
+            </xs:schema>
+            """);
+        var xs = new XMLSchema(new String[]{ sf.toString() }).xsmodel();
+        for (var name : List.of("SmallType", "SmallerType")) {
+            var xtype = xs.getTypeDefinition(name, "http://example.com/facet/");
+            assertTrue(Xerces.isDefaultFacet(xtype, FACET_MAXINCLUSIVE, "127"));
+            assertTrue(Xerces.isDefaultFacet(xtype, FACET_MININCLUSIVE, "-128"));
+            assertTrue(Xerces.isDefaultFacet(xtype, FACET_FRACTIONDIGITS, "0"));
+            assertTrue(Xerces.isDefaultFacet(xtype, FACET_WHITESPACE, "collapse"));
+            assertFalse(Xerces.isDefaultFacet(xtype, FACET_MAXINCLUSIVE, "100"));
+            assertFalse(Xerces.isDefaultFacet(xtype, FACET_MAXEXCLUSIVE, "127"));
+            assertFalse(Xerces.isDefaultFacet(xtype, FACET_MINLENGTH, "1"));
+        }
+        var str = xs.getTypeDefinition("string", W3C_XML_SCHEMA_NS_URI);
+        assertTrue(Xerces.isDefaultFacet(str, FACET_WHITESPACE, "preserve"));
+        assertFalse(Xerces.isDefaultFacet(str, FACET_WHITESPACE, "collapse"));
+        var any = xs.getTypeDefinition("anyType", W3C_XML_SCHEMA_NS_URI);
+        assertFalse(Xerces.isDefaultFacet(any, FACET_WHITESPACE, "collapse"));
+    }
+    
+    // The original DOM implementation, for comparison.
+    private static List<LanguageString> domDocumentation (XSAnnotation xann) throws Exception {
+        var res = new ArrayList<LanguageString>();
+        var doc = ParserBootstrap.docBuilder().newDocument();
+        xann.writeAnnotation(doc, W3C_DOM_DOCUMENT);
+        var docNL = doc.getDocumentElement().getElementsByTagNameNS(W3C_XML_SCHEMA_NS_URI, "documentation");
+        for (int i = 0; i < docNL.getLength(); i++) {
+            var de = (Element)docNL.item(i);
+            res.add(new LanguageString(de.getTextContent(), getXMLLang(de)));
+        }
+        return res;
+    }
+}